@@ -1,8 +1,6 @@
 package org.hucompute.tlgparser;
 
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 public class DiameterThread extends Thread {
@@ -10,6 +8,8 @@ public class DiameterThread extends Thread {
     protected Set<TLGNode> subSet;
     protected int diameter;
     protected TLGGraph.Directedness directedness;
+    protected TLGFrozenGraph frozenGraph;
+    protected int[] sources;
 
     public DiameterThread(TLGGraph pGraph, Set<TLGNode> pNodeSubSet, TLGGraph.Directedness pDirectedness) {
         graph = pGraph;
@@ -23,28 +23,39 @@ public class DiameterThread extends Thread {
         directedness = pDirectedness;
     }
 
+    /**
+     * Search from the nodes with the ordinals pSources of an already frozen view of pGraph
+     */
+    DiameterThread(TLGGraph pGraph, TLGFrozenGraph pFrozenGraph, int[] pSources, TLGGraph.Directedness pDirectedness) {
+        graph = pGraph;
+        frozenGraph = pFrozenGraph;
+        sources = pSources;
+        directedness = pDirectedness;
+    }
+
+    public int getDiameter() {
+        return diameter;
+    }
+
     public void run() {
         diameter = 0;
-        for (TLGNode lNode:subSet) {
-            List<TLGNode> lQueue = new ArrayList<>();
-            List<Integer> lDepthQueue = new ArrayList<>();
-            Set<TLGNode> lKnown = new HashSet<>();
-            lQueue.add(lNode);
-            lDepthQueue.add(0);
-            lKnown.add(lNode);
-            while (lQueue.size() > 0) {
-                TLGNode lCurrent = lQueue.remove(lQueue.size() - 1);
-                int lCurrentDepth = lDepthQueue.remove(lDepthQueue.size() - 1);
-                diameter = Math.max(diameter, lCurrentDepth);
-                for (TLGNode lOther : lCurrent.getLinkedNodes(directedness.equals(TLGGraph.Directedness.DIRECTED) ? TLGGraph.Direction.OUT : TLGGraph.Direction.ANY)) {
-                    if (!lKnown.contains(lOther)) {
-                        lQueue.add(0, lOther);
-                        lDepthQueue.add(0, lCurrentDepth + 1);
-                        lKnown.add(lOther);
-                    }
-                }
+        TLGFrozenGraph lFrozenGraph = frozenGraph != null ? frozenGraph : graph.freeze();
+        int[] lSources = sources;
+        if (lSources == null) {
+            lSources = new int[subSet.size()];
+            int i = 0;
+            for (TLGNode lNode:subSet) {
+                lSources[i++] = lFrozenGraph.getOrdinal(lNode);
             }
         }
+        int[] lDistances = lFrozenGraph.newDistances();
+        int[] lQueue = new int[lFrozenGraph.size()];
+        for (int lSource:lSources) {
+            if (lSource < 0) continue;
+            int lCount = lFrozenGraph.bfs(lSource, directedness, lDistances, lQueue);
+            diameter = Math.max(diameter, lDistances[lQueue[lCount-1]]);
+            TLGFrozenGraph.reset(lDistances, lQueue, lCount);
+        }
         synchronized (graph) {
             graph.notifyAll();
         }
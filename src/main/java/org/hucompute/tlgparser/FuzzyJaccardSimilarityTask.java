@@ -17,7 +17,7 @@ public class FuzzyJaccardSimilarityTask implements Runnable {
     }
 
     public void run() {
-        similarityMatrix[i][k] = TLGGraph.getFuzzyJaccardSimilarity(graph1, graph2);
+        similarityMatrix[i][k] = TLGGraph.getFuzzyJaccardSimilarity(graph1, graph2, 1);
         similarityMatrix[k][i] = similarityMatrix[i][k];
     }
 }
\ No newline at end of file
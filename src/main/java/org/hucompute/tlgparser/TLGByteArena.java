@@ -0,0 +1,84 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only store for the raw lines of lazily loaded nodes or edges. Lines are copied into pages of 1MB, each
+ * preceded by its length, so they can be visited again in the order they were added. Not thread safe.
+ */
+class TLGByteArena {
+
+    private static final int PAGE_SIZE = 1024*1024;
+    /**
+     * Maximum length of the varint length prefix
+     */
+    private static final int PREFIX_LENGTH = 5;
+
+    private List<byte[]> pages = new ArrayList<>();
+    private TIntArrayList pageLengths = new TIntArrayList();
+    private byte[] page;
+    private int length;
+
+    interface SpanVisitor {
+        void span(byte[] pPage, int pFrom, int pTo) throws IOException;
+    }
+
+    /**
+     * Copy [pFrom, pTo) of pBuffer into the arena
+     * @return Start of the copy in getPage()
+     */
+    int append(byte[] pBuffer, int pFrom, int pTo) {
+        int lLength = pTo-pFrom;
+        if ((page == null) || (length+PREFIX_LENGTH+lLength > page.length)) {
+            if (page != null) pageLengths.add(length);
+            page = new byte[Math.max(PAGE_SIZE, lLength+PREFIX_LENGTH)];
+            pages.add(page);
+            length = 0;
+        }
+        int lValue = lLength;
+        while (lValue >= 0x80) {
+            page[length++] = (byte)(lValue | 0x80);
+            lValue >>>= 7;
+        }
+        page[length++] = (byte)lValue;
+        System.arraycopy(pBuffer, pFrom, page, length, lLength);
+        int lResult = length;
+        length += lLength;
+        return lResult;
+    }
+
+    /**
+     * @return The page which holds the last appended line
+     */
+    byte[] getPage() {
+        return page;
+    }
+
+    /**
+     * Visit all lines in the order they were appended
+     */
+    void forEach(SpanVisitor pVisitor) throws IOException {
+        for (int p=0; p<pages.size(); p++) {
+            byte[] lPage = pages.get(p);
+            int lEnd = p < pageLengths.size() ? pageLengths.get(p) : length;
+            int lPosition = 0;
+            while (lPosition < lEnd) {
+                int lLength = 0;
+                int lShift = 0;
+                byte b;
+                do {
+                    b = lPage[lPosition++];
+                    lLength |= (b & 0x7F) << lShift;
+                    lShift += 7;
+                } while (b < 0);
+                pVisitor.span(lPage, lPosition, lPosition+lLength);
+                lPosition += lLength;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Growable byte buffer which encodes strings without intermediate byte arrays. Strings are encoded as UTF-8 or
+ * ISO-8859-1, characters which cannot be encoded become '?' exactly as with an OutputStreamWriter.
+ */
+class TLGByteBuilder {
+
+    private byte[] bytes;
+    private int length;
+    private boolean latin1;
+
+    TLGByteBuilder(int pCapacity, boolean pLatin1) {
+        bytes = new byte[Math.max(16, pCapacity)];
+        latin1 = pLatin1;
+    }
+
+    private void ensure(int pAdditional) {
+        if (length+pAdditional > bytes.length) {
+            byte[] lBytes = new byte[Math.max(bytes.length*2, length+pAdditional)];
+            System.arraycopy(bytes, 0, lBytes, 0, length);
+            bytes = lBytes;
+        }
+    }
+
+    TLGByteBuilder append(byte[] pBytes) {
+        ensure(pBytes.length);
+        System.arraycopy(pBytes, 0, bytes, length, pBytes.length);
+        length += pBytes.length;
+        return this;
+    }
+
+    TLGByteBuilder append(String pString) {
+        int lLength = pString.length();
+        ensure(latin1 ? lLength : lLength*3);
+        for (int i=0; i<lLength; i++) {
+            char c = pString.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte)c;
+            }
+            else if (latin1) {
+                if (Character.isHighSurrogate(c) && (i+1 < lLength) && Character.isLowSurrogate(pString.charAt(i+1))) i++;
+                bytes[length++] = c < 0x100 ? (byte)c : (byte)'?';
+            }
+            else if (c < 0x800) {
+                bytes[length++] = (byte)(0xC0 | (c >> 6));
+                bytes[length++] = (byte)(0x80 | (c & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && (i+1 < lLength) && Character.isLowSurrogate(pString.charAt(i+1))) {
+                    int lCodePoint = Character.toCodePoint(c, pString.charAt(++i));
+                    bytes[length++] = (byte)(0xF0 | (lCodePoint >> 18));
+                    bytes[length++] = (byte)(0x80 | ((lCodePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte)(0x80 | ((lCodePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte)(0x80 | (lCodePoint & 0x3F));
+                }
+                else {
+                    bytes[length++] = (byte)'?';
+                }
+            }
+            else {
+                bytes[length++] = (byte)(0xE0 | (c >> 12));
+                bytes[length++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    void writeTo(OutputStream pOutput) throws IOException {
+        pOutput.write(bytes, 0, length);
+    }
+
+    void writeTo(OutputStream pOutput, int pFrom, int pTo) throws IOException {
+        pOutput.write(bytes, pFrom, pTo-pFrom);
+    }
+
+}
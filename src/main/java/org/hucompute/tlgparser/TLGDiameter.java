@@ -0,0 +1,412 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Exact diameter from eccentricity bounds, see TLGGraph.getDiameterBounds(). Every breadth first search yields the
+ * eccentricity of its source and bounds for the eccentricities of the reached nodes, nodes whose upper bound does not
+ * exceed the best lower bound of the diameter need no search of their own. The diameter is, as before, the longest
+ * shortest path between two connected nodes, hence the maximum over the components of the graph.
+ * UNDIRECTED follows the bounding diameters algorithm of Takes and Kosters: a search from v at eccentricity e gives
+ * max(d(v,w), e-d(v,w)) <= ecc(w) <= e+d(v,w), sources alternate between the node with the largest upper bound and
+ * the node with the smallest lower bound.
+ * DIRECTED bounds the forward and the backward eccentricities, the diameter is the maximum of either, in the manner of
+ * SumSweep. A node reaches the same nodes as every node of its strongly connected component C, hence searches in both
+ * directions from v give ecc(u) <= d(u,v)+ecc(v) for all u of C. Across components ecc(u) <= 1+ecc(x) for the best
+ * successor x of every successor component and ecc(u) <= |C|+max ecc(x) over the successors x outside C, evaluated
+ * with the sinks of the condensation first.
+ */
+class TLGDiameter {
+
+    private static Logger logger = LogManager.getLogger(TLGDiameter.class);
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    /**
+     * Bounds of the eccentricities in one direction. For UNDIRECTED only the bounds are used.
+     */
+    private class Side {
+        TLGGraph.Direction direction;
+        int[] offsets;
+        int[] targets;
+        int[] lowerBounds;
+        int[] upperBounds;
+        /**
+         * Exact eccentricity of searched nodes and d(u,v)+ecc(v) for the other nodes u of the component of a node v
+         * searched in both directions
+         */
+        int[] searchBounds;
+        int[] eccentricities;
+        int candidates;
+        int maxUpper;
+        int peripheral;
+        int central;
+
+        Side(TLGGraph.Direction pDirection) {
+            direction = pDirection;
+            lowerBounds = new int[size];
+            upperBounds = new int[size];
+            Arrays.fill(upperBounds, INFINITE);
+        }
+    }
+
+    private TLGFrozenGraph graph;
+    private TLGGraph.Directedness directedness;
+    private long timeLimit;
+    private Consumer<TLGDiameterBounds> listener;
+    private long start;
+    private int size;
+    private int[] degrees;
+    private int[] distances;
+    private int[] queue;
+    /**
+     * Bounds of the diameter
+     */
+    private int lower;
+    private int upper = INFINITE;
+    private int searches;
+    private int rounds;
+    private Side forward;
+    private Side backward;
+    /**
+     * Strongly connected components for DIRECTED, nodes grouped by component
+     */
+    private int[] components;
+    private int[] componentOffsets;
+    private int[] componentNodes;
+    /**
+     * Second search space for the searches in both directions
+     */
+    private int[] otherDistances;
+    private int[] otherQueue;
+    /**
+     * Scratch space of update(), best bound of the successors per component or -1
+     */
+    private int[] successorBounds;
+    private int[] touchedComponents;
+
+    /**
+     * @param pTimeLimit Milliseconds after which the bounds found so far are returned, 0 for no limit
+     * @param pListener Receives the bounds after every round of searches, may be null
+     */
+    TLGDiameter(TLGFrozenGraph pGraph, TLGGraph.Directedness pDirectedness, long pTimeLimit, Consumer<TLGDiameterBounds> pListener) {
+        graph = pGraph;
+        directedness = pDirectedness;
+        timeLimit = pTimeLimit;
+        listener = pListener;
+        size = graph.size();
+    }
+
+    TLGDiameterBounds compute() {
+        start = System.currentTimeMillis();
+        if (size == 0) {
+            upper = 0;
+            return report();
+        }
+        degrees = new int[size];
+        for (int i=0; i<size; i++) {
+            degrees[i] = graph.getOutDegree(i)+graph.getInDegree(i);
+        }
+        distances = graph.newDistances();
+        queue = new int[size];
+        if (directedness == TLGGraph.Directedness.UNDIRECTED) {
+            computeUndirected();
+        }
+        else {
+            computeDirected();
+        }
+        return report();
+    }
+
+    private boolean isTimeUp() {
+        return (timeLimit > 0) && (System.currentTimeMillis()-start >= timeLimit);
+    }
+
+    private TLGDiameterBounds report() {
+        TLGDiameterBounds lResult = new TLGDiameterBounds(lower, upper, searches, System.currentTimeMillis()-start);
+        if (listener != null) listener.accept(lResult);
+        return lResult;
+    }
+
+    private static int saturatedIncrement(int pValue, int pIncrement) {
+        return pValue >= INFINITE-pIncrement ? INFINITE : pValue+pIncrement;
+    }
+
+    /**
+     * @return true if pNode is a better source than pBest: the larger upper bound for a peripheral node, the smaller
+     * lower bound for a central node, the higher degree on ties
+     */
+    private boolean isBetter(Side pSide, int pNode, int pBest, boolean pPeripheral) {
+        if (pPeripheral) {
+            if (pSide.upperBounds[pNode] != pSide.upperBounds[pBest]) return pSide.upperBounds[pNode] > pSide.upperBounds[pBest];
+        }
+        else {
+            if (pSide.lowerBounds[pNode] != pSide.lowerBounds[pBest]) return pSide.lowerBounds[pNode] < pSide.lowerBounds[pBest];
+        }
+        return degrees[pNode] > degrees[pBest];
+    }
+
+    /**
+     * @return All node ordinals by descending degree
+     */
+    private int[] getNodesByDegree() {
+        long[] lKeys = new long[size];
+        for (int i=0; i<size; i++) {
+            lKeys[i] = ((long)(Integer.MAX_VALUE-degrees[i]) << 32) | i;
+        }
+        Arrays.sort(lKeys);
+        int[] lResult = new int[size];
+        for (int i=0; i<size; i++) {
+            lResult[i] = (int)lKeys[i];
+        }
+        return lResult;
+    }
+
+    private void computeUndirected() {
+        Side lSide = new Side(TLGGraph.Direction.ANY);
+        // One search per component from its node of highest degree, which also finds the components
+        for (int lNode:getNodesByDegree()) {
+            if (lSide.upperBounds[lNode] != INFINITE) continue;
+            searchUndirected(lSide, lNode);
+            if (isTimeUp()) return;
+        }
+        int[] lCandidates = new int[size];
+        int lCandidateCount = 0;
+        for (int i=0; i<size; i++) {
+            if (lSide.upperBounds[i] > lower) lCandidates[lCandidateCount++] = i;
+        }
+        while (true) {
+            int lMaxUpper = lower;
+            int lNext = 0;
+            for (int i=0; i<lCandidateCount; i++) {
+                int lNode = lCandidates[i];
+                if (lSide.upperBounds[lNode] > lower) {
+                    lCandidates[lNext++] = lNode;
+                    lMaxUpper = Math.max(lMaxUpper, lSide.upperBounds[lNode]);
+                }
+            }
+            lCandidateCount = lNext;
+            upper = lMaxUpper;
+            logger.info("Diameter: "+lower+".."+upper+" after "+searches+" searches, "+lCandidateCount+" candidates");
+            if ((lCandidateCount == 0) || isTimeUp()) return;
+            if (listener != null) report();
+            // Alternately a peripheral node, which may raise the lower bound, and a central one, which lowers upper bounds
+            boolean lPeripheral = (rounds++ % 2) == 0;
+            int lBest = -1;
+            for (int i=0; i<lCandidateCount; i++) {
+                int lNode = lCandidates[i];
+                if ((lBest < 0) || isBetter(lSide, lNode, lBest, lPeripheral)) lBest = lNode;
+            }
+            searchUndirected(lSide, lBest);
+        }
+    }
+
+    private void searchUndirected(Side pSide, int pSource) {
+        int lCount = graph.bfs(pSource, TLGGraph.Direction.ANY, distances, queue);
+        searches++;
+        int lEccentricity = distances[queue[lCount-1]];
+        lower = Math.max(lower, lEccentricity);
+        for (int k=0; k<lCount; k++) {
+            int lNode = queue[k];
+            int lDistance = distances[lNode];
+            pSide.lowerBounds[lNode] = Math.max(pSide.lowerBounds[lNode], Math.max(lDistance, lEccentricity-lDistance));
+            pSide.upperBounds[lNode] = Math.min(pSide.upperBounds[lNode], lEccentricity+lDistance);
+        }
+        TLGFrozenGraph.reset(distances, queue, lCount);
+    }
+
+    private void computeDirected() {
+        components = graph.getStronglyConnectedComponents();
+        int lComponentCount = 0;
+        for (int lComponent:components) {
+            lComponentCount = Math.max(lComponentCount, lComponent+1);
+        }
+        // Nodes grouped by component
+        componentOffsets = new int[lComponentCount+1];
+        for (int lComponent:components) {
+            componentOffsets[lComponent+1]++;
+        }
+        for (int c=0; c<lComponentCount; c++) {
+            componentOffsets[c+1] += componentOffsets[c];
+        }
+        componentNodes = new int[size];
+        int[] lPositions = Arrays.copyOf(componentOffsets, lComponentCount);
+        for (int i=0; i<size; i++) {
+            componentNodes[lPositions[components[i]]++] = i;
+        }
+        successorBounds = new int[lComponentCount];
+        Arrays.fill(successorBounds, -1);
+        touchedComponents = new int[lComponentCount];
+        otherDistances = graph.newDistances();
+        otherQueue = new int[size];
+        forward = newDirectedSide(TLGGraph.Direction.OUT, graph.getOutOffsets(), graph.getOutTargets());
+        backward = newDirectedSide(TLGGraph.Direction.IN, graph.getInOffsets(), graph.getInSources());
+        searchBoth(getNodesByDegree()[0]);
+        while (true) {
+            update(forward);
+            update(backward);
+            upper = Math.max(lower, Math.min(forward.maxUpper, backward.maxUpper));
+            logger.info("Diameter: "+lower+".."+upper+" after "+searches+" searches, "+forward.candidates+" forward and "
+                    +backward.candidates+" backward candidates");
+            if ((forward.candidates == 0) || (backward.candidates == 0) || isTimeUp()) return;
+            if (listener != null) report();
+            // The side with fewer candidates is closer to a proof
+            Side lSide = forward.candidates <= backward.candidates ? forward : backward;
+            if (((rounds++ % 2) == 0) || (lSide.central < 0)) {
+                int lSource = lSide.peripheral;
+                int lFarthest = getComponentSize(lSource) > 1 ? searchBoth(lSource, lSide) : search(lSide, lSource);
+                // The end of a long path in the other direction
+                if (lFarthest != lSource) search(lSide == forward ? backward : forward, lFarthest);
+            }
+            else {
+                searchBoth(lSide.central, lSide);
+            }
+        }
+    }
+
+    private Side newDirectedSide(TLGGraph.Direction pDirection, int[] pOffsets, int[] pTargets) {
+        Side lResult = new Side(pDirection);
+        lResult.offsets = pOffsets;
+        lResult.targets = pTargets;
+        lResult.searchBounds = new int[size];
+        Arrays.fill(lResult.searchBounds, INFINITE);
+        lResult.eccentricities = new int[size];
+        Arrays.fill(lResult.eccentricities, -1);
+        return lResult;
+    }
+
+    private int getComponentSize(int pNode) {
+        return componentOffsets[components[pNode]+1]-componentOffsets[components[pNode]];
+    }
+
+    /**
+     * Search from pSource in the direction of pSide, which gives the eccentricity of pSource and lower bounds of the
+     * eccentricities of the reached nodes in the opposite direction
+     * @return The farthest node
+     */
+    private int search(Side pSide, int pSource) {
+        int lCount = searchInto(pSide, pSource, distances, queue);
+        int lResult = queue[lCount-1];
+        TLGFrozenGraph.reset(distances, queue, lCount);
+        return lResult;
+    }
+
+    private int searchInto(Side pSide, int pSource, int[] pDistances, int[] pQueue) {
+        int lCount = graph.bfs(pSource, pSide.direction, pDistances, pQueue);
+        searches++;
+        int lEccentricity = pDistances[pQueue[lCount-1]];
+        pSide.eccentricities[pSource] = lEccentricity;
+        pSide.searchBounds[pSource] = lEccentricity;
+        lower = Math.max(lower, lEccentricity);
+        Side lOther = pSide == forward ? backward : forward;
+        for (int k=0; k<lCount; k++) {
+            int lNode = pQueue[k];
+            lOther.lowerBounds[lNode] = Math.max(lOther.lowerBounds[lNode], pDistances[lNode]);
+        }
+        return lCount;
+    }
+
+    private int searchBoth(int pSource) {
+        return searchBoth(pSource, forward);
+    }
+
+    /**
+     * Search from pSource in both directions, which bounds the eccentricities of its component
+     * @return The farthest node in the direction of pSide
+     */
+    private int searchBoth(int pSource, Side pSide) {
+        int lForwardCount = searchInto(forward, pSource, otherDistances, otherQueue);
+        int lBackwardCount = searchInto(backward, pSource, distances, queue);
+        int lComponent = components[pSource];
+        // d(v,w)+ecc(v) bounds the backward eccentricity of w, d(u,v)+ecc(v) the forward eccentricity of u
+        for (int k=0; k<lForwardCount; k++) {
+            int lNode = otherQueue[k];
+            if (components[lNode] == lComponent) {
+                backward.searchBounds[lNode] = Math.min(backward.searchBounds[lNode], otherDistances[lNode]+backward.eccentricities[pSource]);
+            }
+        }
+        for (int k=0; k<lBackwardCount; k++) {
+            int lNode = queue[k];
+            if (components[lNode] == lComponent) {
+                forward.searchBounds[lNode] = Math.min(forward.searchBounds[lNode], distances[lNode]+forward.eccentricities[pSource]);
+            }
+        }
+        int lResult = pSide == forward ? otherQueue[lForwardCount-1] : queue[lBackwardCount-1];
+        TLGFrozenGraph.reset(otherDistances, otherQueue, lForwardCount);
+        TLGFrozenGraph.reset(distances, queue, lBackwardCount);
+        return lResult;
+    }
+
+    /**
+     * Recompute the upper bounds of all nodes, sinks of the condensation in the direction of pSide first, and pick
+     * the next sources
+     */
+    private void update(Side pSide) {
+        int[] lOffsets = pSide.offsets;
+        int[] lTargets = pSide.targets;
+        int lComponentCount = componentOffsets.length-1;
+        for (int i=0; i<lComponentCount; i++) {
+            // Components are numbered sinks first
+            int c = pSide == forward ? i : lComponentCount-1-i;
+            int lFrom = componentOffsets[c];
+            int lTo = componentOffsets[c+1];
+            int lExit = -1;
+            for (int k=lFrom; k<lTo; k++) {
+                int lNode = componentNodes[k];
+                for (int e=lOffsets[lNode]; e<lOffsets[lNode+1]; e++) {
+                    int lOther = lTargets[e];
+                    if (components[lOther] != c) lExit = Math.max(lExit, pSide.upperBounds[lOther]);
+                }
+            }
+            int lComponentBound = lTo-lFrom-1;
+            if (lExit >= 0) lComponentBound = saturatedIncrement(lExit, lComponentBound+1);
+            for (int k=lFrom; k<lTo; k++) {
+                int lNode = componentNodes[k];
+                pSide.upperBounds[lNode] = Math.min(pSide.upperBounds[lNode], Math.min(pSide.searchBounds[lNode], lComponentBound));
+            }
+            for (int k=lFrom; k<lTo; k++) {
+                int lNode = componentNodes[k];
+                if (lOffsets[lNode] == lOffsets[lNode+1]) {
+                    pSide.upperBounds[lNode] = 0;
+                    continue;
+                }
+                // Successors of one component reach the same nodes, the best of them bounds the paths through all
+                int lTouched = 0;
+                for (int e=lOffsets[lNode]; e<lOffsets[lNode+1]; e++) {
+                    int lOther = lTargets[e];
+                    int lComponent = components[lOther];
+                    if (successorBounds[lComponent] < 0) {
+                        touchedComponents[lTouched++] = lComponent;
+                        successorBounds[lComponent] = pSide.upperBounds[lOther];
+                    }
+                    else {
+                        successorBounds[lComponent] = Math.min(successorBounds[lComponent], pSide.upperBounds[lOther]);
+                    }
+                }
+                int lSuccessors = 0;
+                for (int t=0; t<lTouched; t++) {
+                    lSuccessors = Math.max(lSuccessors, successorBounds[touchedComponents[t]]);
+                    successorBounds[touchedComponents[t]] = -1;
+                }
+                pSide.upperBounds[lNode] = Math.min(pSide.upperBounds[lNode], saturatedIncrement(lSuccessors, 1));
+            }
+        }
+        pSide.candidates = 0;
+        pSide.maxUpper = 0;
+        pSide.peripheral = -1;
+        pSide.central = -1;
+        for (int i=0; i<size; i++) {
+            pSide.maxUpper = Math.max(pSide.maxUpper, pSide.upperBounds[i]);
+            if (pSide.upperBounds[i] <= lower) continue;
+            pSide.candidates++;
+            if ((pSide.peripheral < 0) || isBetter(pSide, i, pSide.peripheral, true)) pSide.peripheral = i;
+            // Central nodes are only of use for components with more than one node
+            if ((getComponentSize(i) > 1) && ((pSide.central < 0) || isBetter(pSide, i, pSide.central, false))) pSide.central = i;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.hucompute.tlgparser;
+
+/**
+ * Lower and upper bound of the diameter of a graph, see TLGGraph.getDiameterBounds(). Both are equal once the
+ * diameter is known exactly.
+ */
+public class TLGDiameterBounds {
+
+    protected int lower;
+    protected int upper;
+    protected int searches;
+    protected long time;
+
+    TLGDiameterBounds(int pLower, int pUpper, int pSearches, long pTime) {
+        lower = pLower;
+        upper = pUpper;
+        searches = pSearches;
+        time = pTime;
+    }
+
+    public int getLower() {
+        return lower;
+    }
+
+    /**
+     * @return Upper bound, Integer.MAX_VALUE if no bound is known yet
+     */
+    public int getUpper() {
+        return upper;
+    }
+
+    public boolean isExact() {
+        return lower == upper;
+    }
+
+    /**
+     * @return Number of breadth first searches run so far
+     */
+    public int getSearches() {
+        return searches;
+    }
+
+    /**
+     * @return Milliseconds since the computation started
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return lower+".."+(upper == Integer.MAX_VALUE ? "?" : Integer.toString(upper))+" after "+searches+" searches, "+time+"ms";
+    }
+
+}
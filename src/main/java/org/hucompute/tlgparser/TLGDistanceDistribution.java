@@ -0,0 +1,122 @@
+package org.hucompute.tlgparser;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of the distances of ordered (source, target) node pairs, see TLGMultiSourceBFS. Pairs of a node
+ * with itself and unreachable pairs are not part of the histogram.
+ */
+public class TLGDistanceDistribution {
+
+    protected long[] counts = new long[16];
+    protected int maxDistance;
+    protected long sources;
+    protected int nodes;
+
+    TLGDistanceDistribution(int pNodes) {
+        nodes = pNodes;
+    }
+
+    void add(int pDistance, long pCount) {
+        if (pDistance >= counts.length) counts = Arrays.copyOf(counts, Math.max(pDistance+1, counts.length*2));
+        counts[pDistance] += pCount;
+        if (pDistance > maxDistance) maxDistance = pDistance;
+    }
+
+    void add(TLGDistanceDistribution pOther) {
+        for (int d=1; d<=pOther.maxDistance; d++) {
+            if (pOther.counts[d] > 0) add(d, pOther.counts[d]);
+        }
+        sources += pOther.sources;
+    }
+
+    TLGDistanceDistribution copy() {
+        TLGDistanceDistribution lResult = new TLGDistanceDistribution(nodes);
+        lResult.counts = Arrays.copyOf(counts, maxDistance+1);
+        lResult.maxDistance = maxDistance;
+        lResult.sources = sources;
+        return lResult;
+    }
+
+    /**
+     * @return Number of pairs at distance pDistance
+     */
+    public long getCount(int pDistance) {
+        return (pDistance > 0) && (pDistance < counts.length) ? counts[pDistance] : 0;
+    }
+
+    /**
+     * @return Number of pairs per distance from 0 to getMaxDistance(), entry 0 is always 0
+     */
+    public long[] getHistogram() {
+        return Arrays.copyOf(counts, maxDistance+1);
+    }
+
+    /**
+     * @return Largest distance of a reachable pair, the diameter once all nodes have been sources
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @return Number of sources searched so far
+     */
+    public long getSources() {
+        return sources;
+    }
+
+    public long getReachablePairs() {
+        long lResult = 0;
+        for (int d=1; d<=maxDistance; d++) {
+            lResult += counts[d];
+        }
+        return lResult;
+    }
+
+    /**
+     * @return Number of pairs with a source searched so far whose target cannot be reached
+     */
+    public long getUnreachablePairs() {
+        return sources*(nodes-1)-getReachablePairs();
+    }
+
+    public long getDistanceSum() {
+        long lResult = 0;
+        for (int d=1; d<=maxDistance; d++) {
+            lResult += d*counts[d];
+        }
+        return lResult;
+    }
+
+    /**
+     * @return Average distance of the reachable pairs
+     */
+    public double getAverageDistance() {
+        long lPairs = getReachablePairs();
+        return lPairs == 0 ? 0 : getDistanceSum()/(double)lPairs;
+    }
+
+    /**
+     * @param pQuantile Fraction of the reachable pairs, 0.9 for the usual effective diameter
+     * @return Smallest distance within which pQuantile of the reachable pairs lie, interpolated linearly between
+     * neighbouring distances
+     */
+    public double getEffectiveDiameter(double pQuantile) {
+        double lTarget = pQuantile*getReachablePairs();
+        long lCumulated = 0;
+        for (int d=1; d<=maxDistance; d++) {
+            if ((counts[d] > 0) && (lCumulated+counts[d] >= lTarget)) {
+                return d-1+(lTarget-lCumulated)/counts[d];
+            }
+            lCumulated += counts[d];
+        }
+        return maxDistance;
+    }
+
+    @Override
+    public String toString() {
+        return "sources: "+sources+", diameter: "+maxDistance+", average: "+getAverageDistance()+", histogram: "+Arrays.toString(getHistogram());
+    }
+
+}
@@ -31,11 +31,11 @@ public class TLGEdge {
             }
         }
         source = pTLGGraph.nodeMap.get(pLine.substring(0, pLine.indexOf("¤")));
-        source.edges.add(this);
+        source.addOutEdge(this);
         pLine = pLine.substring(pLine.indexOf("¤")+1);
         target = pTLGGraph.nodeMap.get(pLine.substring(0, pLine.indexOf("¤")));
         assert target != null;
-        target.edges.add(this);
+        target.addInEdge(this);
         pLine = pLine.substring(pLine.indexOf("¤")+1);
         if (Character.isDigit(pLine.charAt(0))) {
             similarity = Double.parseDouble(pLine.substring(0, pLine.indexOf("¤")));
@@ -53,20 +53,39 @@ public class TLGEdge {
     }
 
     public void remove() {
-        source.edges.remove(this);
-        target.edges.remove(this);
+        source.removeOutEdge(this);
+        target.removeInEdge(this);
     }
 
     public TLGEdge(TLGGraph pTLGGraph, TLGNode pSource, TLGNode pTarget) {
         graph = pTLGGraph;
         source = pSource;
-        source.edges.add(this);
+        source.addOutEdge(this);
         target = pTarget;
         assert target != null;
-        target.edges.add(this);
+        target.addInEdge(this);
         properties = new HashMap<>();
     }
 
+    /**
+     * Create an edge which is not yet attached to its nodes, see attach()
+     */
+    TLGEdge(TLGGraph pTLGGraph, TLGNode pSource, TLGNode pTarget, Map<String, String> pProperties, double pSimilarity) {
+        graph = pTLGGraph;
+        source = pSource;
+        target = pTarget;
+        properties = pProperties;
+        similarity = pSimilarity;
+    }
+
+    /**
+     * Add this edge to the OUT edges of its source and the IN edges of its target
+     */
+    void attach() {
+        source.addOutEdge(this);
+        target.addInEdge(this);
+    }
+
     public Map<String, String> getProperties() {
         return properties;
     }
@@ -0,0 +1,91 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+
+/**
+ * Reusable view of one edge, see TLGRecord
+ */
+public class TLGEdgeRecord extends TLGRecord {
+
+    protected int sourceEnd;
+    protected int targetStart;
+    protected int targetEnd;
+    protected String sourceID;
+    protected String targetID;
+    protected double similarity;
+    protected boolean similarityParsed;
+
+    /**
+     * Point the record to a BF edge line source¤target¤similarity¤[Key¤Value¤]¤...
+     */
+    public void setLine(byte[] pBuffer, int pStart, int pEnd) throws IOException {
+        setBuffer(pBuffer, pStart, pEnd);
+        sourceEnd = TLGTokenizer.indexOfSeparator(pBuffer, pStart, pEnd);
+        targetStart = sourceEnd+TLGTokenizer.SEPARATOR_LENGTH;
+        targetEnd = sourceEnd < 0 ? -1 : TLGTokenizer.indexOfSeparator(pBuffer, targetStart, pEnd);
+        if (targetEnd < 0) {
+            throw new IOException("Malformed edge line: "+TLGTokenizer.decode(pBuffer, pStart, pEnd));
+        }
+        sourceID = null;
+        targetID = null;
+        similarityParsed = false;
+    }
+
+    /**
+     * Reset the record to an edge with string attributes, used by the GML reader
+     */
+    protected void setStrings(String pSourceID, String pTargetID) {
+        clearStrings();
+        sourceID = pSourceID;
+        targetID = pTargetID;
+        similarity = 0;
+        similarityParsed = true;
+    }
+
+    public String getSourceId() {
+        if (sourceID == null) {
+            sourceID = TLGTokenizer.decode(buffer, start, sourceEnd);
+        }
+        return sourceID;
+    }
+
+    public String getTargetId() {
+        if (targetID == null) {
+            targetID = TLGTokenizer.decode(buffer, targetStart, targetEnd);
+        }
+        return targetID;
+    }
+
+    /**
+     * Compare the source id without decoding it
+     */
+    public boolean isSourceId(String pID) {
+        if (sourceID != null) return sourceID.equals(pID);
+        return equals(pID, buffer, start, sourceEnd);
+    }
+
+    /**
+     * Compare the target id without decoding it
+     */
+    public boolean isTargetId(String pID) {
+        if (targetID != null) return targetID.equals(pID);
+        return equals(pID, buffer, targetStart, targetEnd);
+    }
+
+    /**
+     * @return The similarity field of a BF line if it starts with a digit, 0 otherwise
+     */
+    public double getSimilarity() {
+        if (!similarityParsed) {
+            similarityParsed = true;
+            similarity = 0;
+            int lStart = targetEnd+TLGTokenizer.SEPARATOR_LENGTH;
+            if ((lStart < end) && TLGTokenizer.isDigit(buffer[lStart])) {
+                int lEnd = TLGTokenizer.indexOfSeparator(buffer, lStart, end);
+                similarity = TLGTokenizer.parseDouble(buffer, lStart, lEnd < 0 ? end : lEnd);
+            }
+        }
+        return similarity;
+    }
+
+}
@@ -0,0 +1,429 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Immutable view of the topology of a TLGGraph in compressed sparse row form, see TLGGraph.freeze(). Nodes get
+ * dense ordinals in the iteration order of getNodes(), the OUT edges of a node are stored in the order of
+ * getEdges(Direction.OUT) and edges are numbered by their position in the OUT arrays. The IN arrays hold the same
+ * edges grouped by target. The view does not follow later modifications of the graph.
+ */
+public class TLGFrozenGraph {
+
+    protected TLGNode[] nodes;
+    protected TObjectIntHashMap<TLGNode> ordinals;
+    protected int[] outOffsets;
+    protected int[] outTargets;
+    protected int[] inOffsets;
+    protected int[] inSources;
+    /**
+     * Edge ordinal of every entry of inSources
+     */
+    protected int[] inEdges;
+    /**
+     * Code of the Type property per edge ordinal, null if the view has been frozen without edge types
+     */
+    protected int[] edgeTypeCodes;
+    protected String[] edgeTypes;
+
+    TLGFrozenGraph(TLGGraph pGraph, boolean pEdgeTypes) {
+        this(pGraph.getNodes(), pEdgeTypes);
+    }
+
+    /**
+     * View of the subgraph induced by pNodes, edges to other nodes are left out
+     */
+    TLGFrozenGraph(Collection<TLGNode> pNodes, boolean pEdgeTypes) {
+        nodes = pNodes.toArray(new TLGNode[0]);
+        ordinals = new TObjectIntHashMap<>(nodes.length*2, 0.5f, -1);
+        for (int i=0; i<nodes.length; i++) {
+            ordinals.put(nodes[i], i);
+        }
+        TObjectIntHashMap<String> lTypeCodes = new TObjectIntHashMap<>(16, 0.5f, -1);
+        List<String> lTypes = new ArrayList<>();
+        outOffsets = new int[nodes.length+1];
+        int[] lTargets = new int[Math.max(16, nodes.length)];
+        int[] lTypeCodesByEdge = pEdgeTypes ? new int[lTargets.length] : null;
+        int lEdges = 0;
+        for (int i=0; i<nodes.length; i++) {
+            TLGNode lNode = nodes[i];
+            int lOutDegree = lNode.getOutDegree();
+            for (int e=0; e<lOutDegree; e++) {
+                // The target of the e-th OUT edge, without creating edge views of off heap graphs
+                int lTarget = ordinals.get(lNode.getNeighbour(e));
+                // Edges to nodes which are not part of the graph
+                if (lTarget < 0) continue;
+                if (lEdges == lTargets.length) {
+                    lTargets = Arrays.copyOf(lTargets, lEdges*2);
+                    if (pEdgeTypes) lTypeCodesByEdge = Arrays.copyOf(lTypeCodesByEdge, lEdges*2);
+                }
+                lTargets[lEdges] = lTarget;
+                if (pEdgeTypes) {
+                    String lType = lNode.getOutEdge(e).getProperty("Type", "");
+                    int lCode = lTypeCodes.get(lType);
+                    if (lCode < 0) {
+                        lCode = lTypes.size();
+                        lTypes.add(lType);
+                        lTypeCodes.put(lType, lCode);
+                    }
+                    lTypeCodesByEdge[lEdges] = lCode;
+                }
+                lEdges++;
+            }
+            outOffsets[i+1] = lEdges;
+        }
+        outTargets = Arrays.copyOf(lTargets, lEdges);
+        if (pEdgeTypes) {
+            edgeTypeCodes = Arrays.copyOf(lTypeCodesByEdge, lEdges);
+            edgeTypes = lTypes.toArray(new String[0]);
+        }
+        // IN arrays by counting sort of the OUT arrays, sources stay in ascending order
+        inOffsets = new int[nodes.length+1];
+        for (int e=0; e<lEdges; e++) {
+            inOffsets[outTargets[e]+1]++;
+        }
+        for (int i=0; i<nodes.length; i++) {
+            inOffsets[i+1] += inOffsets[i];
+        }
+        inSources = new int[lEdges];
+        inEdges = new int[lEdges];
+        int[] lPositions = Arrays.copyOf(inOffsets, nodes.length);
+        for (int i=0; i<nodes.length; i++) {
+            for (int e=outOffsets[i]; e<outOffsets[i+1]; e++) {
+                int lPosition = lPositions[outTargets[e]]++;
+                inSources[lPosition] = i;
+                inEdges[lPosition] = e;
+            }
+        }
+    }
+
+    /**
+     * @return Number of nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    public TLGNode getNode(int pOrdinal) {
+        return nodes[pOrdinal];
+    }
+
+    /**
+     * @return Ordinal of pNode or -1 if it is not part of the view
+     */
+    public int getOrdinal(TLGNode pNode) {
+        return ordinals.get(pNode);
+    }
+
+    public int getOutDegree(int pOrdinal) {
+        return outOffsets[pOrdinal+1]-outOffsets[pOrdinal];
+    }
+
+    public int getInDegree(int pOrdinal) {
+        return inOffsets[pOrdinal+1]-inOffsets[pOrdinal];
+    }
+
+    /**
+     * @return OUT edges of node i are outTargets[outOffsets[i]] to outTargets[outOffsets[i+1]-1], do not modify
+     */
+    public int[] getOutOffsets() {
+        return outOffsets;
+    }
+
+    public int[] getOutTargets() {
+        return outTargets;
+    }
+
+    public int[] getInOffsets() {
+        return inOffsets;
+    }
+
+    public int[] getInSources() {
+        return inSources;
+    }
+
+    /**
+     * @return Edge ordinal of every entry of getInSources()
+     */
+    public int[] getInEdges() {
+        return inEdges;
+    }
+
+    /**
+     * @return Type of the edge with ordinal pEdge, "" for edges without type
+     * @throws IllegalStateException If the view has been frozen without edge types
+     */
+    public String getEdgeType(int pEdge) {
+        if (edgeTypeCodes == null) throw new IllegalStateException("Frozen without edge types");
+        return edgeTypes[edgeTypeCodes[pEdge]];
+    }
+
+    /**
+     * @return Type code per edge ordinal, index into getEdgeTypes(), or null if frozen without edge types
+     */
+    public int[] getEdgeTypeCodes() {
+        return edgeTypeCodes;
+    }
+
+    public String[] getEdgeTypes() {
+        return edgeTypes;
+    }
+
+    /**
+     * Breadth first search from pSource along OUT edges, or along edges in both directions if pDirectedness is
+     * UNDIRECTED. Allocates nothing, hence the same arrays can be used for many searches.
+     * @param pDistances Distance of every node, must be -1 for all nodes and receives the distances of the reached
+     *                   nodes. Reset it with reset() before the next search.
+     * @param pQueue Array of size() entries which receives the reached nodes in order of their distance
+     * @return Number of reached nodes including pSource
+     */
+    public int bfs(int pSource, TLGGraph.Directedness pDirectedness, int[] pDistances, int[] pQueue) {
+        return bfs(pSource, pDirectedness == TLGGraph.Directedness.UNDIRECTED ? TLGGraph.Direction.ANY : TLGGraph.Direction.OUT, pDistances, pQueue);
+    }
+
+    /**
+     * Breadth first search from pSource along OUT edges, against the direction of IN edges, or along both, see
+     * bfs(int, Directedness, int[], int[])
+     */
+    public int bfs(int pSource, TLGGraph.Direction pDirection, int[] pDistances, int[] pQueue) {
+        boolean lOut = pDirection != TLGGraph.Direction.IN;
+        boolean lIn = pDirection != TLGGraph.Direction.OUT;
+        pDistances[pSource] = 0;
+        pQueue[0] = pSource;
+        int lHead = 0;
+        int lTail = 1;
+        while (lHead < lTail) {
+            int lNode = pQueue[lHead++];
+            int lDistance = pDistances[lNode]+1;
+            if (lOut) {
+                for (int e=outOffsets[lNode]; e<outOffsets[lNode+1]; e++) {
+                    int lOther = outTargets[e];
+                    if (pDistances[lOther] < 0) {
+                        pDistances[lOther] = lDistance;
+                        pQueue[lTail++] = lOther;
+                    }
+                }
+            }
+            if (lIn) {
+                for (int e=inOffsets[lNode]; e<inOffsets[lNode+1]; e++) {
+                    int lOther = inSources[e];
+                    if (pDistances[lOther] < 0) {
+                        pDistances[lOther] = lDistance;
+                        pQueue[lTail++] = lOther;
+                    }
+                }
+            }
+        }
+        return lTail;
+    }
+
+    /**
+     * Strongly connected components by an iterative version of Tarjan's algorithm. Components are numbered in the
+     * order in which they are completed, hence every edge between two components leads from a higher to a lower
+     * number, the sinks of the condensation come first.
+     * @return Component number per node ordinal
+     */
+    public int[] getStronglyConnectedComponents() {
+        int lSize = nodes.length;
+        int[] lResult = new int[lSize];
+        int[] lIndex = new int[lSize];
+        int[] lLow = new int[lSize];
+        Arrays.fill(lIndex, -1);
+        boolean[] lOnStack = new boolean[lSize];
+        int[] lStack = new int[lSize];
+        int lStackSize = 0;
+        // Depth first search path with the next edge to follow of every node on it
+        int[] lPath = new int[lSize];
+        int[] lNextEdge = new int[lSize];
+        int lCounter = 0;
+        int lComponents = 0;
+        for (int s=0; s<lSize; s++) {
+            if (lIndex[s] >= 0) continue;
+            int lDepth = 0;
+            lIndex[s] = lLow[s] = lCounter++;
+            lStack[lStackSize++] = s;
+            lOnStack[s] = true;
+            lPath[lDepth] = s;
+            lNextEdge[lDepth++] = outOffsets[s];
+            while (lDepth > 0) {
+                int lNode = lPath[lDepth-1];
+                if (lNextEdge[lDepth-1] < outOffsets[lNode+1]) {
+                    int lOther = outTargets[lNextEdge[lDepth-1]++];
+                    if (lIndex[lOther] < 0) {
+                        lIndex[lOther] = lLow[lOther] = lCounter++;
+                        lStack[lStackSize++] = lOther;
+                        lOnStack[lOther] = true;
+                        lPath[lDepth] = lOther;
+                        lNextEdge[lDepth++] = outOffsets[lOther];
+                    }
+                    else if (lOnStack[lOther]) {
+                        lLow[lNode] = Math.min(lLow[lNode], lIndex[lOther]);
+                    }
+                }
+                else {
+                    lDepth--;
+                    if (lLow[lNode] == lIndex[lNode]) {
+                        int lMember;
+                        do {
+                            lMember = lStack[--lStackSize];
+                            lOnStack[lMember] = false;
+                            lResult[lMember] = lComponents;
+                        } while (lMember != lNode);
+                        lComponents++;
+                    }
+                    if (lDepth > 0) {
+                        int lParent = lPath[lDepth-1];
+                        lLow[lParent] = Math.min(lLow[lParent], lLow[lNode]);
+                    }
+                }
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * Weakly connected components by a concurrent union-find over the OUT arrays, the node ranges are split over
+     * pThreads threads. Roots are always linked to the smaller root by compare and swap, hence every component ends
+     * up with its smallest ordinal as root no matter how the edges are interleaved.
+     * @return Component number per node ordinal, components are numbered by descending size and ties by their
+     * smallest ordinal
+     */
+    public int[] getWeaklyConnectedComponents(int pThreads) {
+        int lSize = nodes.length;
+        int lThreads = Math.max(1, Math.min(pThreads, lSize/1024));
+        int[] lResult = new int[lSize];
+        if (lThreads == 1) {
+            // Plain arrays without compare and swap
+            for (int i=0; i<lSize; i++) {
+                lResult[i] = i;
+            }
+            for (int v=0; v<lSize; v++) {
+                for (int e=outOffsets[v]; e<outOffsets[v+1]; e++) {
+                    int lRoot1 = find(lResult, v);
+                    int lRoot2 = find(lResult, outTargets[e]);
+                    if (lRoot1 < lRoot2) {
+                        lResult[lRoot2] = lRoot1;
+                    }
+                    else if (lRoot2 < lRoot1) {
+                        lResult[lRoot1] = lRoot2;
+                    }
+                }
+            }
+            // Parents are smaller than their children, so one pass in ordinal order finds all roots
+            for (int v=0; v<lSize; v++) {
+                lResult[v] = lResult[lResult[v]];
+            }
+        }
+        else {
+            AtomicIntegerArray lParents = new AtomicIntegerArray(lSize);
+            for (int i=0; i<lSize; i++) {
+                lParents.set(i, i);
+            }
+            runRanges(lThreads, (pFrom, pTo) -> {
+                for (int v=pFrom; v<pTo; v++) {
+                    for (int e=outOffsets[v]; e<outOffsets[v+1]; e++) {
+                        link(lParents, v, outTargets[e]);
+                    }
+                }
+            });
+            runRanges(lThreads, (pFrom, pTo) -> {
+                for (int v=pFrom; v<pTo; v++) {
+                    lResult[v] = find(lParents, v);
+                }
+            });
+        }
+        // Number the roots by descending size with a counting sort, roots of equal size in ordinal order
+        int[] lSizes = new int[lSize];
+        for (int v=0; v<lSize; v++) {
+            lSizes[lResult[v]]++;
+        }
+        int[] lStarts = new int[lSize+2];
+        for (int v=0; v<lSize; v++) {
+            if (lSizes[v] > 0) lStarts[lSize-lSizes[v]+1]++;
+        }
+        for (int i=1; i<lStarts.length; i++) {
+            lStarts[i] += lStarts[i-1];
+        }
+        for (int v=0; v<lSize; v++) {
+            if (lSizes[v] > 0) lSizes[v] = lStarts[lSize-lSizes[v]]++;
+        }
+        for (int v=0; v<lSize; v++) {
+            lResult[v] = lSizes[lResult[v]];
+        }
+        return lResult;
+    }
+
+    private static int find(int[] pParents, int pNode) {
+        int lNode = pNode;
+        while (pParents[lNode] != lNode) {
+            pParents[lNode] = pParents[pParents[lNode]];
+            lNode = pParents[lNode];
+        }
+        return lNode;
+    }
+
+    private static int find(AtomicIntegerArray pParents, int pNode) {
+        int lNode = pNode;
+        int lParent;
+        while ((lParent = pParents.get(lNode)) != lNode) {
+            // Path halving, may fail if another thread got there first
+            int lGrandParent = pParents.get(lParent);
+            pParents.compareAndSet(lNode, lParent, lGrandParent);
+            lNode = lGrandParent;
+        }
+        return lNode;
+    }
+
+    private static void link(AtomicIntegerArray pParents, int pNode1, int pNode2) {
+        while (true) {
+            int lRoot1 = find(pParents, pNode1);
+            int lRoot2 = find(pParents, pNode2);
+            if (lRoot1 == lRoot2) return;
+            int lHigh = Math.max(lRoot1, lRoot2);
+            if (pParents.compareAndSet(lHigh, lHigh, Math.min(lRoot1, lRoot2))) return;
+        }
+    }
+
+    private interface RangeTask {
+        void run(int pFrom, int pTo);
+    }
+
+    /**
+     * Run pTask for pThreads consecutive node ranges, in the calling thread if pThreads is 1
+     */
+    private void runRanges(int pThreads, RangeTask pTask) {
+        List<Runnable> lTasks = new ArrayList<>();
+        for (int t=0; t<pThreads; t++) {
+            int lFrom = (int)((long)nodes.length*t/pThreads);
+            int lTo = (int)((long)nodes.length*(t+1)/pThreads);
+            lTasks.add(() -> pTask.run(lFrom, lTo));
+        }
+        TLGTasks.runAll(lTasks, pThreads, "Frozen graph analysis");
+    }
+
+    /**
+     * Set the distances of the pCount nodes reached by bfs() back to -1
+     */
+    public static void reset(int[] pDistances, int[] pQueue, int pCount) {
+        for (int i=0; i<pCount; i++) {
+            pDistances[pQueue[i]] = -1;
+        }
+    }
+
+    /**
+     * @return Array of size() entries filled with -1, to be passed to bfs()
+     */
+    public int[] newDistances() {
+        int[] lResult = new int[nodes.length];
+        Arrays.fill(lResult, -1);
+        return lResult;
+    }
+
+}
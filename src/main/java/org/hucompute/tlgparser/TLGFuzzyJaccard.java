@@ -0,0 +1,406 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fuzzy Jaccard similarity of two graphs over the union of their node ids, see
+ * TLGGraph.getFuzzyJaccardSimilarity(). Every pair of nodes gets 1/d in each graph for its undirected distance d,
+ * or 1/delta if it is not connected there, where delta is the sum of diameter+1 over the components of the graph
+ * including the nodes missing from it as singletons. The result is sum(min)/sum(max) over all pairs.
+ * <p>
+ * Neither graph is copied: the union is an int id space of the ordinals of the frozen first graph followed by the
+ * nodes which only the second graph has. One undirected search per union node and graph is streamed into a count
+ * per pair of distances, the searches are spread over the threads.
+ */
+class TLGFuzzyJaccard {
+
+    static final int CHUNK = 64;
+
+    private TLGFrozenGraph graph1;
+    private TLGFrozenGraph graph2;
+    private int size;
+    /**
+     * Union id per ordinal of graph2, union id and ordinal of graph1 coincide
+     */
+    private int[] toUnion2;
+    private int[] fromUnion2;
+    private int[] components1;
+    private int[] components2;
+
+    TLGFuzzyJaccard(TLGGraph pGraph1, TLGGraph pGraph2) {
+        this(pGraph1, pGraph1.freeze(), null, pGraph2.freeze(), null);
+    }
+
+    /**
+     * Reuses the frozen views and components of the signatures
+     */
+    TLGFuzzyJaccard(Signature pSignature1, Signature pSignature2) {
+        this(pSignature1.graph, pSignature1.frozenGraph, pSignature1.components, pSignature2.frozenGraph, pSignature2.components);
+    }
+
+    /**
+     * @param pComponents1 Weakly connected components of pFrozenGraph1, null to compute them
+     */
+    private TLGFuzzyJaccard(TLGGraph pGraph1, TLGFrozenGraph pFrozenGraph1, int[] pComponents1, TLGFrozenGraph pFrozenGraph2, int[] pComponents2) {
+        graph1 = pFrozenGraph1;
+        graph2 = pFrozenGraph2;
+        size = graph1.size();
+        toUnion2 = new int[graph2.size()];
+        for (int o=0; o<graph2.size(); o++) {
+            TLGNode lNode = pGraph1.getNodeByID(graph2.getNode(o).getId());
+            int lOrdinal = lNode == null ? -1 : graph1.getOrdinal(lNode);
+            toUnion2[o] = lOrdinal >= 0 ? lOrdinal : size++;
+        }
+        fromUnion2 = new int[size];
+        Arrays.fill(fromUnion2, -1);
+        for (int o=0; o<graph2.size(); o++) {
+            fromUnion2[toUnion2[o]] = o;
+        }
+        components1 = pComponents1 != null ? pComponents1 : graph1.getWeaklyConnectedComponents(1);
+        components2 = pComponents2 != null ? pComponents2 : graph2.getWeaklyConnectedComponents(1);
+    }
+
+    /**
+     * Number of node pairs per pair of distances (d1, d2), 0 for pairs which are not connected. Distances below DENSE
+     * are counted in an array, larger ones in a map keyed by d1 << 32 | d2, hence the memory follows the number of
+     * distinct distance pairs and not the product of the diameters.
+     */
+    static class PairCounts {
+
+        private static final int DENSE = 64;
+
+        private long[] dense = new long[DENSE*DENSE];
+        private TLongLongHashMap sparse = new TLongLongHashMap();
+
+        void add(int pDistance1, int pDistance2) {
+            add(pDistance1, pDistance2, 1);
+        }
+
+        void add(int pDistance1, int pDistance2, long pCount) {
+            if ((pDistance1 < DENSE) && (pDistance2 < DENSE)) {
+                dense[pDistance1*DENSE+pDistance2] += pCount;
+            }
+            else {
+                sparse.adjustOrPutValue(((long)pDistance1 << 32) | pDistance2, pCount, pCount);
+            }
+        }
+
+        void add(PairCounts pOther) {
+            for (int i=0; i<dense.length; i++) {
+                dense[i] += pOther.dense[i];
+            }
+            pOther.sparse.forEachEntry((k, v) -> {
+                sparse.adjustOrPutValue(k, v, v);
+                return true;
+            });
+        }
+
+        /**
+         * sum(min)/sum(max) over the distance pairs in ascending order of d1 and d2, hence the result does not depend
+         * on how the pairs were counted
+         */
+        double getSimilarity(long pDelta1, long pDelta2) {
+            long[] lKeys = new long[dense.length+sparse.size()];
+            int lCount = 0;
+            for (int i=0; i<dense.length; i++) {
+                if (dense[i] != 0) lKeys[lCount++] = ((long)(i/DENSE) << 32) | (i%DENSE);
+            }
+            for (long lKey:sparse.keys()) {
+                lKeys[lCount++] = lKey;
+            }
+            Arrays.sort(lKeys, 0, lCount);
+            double lZaehler = 0;
+            double lNenner = 0;
+            for (int i=0; i<lCount; i++) {
+                int lDistance1 = (int)(lKeys[i] >>> 32);
+                int lDistance2 = (int)lKeys[i];
+                long lPairs = (lDistance1 < DENSE) && (lDistance2 < DENSE) ? dense[lDistance1*DENSE+lDistance2] : sparse.get(lKeys[i]);
+                if (lPairs == 0) continue;
+                double lSimilarity1 = lDistance1 > 0 ? 1d/lDistance1 : 1d/pDelta1;
+                double lSimilarity2 = lDistance2 > 0 ? 1d/lDistance2 : 1d/pDelta2;
+                lZaehler += lPairs*Math.min(lSimilarity1, lSimilarity2);
+                lNenner += lPairs*Math.max(lSimilarity1, lSimilarity2);
+            }
+            return lZaehler/lNenner;
+        }
+
+    }
+
+    /**
+     * Counts of node pairs per distance in graph1 and graph2 plus the largest eccentricity per component
+     */
+    private class Counts {
+        PairCounts pairs = new PairCounts();
+        int[] diameters1 = new int[count(components1)];
+        int[] diameters2 = new int[count(components2)];
+
+        void add(Counts pOther) {
+            pairs.add(pOther.pairs);
+            for (int c=0; c<diameters1.length; c++) {
+                diameters1[c] = Math.max(diameters1[c], pOther.diameters1[c]);
+            }
+            for (int c=0; c<diameters2.length; c++) {
+                diameters2[c] = Math.max(diameters2[c], pOther.diameters2[c]);
+            }
+        }
+    }
+
+    double similarity(int pThreads) {
+        int lThreads = Math.max(1, Math.min(pThreads, (size+CHUNK-1)/CHUNK));
+        List<Counts> lCounts = new ArrayList<>();
+        AtomicInteger lNextChunk = new AtomicInteger();
+        List<Runnable> lTasks = new ArrayList<>();
+        for (int t=0; t<lThreads; t++) {
+            Counts lThreadCounts = new Counts();
+            lCounts.add(lThreadCounts);
+            lTasks.add(() -> {
+                int[] lDistances1 = graph1.newDistances();
+                int[] lQueue1 = new int[graph1.size()];
+                int[] lDistances2 = graph2.newDistances();
+                int[] lQueue2 = new int[graph2.size()];
+                int lFrom;
+                while ((lFrom = lNextChunk.getAndAdd(CHUNK)) < size) {
+                    for (int x=lFrom; x<Math.min(size, lFrom+CHUNK); x++) {
+                        search(x, lDistances1, lQueue1, lDistances2, lQueue2, lThreadCounts);
+                    }
+                }
+            });
+        }
+        TLGTasks.runAll(lTasks, lThreads, "Fuzzy Jaccard similarity");
+        Counts lTotal = lCounts.get(0);
+        for (int t=1; t<lCounts.size(); t++) {
+            lTotal.add(lCounts.get(t));
+        }
+        // Nodes missing from a graph are singleton components there
+        long lDelta1 = size-graph1.size();
+        for (int lDiameter:lTotal.diameters1) {
+            lDelta1 += lDiameter+1;
+        }
+        long lDelta2 = size-graph2.size();
+        for (int lDiameter:lTotal.diameters2) {
+            lDelta2 += lDiameter+1;
+        }
+        return lTotal.pairs.getSimilarity(lDelta1, lDelta2);
+    }
+
+    /**
+     * Count the pairs of pSource with all union ids above it
+     */
+    private void search(int pSource, int[] pDistances1, int[] pQueue1, int[] pDistances2, int[] pQueue2, Counts pCounts) {
+        int lCount1 = 0;
+        if (pSource < graph1.size()) {
+            lCount1 = graph1.bfs(pSource, TLGGraph.Direction.ANY, pDistances1, pQueue1);
+            pCounts.diameters1[components1[pSource]] = Math.max(pCounts.diameters1[components1[pSource]], pDistances1[pQueue1[lCount1-1]]);
+        }
+        int lCount2 = 0;
+        int lSource2 = fromUnion2[pSource];
+        if (lSource2 >= 0) {
+            lCount2 = graph2.bfs(lSource2, TLGGraph.Direction.ANY, pDistances2, pQueue2);
+            pCounts.diameters2[components2[lSource2]] = Math.max(pCounts.diameters2[components2[lSource2]], pDistances2[pQueue2[lCount2-1]]);
+        }
+        long lCounted = 0;
+        for (int k=1; k<lCount1; k++) {
+            int y = pQueue1[k];
+            if (y > pSource) {
+                int lOrdinal2 = fromUnion2[y];
+                pCounts.pairs.add(pDistances1[y], lOrdinal2 >= 0 ? Math.max(0, pDistances2[lOrdinal2]) : 0);
+                lCounted++;
+            }
+        }
+        for (int k=1; k<lCount2; k++) {
+            int y = toUnion2[pQueue2[k]];
+            if ((y > pSource) && ((y >= graph1.size()) || (pDistances1[y] < 0))) {
+                pCounts.pairs.add(0, pDistances2[pQueue2[k]]);
+                lCounted++;
+            }
+        }
+        // Pairs connected in neither graph
+        pCounts.pairs.add(0, 0, size-1-pSource-lCounted);
+        TLGFrozenGraph.reset(pDistances1, pQueue1, lCount1);
+        TLGFrozenGraph.reset(pDistances2, pQueue2, lCount2);
+    }
+
+    /**
+     * Undirected distances of all node pairs of one graph for comparisons with many other graphs, see
+     * TLGPairwiseSimilarity. The nodes are sorted by their id in an IdSpace shared by all graphs, the distances of
+     * the pairs a < b are stored row by row in one byte per pair, or one char once a distance exceeds 255, with 0 for
+     * pairs which are not connected. A table of n nodes takes n(n-1)/2 bytes or twice that, 8 or 16 MB at 4096 nodes,
+     * hence 8 to 16 GB for 1000 such graphs. Graphs with more nodes than the limit keep no table and no searches are
+     * run for them, every pair with such a graph is compared by the searches of similarity(int) on the frozen views
+     * and components kept here.
+     */
+    static class Signature {
+
+        TLGGraph graph;
+        TLGFrozenGraph frozenGraph;
+        int[] components;
+        int[] ids;
+        byte[] bytes;
+        char[] chars;
+        int maxDistance;
+        /**
+         * Sum of diameter+1 over the components of the graph alone
+         */
+        long delta;
+
+        /**
+         * @param pMaxTableNodes Largest graph which gets a distance table, see MAX_TABLE_NODES
+         */
+        Signature(TLGGraph pGraph, TLGPairwiseSimilarity.IdSpace pIdSpace, int pMaxTableNodes) {
+            graph = pGraph;
+            frozenGraph = pGraph.freeze();
+            components = frozenGraph.getWeaklyConnectedComponents(1);
+            int n = frozenGraph.size();
+            if (n > pMaxTableNodes) return;
+            long[] lSorted = new long[n];
+            for (int o=0; o<n; o++) {
+                lSorted[o] = ((long)pIdSpace.get(frozenGraph.getNode(o).getId()) << 32) | o;
+            }
+            Arrays.sort(lSorted);
+            ids = new int[n];
+            int[] lPositions = new int[n];
+            for (int a=0; a<n; a++) {
+                ids[a] = (int)(lSorted[a] >>> 32);
+                lPositions[(int)lSorted[a]] = a;
+            }
+            int[] lDiameters = new int[count(components)];
+            bytes = new byte[(int)getPairs(n)];
+            int[] lDistances = frozenGraph.newDistances();
+            int[] lQueue = new int[n];
+            for (int a=0; a<n; a++) {
+                int lSource = (int)lSorted[a];
+                int lCount = frozenGraph.bfs(lSource, TLGGraph.Direction.ANY, lDistances, lQueue);
+                int lEccentricity = lDistances[lQueue[lCount-1]];
+                lDiameters[components[lSource]] = Math.max(lDiameters[components[lSource]], lEccentricity);
+                maxDistance = Math.max(maxDistance, lEccentricity);
+                if ((lEccentricity > 255) && (chars == null)) {
+                    // Widen the rows written so far
+                    chars = new char[bytes.length];
+                    for (int i=0; i<bytes.length; i++) {
+                        chars[i] = (char)(bytes[i] & 0xFF);
+                    }
+                    bytes = null;
+                }
+                int lRow = getRow(a, n);
+                for (int k=1; k<lCount; k++) {
+                    int b = lPositions[lQueue[k]];
+                    if (b <= a) continue;
+                    if (chars != null) {
+                        chars[lRow+b] = (char)lDistances[lQueue[k]];
+                    }
+                    else {
+                        bytes[lRow+b] = (byte)lDistances[lQueue[k]];
+                    }
+                }
+                TLGFrozenGraph.reset(lDistances, lQueue, lCount);
+            }
+            for (int lDiameter:lDiameters) {
+                delta += lDiameter+1;
+            }
+        }
+
+        boolean hasTable() {
+            return ids != null;
+        }
+
+        int get(int pIndex) {
+            return bytes != null ? bytes[pIndex] & 0xFF : chars[pIndex];
+        }
+
+    }
+
+    /**
+     * Default of the largest graph with a distance table, see Signature
+     */
+    static final int MAX_TABLE_NODES = 4096;
+
+    /**
+     * Same value as new TLGFuzzyJaccard(graph1, graph2).similarity(), from the distance tables
+     */
+    static double similarity(Signature pSignature1, Signature pSignature2) {
+        if (!pSignature1.hasTable() || !pSignature2.hasTable()) {
+            return new TLGFuzzyJaccard(pSignature1, pSignature2).similarity(1);
+        }
+        int n1 = pSignature1.ids.length;
+        int n2 = pSignature2.ids.length;
+        // Position of every node in the other graph, -1 if it is missing there
+        int[] lIn2 = new int[n1];
+        int[] lIn1 = new int[n2];
+        Arrays.fill(lIn2, -1);
+        Arrays.fill(lIn1, -1);
+        int lCommon = 0;
+        for (int a=0, b=0; (a<n1) && (b<n2);) {
+            if (pSignature1.ids[a] < pSignature2.ids[b]) {
+                a++;
+            }
+            else if (pSignature1.ids[a] > pSignature2.ids[b]) {
+                b++;
+            }
+            else {
+                lIn2[a] = b;
+                lIn1[b] = a;
+                lCommon++;
+                a++;
+                b++;
+            }
+        }
+        PairCounts lCounts = new PairCounts();
+        long lCounted = 0;
+        // Pairs of graph1, the positions in graph2 keep their order
+        for (int a=0; a<n1; a++) {
+            int lRow1 = getRow(a, n1);
+            int lRow2 = lIn2[a] >= 0 ? getRow(lIn2[a], n2) : 0;
+            for (int b=a+1; b<n1; b++) {
+                int lDistance1 = pSignature1.get(lRow1+b);
+                int lDistance2 = (lIn2[a] >= 0) && (lIn2[b] >= 0) ? pSignature2.get(lRow2+lIn2[b]) : 0;
+                if ((lDistance1 | lDistance2) != 0) {
+                    lCounts.add(lDistance1, lDistance2);
+                    lCounted++;
+                }
+            }
+        }
+        // Connected pairs of graph2 with a node missing from graph1
+        for (int a=0; a<n2; a++) {
+            int lRow2 = getRow(a, n2);
+            for (int b=a+1; b<n2; b++) {
+                if ((lIn1[a] >= 0) && (lIn1[b] >= 0)) continue;
+                int lDistance2 = pSignature2.get(lRow2+b);
+                if (lDistance2 != 0) {
+                    lCounts.add(0, lDistance2);
+                    lCounted++;
+                }
+            }
+        }
+        int lSize = n1+n2-lCommon;
+        lCounts.add(0, 0, getPairs(lSize)-lCounted);
+        return lCounts.getSimilarity(pSignature1.delta+lSize-n1, pSignature2.delta+lSize-n2);
+    }
+
+    /**
+     * @return Number of unordered pairs of pNodes nodes
+     */
+    private static long getPairs(int pNodes) {
+        return (long)pNodes*(pNodes-1)/2;
+    }
+
+    /**
+     * @return Offset of row pA in a distance table, the pair (pA, b) with b > pA is at the result plus b
+     */
+    private static int getRow(int pA, int pNodes) {
+        return (int)((long)pA*pNodes-(long)pA*(pA+1)/2-pA-1);
+    }
+
+    private static int count(int[] pComponents) {
+        int lResult = 0;
+        for (int lComponent:pComponents) {
+            lResult = Math.max(lResult, lComponent+1);
+        }
+        return lResult;
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Visitor which builds a TLGGraph from a streamed GML file. The GML attribute label becomes the property Label or,
+ * if labels are used as IDs, the id of the node. The attributes type and Type of edges become the property Type,
+ * all other attributes are kept as they are.
+ */
+class TLGGMLGraphBuilder implements TLGGraphVisitor {
+
+    private TLGGraph graph;
+    private boolean labelAsID;
+    /**
+     * GML ids of nodes if labels are used as IDs. Integer ids, the usual case, are kept in a primitive map.
+     */
+    private TLongObjectHashMap<TLGNode> nodesByLongID = new TLongObjectHashMap<>();
+    private Map<String, TLGNode> nodesByID = new HashMap<>();
+
+    TLGGMLGraphBuilder(TLGGraph pGraph, boolean pLabelAsID) {
+        graph = pGraph;
+        labelAsID = pLabelAsID;
+    }
+
+    @Override
+    public void vertex(TLGVertexRecord pVertex) throws IOException {
+        String lID = pVertex.getId();
+        int lLabelIndex = pVertex.indexOfProperty("label");
+        String lLabel = lLabelIndex >= 0 ? pVertex.getPropertyValue(lLabelIndex) : null;
+        Map<String, String> lProperties = new HashMap<>();
+        for (int i=0; i<pVertex.getPropertyCount(); i++) {
+            if (pVertex.isPropertyKey(i, "label")) continue;
+            lProperties.put(pVertex.getPropertyKey(i), pVertex.getPropertyValue(i));
+        }
+        TLGNode lNode;
+        if (labelAsID) {
+            if (lLabel == null) throw new IOException("Label is null for ID: "+lID);
+            if (graph.nodeMap.containsKey(lLabel)) throw new IOException("Duplicate Label: "+lLabel);
+            lNode = new TLGNode(graph, lLabel, lProperties);
+            if (isLong(lID)) {
+                nodesByLongID.put(Long.parseLong(lID), lNode);
+            }
+            else {
+                nodesByID.put(lID, lNode);
+            }
+        }
+        else {
+            if (lLabel != null) lProperties.put("Label", lLabel);
+            lNode = new TLGNode(graph, lID, lProperties);
+        }
+        graph.nodeMap.put(lNode.getId(), lNode);
+    }
+
+    @Override
+    public void edge(TLGEdgeRecord pEdge) throws IOException {
+        TLGNode lSource = getNode(pEdge.getSourceId());
+        TLGNode lTarget = getNode(pEdge.getTargetId());
+        if ((lSource == null) || (lTarget == null)) {
+            throw new IOException("Edge references unknown vertex: "+pEdge.getSourceId()+" -> "+pEdge.getTargetId());
+        }
+        TLGEdge lEdge = new TLGEdge(graph, lSource, lTarget);
+        for (int i=0; i<pEdge.getPropertyCount(); i++) {
+            if (pEdge.isPropertyKey(i, "type") || pEdge.isPropertyKey(i, "Type")) {
+                lEdge.properties.put("Type", pEdge.getPropertyValue(i));
+            }
+            else {
+                lEdge.properties.put(pEdge.getPropertyKey(i), pEdge.getPropertyValue(i));
+            }
+        }
+    }
+
+    private TLGNode getNode(String pID) {
+        if (!labelAsID) return graph.nodeMap.get(pID);
+        return isLong(pID) ? nodesByLongID.get(Long.parseLong(pID)) : nodesByID.get(pID);
+    }
+
+    /**
+     * @return True if pID is a decimal which Long.parseLong() maps back to the same string
+     */
+    private static boolean isLong(String pID) {
+        int lLength = pID.length();
+        if ((lLength == 0) || (lLength > 18)) return false;
+        int lStart = pID.charAt(0) == '-' ? 1 : 0;
+        if ((lStart == lLength) || ((pID.charAt(lStart) == '0') && (lLength > lStart+1))) return false;
+        for (int i=lStart; i<lLength; i++) {
+            char c = pID.charAt(i);
+            if ((c < '0') || (c > '9')) return false;
+        }
+        return !pID.equals("-0");
+    }
+
+}
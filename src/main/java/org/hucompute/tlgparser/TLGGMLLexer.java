@@ -0,0 +1,124 @@
+package org.hucompute.tlgparser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming lexer for GML over a byte channel. Whitespace and line breaks between tokens are arbitrary, lines
+ * starting with '#' are comments. Keys and unquoted values are returned as WORD, the parser tells them apart by
+ * position. Strings are returned without quotes, their content is not unescaped.
+ */
+class TLGGMLLexer {
+
+    static final int END = 0;
+    static final int WORD = 1;
+    static final int STRING = 2;
+    static final int LIST_START = 3;
+    static final int LIST_END = 4;
+
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private byte[] bytes;
+    private int position;
+    private int limit;
+    private long offset;
+    private boolean eof;
+
+    private byte[] token = new byte[256];
+    private int tokenLength;
+
+    TLGGMLLexer(ReadableByteChannel pChannel, int pBufferSize) {
+        channel = pChannel;
+        bytes = new byte[pBufferSize];
+        buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @return Next byte or -1 at the end of the channel
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            if (eof) return -1;
+            offset += limit;
+            buffer.clear();
+            int lRead;
+            do {
+                lRead = channel.read(buffer);
+            } while (lRead == 0);
+            if (lRead < 0) {
+                eof = true;
+                position = limit = 0;
+                return -1;
+            }
+            position = 0;
+            limit = buffer.position();
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    private void append(int pByte) {
+        if (tokenLength == token.length) {
+            byte[] lToken = new byte[token.length*2];
+            System.arraycopy(token, 0, lToken, 0, tokenLength);
+            token = lToken;
+        }
+        token[tokenLength++] = (byte)pByte;
+    }
+
+    private static boolean isWhitespace(int pByte) {
+        return (pByte == ' ') || (pByte == '\n') || (pByte == '\r') || (pByte == '\t') || (pByte == '\f');
+    }
+
+    /**
+     * @return Type of the next token, see getText() for WORD and STRING
+     */
+    int next() throws IOException {
+        tokenLength = 0;
+        int b = read();
+        while (true) {
+            while (isWhitespace(b)) b = read();
+            if (b != '#') break;
+            while ((b >= 0) && (b != '\n') && (b != '\r')) b = read();
+        }
+        switch (b) {
+            case -1: return END;
+            case '[': return LIST_START;
+            case ']': return LIST_END;
+            case '"': {
+                while ((b = read()) != '"') {
+                    if (b < 0) throw new EOFException("Unterminated string at byte "+getOffset());
+                    append(b);
+                }
+                return STRING;
+            }
+            default: {
+                while ((b >= 0) && !isWhitespace(b) && (b != '[') && (b != ']') && (b != '"')) {
+                    append(b);
+                    b = read();
+                }
+                // A delimiter directly following a word is a token of its own
+                if (b >= 0) position--;
+                return WORD;
+            }
+        }
+    }
+
+    String getText() {
+        return new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+    }
+
+    boolean isText(String pText) {
+        return TLGRecord.equals(pText, token, 0, tokenLength);
+    }
+
+    /**
+     * @return Offset of the next byte, for error messages
+     */
+    long getOffset() {
+        return offset+position;
+    }
+
+}
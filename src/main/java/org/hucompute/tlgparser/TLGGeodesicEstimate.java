@@ -0,0 +1,98 @@
+package org.hucompute.tlgparser;
+
+/**
+ * Mean geodesic distance estimated from the searches of sampled source nodes, see
+ * TLGGraph.estimateGeodesicDistance(). Distances are those of the reachable pairs, the confidence interval is the
+ * 95% normal interval of the ratio estimator.
+ */
+public class TLGGeodesicEstimate {
+
+    static final double Z_95 = 1.959963984540054;
+
+    protected TLGDistanceDistribution distribution;
+    protected double mean;
+    protected double standardError;
+    protected boolean precisionReached;
+    protected long time;
+
+    TLGGeodesicEstimate(TLGDistanceDistribution pDistribution, double pMean, double pStandardError, long pTime) {
+        distribution = pDistribution;
+        mean = pMean;
+        standardError = pStandardError;
+        time = pTime;
+    }
+
+    /**
+     * @return Distances of all pairs with a sampled source
+     */
+    public TLGDistanceDistribution getDistribution() {
+        return distribution;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardError() {
+        return standardError;
+    }
+
+    /**
+     * @return Lower end of the 95% confidence interval of the mean
+     */
+    public double getLower() {
+        return mean-Z_95*standardError;
+    }
+
+    /**
+     * @return Upper end of the 95% confidence interval of the mean
+     */
+    public double getUpper() {
+        return mean+Z_95*standardError;
+    }
+
+    /**
+     * @return Half width of the confidence interval relative to the mean
+     */
+    public double getRelativeError() {
+        return mean == 0 ? 0 : Z_95*standardError/mean;
+    }
+
+    /**
+     * @return Interpolated 90th percentile of the sampled distances
+     */
+    public double getEffectiveDiameter() {
+        return distribution.getEffectiveDiameter(0.9);
+    }
+
+    /**
+     * @return Largest sampled distance, a lower bound of the diameter
+     */
+    public int getMaxDistance() {
+        return distribution.getMaxDistance();
+    }
+
+    public long getSources() {
+        return distribution.getSources();
+    }
+
+    /**
+     * @return True if the sampling stopped because the requested precision was reached
+     */
+    public boolean isPrecisionReached() {
+        return precisionReached;
+    }
+
+    /**
+     * @return Milliseconds of the computation
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return getMean()+" ["+getLower()+", "+getUpper()+"], effective diameter "+getEffectiveDiameter()+", max distance "+getMaxDistance()+" from "+getSources()+" sources, "+time+"ms";
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples source nodes without replacement in the order of a seeded shuffle and searches from them in rounds of
+ * ROUND sources with TLGMultiSourceBFS. The estimate only depends on the seed, not on the number of threads, since
+ * the precision is checked after complete rounds only.
+ */
+class TLGGeodesicEstimator {
+
+    private static Logger logger = LogManager.getLogger(TLGGeodesicEstimator.class);
+
+    static final int ROUND = 1024;
+    static final int BATCH_SIZE = 128;
+    /**
+     * Sources before the confidence interval is trusted
+     */
+    static final int MIN_SOURCES = 32;
+
+    private TLGFrozenGraph graph;
+    private TLGGraph.Direction direction;
+    private long seed;
+    private int maxSources;
+    private double precision;
+    private int threads;
+
+    TLGGeodesicEstimator(TLGFrozenGraph pGraph, TLGGraph.Direction pDirection, long pSeed, int pMaxSources, double pPrecision, int pThreads) {
+        graph = pGraph;
+        direction = pDirection;
+        seed = pSeed;
+        maxSources = pMaxSources;
+        precision = pPrecision;
+        threads = pThreads;
+    }
+
+    TLGGeodesicEstimate estimate() {
+        long lStart = System.currentTimeMillis();
+        int lSize = graph.size();
+        int lMaxSources = Math.max(0, Math.min(maxSources, lSize));
+        // Partial Fisher-Yates shuffle
+        int[] lOrder = new int[lSize];
+        for (int i=0; i<lSize; i++) {
+            lOrder[i] = i;
+        }
+        Random lRandom = new Random(seed);
+        for (int i=0; i<lMaxSources; i++) {
+            int k = i+lRandom.nextInt(lSize-i);
+            int lSwap = lOrder[i];
+            lOrder[i] = lOrder[k];
+            lOrder[k] = lSwap;
+        }
+        long[] lReached = new long[lMaxSources];
+        long[] lDistanceSums = new long[lMaxSources];
+        TLGDistanceDistribution lDistribution = new TLGDistanceDistribution(lSize);
+        TLGMultiSourceBFS lSearch = new TLGMultiSourceBFS(graph, direction).setBatchSize(BATCH_SIZE).setThreads(threads);
+        TLGGeodesicEstimate lResult = new TLGGeodesicEstimate(lDistribution.copy(), 0, 0, 0);
+        for (int lFrom=0; lFrom<lMaxSources; lFrom+=ROUND) {
+            int lOffset = lFrom;
+            int lTo = Math.min(lMaxSources, lFrom+ROUND);
+            lDistribution.add(lSearch.setSourceConsumer((pIndex, pReached, pDistanceSum, pEccentricity) -> {
+                lReached[lOffset+pIndex] = pReached;
+                lDistanceSums[lOffset+pIndex] = pDistanceSum;
+            }).run(Arrays.copyOfRange(lOrder, lFrom, lTo)));
+            lResult = getEstimate(lDistribution, lReached, lDistanceSums, lTo, lSize, System.currentTimeMillis()-lStart);
+            logger.info("Geodesic distance: "+lResult);
+            if ((precision > 0) && (lTo >= MIN_SOURCES) && (lResult.getRelativeError() <= precision)) {
+                lResult.precisionReached = true;
+                break;
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * Ratio estimator of the mean over the first pCount sources, with the standard error by the delta method and
+     * the finite population correction, which is 0 once every node has been a source
+     */
+    private static TLGGeodesicEstimate getEstimate(TLGDistanceDistribution pDistribution, long[] pReached, long[] pDistanceSums, int pCount, int pSize, long pTime) {
+        long lReached = 0;
+        long lDistanceSum = 0;
+        for (int i=0; i<pCount; i++) {
+            lReached += pReached[i];
+            lDistanceSum += pDistanceSums[i];
+        }
+        if (lReached == 0) return new TLGGeodesicEstimate(pDistribution.copy(), 0, 0, pTime);
+        double lMean = lDistanceSum/(double)lReached;
+        double lStandardError = 0;
+        if (pCount > 1) {
+            double lSquares = 0;
+            for (int i=0; i<pCount; i++) {
+                double lResidual = pDistanceSums[i]-lMean*pReached[i];
+                lSquares += lResidual*lResidual;
+            }
+            double lAverageReached = lReached/(double)pCount;
+            double lVariance = lSquares/(pCount-1)/(lAverageReached*lAverageReached)/pCount;
+            lStandardError = Math.sqrt(lVariance*(1-pCount/(double)pSize));
+        }
+        return new TLGGeodesicEstimate(pDistribution.copy(), lMean, lStandardError, pTime);
+    }
+
+}
@@ -1,20 +1,24 @@
 package org.hucompute.tlgparser;
 
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TObjectIntHashMap;
 import gnu.trove.map.hash.TObjectLongHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static org.hucompute.tlgparser.TLGGraph.Directedness.DIRECTED;
 
-public class TLGGraph {
+public class TLGGraph implements Closeable {
 
-    public static int MAX_THREADS = Runtime.getRuntime().availableProcessors()/4;
+    public static int MAX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors()/4);
 
     private static Logger logger = LogManager.getLogger(TLGGraph.class);
 
@@ -22,20 +26,85 @@ public class TLGGraph {
 
     public enum Directedness {DIRECTED, UNDIRECTED};
 
+    /**
+     * Node orders for reorder(): NATURAL keeps the current order, BFS and RCM (reverse Cuthill-McKee) place nodes
+     * close to their neighbours, DEGREE puts the nodes with most edges first
+     */
+    public enum Ordering {NATURAL, BFS, RCM, DEGREE};
+
+    /**
+     * Type mask which matches every edge, including edges whose type has no code, see getEdgeTypeMask()
+     */
+    public static final long ALL_EDGE_TYPES = -1L;
+    /**
+     * Maximum number of edge types with a code
+     */
+    public static final int MAX_EDGE_TYPE_CODES = 64;
+    /**
+     * Code of a type which no edge of the graph has, see getEdgeTypeCode()
+     */
+    static final int UNKNOWN_EDGE_TYPE = -2;
+
     public enum Format {BorlandFormat, GML};
 
+    /**
+     * Name of the index of getBFNodeByTypeAndName()
+     */
+    public static final String LANGUAGE_POS_NAME_INDEX = "LanguagePOSName";
+
     protected Map<String, TLGNode> nodeMap;
-    protected Map<String, TLGNode> languageTypeNameIndex;
+    /**
+     * Secondary indexes by name, see addIndex()
+     */
+    private Map<String, TLGIndex<?>> indexes = new LinkedHashMap<>();
+    /**
+     * SuperLemma nodes by Language, POS and Name. Filled while the nodes are read, otherwise built on first lookup.
+     */
+    protected TLGIndex<TLGNode> languageTypeNameIndex = addIndex(TLGIndex.forNodes(LANGUAGE_POS_NAME_INDEX, TLGIndex.Kind.HASH, "Language", "POS", "Name").where("Type", "SuperLemma"));
     protected Map<String, TObjectLongHashMap<String>> nodeAttributeCountMap = new HashMap<>();
     protected Map<String, TObjectLongHashMap<String>> edgeAttributeCountMap = new HashMap<>();
     protected String head;
     protected TObjectLongHashMap<String> nodeTypes = new TObjectLongHashMap<>();
     protected TObjectLongHashMap<String> edgeTypes = new TObjectLongHashMap<>();
     protected Directedness directedness;
+    protected TLGSymbolTable symbolTable;
+    protected TLGPropertyColumns nodeColumns;
+    protected TLGPropertyColumns edgeColumns;
+    /**
+     * Raw lines of the nodes and edges loaded with PropertyStorage.LAZY
+     */
+    protected TLGByteArena nodeArena;
+    protected TLGByteArena edgeArena;
+    /**
+     * Adjacency of a graph loaded with TLGLoadOptions.Adjacency.DIRECT or MAPPED, null otherwise
+     */
+    protected TLGOffHeapAdjacency offHeapAdjacency;
+    /**
+     * The attribute counts, types and languageTypeNameIndex of a lazily loaded graph are computed on first request
+     */
+    private boolean countsPending;
+    /**
+     * Edges dropped while loading because the node filter rejected an endpoint or the endpoint does not exist
+     */
+    private AtomicLong droppedEdges = new AtomicLong();
+
+    /**
+     * Bit codes of the edge types, the keys of edgeTypes and "" for edges without type, assigned on first use. Types
+     * of edges added after loading get their code when a node groups its edges by type.
+     */
+    private TObjectIntHashMap<String> edgeTypeCodes = new TObjectIntHashMap<>(16, 0.5f, -1);
+    private List<String> edgeTypeNames = new ArrayList<>();
+    /**
+     * Incremented by invalidateEdgeTypeIndex(), nodes rebuild their type index if it is older
+     */
+    protected volatile int edgeTypeVersion;
 
     private Map<Directedness, Integer> diameterCache = new HashMap<>();
 
-    private TLGGraph(){}
+    protected static final byte[] VERTICES = "Vertices:".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] EDGES = "Edges:".getBytes(StandardCharsets.UTF_8);
+
+    TLGGraph(){}
 
     public TLGGraph(TLGGraph pTLGGraph) {
         nodeMap = new HashMap<>();
@@ -46,7 +115,8 @@ public class TLGGraph {
             nodeMap.put(lNewNode.getId(), lNewNode);
         }
         for (TLGNode lOldNode: pTLGGraph.nodeMap.values()) {
-            for (TLGEdge lOldEdge:lOldNode.getEdges(Direction.OUT)) {
+            for (int e=0; e<lOldNode.getOutDegree(); e++) {
+                TLGEdge lOldEdge = lOldNode.getOutEdge(e);
                 TLGEdge lNewEdge = new TLGEdge(this, lOldNewMap.get(lOldEdge.source), lOldNewMap.get(lOldEdge.target));
                 lNewEdge.properties = new HashMap<>(lOldEdge.properties);
             }
@@ -61,6 +131,129 @@ public class TLGGraph {
         this.head = head;
     }
 
+    public Directedness getDirectedness() {
+        return directedness;
+    }
+
+    /**
+     * @return Attribute key -> (value -> number of nodes)
+     */
+    public Map<String, TObjectLongHashMap<String>> getNodeAttributeCountMap() {
+        countLazyProperties();
+        return nodeAttributeCountMap;
+    }
+
+    /**
+     * @return Attribute key -> (value -> number of edges)
+     */
+    public Map<String, TObjectLongHashMap<String>> getEdgeAttributeCountMap() {
+        countLazyProperties();
+        return edgeAttributeCountMap;
+    }
+
+    public TObjectLongHashMap<String> getNodeTypes() {
+        countLazyProperties();
+        return nodeTypes;
+    }
+
+    /**
+     * @return The symbol table of the properties or null if the graph was loaded with PropertyStorage.HASH_MAP
+     */
+    public TLGSymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public TObjectLongHashMap<String> getEdgeTypes() {
+        countLazyProperties();
+        return edgeTypes;
+    }
+
+    /**
+     * @return Bit code of the edge type pType, -1 if the graph has the type but all MAX_EDGE_TYPE_CODES codes are
+     * taken, UNKNOWN_EDGE_TYPE if no edge has the type. Only the types of getEdgeTypes() and "" get a code, looking up
+     * other strings does not use one up.
+     */
+    int getEdgeTypeCode(String pType) {
+        synchronized (edgeTypeCodes) {
+            int lResult = edgeTypeCodes.get(pType);
+            if (lResult >= 0) return lResult;
+        }
+        // Outside of the lock, countLazyProperties() locks the graph
+        if ((pType.length() > 0) && !getEdgeTypes().containsKey(pType)) return UNKNOWN_EDGE_TYPE;
+        return assignEdgeTypeCode(pType);
+    }
+
+    /**
+     * @return Bit code of the type pType of an edge of the graph, assigned on first use, or -1 if all
+     * MAX_EDGE_TYPE_CODES codes are taken
+     */
+    int assignEdgeTypeCode(String pType) {
+        synchronized (edgeTypeCodes) {
+            int lResult = edgeTypeCodes.get(pType);
+            if ((lResult < 0) && (edgeTypeNames.size() < MAX_EDGE_TYPE_CODES)) {
+                lResult = edgeTypeNames.size();
+                edgeTypeNames.add(pType);
+                edgeTypeCodes.put(pType, lResult);
+            }
+            return lResult;
+        }
+    }
+
+    /**
+     * @return The types of pTypes which the graph has but which got no code because it has more than
+     * MAX_EDGE_TYPE_CODES types
+     */
+    Set<String> getUncodedEdgeTypes(Collection<String> pTypes) {
+        Set<String> lResult = new HashSet<>();
+        for (String lType:pTypes) {
+            if (getEdgeTypeCode(lType) == -1) lResult.add(lType);
+        }
+        return lResult;
+    }
+
+    /**
+     * Bitmask of a set of edge types for typed traversals like TLGNode.forEachEdge(long, Direction, Consumer).
+     * "" stands for edges without type, types which no edge has match nothing. The mask stays valid for the lifetime
+     * of the graph.
+     * @throws IllegalArgumentException If a type of the graph has no code because the graph has more than
+     * MAX_EDGE_TYPE_CODES types. The methods taking a Set of types filter by the Type property in that case.
+     */
+    public long getEdgeTypeMask(Collection<String> pTypes) {
+        long lResult = 0;
+        for (String lType:pTypes) {
+            int lCode = getEdgeTypeCode(lType);
+            if (lCode == UNKNOWN_EDGE_TYPE) continue;
+            if (lCode < 0) throw new IllegalArgumentException("More than "+MAX_EDGE_TYPE_CODES+" edge types, no code for "+lType);
+            lResult |= 1L << lCode;
+        }
+        return lResult;
+    }
+
+    public long getEdgeTypeMask(String... pTypes) {
+        return getEdgeTypeMask(Arrays.asList(pTypes));
+    }
+
+    /**
+     * @return The edge types of pTypeMask
+     */
+    public Set<String> getEdgeTypes(long pTypeMask) {
+        Set<String> lResult = new LinkedHashSet<>();
+        synchronized (edgeTypeCodes) {
+            for (int i=0; i<edgeTypeNames.size(); i++) {
+                if ((pTypeMask & (1L << i)) != 0) lResult.add(edgeTypeNames.get(i));
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * The nodes group their edges by type on the first typed traversal and keep that grouping while their edges do
+     * not change. Call this after changing the Type property of edges which are part of the graph.
+     */
+    public void invalidateEdgeTypeIndex() {
+        edgeTypeVersion++;
+    }
+
     public static TLGGraph fromBorlandFormatFile(File pFile, Directedness pDirectedness) throws IOException {
         TLGGraph lTLGGraph = new TLGGraph();
         lTLGGraph.directedness = pDirectedness;
@@ -75,6 +268,20 @@ public class TLGGraph {
         return lTLGGraph;
     }
 
+    public static TLGGraph fromBorlandFormatFile(File pFile, Directedness pDirectedness, TLGLoadOptions pOptions) throws IOException {
+        TLGGraph lTLGGraph = new TLGGraph();
+        lTLGGraph.directedness = pDirectedness;
+        lTLGGraph.initializeFromTGF(pFile, pOptions);
+        return lTLGGraph;
+    }
+
+    /**
+     * Open a binary snapshot written by saveSnapshot(File), see TLGSnapshot
+     */
+    public static TLGGraph fromSnapshotFile(File pFile) throws IOException {
+        return TLGSnapshot.open(pFile);
+    }
+
     public static TLGGraph fromGMLFile(File pFile, Directedness pDirectedness) throws IOException {
         TLGGraph lTLGGraph = new TLGGraph();
         lTLGGraph.directedness = pDirectedness;
@@ -92,7 +299,7 @@ public class TLGGraph {
     private void initialize(File pFile, Format pFormat) throws IOException {
         switch (pFormat) {
             case BorlandFormat: {
-                initializeFromTGF(pFile);
+                initializeFromTGF(pFile, new TLGLoadOptions());
                 break;
             }
             case GML: {
@@ -112,123 +319,325 @@ public class TLGGraph {
                 "Vertex Attributes:"+(pLabelAsID?"":"[Label¤String];")+"\n" +
                 "Edge Attributes:\n" +
                 "ProbabilityMassOfGraph: 0\n";
+        nodeMap = new HashMap<>();
+        TLGStreamReader.readGML(pFile, new TLGGMLGraphBuilder(this, pLabelAsID));
+    }
 
+    private void initializeFromTGF(File pFile, TLGLoadOptions pOptions) throws IOException {
         nodeMap = new HashMap<>();
-        BufferedReader lReader = new BufferedReader(new InputStreamReader(new BufferedInputStream(new FileInputStream(pFile)), Charset.forName("UTF-8")));
-        String lLine = null;
-        Map<String, String> lIDLabelMap = new HashMap<>();
-        Map<String, String> lLabelIDMap = new HashMap<>();
-        //Set<String> lParallelEdgeBlocker = new HashSet<>();
-        while ((lLine = lReader.readLine()) != null) {
-            lLine = lLine.trim();
-            if (lLine.startsWith("node")) {
-                String lID = null;
-                String lLabel = null;
-                while (!(lLine = lReader.readLine()).trim().startsWith("]")) {
-                    lLine = lLine.trim();
-                    if (lLine.startsWith("id")) {
-                        lID = lLine.substring(lLine.lastIndexOf(" ")+1);
-                    }
-                    else if (lLine.startsWith("label")) {
-                        lLabel = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
-                    }
-                }
-                if (lLabel != null) {
-                    lIDLabelMap.put(lID, lLabel);
-                    if (pLabelAsID) {
-                        if (lLabelIDMap.containsKey(lLabel)) {
-                            throw new IOException("Duplicate Label: "+lLabel);
-                        }
-                    }
-                    lLabelIDMap.put(lLabel, lID);
-                }
-                else {
-                    if (pLabelAsID) throw new IOException("Label is null for ID: "+lID);
-                }
-                Map<String, String> lParameters = new HashMap<>();
-                if (!pLabelAsID && (lLabel != null)) {
-                    lParameters.put("Label", lLabel);
-                }
-                TLGNode lNode = pLabelAsID ? new TLGNode(this, lLabel, lParameters) : new TLGNode(this, lID, lParameters);
-                nodeMap.put(lNode.getId(), lNode);
-            }
-            else if (lLine.startsWith("edge")) {
-                String lSource = null;
-                String lTarget = null;
-                String lType = null;
-                while (!(lLine = lReader.readLine()).trim().startsWith("]")) {
-                    lLine = lLine.trim();
-                    if (lLine.startsWith("source")) {
-                        lSource = lLine.substring(lLine.lastIndexOf(" ")+1);
-                    }
-                    else if (lLine.startsWith("target")) {
-                        lTarget = lLine.substring(lLine.lastIndexOf(" ")+1);
-                    }
-                    else if (lLine.startsWith("type")) {
-                        lType = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
-                    }
-                    else if (lLine.startsWith("Type")) {
-                        lType = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
-                    }
-                }
-                //if (!lSource.equals(lTarget)) {
-                    String lKey = directedness.equals(Directedness.UNDIRECTED) ? getSortedIdPair(lSource, lTarget) : lSource+"\t"+lTarget;
-                    //if (!lParallelEdgeBlocker.contains(lKey)) {
-                    //    lParallelEdgeBlocker.add(lKey);
-                        TLGEdge lEdge = pLabelAsID ? new TLGEdge(this, nodeMap.get(lIDLabelMap.get(lSource)), nodeMap.get(lIDLabelMap.get(lTarget))) : new TLGEdge(this, nodeMap.get(lSource), nodeMap.get(lTarget));
-                        if (lType != null) lEdge.properties.put("Type", lType);
-                    //}
-                    //}
-                //}
+        languageTypeNameIndex.clear();
+        if (pOptions.propertyStorage != TLGLoadOptions.PropertyStorage.HASH_MAP) {
+            symbolTable = new TLGSymbolTable();
+        }
+        if (pOptions.propertyStorage == TLGLoadOptions.PropertyStorage.COLUMNS) {
+            nodeColumns = new TLGPropertyColumns(symbolTable);
+            edgeColumns = new TLGPropertyColumns(symbolTable);
+        }
+        if (pOptions.adjacency != TLGLoadOptions.Adjacency.HEAP) {
+            File lDirectory = null;
+            if (pOptions.adjacency == TLGLoadOptions.Adjacency.MAPPED) {
+                lDirectory = pOptions.mappedDirectory != null ? pOptions.mappedDirectory : new File(System.getProperty("java.io.tmpdir"));
             }
+            offHeapAdjacency = new TLGOffHeapAdjacency(this, lDirectory);
+        }
+        if (pOptions.propertyStorage == TLGLoadOptions.PropertyStorage.LAZY) {
+            nodeArena = new TLGByteArena();
+            // Off heap edges keep their raw properties in the adjacency and are counted while loading
+            if (offHeapAdjacency == null) edgeArena = new TLGByteArena();
+            countsPending = true;
+        }
+        if (pOptions.getThreads() > 1) {
+            new TLGParallelReader(this, pOptions).read(pFile);
+        }
+        else {
+            TLGStreamReader.readBorlandFormat(pFile, new TLGGraphBuilder(this, pOptions));
+        }
+        if (droppedEdges.get() > 0) {
+            logger.info(droppedEdges.get()+" edges with a filtered or unknown vertex were dropped in "+pFile.getName());
+        }
+        if (offHeapAdjacency != null) offHeapAdjacency.build();
+        for (TLGIndex<?> lIndex:pOptions.indexes) {
+            addIndex(lIndex.copy()).build(pOptions.getThreads());
         }
-        lReader.close();
     }
 
-    private void initializeFromTGF(File pFile) throws IOException {
-        nodeMap = new HashMap<>();
-        languageTypeNameIndex = new HashMap<>();
-        BufferedReader lReader = new BufferedReader(new InputStreamReader(new BufferedInputStream(new FileInputStream(pFile)), Charset.forName("UTF-8")));
+    /**
+     * Register a secondary index, it is built on its first lookup
+     * @return pIndex
+     * @throws IllegalArgumentException If an index with the same name exists
+     */
+    public synchronized <T> TLGIndex<T> addIndex(TLGIndex<T> pIndex) {
+        if (indexes.containsKey(pIndex.getName())) throw new IllegalArgumentException("Duplicate index "+pIndex.getName());
+        pIndex.setGraph(this);
+        indexes.put(pIndex.getName(), pIndex);
+        return pIndex;
+    }
+
+    /**
+     * @return Node index with name pName or null
+     */
+    public synchronized TLGIndex<TLGNode> getNodeIndex(String pName) {
+        TLGIndex<?> lIndex = indexes.get(pName);
+        return lIndex != null ? lIndex.as(TLGNode.class) : null;
+    }
+
+    /**
+     * @return Edge index with name pName or null
+     */
+    public synchronized TLGIndex<TLGEdge> getEdgeIndex(String pName) {
+        TLGIndex<?> lIndex = indexes.get(pName);
+        return lIndex != null ? lIndex.as(TLGEdge.class) : null;
+    }
+
+    public synchronized TLGIndex<?> removeIndex(String pName) {
+        return indexes.remove(pName);
+    }
+
+    /**
+     * Discard the content of all indexes after properties have been modified or edges have been added or removed,
+     * they are built again on their next lookup. Nodes added by createNode() are indexed right away.
+     */
+    public synchronized void invalidateIndexes() {
+        for (TLGIndex<?> lIndex:indexes.values()) {
+            lIndex.invalidate();
+        }
+    }
+
+    /**
+     * Move the edges of a graph loaded with TLGLoadOptions.Adjacency.DIRECT or MAPPED to the heap, as if it was loaded
+     * with HEAP, and release the off heap buffers. Called before the first change of the edges, edge views created
+     * before stay valid for removal. Does nothing for other graphs.
+     */
+    public synchronized void toHeapAdjacency() {
+        if (offHeapAdjacency == null) return;
+        try {
+            offHeapAdjacency.toHeap();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        offHeapAdjacency = null;
+        logger.info("Moved the edges of the off heap adjacency to the heap");
+    }
+
+    /**
+     * Release the buffers and temporary files of a graph loaded with TLGLoadOptions.Adjacency.DIRECT or MAPPED, its
+     * edges must not be accessed afterwards. Direct buffers are returned once they are garbage collected. Does
+     * nothing for other graphs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (offHeapAdjacency == null) return;
+        offHeapAdjacency.release();
+        offHeapAdjacency = null;
+    }
+
+    /**
+     * @return Bytes of the adjacency held outside the heap, 0 if it is held in TLGNode and TLGEdge objects
+     */
+    public long getOffHeapBytes() {
+        return offHeapAdjacency != null ? offHeapAdjacency.getOffHeapBytes() : 0;
+    }
+
+    /**
+     * @return Number of edges dropped while loading with a node filter because the filter rejected one of their
+     * vertices or the vertex is not in the file. The rejected ids are not kept, hence both cases count alike.
+     */
+    public long getDroppedEdges() {
+        return droppedEdges.get();
+    }
+
+    /**
+     * Read the head up to and including the line Vertices:
+     */
+    protected static String readHead(TLGLineReader pReader, File pFile) throws IOException {
         StringBuilder lHeadBuilder = new StringBuilder();
-        String lLine = null;
-        while (!(lLine = lReader.readLine()).startsWith("Vertices:")) {
-            lHeadBuilder.append(lLine+"\n");
-        }
-        head = lHeadBuilder.toString();
-        while (!(lLine = lReader.readLine()).startsWith("Edges:")) {
-            TLGNode lTLGNode = new TLGNode(this, lLine);
-            String lPOS = lTLGNode.getProperty("POS", null);
-            String lName = lTLGNode.getProperty("Name", null);
-            String lLanguage = lTLGNode.getProperty("Language", null);
-            String lType = lTLGNode.getProperty("Type", null);
+        while (true) {
+            if (!pReader.nextLine()) throw new EOFException("Missing Vertices: section in "+pFile.getName());
+            if (pReader.startsWith(VERTICES)) break;
+            lHeadBuilder.append(pReader.getLine()+"\n");
+        }
+        return lHeadBuilder.toString();
+    }
+
+    /**
+     * Register a freshly read node in nodeMap, nodeTypes and languageTypeNameIndex
+     */
+    protected void addNode(TLGNode pTLGNode) {
+        if (offHeapAdjacency != null) {
+            ((TLGOffHeapNode)pTLGNode).setOrdinal(offHeapAdjacency, offHeapAdjacency.addNode(pTLGNode));
+        }
+        if (pTLGNode.properties instanceof TLGLazyPropertyMap) {
+            ((TLGLazyPropertyMap)pTLGNode.properties).store(nodeArena);
+            nodeMap.put(pTLGNode.getId(), pTLGNode);
+            return;
+        }
+        indexNode(pTLGNode, pTLGNode.getProperty("Type", null));
+        nodeMap.put(pTLGNode.getId(), pTLGNode);
+        if (nodeColumns != null) {
+            pTLGNode.properties = toColumns(nodeColumns, pTLGNode.properties);
+        }
+    }
+
+    /**
+     * Add a node to nodeTypes and languageTypeNameIndex
+     */
+    private void indexNode(TLGNode pTLGNode, String pType) {
+        if ((pType != null) && (pType.length() > 0)) {
+            nodeTypes.adjustOrPutValue(pType, 1, 1);
+        }
+        languageTypeNameIndex.add(pTLGNode);
+    }
+
+    /**
+     * Attach a freshly read edge to its nodes
+     */
+    protected void addEdge(TLGEdge pTLGEdge) throws IOException {
+        if (offHeapAdjacency != null) {
+            TLGLazyPropertyMap lProperties = (TLGLazyPropertyMap)pTLGEdge.properties;
+            String lType = lProperties.find("Type");
+            offHeapAdjacency.addEdge(((TLGOffHeapNode)pTLGEdge.source).getOrdinal(), ((TLGOffHeapNode)pTLGEdge.target).getOrdinal(),
+                    assignEdgeTypeCode(lType != null ? lType : ""), pTLGEdge.similarity, lProperties.getBuffer(), lProperties.getStart(), lProperties.getEnd());
+            return;
+        }
+        if (pTLGEdge.properties instanceof TLGLazyPropertyMap) {
+            ((TLGLazyPropertyMap)pTLGEdge.properties).store(edgeArena);
+        }
+        else if (edgeColumns != null) {
+            pTLGEdge.properties = toColumns(edgeColumns, pTLGEdge.properties);
+        }
+        pTLGEdge.attach();
+    }
+
+    private static Map<String, String> toColumns(TLGPropertyColumns pColumns, Map<String, String> pProperties) {
+        int lOrdinal = pColumns.newOrdinal();
+        for (Map.Entry<String, String> lEntry:pProperties.entrySet()) {
+            pColumns.put(lOrdinal, lEntry.getKey(), lEntry.getValue());
+        }
+        return pColumns.getProperties(lOrdinal);
+    }
+
+    /**
+     * Create a node from a vertex record. Does not modify the graph, hence may be called concurrently.
+     * @param pAttributeCountMap Receives the attribute counts of the node
+     * @return The node or null if it is rejected by the node filter of pOptions
+     */
+    protected TLGNode newNode(TLGVertexRecord pRecord, TLGLoadOptions pOptions, Map<String, TObjectLongHashMap<String>> pAttributeCountMap) {
+        if ((pOptions.nodeFilter != null) && !pOptions.nodeFilter.test(pRecord)) {
+            return null;
+        }
+        if (nodeArena != null) {
+            return newNode(pRecord.getId(), new TLGLazyPropertyMap(pRecord.buffer, pRecord.start, pRecord.end));
+        }
+        Map<String, String> lProperties = newPropertyMap(pRecord);
+        putProperties(pRecord, lProperties, pAttributeCountMap);
+        return newNode(pRecord.getId(), lProperties);
+    }
+
+    private TLGNode newNode(String pID, Map<String, String> pProperties) {
+        return offHeapAdjacency != null ? new TLGOffHeapNode(this, pID, pProperties) : new TLGNode(this, pID, pProperties);
+    }
+
+    /**
+     * Create an edge from an edge record. The edge is not attached to its nodes and the graph is only read, hence
+     * this may be called concurrently once all nodes have been added.
+     * @param pAttributeCountMap Receives the attribute counts of the edge
+     * @param pEdgeTypes Receives the type of the edge
+     * @return The edge or null if one of its nodes has been filtered or it is rejected by the edge filter of pOptions.
+     * With a node filter edges to filtered or unknown vertices are counted and dropped, without one an unknown
+     * vertex is an error.
+     */
+    protected TLGEdge newEdge(TLGEdgeRecord pRecord, TLGLoadOptions pOptions, Map<String, TObjectLongHashMap<String>> pAttributeCountMap, TObjectLongHashMap<String> pEdgeTypes) throws IOException {
+        TLGNode lSource = nodeMap.get(pRecord.getSourceId());
+        TLGNode lTarget = lSource == null ? null : nodeMap.get(pRecord.getTargetId());
+        if ((lSource == null) || (lTarget == null)) {
+            if (pOptions.nodeFilter == null) {
+                throw new IOException("Edge references unknown vertex: "+pRecord.getSourceId()+" -> "+pRecord.getTargetId());
+            }
+            droppedEdges.incrementAndGet();
+            return null;
+        }
+        if ((pOptions.edgeFilter != null) && !pOptions.edgeFilter.test(pRecord)) {
+            return null;
+        }
+        if (edgeArena != null) {
+            // Only the properties are kept, the ids are not needed to count them
+            return new TLGEdge(this, lSource, lTarget, new TLGLazyPropertyMap(pRecord.buffer, pRecord.getPropertyStart(), pRecord.end), pRecord.getSimilarity());
+        }
+        if (offHeapAdjacency != null) {
+            // Counted here, addEdge() copies the raw properties into the adjacency
+            putProperties(pRecord, null, pAttributeCountMap);
+            String lType = pRecord.getProperty("Type", null);
             if ((lType != null) && (lType.length() > 0)) {
-                nodeTypes.adjustOrPutValue(lType, 1, 1);
-            }
-            if ((lPOS != null) && (lName != null) && (lLanguage != null) && (lType != null)) {
-                if (lType.equals("SuperLemma")) languageTypeNameIndex.put(lLanguage+"\t"+lPOS+"\t"+lName, lTLGNode);
-            }
-            nodeMap.put(lTLGNode.getId(), lTLGNode);
-            if (nodeMap.size() % 1000 == 0) {
-                logger.info(nodeMap.size()+" nodes read");
+                pEdgeTypes.adjustOrPutValue(lType, 1, 1);
             }
+            return new TLGEdge(this, lSource, lTarget, new TLGLazyPropertyMap(pRecord.buffer, pRecord.getPropertyStart(), pRecord.end), pRecord.getSimilarity());
         }
-        logger.info(nodeMap.size()+" nodes read");
-        long lEdgesRead = 0;
-        while ((lLine = lReader.readLine()) != null) {
-            if (lLine.length() > 0) {
-                lEdgesRead++;
-                new TLGEdge(this, lLine);
-                if (lEdgesRead % 1000 == 0) {
-                    logger.info(lEdgesRead+" edges read");
+        Map<String, String> lProperties = newPropertyMap(pRecord);
+        putProperties(pRecord, lProperties, pAttributeCountMap);
+        String lType = lProperties.get("Type");
+        if ((lType != null) && (lType.length() > 0)) {
+            pEdgeTypes.adjustOrPutValue(lType, 1, 1);
+        }
+        return new TLGEdge(this, lSource, lTarget, lProperties, pRecord.getSimilarity());
+    }
+
+    private Map<String, String> newPropertyMap(TLGRecord pRecord) {
+        if ((symbolTable != null) && (nodeColumns == null)) return new TLGSymbolPropertyMap(symbolTable, pRecord.getPropertyCount());
+        return new HashMap<>();
+    }
+
+    /**
+     * @param pProperties null to only count the properties
+     */
+    private static void putProperties(TLGRecord pRecord, Map<String, String> pProperties, Map<String, TObjectLongHashMap<String>> pAttributeCountMap) {
+        for (int i=0; i<pRecord.getPropertyCount(); i++) {
+            String lKey = pRecord.getPropertyKey(i);
+            String lValue = pRecord.getPropertyValue(i);
+            if (pProperties != null) pProperties.put(lKey, lValue);
+            TObjectLongHashMap<String> lMap = pAttributeCountMap.get(lKey);
+            if (lMap == null) {
+                lMap = new TObjectLongHashMap<>();
+                pAttributeCountMap.put(lKey, lMap);
+            }
+            lMap.adjustOrPutValue(lValue, 1, 1);
+        }
+    }
+
+    /**
+     * Compute the attribute counts, nodeTypes, edgeTypes and languageTypeNameIndex of a graph loaded with
+     * PropertyStorage.LAZY from the raw lines, as they were read. Decoded property maps are not touched.
+     */
+    protected synchronized void countLazyProperties() {
+        if (!countsPending) return;
+        try {
+            TLGVertexRecord lVertex = new TLGVertexRecord();
+            nodeArena.forEach((pPage, pFrom, pTo) -> {
+                lVertex.setLine(pPage, pFrom, pTo);
+                putProperties(lVertex, null, nodeAttributeCountMap);
+                TLGNode lNode = nodeMap.get(lVertex.getId());
+                if (lNode != null) indexNode(lNode, lVertex.getProperty("Type", null));
+            });
+            TLGRecord lEdge = new TLGRecord() {};
+            if (edgeArena != null) edgeArena.forEach((pPage, pFrom, pTo) -> {
+                lEdge.setBuffer(pPage, pFrom, pTo);
+                putProperties(lEdge, null, edgeAttributeCountMap);
+                String lType = lEdge.getProperty("Type", null);
+                if ((lType != null) && (lType.length() > 0)) {
+                    edgeTypes.adjustOrPutValue(lType, 1, 1);
                 }
-            }
+            });
+        }
+        catch (IOException e) {
+            // The lines have been parsed before
+            throw new IllegalStateException(e);
         }
-        logger.info(lEdgesRead+" edges read");
-        lReader.close();
+        countsPending = false;
     }
 
     /**
-     * Get Diameter of Graph multithreaded. Results are cached and computed only once.
+     * Get Diameter of Graph, the longest shortest path between two connected nodes. Results are cached and computed
+     * only once. Exact, but usually with only a few breadth first searches, see getDiameterBounds().
      * @param pDirectedness
      * @return Diameter of Graph
      */
@@ -239,97 +648,109 @@ public class TLGGraph {
                 return lCachedResult;
             }
         }
-        int lResult = 0;
-        long lMax = nodeMap.size();
-        int lCurrentPerc = 0;
-        long lCounter = 0;
-        for (TLGNode lNode:nodeMap.values()) {
-            lCounter++;
-            int lPerc = (int)Math.floor(lCounter*100/(double)lMax);
-            if (lPerc != lCurrentPerc) {
-                logger.info("Diameter: "+lPerc+"%");
-                lCurrentPerc = lPerc;
-            }
-            List<TLGNode> lQueue = new ArrayList<>();
-            List<Integer> lDepthQueue = new ArrayList<>();
-            Set<TLGNode> lKnown = new HashSet<>();
-            lQueue.add(lNode);
-            lDepthQueue.add(0);
-            lKnown.add(lNode);
-            while (lQueue.size() > 0) {
-                TLGNode lCurrent = lQueue.remove(lQueue.size()-1);
-                int lCurrentDepth = lDepthQueue.remove(lDepthQueue.size()-1);
-                lResult = Math.max(lResult, lCurrentDepth);
-                for (TLGNode lOther:lCurrent.getLinkedNodes(pDirectedness.equals(Directedness.DIRECTED) ? Direction.OUT : Direction.ANY)) {
-                    if (!lKnown.contains(lOther)) {
-                        lQueue.add(0, lOther);
-                        lDepthQueue.add(0, lCurrentDepth+1);
-                        lKnown.add(lOther);
-                    }
-                }
-            }
-        }
-        synchronized (diameterCache) {
-            diameterCache.put(pDirectedness, lResult);
-        }
-        return lResult;
+        return getDiameterBounds(pDirectedness, 0, null).getLower();
     }
 
     /**
-     * Get Diameter of Graph multithreaded. Results are cached and computed only once.
+     * Same as getDiameter(), which no longer needs a search from every node and thread
      * @param pDirectedness
      * @return Diameter of Graph
      */
     public int getDiameterMT(Directedness pDirectedness) {
+        return getDiameter(pDirectedness);
+    }
+
+    /**
+     * Diameter by eccentricity bounds (Takes-Kosters for UNDIRECTED, bounds over the strongly connected components for
+     * DIRECTED), see TLGDiameter. An exact result is cached for getDiameter().
+     * @param pTimeLimit Milliseconds after which the bounds found so far are returned, 0 for no limit
+     * @param pListener Receives the bounds after every round of searches, may be null
+     * @return The diameter if getLower() equals getUpper(), otherwise the bounds found within the time limit
+     */
+    public TLGDiameterBounds getDiameterBounds(Directedness pDirectedness, long pTimeLimit, Consumer<TLGDiameterBounds> pListener) {
         synchronized (diameterCache) {
             Integer lCachedResult = diameterCache.get(pDirectedness);
             if (lCachedResult != null) {
-                return lCachedResult;
+                TLGDiameterBounds lResult = new TLGDiameterBounds(lCachedResult, lCachedResult, 0, 0);
+                if (pListener != null) pListener.accept(lResult);
+                return lResult;
             }
         }
-        logger.info("Diameter: 0%");
-        int lResult = 0;
-        int lMaxThreads = MAX_THREADS;
-        final TLGGraph _this = this;
-        List<Set<TLGNode>> lPartition = new ArrayList<>();
-        for (int i=0; i<lMaxThreads; i++) {
-            lPartition.add(new HashSet<>());
-        }
-        int lCycle = 0;
-        for (TLGNode lNode:nodeMap.values()) {
-            lPartition.get(lCycle).add(lNode);
-            lCycle++;
-            if (lCycle == lPartition.size()) lCycle = 0;
-        }
-        List<DiameterThread> lThreads = new ArrayList<>();
-        for (Set<TLGNode> p:lPartition) {
-            DiameterThread lDiameterThread = new DiameterThread(this, p, pDirectedness);
-            lThreads.add(lDiameterThread);
-            lDiameterThread.start();
-        }
-        while (lThreads.size() > 0) {
-            Iterator<DiameterThread> i = lThreads.iterator();
-            while (i.hasNext()) {
-                DiameterThread lDiameterThread = i.next();
-                if (lDiameterThread.getState().equals(Thread.State.TERMINATED)) {
-                    logger.info("Diameter: "+((lMaxThreads-lThreads.size())*100d/lMaxThreads)+"%");
-                    i.remove();
-                    lResult = Math.max(lResult, lDiameterThread.diameter);
-                }
+        TLGDiameterBounds lResult = new TLGDiameter(freeze(), pDirectedness, pTimeLimit, pListener).compute();
+        if (lResult.isExact()) {
+            synchronized (diameterCache) {
+                diameterCache.put(pDirectedness, lResult.getLower());
             }
-            synchronized (this) {
-                try {
-                    this.wait(100);
-                }
-                catch (InterruptedException e) {
-                }
+        }
+        return lResult;
+    }
+
+    /**
+     * @return Compact view of the current topology, see TLGFrozenGraph
+     */
+    public TLGFrozenGraph freeze() {
+        return new TLGFrozenGraph(this, false);
+    }
+
+    /**
+     * @param pEdgeTypes Also store the Type property of every edge as int code
+     */
+    public TLGFrozenGraph freeze(boolean pEdgeTypes) {
+        return new TLGFrozenGraph(this, pEdgeTypes);
+    }
+
+    /**
+     * Relabel the nodes in the order pOrdering, which becomes the iteration order of getNodes() and the ordinal order
+     * of freeze(). With BFS or RCM nodes which are close in the graph get close ordinals, so the traversals of the
+     * analytics on the frozen view touch fewer cache lines. The edge arrays of the nodes are reallocated in the new
+     * order as well. Use saveNodeOrder() to persist the order and map ordinals back to ids later.
+     */
+    public void reorder(Ordering pOrdering) {
+        TLGFrozenGraph lFrozenGraph = freeze();
+        int[] lOrder = TLGNodeOrdering.order(lFrozenGraph, pOrdering);
+        TLGNode[] lNodes = new TLGNode[lOrder.length];
+        for (int i=0; i<lOrder.length; i++) {
+            lNodes[i] = lFrozenGraph.getNode(lOrder[i]);
+        }
+        setNodeOrder(lNodes);
+    }
+
+    /**
+     * Apply an order written by saveNodeOrder(). Ids which are not part of the graph are ignored, nodes which are not
+     * listed follow in their current order.
+     */
+    public void reorder(File pFile) throws IOException {
+        Set<TLGNode> lNodes = new LinkedHashSet<>();
+        try (BufferedReader lReader = new BufferedReader(new InputStreamReader(new FileInputStream(pFile), StandardCharsets.UTF_8))) {
+            String lLine;
+            while ((lLine = lReader.readLine()) != null) {
+                TLGNode lNode = nodeMap.get(lLine);
+                if (lNode != null) lNodes.add(lNode);
             }
         }
-        logger.info("Diameter: 100%");
-        synchronized (diameterCache) {
-            diameterCache.put(pDirectedness, lResult);
+        lNodes.addAll(nodeMap.values());
+        setNodeOrder(lNodes.toArray(new TLGNode[0]));
+    }
+
+    /**
+     * Write the ids of the nodes in the order of getNodes(), one per line. Line i is the id of ordinal i of freeze().
+     */
+    public void saveNodeOrder(File pFile) throws IOException {
+        try (PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), StandardCharsets.UTF_8))) {
+            for (TLGNode lNode:nodeMap.values()) {
+                lWriter.print(lNode.getId());
+                lWriter.print('\n');
+            }
         }
-        return lResult;
+    }
+
+    private void setNodeOrder(TLGNode[] pNodes) {
+        Map<String, TLGNode> lNodeMap = new LinkedHashMap<>(pNodes.length*2);
+        for (TLGNode lNode:pNodes) {
+            lNodeMap.put(lNode.getId(), lNode);
+            lNode.trimEdges();
+        }
+        nodeMap = lNodeMap;
     }
 
     public TLGNode createNode(TLGNode pNodeFromOtherGraph) {
@@ -340,6 +761,12 @@ public class TLGGraph {
         }
         TLGNode lNode = new TLGNode(this, pNodeFromOtherGraph.id, new HashMap<>(pNodeFromOtherGraph.getProperties()));
         nodeMap.put(lNode.getId(), lNode);
+        synchronized (this) {
+            for (TLGIndex<?> lIndex:indexes.values()) {
+                TLGIndex<TLGNode> lNodeIndex = lIndex.as(TLGNode.class);
+                if ((lNodeIndex != null) && lNodeIndex.isBuilt()) lNodeIndex.add(lNode);
+            }
+        }
         return lNode;
     }
 
@@ -348,7 +775,9 @@ public class TLGGraph {
     }
 
     public TLGNode getBFNodeByTypeAndName(String pLanguage, String pPOS, String pName) {
-        return languageTypeNameIndex.get(pLanguage+"\t"+pPOS+"\t"+pName);
+        List<TLGNode> lResult = languageTypeNameIndex.get(pLanguage, pPOS, pName);
+        // The last node wins, as with the former map
+        return lResult.isEmpty() ? null : lResult.get(lResult.size()-1);
     }
 
     public TLGNode getNodeByID(String pID) {
@@ -356,56 +785,9 @@ public class TLGGraph {
     }
 
     public void saveSubGraph(File pFile, Set<TLGNode> pIncludedNodes, boolean pUndirectedEdges) throws IOException {
-        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
-        lWriter.print(head);
-        lWriter.println("Vertices:");
-        int lNodeCounter = 0;
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            StringBuilder lLine = new StringBuilder();
-            lLine.append(lNode.id+"¤");
-            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
-                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
-            }
-            lWriter.println(lLine.toString());
-        }
-        logger.info("Exporting Nodes: "+lNodeCounter);
-        lWriter.println("Edges:");
-        lNodeCounter = 0;
-        Set<String> lSkipSet = new HashSet<>();
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                if (pIncludedNodes.contains(lEdge.target)) {
-                    String lKey = null;
-                    if (lEdge.source.id.compareTo(lEdge.target.id) < 0) {
-                        lKey = lEdge.source.id+"\t"+lEdge.target.id;
-                    }
-                    else {
-                        lKey = lEdge.target.id+"\t"+lEdge.source.id;
-                    }
-                    if (!pUndirectedEdges || (!lSkipSet.contains(lKey))) {
-                        lSkipSet.add(lKey);
-                        StringBuilder lLine = new StringBuilder();
-                        lLine.append(lEdge.source.id + "¤");
-                        lLine.append(lEdge.target.id + "¤");
-                        lLine.append("1.0¤");
-                        for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
-                            lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
-                        }
-                        lWriter.println(lLine.toString());
-                    }
-                }
-            }
-        }
-        logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-        lWriter.close();
+        TLGGraphWriter lWriter = new TLGGraphWriter.BorlandFormat(head, pIncludedNodes, false);
+        lWriter.deduplication = pUndirectedEdges ? TLGGraphWriter.Deduplication.UNDIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
     }
 
     /**
@@ -418,7 +800,8 @@ public class TLGGraph {
         PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
         Set<TLGNode> lNodes = new HashSet<>(nodeMap.values());
         for (TLGNode lNode:lNodes) {
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
+            for (int e=0; e<lNode.getOutDegree(); e++) {
+                TLGEdge lEdge = lNode.getOutEdge(e);
                 String lKey = lEdge.getSource().getId()+" d "+lEdge.getTarget().getId();
                 lWriter.println(lKey);
             }
@@ -426,317 +809,244 @@ public class TLGGraph {
         lWriter.close();
     }
 
+    /**
+     * Save as binary snapshot which can be opened with fromSnapshotFile(File) much faster than a BF file
+     */
+    public void saveSnapshot(File pFile) throws IOException {
+        TLGSnapshot.save(this, pFile);
+    }
+
     public void saveGraph(File pFile) throws IOException {
-        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
-        lWriter.print(head);
-        lWriter.println("Vertices:");
-        int lNodeCounter = 0;
-        Set<TLGNode> lNodes = new HashSet<>(nodeMap.values());
-        for (TLGNode lNode:lNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Nodes: "+lNodeCounter+"/"+lNodes.size());
-            }
-            StringBuilder lLine = new StringBuilder();
-            lLine.append(lNode.id+"¤");
-            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
-                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
-            }
-            lWriter.println(lLine.toString());
+        TLGGraphWriter lWriter = new TLGGraphWriter.BorlandFormat(head, nodeMap.values(), true);
+        lWriter.includedTargetsOnly = false;
+        lWriter.write(pFile, MAX_THREADS);
+    }
+
+    /**
+     * @return Weakly connected components sorted by descending size
+     */
+    public List<Set<TLGNode>> getWeaklyConnectedComponents() {
+        TLGFrozenGraph lFrozenGraph = freeze();
+        int[] lLabels = lFrozenGraph.getWeaklyConnectedComponents(Runtime.getRuntime().availableProcessors());
+        int lComponents = 0;
+        for (int lLabel:lLabels) {
+            lComponents = Math.max(lComponents, lLabel+1);
         }
-        logger.info("Exporting Nodes: "+lNodeCounter);
-        lWriter.println("Edges:");
-        lNodeCounter = 0;
-        for (TLGNode lNode:lNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+lNodes.size());
-            }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                StringBuilder lLine = new StringBuilder();
-                lLine.append(lEdge.source.id + "¤");
-                lLine.append(lEdge.target.id + "¤");
-                lLine.append(lEdge.similarity+"¤");
-                for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
-                    lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
-                }
-                lWriter.println(lLine.toString());
-            }
+        int[] lSizes = new int[lComponents];
+        for (int lLabel:lLabels) {
+            lSizes[lLabel]++;
         }
-        logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+lNodes.size());
-        lWriter.close();
+        List<Set<TLGNode>> lResult = new ArrayList<>(lComponents);
+        for (int c=0; c<lComponents; c++) {
+            lResult.add(new HashSet<>(lSizes[c]*4/3+1));
+        }
+        for (int i=0; i<lLabels.length; i++) {
+            lResult.get(lLabels[i]).add(lFrozenGraph.getNode(i));
+        }
+        return lResult;
     }
 
-    public List<Set<TLGNode>> getWeaklyConnectedComponents() {
-        TObjectIntHashMap<TLGNode> lNodeComponentMap = new TObjectIntHashMap<>();
-        for (TLGNode lNode:getNodes()) {
-            lNodeComponentMap.put(lNode, -1);
-        }
-        int lClusterCounter = -1;
-        List<Set<TLGNode>> lResult = new ArrayList<>();
-        Set<TLGNode> lCurrentComponent = null;
-        for (TLGNode lNode:getNodes()) {
-            if (lNodeComponentMap.get(lNode) == -1) {
-                lClusterCounter++;
-                lCurrentComponent = new HashSet<>();
-                lResult.add(lCurrentComponent);
-                List<TLGNode> lQueue = new ArrayList<>();
-                Set<TLGNode> lKnown = new HashSet<>();
-                lQueue.add(lNode);
-                lKnown.add(lNode);
-                while (lQueue.size() > 0) {
-                    TLGNode lSub = lQueue.remove(lQueue.size()-1);
-                    lNodeComponentMap.put(lSub, lClusterCounter);
-                    lCurrentComponent.add(lSub);
-                    for (TLGNode lOther:lSub.getLinkedNodes(Direction.ANY)) {
-                        if (!lKnown.contains(lOther)) {
-                            lKnown.add(lOther);
-                            lQueue.add(0, lOther);
-                        }
-                    }
+    /**
+     * Weakly connected components without materializing node sets, see TLGFrozenGraph.getWeaklyConnectedComponents()
+     * @return Component number per node ordinal of freeze(), numbered by descending size
+     */
+    public int[] getWeaklyConnectedComponentLabels() {
+        return freeze().getWeaklyConnectedComponents(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Strongly connected components along the OUT edges, see TLGFrozenGraph.getStronglyConnectedComponents()
+     * @return Component number per node ordinal of freeze(), every edge between two components leads from a higher
+     * to a lower number
+     */
+    public int[] getStronglyConnectedComponentLabels() {
+        return freeze().getStronglyConnectedComponents();
+    }
+
+    /**
+     * Condensation of this graph as a new directed graph with one node per strongly connected component, in the
+     * order and with the ids of getStronglyConnectedComponentLabels(), hence the sinks come first. A node has the
+     * properties Size, the number of its members, and Representative, the id of its first member in the order of
+     * getNodes(). Parallel edges between two components are merged into one edge with their number as property
+     * Count, edges within a component are left out.
+     */
+    public TLGGraph getCondensation() {
+        TLGFrozenGraph lFrozenGraph = freeze();
+        int[] lLabels = lFrozenGraph.getStronglyConnectedComponents();
+        int lSize = lFrozenGraph.size();
+        int lComponents = 0;
+        for (int lLabel:lLabels) {
+            lComponents = Math.max(lComponents, lLabel+1);
+        }
+        // Members grouped by component, in ordinal order
+        int[] lOffsets = new int[lComponents+1];
+        for (int lLabel:lLabels) {
+            lOffsets[lLabel+1]++;
+        }
+        for (int c=0; c<lComponents; c++) {
+            lOffsets[c+1] += lOffsets[c];
+        }
+        int[] lMembers = new int[lSize];
+        int[] lPositions = Arrays.copyOf(lOffsets, lComponents);
+        for (int v=0; v<lSize; v++) {
+            lMembers[lPositions[lLabels[v]]++] = v;
+        }
+        TLGGraph lResult = new TLGGraph();
+        lResult.directedness = Directedness.DIRECTED;
+        lResult.head = "directed\nSimilarityGraph\nVertex Attributes:[Size¤String];[Representative¤String];\nEdge Attributes:[Count¤String];\nProbabilityMassOfGraph: 0\n";
+        lResult.nodeMap = new LinkedHashMap<>(lComponents*2);
+        TLGNode[] lNodes = new TLGNode[lComponents];
+        for (int c=0; c<lComponents; c++) {
+            Map<String, String> lProperties = new HashMap<>();
+            lProperties.put("Size", Integer.toString(lOffsets[c+1]-lOffsets[c]));
+            lProperties.put("Representative", lFrozenGraph.getNode(lMembers[lOffsets[c]]).getId());
+            lNodes[c] = new TLGNode(lResult, Integer.toString(c), lProperties);
+            lResult.nodeMap.put(lNodes[c].getId(), lNodes[c]);
+            countProperties(lProperties, lResult.nodeAttributeCountMap);
+        }
+        int[] lOutOffsets = lFrozenGraph.getOutOffsets();
+        int[] lOutTargets = lFrozenGraph.getOutTargets();
+        int[] lCounts = new int[lComponents];
+        int[] lTargets = new int[lComponents];
+        for (int c=0; c<lComponents; c++) {
+            int lTargetCount = 0;
+            for (int k=lOffsets[c]; k<lOffsets[c+1]; k++) {
+                int v = lMembers[k];
+                for (int e=lOutOffsets[v]; e<lOutOffsets[v+1]; e++) {
+                    int lTarget = lLabels[lOutTargets[e]];
+                    if (lTarget == c) continue;
+                    if (lCounts[lTarget]++ == 0) lTargets[lTargetCount++] = lTarget;
                 }
             }
+            Arrays.sort(lTargets, 0, lTargetCount);
+            for (int i=0; i<lTargetCount; i++) {
+                TLGEdge lEdge = new TLGEdge(lResult, lNodes[c], lNodes[lTargets[i]]);
+                lEdge.properties.put("Count", Integer.toString(lCounts[lTargets[i]]));
+                countProperties(lEdge.properties, lResult.edgeAttributeCountMap);
+                lCounts[lTargets[i]] = 0;
+            }
         }
-        lResult.sort((s1,s2)->Integer.compare(s2.size(), s1.size()));
         return lResult;
     }
 
+    private static void countProperties(Map<String, String> pProperties, Map<String, TObjectLongHashMap<String>> pAttributeCountMap) {
+        for (Map.Entry<String, String> lEntry:pProperties.entrySet()) {
+            pAttributeCountMap.computeIfAbsent(lEntry.getKey(), k -> new TObjectLongHashMap<>()).adjustOrPutValue(lEntry.getValue(), 1, 1);
+        }
+    }
+
     public void saveSubGraph(File pFile, Set<TLGNode> pIncludedNodes, Set<String> pEdgeTypes, boolean pNormalizeParallelEdges) throws IOException {
-        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
-        lWriter.print(head);
-        lWriter.println("Vertices:");
-        int lNodeCounter = 0;
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            StringBuilder lLine = new StringBuilder();
-            lLine.append(lNode.id+"¤");
-            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
-                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
-            }
-            lWriter.println(lLine.toString());
-        }
-        logger.info("Exporting Nodes: "+lNodeCounter);
-        lWriter.println("Edges:");
-        lNodeCounter = 0;
-        Set<String> lEdgeKeeper = new HashSet<>();
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                if (pEdgeTypes.contains(lEdge.getProperty("Type", ""))) {
-                    if (pIncludedNodes.contains(lEdge.target)) {
-                        String lKey = lEdge.source.id+"\t"+lEdge.target.id;
-                        if (!lEdgeKeeper.contains(lKey) || !pNormalizeParallelEdges) {
-                            lEdgeKeeper.add(lKey);
-                            StringBuilder lLine = new StringBuilder();
-                            lLine.append(lEdge.source.id + "¤");
-                            lLine.append(lEdge.target.id + "¤");
-                            lLine.append("1.0¤");
-                            for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
-                                lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
-                            }
-                            lWriter.println(lLine.toString());
-                        }
-                    }
-                }
-            }
+        TLGGraphWriter lWriter = new TLGGraphWriter.BorlandFormat(head, pIncludedNodes, false);
+        setEdgeTypes(lWriter, pEdgeTypes);
+        lWriter.deduplication = pNormalizeParallelEdges ? TLGGraphWriter.Deduplication.DIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
+    }
+
+    /**
+     * Restrict pWriter to pTypes, by mask if all of them have a code, else by the Type property of every edge
+     */
+    private void setEdgeTypes(TLGGraphWriter pWriter, Set<String> pTypes) {
+        if (getUncodedEdgeTypes(pTypes).isEmpty()) {
+            pWriter.edgeTypeMask = getEdgeTypeMask(pTypes);
+        }
+        else {
+            pWriter.edgeTypeNames = pTypes;
         }
-        logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-        lWriter.close();
+    }
+
+    /**
+     * @param pEdgeTypeMask Only edges with these types are written, see getEdgeTypeMask()
+     */
+    public void saveSubGraph(File pFile, Set<TLGNode> pIncludedNodes, long pEdgeTypeMask, boolean pNormalizeParallelEdges) throws IOException {
+        TLGGraphWriter lWriter = new TLGGraphWriter.BorlandFormat(head, pIncludedNodes, false);
+        lWriter.edgeTypeMask = pEdgeTypeMask;
+        lWriter.deduplication = pNormalizeParallelEdges ? TLGGraphWriter.Deduplication.DIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
     }
 
     public void saveSubGraphGML(File pFile, Set<TLGNode> pIncludedNodes, Set<String> pEdgeTypes, boolean pNormalizeParallelEdges) throws IOException {
-        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
-        lWriter.println("graph [");
-        int lNodeCounter = 0;
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            String lName = lNode.getProperty("Name", "");
-            lWriter.println("node [");
-            lWriter.println("id "+lNode.id);
-            lWriter.println("label \""+lName.replace("\"", "'")+"\"");
-            lWriter.println("]");
-        }
-        logger.info("Exporting Nodes: "+lNodeCounter);
-        lNodeCounter = 0;
-        Set<String> lEdgeKeeper = new HashSet<>();
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                if (pEdgeTypes.contains(lEdge.getProperty("Type", ""))) {
-                    if (pIncludedNodes.contains(lEdge.target)) {
-                        String lKey = lEdge.source.id+"\t"+lEdge.target.id;
-                        if (!lEdgeKeeper.contains(lKey) || !pNormalizeParallelEdges) {
-                            lEdgeKeeper.add(lKey);
-                            lWriter.println("edge [");
-                            lWriter.println("source "+lEdge.source.id);
-                            lWriter.println("target "+lEdge.target.id);
-                            lWriter.println("]");
-                        }
-                    }
-                }
-            }
-        }
-        lWriter.println("]");
-        logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-        lWriter.close();
+        TLGGraphWriter lWriter = new TLGGraphWriter.GML(pIncludedNodes, "Name", false, false);
+        setEdgeTypes(lWriter, pEdgeTypes);
+        lWriter.deduplication = pNormalizeParallelEdges ? TLGGraphWriter.Deduplication.DIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
+    }
+
+    /**
+     * @param pEdgeTypeMask Only edges with these types are written, see getEdgeTypeMask()
+     */
+    public void saveSubGraphGML(File pFile, Set<TLGNode> pIncludedNodes, long pEdgeTypeMask, boolean pNormalizeParallelEdges) throws IOException {
+        TLGGraphWriter lWriter = new TLGGraphWriter.GML(pIncludedNodes, "Name", false, false);
+        lWriter.edgeTypeMask = pEdgeTypeMask;
+        lWriter.deduplication = pNormalizeParallelEdges ? TLGGraphWriter.Deduplication.DIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
     }
 
+    /**
+     * @return Average local clustering coefficient of the nodes with at least two distinct neighbours, directions
+     * ignored
+     */
     public double getClusteringCoefficientWattsStrogatz() {
-        double lResult = 0;
-        long lNodeCount = 0;
-        long lCounter = 0;
-        int lLastPerc = -1;
-        for (TLGNode lNode:getNodes()) {
-            lCounter++;
-            int lPerc = (int)Math.floor((lCounter * 100d)/getNodes().size());
-            if (lPerc != lLastPerc) {
-                logger.info("ClusteringCoefficientWattsStrogatz: "+lPerc+"%");
-                lLastPerc = lPerc;
-            }
-            Set<TLGNode> lNeighbours = lNode.getLinkedNodes(Direction.ANY);
-            lNeighbours.remove(lNode); // Paranoia- should not be necessary
-            long lNeighbourCount = lNeighbours.size();
-            if (lNeighbourCount >= 2) {
-                long lMaxEdges = (lNeighbourCount * (lNeighbourCount - 1)) / 2;
-                Set<String> lEdges = new HashSet<>();
-                for (TLGNode lNeighbour : lNeighbours) {
-                    for (TLGEdge lEdge : lNeighbour.getEdges(Direction.OUT)) {
-                        if (lNeighbours.contains(lEdge.getTarget()) && !lEdge.getSource().equals(lEdge.getTarget())) {
-                            if (lEdge.getSource().getId().compareTo(lEdge.getTarget().getId()) < 0) {
-                                lEdges.add(lEdge.getSource().getId()+"\t"+lEdge.getTarget().getId());
-                            }
-                            else {
-                                lEdges.add(lEdge.getTarget().getId()+"\t"+lEdge.getSource().getId());
-                            }
-                        }
-                    }
-                }
-                lResult += lEdges.size() / (double) lMaxEdges;
-                lNodeCount++;
-            }
-        }
-        return lResult/lNodeCount;
+        return countTriangles().getClusteringCoefficientWattsStrogatz();
+    }
+
+    /**
+     * Triangles per node on all cores, also gives the local clustering coefficients and the transitivity. The node
+     * ordinals are those of freeze().
+     */
+    public TLGTriangleCounts countTriangles() {
+        return new TLGTriangleCounter(freeze()).run();
     }
 
     public void saveSubGraphGML(File pFile, Set<TLGNode> pIncludedNodes, boolean pUndirectedEdges) throws IOException {
-        long lEdgesRead = 0;
-        long lExportedEdgeCounter = 0;
-        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("ISO-8859-1")));
-        lWriter.println("graph [");
-        int lNodeCounter = 0;
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            String lName = lNode.getProperty("Label", "");
-            lWriter.println("node [");
-            lWriter.println("id "+lNode.id);
-            lWriter.println("label \""+lName.replace("\"", "'").replace("&", "&amp;")+"\"");
-            lWriter.println("]");
-        }
-        logger.info("Exporting Nodes: "+lNodeCounter);
-        lNodeCounter = 0;
-        Set<String> lSkipSet = new HashSet<>();
-        for (TLGNode lNode:pIncludedNodes) {
-            lNodeCounter++;
-            if (lNodeCounter % 1000 == 0) {
-                logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-            }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                if (pIncludedNodes.contains(lEdge.target)) {
-                    lEdgesRead++;
-                    String lKey = null;
-                    if (lEdge.source.id.compareTo(lEdge.target.id) < 0) {
-                        lKey = lEdge.source.id+"\t"+lEdge.target.id;
-                    }
-                    else {
-                        lKey = lEdge.target.id+"\t"+lEdge.source.id;
-                    }
-                    if (!pUndirectedEdges || (!lSkipSet.contains(lKey))) {
-                        lExportedEdgeCounter++;
-                        lSkipSet.add(lKey);
-                        lWriter.println("edge [");
-                        lWriter.println("source " + lEdge.source.id);
-                        lWriter.println("target " + lEdge.target.id);
-                        lWriter.println("]");
-                    }
-                }
-            }
-        }
-        lWriter.println("]");
-        logger.info("Exporting Edges of Nodes: "+lNodeCounter+"/"+pIncludedNodes.size());
-        logger.info("Exported "+lExportedEdgeCounter+" edges of "+lEdgesRead+" potential edges");
-        lWriter.close();
+        TLGGraphWriter lWriter = new TLGGraphWriter.GML(pIncludedNodes, "Label", true, true);
+        lWriter.deduplication = pUndirectedEdges ? TLGGraphWriter.Deduplication.UNDIRECTED : TLGGraphWriter.Deduplication.NONE;
+        lWriter.write(pFile, MAX_THREADS);
     }
 
     public static String getDecimalFormat(double pDouble) {
         return new DecimalFormat("#.########").format(pDouble).replace(",", ".");
     }
 
+    /**
+     * @return Undirected diameter and the average distance over all node pairs, unreachable pairs count as
+     * distance 0
+     */
     public double[] getDiameterAndGeodesicDistanceUnDirected() throws Exception {
-        List<TLGNode> lNodes = new ArrayList<>(getNodes());
-        long lDistanceSum = 0;
-        long lNodePairs = 0;
-        long lTotal = (lNodes.size() * (lNodes.size()-1))/2;
-        int lDiameter = 0;
-        int lLastPerc = 0;
-        for (int i=0; i<lNodes.size()-1; i++) {
-            for (int k=i+1; k<lNodes.size(); k++) {
-                TLGNode lStart = lNodes.get(i);
-                TLGNode lEnd = lNodes.get(k);
-                Set<TLGNode> lKnown = new HashSet<>();
-                LinkedList<TLGNode> lQueue = new LinkedList<>();
-                LinkedList<Integer> lDistQueue = new LinkedList<>();
-                lKnown.add(lStart);
-                lQueue.add(lStart);
-                lDistQueue.add(0);
-                int lDistance = 0;
-                while (lQueue.size() > 0) {
-                    TLGNode lNode = lQueue.remove(lQueue.size()-1);
-                    int lDist = lDistQueue.remove(lDistQueue.size()-1);
-                    if (lNode.equals(lEnd)) {
-                        lDistance = lDist;
-                        break;
-                    }
-                    for (TLGNode lOther:lNode.getLinkedNodes(Direction.ANY)) {
-                        if (!lKnown.contains(lOther)) {
-                            lKnown.add(lOther);
-                            lQueue.add(0, lOther);
-                            lDistQueue.add(0, lDist+1);
-                        }
-                    }
-                }
-                lDistanceSum += lDistance;
-                lNodePairs++;
-                if (lDistance > lDiameter) {
-                    lDiameter = lDistance;
-                }
-                int lPerc = (int)Math.round((lNodePairs * 100)/(double)lTotal);
-                if (lPerc != lLastPerc) {
-                    lLastPerc = lPerc;
-                    System.out.println(lPerc+"%, Diameter: "+lDiameter);
-                }
-            }
-        }
-        return new double[]{lDiameter, lDistanceSum/(double)lNodePairs};
+        TLGFrozenGraph lFrozenGraph = freeze();
+        int lSize = lFrozenGraph.size();
+        int[] lLastPerc = new int[1];
+        TLGDistanceDistribution lDistribution = new TLGMultiSourceBFS(lFrozenGraph, Direction.ANY).setListener(pDistribution -> {
+            int lPerc = (int)Math.round((pDistribution.getSources() * 100)/(double)lSize);
+            if (lPerc != lLastPerc[0]) {
+                lLastPerc[0] = lPerc;
+                logger.info(lPerc+"%, Diameter: "+pDistribution.getMaxDistance());
+            }
+        }).run();
+        // Every unordered pair has been counted from both ends
+        long lNodePairs = (lSize * (long)(lSize-1))/2;
+        return new double[]{lDistribution.getMaxDistance(), (lDistribution.getDistanceSum()/2)/(double)lNodePairs};
     }
 
     public List<List<TLGNode>> computeEccentricity(TLGNode pStartNode, Set<String> pEdgeTypes) {
+        if (getUncodedEdgeTypes(pEdgeTypes).isEmpty()) return computeEccentricity(pStartNode, getEdgeTypeMask(pEdgeTypes), null);
+        return computeEccentricity(pStartNode, ALL_EDGE_TYPES, pEdgeTypes);
+    }
+
+    /**
+     * @param pEdgeTypeMask Only OUT edges with these types are followed, see getEdgeTypeMask()
+     * @return A shortest path to every node at maximum distance from pStartNode
+     */
+    public List<List<TLGNode>> computeEccentricity(TLGNode pStartNode, long pEdgeTypeMask) {
+        return computeEccentricity(pStartNode, pEdgeTypeMask, null);
+    }
+
+    /**
+     * @param pEdgeTypeNames Null or the types to follow by the Type property, for types without a code
+     */
+    private List<List<TLGNode>> computeEccentricity(TLGNode pStartNode, long pEdgeTypeMask, Set<String> pEdgeTypeNames) {
         List<TLGNode> lQueue = new ArrayList<>();
-        List<Integer> lDistanceQueue = new ArrayList<>();
+        TIntArrayList lDistanceQueue = new TIntArrayList();
+        TIntArrayList lPositions = new TIntArrayList();
         Set<TLGNode> lKnown = new HashSet<>();
         Map<TLGNode, TLGNode> lPredecessorMap = new HashMap<>();
         lQueue.add(pStartNode);
@@ -744,9 +1054,9 @@ public class TLGGraph {
         lKnown.add(pStartNode);
         Set<TLGNode> lMaxSet = new HashSet<>();
         int lMaxDistance = 0;
-        while (lQueue.size() > 0) {
-            TLGNode lNode = lQueue.remove(lQueue.size()-1);
-            int lDistance = lDistanceQueue.remove(lDistanceQueue.size()-1);
+        for (int q=0; q<lQueue.size(); q++) {
+            TLGNode lNode = lQueue.get(q);
+            int lDistance = lDistanceQueue.get(q);
             if (lDistance > lMaxDistance) {
                 lMaxDistance = lDistance;
                 lMaxSet.clear();
@@ -755,15 +1065,15 @@ public class TLGGraph {
             else if (lDistance == lMaxDistance) {
                 lMaxSet.add(lNode);
             }
-            for (TLGEdge lEdge:lNode.getEdges(Direction.OUT)) {
-                if (pEdgeTypes.contains(lEdge.getProperty("Type", ""))) {
-                    TLGNode lTarget = lEdge.getTarget();
-                    if (!lKnown.contains(lTarget)) {
-                        lQueue.add(0, lTarget);
-                        lDistanceQueue.add(0, lDistance+1);
-                        lKnown.add(lTarget);
-                        lPredecessorMap.put(lTarget, lNode);
-                    }
+            int lCount = lNode.getEdgePositions(true, pEdgeTypeMask, lPositions);
+            for (int e=0; e<lCount; e++) {
+                if ((pEdgeTypeNames != null) && !pEdgeTypeNames.contains(lNode.getOutEdge(lPositions.getQuick(e)).getProperty("Type", ""))) continue;
+                TLGNode lTarget = lNode.getNeighbour(lPositions.getQuick(e));
+                if (!lKnown.contains(lTarget)) {
+                    lQueue.add(lTarget);
+                    lDistanceQueue.add(lDistance+1);
+                    lKnown.add(lTarget);
+                    lPredecessorMap.put(lTarget, lNode);
                 }
             }
         }
@@ -781,69 +1091,49 @@ public class TLGGraph {
         return lResult;
     }
 
+    /**
+     * Same as getDiameterAndGeodesicDistanceUnDirectedSampled(pSamples, 0)
+     */
     public double[] getDiameterAndGeodesicDistanceUnDirectedSampled(long pSamples) throws Exception {
-        List<TLGNode> lNodes = new ArrayList<>(getNodes());
-        Set<String> lRandomPairs = new HashSet<>();
-        while (lRandomPairs.size() < pSamples) {
-            int lStartIndex = (int)Math.floor(Math.random()*lNodes.size());
-            int lEndIndex = (int)Math.floor(Math.random()*lNodes.size());
-            if (lStartIndex != lEndIndex) {
-                String lKey;
-                if (lStartIndex < lEndIndex) {
-                    lKey = lStartIndex+"\t"+lEndIndex;
-                }
-                else {
-                    lKey = lEndIndex+"\t"+lStartIndex;
-                }
-                if (!lRandomPairs.contains(lKey)) {
-                    lRandomPairs.add(lKey);
-                }
-            }
-        }
-        long lDistanceSum = 0;
-        long lNodePairs = 0;
-        long lTotal = lRandomPairs.size();
-        int lDiameter = 0;
-        int lLastPerc = 0;
-
-        for (String lKey:lRandomPairs) {
-            String[] lFields = lKey.split("\t", -1);
-            TLGNode lStart = lNodes.get(Integer.parseInt(lFields[0]));
-            TLGNode lEnd = lNodes.get(Integer.parseInt(lFields[1]));
-            Set<TLGNode> lKnown = new HashSet<>();
-            LinkedList<TLGNode> lQueue = new LinkedList<>();
-            LinkedList<Integer> lDistQueue = new LinkedList<>();
-            lKnown.add(lStart);
-            lQueue.add(lStart);
-            lDistQueue.add(0);
-            int lDistance = 0;
-            while (lQueue.size() > 0) {
-                TLGNode lNode = lQueue.remove(lQueue.size()-1);
-                int lDist = lDistQueue.remove(lDistQueue.size()-1);
-                if (lNode.equals(lEnd)) {
-                    lDistance = lDist;
-                    break;
-                }
-                for (TLGNode lOther:lNode.getLinkedNodes(Direction.ANY)) {
-                    if (!lKnown.contains(lOther)) {
-                        lKnown.add(lOther);
-                        lQueue.add(0, lOther);
-                        lDistQueue.add(0, lDist+1);
-                    }
-                }
-            }
-            lDistanceSum += lDistance;
-            lNodePairs++;
-            if (lDistance > lDiameter) {
-                lDiameter = lDistance;
-            }
-            int lPerc = (int)Math.round((lNodePairs * 100)/(double)lTotal);
-            if (lPerc != lLastPerc) {
-                lLastPerc = lPerc;
-                System.out.println(lPerc+"%, Diameter: "+lDiameter);
-            }
-        }
-        return new double[]{lDiameter, lDistanceSum/(double)lNodePairs};
+        return getDiameterAndGeodesicDistanceUnDirectedSampled(pSamples, 0);
+    }
+
+    /**
+     * Searches from pSamples/(n-1) sources, but at least from TLGGeodesicEstimator.MIN_SOURCES sources, drawn by a
+     * Random seeded with pSeed. Fewer sources would make the result depend on a handful of nodes on large graphs.
+     * @param pSamples Number of node pairs
+     * @return Largest sampled distance and the average distance of the sampled pairs, unreachable pairs count as
+     * distance 0 as in getDiameterAndGeodesicDistanceUnDirected()
+     */
+    public double[] getDiameterAndGeodesicDistanceUnDirectedSampled(long pSamples, long pSeed) throws Exception {
+        TLGFrozenGraph lFrozenGraph = freeze();
+        int lSize = lFrozenGraph.size();
+        long lSources = Math.max(TLGGeodesicEstimator.MIN_SOURCES, (pSamples+lSize-2)/Math.max(1, lSize-1));
+        TLGGeodesicEstimate lEstimate = new TLGGeodesicEstimator(lFrozenGraph, Direction.ANY, pSeed, (int)Math.min(lSize, lSources), 0, Runtime.getRuntime().availableProcessors()).estimate();
+        TLGDistanceDistribution lDistribution = lEstimate.getDistribution();
+        return new double[]{lDistribution.getMaxDistance(), lDistribution.getDistanceSum()/(double)(lDistribution.getSources()*(lSize-1))};
+    }
+
+    /**
+     * Estimate the mean distance of the reachable node pairs from searches of sampled source nodes. Sources are
+     * drawn without replacement by a Random seeded with pSeed and searched in parallel rounds, the result is the
+     * same for the same seed. Sampling stops after pMaxSources sources or once the 95% confidence interval is
+     * within pPrecision of the mean.
+     * @param pPrecision Relative half width of the confidence interval, 0 to search from all pMaxSources sources
+     */
+    public TLGGeodesicEstimate estimateGeodesicDistance(Directedness pDirectedness, long pSeed, int pMaxSources, double pPrecision) {
+        Direction lDirection = pDirectedness == Directedness.UNDIRECTED ? Direction.ANY : Direction.OUT;
+        return new TLGGeodesicEstimator(freeze(), lDirection, pSeed, pMaxSources, pPrecision, Runtime.getRuntime().availableProcessors()).estimate();
+    }
+
+    /**
+     * Approximate neighbourhood function by HyperANF on all cores, for graphs too large for
+     * estimateGeodesicDistance(). The node ordinals of getReachable() are those of freeze().
+     * @param pRegisters HyperLogLog registers per node, see TLGHyperANF.setRegisters()
+     */
+    public TLGNeighbourhoodFunction getNeighbourhoodFunction(Directedness pDirectedness, int pRegisters) {
+        Direction lDirection = pDirectedness == Directedness.UNDIRECTED ? Direction.ANY : Direction.OUT;
+        return new TLGHyperANF(freeze(), lDirection).setRegisters(pRegisters).run();
     }
 
     public static String getSortedIdPair(TLGNode pNode1, TLGNode pNode2) {
@@ -864,157 +1154,51 @@ public class TLGGraph {
         }
     }
 
+    /**
+     * @return Length of the shortest undirected path within pNodes per connected pair, see getSortedIdPair()
+     */
     public static TObjectIntHashMap<String> getUndirectedShortestPathsLengths(Set<TLGNode> pNodes) {
         TObjectIntHashMap<String> lResult = new TObjectIntHashMap<>();
-        List<TLGNode> lNodes = new ArrayList<>(pNodes);
-        for (int i=0; i<lNodes.size()-1; i++) {
-            TLGNode lNode1 = lNodes.get(i);
-            for (int k=i+1; k<lNodes.size(); k++) {
-                TLGNode lNode2 = lNodes.get(k);
-                if (!lResult.containsKey(getSortedIdPair(lNode1, lNode2))) {
-                    List<TLGNode> lQueue = new ArrayList<>();
-                    List<Integer> lDistanceQueue = new ArrayList<>();
-                    Set<TLGNode> lKnown = new HashSet<>();
-                    lQueue.add(lNode1);
-                    lDistanceQueue.add(0);
-                    lKnown.add(lNode1);
-                    while (lQueue.size() > 0) {
-                        TLGNode lNode = lQueue.remove(lQueue.size()-1);
-                        int lDistance = lDistanceQueue.remove(lDistanceQueue.size()-1);
-                        for (TLGNode lOther:lNode.getLinkedNodes(Direction.ANY)) {
-                            if (pNodes.contains(lOther) && !lKnown.contains(lOther)) {
-                                lQueue.add(0, lOther);
-                                lDistanceQueue.add(0, lDistance+1);
-                                lKnown.add(lOther);
-                                lResult.put(getSortedIdPair(lNode1, lOther), lDistance+1);
-                            }
-                        }
-                    }
-                }
+        TLGFrozenGraph lFrozenGraph = new TLGFrozenGraph(pNodes, false);
+        new TLGMultiSourceBFS(lFrozenGraph, Direction.ANY).setThreads(1).setPairConsumer((pSource, pTarget, pDistance) -> {
+            // Each pair is reached from both ends
+            if (pSource < pTarget) {
+                lResult.put(getSortedIdPair(lFrozenGraph.getNode(pSource), lFrozenGraph.getNode(pTarget)), pDistance);
             }
-        }
+        }).run();
         return lResult;
     }
 
+    /**
+     * Fuzzy Jaccard similarity over the union of the node ids of both graphs, see TLGFuzzyJaccard. Neither graph is
+     * copied or changed.
+     */
     public static double getFuzzyJaccardSimilarity(TLGGraph pGraph1, TLGGraph pGraph2) {
-        TLGGraph lGraph1 = new TLGGraph(pGraph1);
-        TLGGraph lGraph2 = new TLGGraph(pGraph2);
-        // Collect Nodes unique to Graph1
-        Set<TLGNode> lNodesUniqueTo1 = new HashSet<>();
-        for (String lNode1ID:lGraph1.nodeMap.keySet()) {
-            if (!lGraph2.nodeMap.containsKey(lNode1ID)) {
-                lNodesUniqueTo1.add(lGraph1.nodeMap.get(lNode1ID));
-            }
-        }
-        // Collect Nodes unique to Graph2
-        Set<TLGNode> lNodesUniqueTo2 = new HashSet<>();
-        for (String lNode2ID:lGraph2.nodeMap.keySet()) {
-            if (!lGraph1.nodeMap.containsKey(lNode2ID)) {
-                lNodesUniqueTo2.add(lGraph2.nodeMap.get(lNode2ID));
-            }
-        }
-        // Add Nodes Unique in Graph2 to Graph1
-        for (TLGNode lNode2:lNodesUniqueTo2) {
-            lGraph1.createNode(lNode2);
-        }
-        // Add Nodes Unique in Graph1 to Graph2
-        for (TLGNode lNode1:lNodesUniqueTo1) {
-            lGraph2.createNode(lNode1);
-        }
-        // Components of Graph1
-        List<Set<TLGNode>> lComponents1 = lGraph1.getWeaklyConnectedComponents();
-        long lDelta1 = 0;
-        TObjectIntHashMap<String> lGraph1ShortestPathLengths = new TObjectIntHashMap<>();
-        for (Set<TLGNode> lSet:lComponents1) {
-            TObjectIntHashMap<String> lMap = getUndirectedShortestPathsLengths(lSet);
-            int lDiameter = 0;
-            for (int i:lMap.values()) {
-                if (i>lDiameter) lDiameter = i;
-            }
-            lGraph1ShortestPathLengths.putAll(lMap);
-            lDelta1 += lDiameter + 1;
-        }
-        // Components of Graph2
-        List<Set<TLGNode>> lComponents2 = lGraph2.getWeaklyConnectedComponents();
-        long lDelta2 = 0;
-        TObjectIntHashMap<String> lGraph2ShortestPathLengths = new TObjectIntHashMap<>();
-        for (Set<TLGNode> lSet:lComponents2) {
-            TObjectIntHashMap<String> lMap = getUndirectedShortestPathsLengths(lSet);
-            int lDiameter = 0;
-            for (int i:lMap.values()) {
-                if (i>lDiameter) lDiameter = i;
-            }
-            lGraph2ShortestPathLengths.putAll(lMap);
-            lDelta2 += lDiameter + 1;
-        }
-        // Compute Result
-        Set<TLGNode> lAllNodes = new HashSet<>(lGraph1.getNodes());
-        List<TLGNode> lNodeList = new ArrayList<>(lAllNodes);
-        double lZaehler = 0;
-        double lNenner = 0;
-        for (int i=0; i<lNodeList.size()-1; i++) {
-            TLGNode lNode1 = lNodeList.get(i);
-            for (int k=i+1; k<lNodeList.size(); k++) {
-                TLGNode lNode2 = lNodeList.get(k);
-                String lKey = getSortedIdPair(lNode1, lNode2);
-                double lDistance1 = lGraph1ShortestPathLengths.containsKey(lKey) ? 1d/lGraph1ShortestPathLengths.get(lKey) : 1d/lDelta1;
-                double lDistance2 = lGraph2ShortestPathLengths.containsKey(lKey) ? 1d/lGraph2ShortestPathLengths.get(lKey) : 1d/lDelta2;
-                lZaehler += Math.min(lDistance1, lDistance2);
-                lNenner += Math.max(lDistance1, lDistance2);
-            }
-        }
-        return lZaehler/lNenner;
+        return getFuzzyJaccardSimilarity(pGraph1, pGraph2, Runtime.getRuntime().availableProcessors());
     }
 
+    /**
+     * @param pThreads Number of threads running the searches
+     */
+    public static double getFuzzyJaccardSimilarity(TLGGraph pGraph1, TLGGraph pGraph2, int pThreads) {
+        return new TLGFuzzyJaccard(pGraph1, pGraph2).similarity(pThreads);
+    }
+
+    /**
+     * Fuzzy Jaccard similarity of all pairs, see TLGPairwiseSimilarity. The distance table of every graph with up to
+     * 4096 nodes is computed once and held until the end, up to 16 MB per graph.
+     */
     public static double[][] getFuzzyJaccardSimilarities(List<TLGGraph> pGraphs, int pThreads) {
-        double[][] lResult = new double[pGraphs.size()][pGraphs.size()];
-        Set<Thread> lThreads = new HashSet<>();
-        long lCounter = 0;
-        long lMax = (pGraphs.size() * (pGraphs.size()-1))/2;
-        for (int i=0; i<pGraphs.size()-1; i++) {
-            TLGGraph lGraph1 = pGraphs.get(i);
-            for (int k=i+1; k<pGraphs.size(); k++) {
-                lCounter++;
-                System.out.println(lCounter+"/"+lMax);
-                TLGGraph lGraph2 = pGraphs.get(k);
-                while (lThreads.size() >= pThreads) {
-                    Iterator<Thread> m = lThreads.iterator();
-                    while (m.hasNext()) {
-                        Thread lThread = m.next();
-                        if (lThread.getState().equals(Thread.State.TERMINATED)) {
-                            m.remove();
-                        }
-                    }
-                    if (lThreads.size() >= pThreads) {
-                        try {
-                            Thread.sleep(50);
-                        }
-                        catch (InterruptedException e) {
-                        }
-                    }
-                }
-                Thread lThread = new Thread(new FuzzyJaccardSimilarityTask(lGraph1, lGraph2, lResult, i, k));
-                lThreads.add(lThread);
-                lThread.start();
-            }
-        }
-        while (lThreads.size() > 0) {
-            Iterator<Thread> m = lThreads.iterator();
-            while (m.hasNext()) {
-                Thread lThread = m.next();
-                if (lThread.getState().equals(Thread.State.TERMINATED)) {
-                    m.remove();
-                }
-            }
-            if (lThreads.size() >= pThreads) {
-                try {
-                    Thread.sleep(50);
-                }
-                catch (InterruptedException e) {
-                }
-            }
-        }
-        return lResult;
+        return getFuzzyJaccardSimilarities(pGraphs, pThreads, TLGFuzzyJaccard.MAX_TABLE_NODES);
+    }
+
+    /**
+     * @param pMaxTableNodes Largest graph with a distance table of n(n-1)/2 bytes, or twice that if its diameter
+     * exceeds 255. Every pair with a larger graph runs the searches of getFuzzyJaccardSimilarity() again, on frozen
+     * views and components computed once per graph.
+     */
+    public static double[][] getFuzzyJaccardSimilarities(List<TLGGraph> pGraphs, int pThreads, int pMaxTableNodes) {
+        return TLGPairwiseSimilarity.run(pGraphs, TLGPairwiseSimilarity.fuzzyJaccard(pMaxTableNodes), pThreads);
     }
 
     public static TLGGraph buildUnionGraph(Collection<TLGGraph> pGraphs, Directedness pDirectedness) {
@@ -1054,10 +1238,12 @@ public class TLGGraph {
                 if (!lNode2.getProperties().containsKey(lEntry.getKey())) return false;
                 if (!lEntry.getValue().equals(lNode2.getProperty(lEntry.getKey(), null))) return false;
             }
-            if (lNode1.getEdges(TLGGraph.Direction.OUT).size() != lNode2.getEdges(TLGGraph.Direction.OUT).size()) return false;
-            for (TLGEdge lEdge1:lNode1.getEdges(TLGGraph.Direction.OUT)) {
+            if (lNode1.getOutDegree() != lNode2.getOutDegree()) return false;
+            for (int e1=0; e1<lNode1.getOutDegree(); e1++) {
+                TLGEdge lEdge1 = lNode1.getOutEdge(e1);
                 boolean lFoundMatchingEdge = false;
-                for (TLGEdge lEdge2:lNode2.getEdges(TLGGraph.Direction.OUT)) {
+                for (int e2=0; e2<lNode2.getOutDegree(); e2++) {
+                    TLGEdge lEdge2 = lNode2.getOutEdge(e2);
                     if (lEdge1.getSource().getId().equals(lEdge2.getSource().getId())
                             && lEdge1.getTarget().getId().equals(lEdge2.getTarget().getId())) {
                         if (lEdge1.getProperties().size() == lEdge2.getProperties().size()) {
@@ -1097,6 +1283,10 @@ public class TLGGraph {
     }
 
     public static double[][] getGraphSimilarities(GraphSimilarityThread.GraphSimMethod pGraphSimMethod, List<TLGGraph> pGraphs, Directedness pDirectedness, int pMaxThreads) {
+        if (pGraphSimMethod == GraphSimilarityThread.GraphSimMethod.veo) {
+            // Node and edge sets of every graph are built once
+            return TLGPairwiseSimilarity.run(pGraphs, TLGPairwiseSimilarity.veo(pDirectedness), pMaxThreads);
+        }
         double[][] lResult = new double[pGraphs.size()][pGraphs.size()];
         long lCounter = 0;
         long lMax = (pGraphs.size() * (pGraphs.size()-1))/2;
@@ -1135,10 +1325,6 @@ public class TLGGraph {
                         lThread = new SphereBasedJaccardSimilarityThread(lMonitor, lGraph1, lGraph2, pDirectedness);
                         break;
                     }
-                    case veo: {
-                        lThread = new VEOSimilarityTask(lMonitor, lGraph1, lGraph2, pDirectedness);
-                        break;
-                    }
                 }
                 lThreadMap.put(lThread, new int[]{i,k});
                 lThread.start();
@@ -0,0 +1,58 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * Visitor which builds a TLGGraph from a streamed BF file
+ */
+class TLGGraphBuilder implements TLGGraphVisitor {
+
+    private static Logger logger = LogManager.getLogger(TLGGraphBuilder.class);
+
+    private TLGGraph graph;
+    private TLGLoadOptions options;
+    private long verticesRead = 0;
+    private long edgesRead = 0;
+
+    TLGGraphBuilder(TLGGraph pGraph, TLGLoadOptions pOptions) {
+        graph = pGraph;
+        options = pOptions;
+    }
+
+    @Override
+    public void head(String pHead) {
+        graph.head = pHead;
+    }
+
+    @Override
+    public void vertex(TLGVertexRecord pVertex) {
+        TLGNode lNode = graph.newNode(pVertex, options, graph.nodeAttributeCountMap);
+        if (lNode != null) graph.addNode(lNode);
+        verticesRead++;
+        if (verticesRead % 1000 == 0) {
+            logger.info(verticesRead+" nodes read");
+        }
+    }
+
+    @Override
+    public void edge(TLGEdgeRecord pEdge) throws IOException {
+        if (edgesRead == 0) {
+            logger.info(verticesRead+" nodes read, "+graph.nodeMap.size()+" loaded");
+        }
+        TLGEdge lEdge = graph.newEdge(pEdge, options, graph.edgeAttributeCountMap, graph.edgeTypes);
+        if (lEdge != null) graph.addEdge(lEdge);
+        edgesRead++;
+        if (edgesRead % 1000 == 0) {
+            logger.info(edgesRead+" edges read");
+        }
+    }
+
+    @Override
+    public void end() {
+        logger.info(edgesRead+" edges read");
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+
+/**
+ * Receives the contents of a graph file while it is streamed by TLGStreamReader, without a TLGGraph being built.
+ * Vertex and edge records are reused for every line and must not be kept beyond the callback.
+ */
+public interface TLGGraphVisitor {
+
+    /**
+     * Called once with the lines preceding Vertices: of a BF file. Not called for GML files.
+     */
+    default void head(String pHead) throws IOException {
+    }
+
+    default void vertex(TLGVertexRecord pVertex) throws IOException {
+    }
+
+    /**
+     * Edges are reported after all vertices
+     */
+    default void edge(TLGEdgeRecord pEdge) throws IOException {
+    }
+
+    default void end() throws IOException {
+    }
+
+}
@@ -0,0 +1,325 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Export engine behind saveGraph, saveSubGraph and saveSubGraphGML. Nodes are written in the iteration order of the
+ * given collection and edges in the order of TLGNode.getEdges(Direction.OUT). Chunks of nodes are encoded into byte
+ * buffers by a thread pool and written strictly in order, so the output does not depend on the number of threads.
+ * Edges are deduplicated by the writing thread with a primitive key made of the ordinals of their nodes, the first
+ * occurrence is kept.
+ */
+abstract class TLGGraphWriter {
+
+    private static Logger logger = LogManager.getLogger(TLGGraphWriter.class);
+
+    enum Deduplication {NONE, DIRECTED, UNDIRECTED}
+
+    protected static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    protected static final byte[] SEPARATOR = "¤".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] PROPERTY_START = "[".getBytes(StandardCharsets.UTF_8);
+    protected static final byte[] PROPERTY_END = "¤]¤".getBytes(StandardCharsets.UTF_8);
+
+    private static final int CHUNK_NODES = 4096;
+
+    protected TLGNode[] nodes;
+    protected boolean latin1;
+    /**
+     * Only edges with one of these types are written, see TLGGraph.getEdgeTypeMask()
+     */
+    protected long edgeTypeMask = TLGGraph.ALL_EDGE_TYPES;
+    /**
+     * Null or the types of the written edges by their Type property, for types without a code
+     */
+    protected Set<String> edgeTypeNames;
+    /**
+     * Only edges whose target is one of the written nodes are written
+     */
+    protected boolean includedTargetsOnly = true;
+    protected Deduplication deduplication = Deduplication.NONE;
+    private TObjectIntHashMap<TLGNode> ordinals;
+    private long edgesRead;
+    private long edgesWritten;
+
+    /**
+     * Encoded nodes or edges of one chunk. For edges the key and the end of every line are kept for deduplication.
+     */
+    private class Chunk {
+        TLGByteBuilder bytes = new TLGByteBuilder(1024*1024, latin1);
+        boolean edges;
+        long[] keys = new long[1024];
+        int[] ends = new int[1024];
+        int count;
+        TIntArrayList positions = new TIntArrayList();
+
+        void add(long pKey) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count*2);
+                ends = Arrays.copyOf(ends, count*2);
+            }
+            keys[count] = pKey;
+            ends[count] = bytes.length();
+            count++;
+        }
+    }
+
+    TLGGraphWriter(Collection<TLGNode> pNodes, boolean pLatin1) {
+        nodes = pNodes.toArray(new TLGNode[pNodes.size()]);
+        latin1 = pLatin1;
+    }
+
+    protected abstract void writeHead(TLGByteBuilder pBuilder);
+
+    protected abstract void writeNode(TLGByteBuilder pBuilder, TLGNode pNode);
+
+    protected abstract void writeEdgesHead(TLGByteBuilder pBuilder);
+
+    protected abstract void writeEdge(TLGByteBuilder pBuilder, TLGEdge pEdge);
+
+    protected abstract void writeTail(TLGByteBuilder pBuilder);
+
+    /**
+     * @return Number of written edges
+     */
+    long write(File pFile, int pThreads) throws IOException {
+        if (includedTargetsOnly || (deduplication != Deduplication.NONE)) {
+            ordinals = new TObjectIntHashMap<>(nodes.length*2, 0.5f, -1);
+            for (int i=0; i<nodes.length; i++) {
+                ordinals.put(nodes[i], i);
+            }
+        }
+        TLongHashSet lWrittenEdges = deduplication != Deduplication.NONE ? new TLongHashSet() : null;
+        ExecutorService lExecutor = pThreads > 1 ? Executors.newFixedThreadPool(pThreads) : null;
+        Deque<Future<Chunk>> lPending = new ArrayDeque<>();
+        Queue<Chunk> lFree = new ArrayDeque<>();
+        edgesRead = 0;
+        edgesWritten = 0;
+        try (OutputStream lOutput = new BufferedOutputStream(new FileOutputStream(pFile), 64*1024)) {
+            Chunk lChunk = new Chunk();
+            writeHead(lChunk.bytes);
+            lChunk.bytes.writeTo(lOutput);
+            for (int lPass=0; lPass<2; lPass++) {
+                boolean lEdges = lPass == 1;
+                if (lEdges) {
+                    lChunk.bytes.clear();
+                    writeEdgesHead(lChunk.bytes);
+                    lChunk.bytes.writeTo(lOutput);
+                }
+                for (int lFrom=0; lFrom<nodes.length; lFrom+=CHUNK_NODES) {
+                    Chunk lNext = lFree.isEmpty() ? new Chunk() : lFree.poll();
+                    final int lStart = lFrom;
+                    final int lEnd = Math.min(nodes.length, lFrom+CHUNK_NODES);
+                    if (lExecutor == null) {
+                        lFree.add(write(lOutput, encode(lNext, lEdges, lStart, lEnd), lWrittenEdges));
+                    }
+                    else {
+                        lPending.add(lExecutor.submit(() -> encode(lNext, lEdges, lStart, lEnd)));
+                        while (lPending.size() >= pThreads*2) {
+                            lFree.add(write(lOutput, get(lPending.removeFirst()), lWrittenEdges));
+                        }
+                    }
+                    logger.info((lEdges ? "Exporting Edges of Nodes: " : "Exporting Nodes: ")+lEnd+"/"+nodes.length);
+                }
+                while (lPending.size() > 0) {
+                    lFree.add(write(lOutput, get(lPending.removeFirst()), lWrittenEdges));
+                }
+            }
+            lChunk.bytes.clear();
+            writeTail(lChunk.bytes);
+            lChunk.bytes.writeTo(lOutput);
+        }
+        finally {
+            if (lExecutor != null) lExecutor.shutdownNow();
+        }
+        logger.info("Exported "+edgesWritten+" edges of "+edgesRead+" potential edges");
+        return edgesWritten;
+    }
+
+    private Chunk encode(Chunk pChunk, boolean pEdges, int pFrom, int pTo) {
+        pChunk.bytes.clear();
+        pChunk.count = 0;
+        pChunk.edges = pEdges;
+        for (int i=pFrom; i<pTo; i++) {
+            TLGNode lNode = nodes[i];
+            if (!pEdges) {
+                writeNode(pChunk.bytes, lNode);
+                continue;
+            }
+            int lCount = lNode.getEdgePositions(true, edgeTypeMask, pChunk.positions);
+            for (int e=0; e<lCount; e++) {
+                TLGEdge lEdge = lNode.getOutEdge(pChunk.positions.getQuick(e));
+                if ((edgeTypeNames != null) && !edgeTypeNames.contains(lEdge.getProperty("Type", ""))) continue;
+                int lTarget = ordinals != null ? ordinals.get(lEdge.target) : -1;
+                if (includedTargetsOnly && (lTarget < 0)) continue;
+                writeEdge(pChunk.bytes, lEdge);
+                switch (deduplication) {
+                    case DIRECTED: {
+                        pChunk.add(((long)i << 32) | lTarget);
+                        break;
+                    }
+                    case UNDIRECTED: {
+                        pChunk.add(((long)Math.min(i, lTarget) << 32) | Math.max(i, lTarget));
+                        break;
+                    }
+                    default: {
+                        pChunk.add(0);
+                    }
+                }
+            }
+        }
+        return pChunk;
+    }
+
+    private Chunk write(OutputStream pOutput, Chunk pChunk, TLongHashSet pWrittenEdges) throws IOException {
+        if (!pChunk.edges) {
+            pChunk.bytes.writeTo(pOutput);
+            return pChunk;
+        }
+        edgesRead += pChunk.count;
+        if (pWrittenEdges == null) {
+            pChunk.bytes.writeTo(pOutput);
+            edgesWritten += pChunk.count;
+            return pChunk;
+        }
+        // Write runs of consecutive kept lines at once
+        int lRunStart = 0;
+        int lLineStart = 0;
+        for (int i=0; i<pChunk.count; i++) {
+            if (!pWrittenEdges.add(pChunk.keys[i])) {
+                pChunk.bytes.writeTo(pOutput, lRunStart, lLineStart);
+                lRunStart = pChunk.ends[i];
+            }
+            else {
+                edgesWritten++;
+            }
+            lLineStart = pChunk.ends[i];
+        }
+        pChunk.bytes.writeTo(pOutput, lRunStart, lLineStart);
+        return pChunk;
+    }
+
+    private static Chunk get(Future<Chunk> pFuture) throws IOException {
+        try {
+            return pFuture.get();
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Writer for the Borland format
+     */
+    static class BorlandFormat extends TLGGraphWriter {
+
+        private String head;
+        /**
+         * Write the similarity of the edges, otherwise 1.0
+         */
+        private boolean similarities;
+
+        BorlandFormat(String pHead, Collection<TLGNode> pNodes, boolean pSimilarities) {
+            super(pNodes, false);
+            head = pHead;
+            similarities = pSimilarities;
+        }
+
+        @Override
+        protected void writeHead(TLGByteBuilder pBuilder) {
+            pBuilder.append(String.valueOf(head)).append("Vertices:").append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeNode(TLGByteBuilder pBuilder, TLGNode pNode) {
+            pBuilder.append(pNode.id).append(SEPARATOR);
+            writeProperties(pBuilder, pNode.getProperties());
+            pBuilder.append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeEdgesHead(TLGByteBuilder pBuilder) {
+            pBuilder.append("Edges:").append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeEdge(TLGByteBuilder pBuilder, TLGEdge pEdge) {
+            pBuilder.append(pEdge.source.id).append(SEPARATOR).append(pEdge.target.id).append(SEPARATOR);
+            pBuilder.append(similarities ? Double.toString(pEdge.similarity) : "1.0").append(SEPARATOR);
+            writeProperties(pBuilder, pEdge.getProperties());
+            pBuilder.append(LINE_SEPARATOR);
+        }
+
+        private static void writeProperties(TLGByteBuilder pBuilder, Map<String, String> pProperties) {
+            for (Map.Entry<String, String> lEntry:pProperties.entrySet()) {
+                pBuilder.append(PROPERTY_START).append(lEntry.getKey()).append(SEPARATOR).append(lEntry.getValue()).append(PROPERTY_END);
+            }
+        }
+
+        @Override
+        protected void writeTail(TLGByteBuilder pBuilder) {
+        }
+
+    }
+
+    /**
+     * Writer for GML with the label taken from a node property
+     */
+    static class GML extends TLGGraphWriter {
+
+        private String labelProperty;
+        private boolean escapeAmpersands;
+
+        GML(Collection<TLGNode> pNodes, String pLabelProperty, boolean pEscapeAmpersands, boolean pLatin1) {
+            super(pNodes, pLatin1);
+            labelProperty = pLabelProperty;
+            escapeAmpersands = pEscapeAmpersands;
+        }
+
+        @Override
+        protected void writeHead(TLGByteBuilder pBuilder) {
+            pBuilder.append("graph [").append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeNode(TLGByteBuilder pBuilder, TLGNode pNode) {
+            String lLabel = pNode.getProperty(labelProperty, "").replace("\"", "'");
+            if (escapeAmpersands) lLabel = lLabel.replace("&", "&amp;");
+            pBuilder.append("node [").append(LINE_SEPARATOR);
+            pBuilder.append("id ").append(pNode.id).append(LINE_SEPARATOR);
+            pBuilder.append("label \"").append(lLabel).append("\"").append(LINE_SEPARATOR);
+            pBuilder.append("]").append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeEdgesHead(TLGByteBuilder pBuilder) {
+        }
+
+        @Override
+        protected void writeEdge(TLGByteBuilder pBuilder, TLGEdge pEdge) {
+            pBuilder.append("edge [").append(LINE_SEPARATOR);
+            pBuilder.append("source ").append(pEdge.source.id).append(LINE_SEPARATOR);
+            pBuilder.append("target ").append(pEdge.target.id).append(LINE_SEPARATOR);
+            pBuilder.append("]").append(LINE_SEPARATOR);
+        }
+
+        @Override
+        protected void writeTail(TLGByteBuilder pBuilder) {
+            pBuilder.append("]").append(LINE_SEPARATOR);
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Approximate neighbourhood function after "HyperANF: Approximating the Neighbourhood Function of Very Large
+ * Graphs on a Budget" (Boldi, Rosa, Vigna). Every node holds a HyperLogLog counter of the nodes within distance t,
+ * iteration t+1 unions the counters of the successors into it. The counters of the previous iteration are kept
+ * apart, hence the result does not depend on the number of threads, and only nodes with a successor that changed
+ * in the previous iteration are recomputed. The iteration stops once no counter changes. The counters of all nodes
+ * are stored one after another in one flat array per iteration, the counter of node v starts at v*getRegisters().
+ */
+public class TLGHyperANF {
+
+    private static Logger logger = LogManager.getLogger(TLGHyperANF.class);
+
+    protected TLGFrozenGraph graph;
+    protected TLGGraph.Direction direction;
+    protected int log2Registers = 6;
+    protected int threads = Runtime.getRuntime().availableProcessors();
+    protected long seed;
+    protected int maxIterations = Integer.MAX_VALUE;
+
+    /**
+     * @param pDirection OUT counts the nodes reachable along OUT edges, IN along IN edges, ANY ignores directions
+     */
+    public TLGHyperANF(TLGFrozenGraph pGraph, TLGGraph.Direction pDirection) {
+        graph = pGraph;
+        direction = pDirection;
+    }
+
+    public int getRegisters() {
+        return 1 << log2Registers;
+    }
+
+    /**
+     * Registers per node, rounded up to a power of 2 between 16 and 65536. Every register takes one byte per node
+     * and counter, the relative standard error of a counter is about 1.04/sqrt(pRegisters).
+     */
+    public TLGHyperANF setRegisters(int pRegisters) {
+        int lLog2 = 32-Integer.numberOfLeadingZeros(Math.max(1, pRegisters)-1);
+        log2Registers = Math.max(4, Math.min(16, lLog2));
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public TLGHyperANF setThreads(int pThreads) {
+        threads = Math.max(1, pThreads);
+        return this;
+    }
+
+    /**
+     * Seed of the hash function which assigns nodes to registers
+     */
+    public TLGHyperANF setSeed(long pSeed) {
+        seed = pSeed;
+        return this;
+    }
+
+    /**
+     * Stop after pMaxIterations iterations even if counters still change, the result then covers distances up to
+     * pMaxIterations only
+     */
+    public TLGHyperANF setMaxIterations(int pMaxIterations) {
+        maxIterations = Math.max(0, pMaxIterations);
+        return this;
+    }
+
+    public TLGNeighbourhoodFunction run() {
+        long lStart = System.currentTimeMillis();
+        int lSize = graph.size();
+        int lRegisters = getRegisters();
+        if ((long)lSize*lRegisters > Integer.MAX_VALUE-8) {
+            throw new IllegalStateException(lSize+" nodes with "+lRegisters+" registers exceed an array, use fewer registers");
+        }
+        byte[] lCurrent = new byte[lSize*lRegisters];
+        byte[] lNext = new byte[lSize*lRegisters];
+        double[] lEstimates = new double[lSize];
+        boolean[] lChanged = new boolean[lSize];
+        boolean[] lNextChanged = new boolean[lSize];
+        for (int v=0; v<lSize; v++) {
+            long lHash = mix(v+seed*0x9E3779B97F4A7C15L);
+            int lIndex = (int)(lHash >>> (64-log2Registers));
+            int lRank = Math.min(64-log2Registers, Long.numberOfLeadingZeros(lHash << log2Registers))+1;
+            lCurrent[v*lRegisters+lIndex] = (byte)lRank;
+            lEstimates[v] = estimate(lCurrent, v*lRegisters, lRegisters);
+            lChanged[v] = true;
+        }
+        List<Double> lValues = new ArrayList<>();
+        lValues.add(sum(lEstimates));
+        int lThreads = Math.max(1, Math.min(threads, lSize/256));
+        for (int t=1; t<=maxIterations; t++) {
+            byte[] lFrom = lCurrent;
+            byte[] lTo = lNext;
+            boolean[] lFromChanged = lChanged;
+            boolean[] lToChanged = lNextChanged;
+            AtomicInteger lModified = new AtomicInteger();
+            List<Runnable> lTasks = new ArrayList<>();
+            for (int i=0; i<lThreads; i++) {
+                int lRangeFrom = (int)((long)lSize*i/lThreads);
+                int lRangeTo = (int)((long)lSize*(i+1)/lThreads);
+                lTasks.add(() -> lModified.addAndGet(iterate(lFrom, lTo, lFromChanged, lToChanged, lEstimates, lRangeFrom, lRangeTo)));
+            }
+            TLGTasks.runAll(lTasks, lThreads, "HyperANF");
+            if (lModified.get() == 0) break;
+            lValues.add(sum(lEstimates));
+            logger.info("HyperANF iteration "+t+": "+lModified.get()+" counters changed, N(t) = "+lValues.get(t));
+            lCurrent = lTo;
+            lNext = lFrom;
+            lChanged = lToChanged;
+            lNextChanged = lFromChanged;
+        }
+        double[] lFunction = new double[lValues.size()];
+        for (int t=0; t<lFunction.length; t++) {
+            lFunction[t] = lValues.get(t);
+        }
+        return new TLGNeighbourhoodFunction(lFunction, lEstimates, getRegisters(), System.currentTimeMillis()-lStart);
+    }
+
+    /**
+     * Union the counters of the successors of the nodes pFrom to pTo-1 which changed in the previous iteration
+     * @return Number of changed counters
+     */
+    private int iterate(byte[] pCurrent, byte[] pNext, boolean[] pChanged, boolean[] pNextChanged, double[] pEstimates, int pFrom, int pTo) {
+        int[] lOutOffsets = graph.getOutOffsets();
+        int[] lOutTargets = graph.getOutTargets();
+        int[] lInOffsets = graph.getInOffsets();
+        int[] lInSources = graph.getInSources();
+        boolean lOut = direction != TLGGraph.Direction.IN;
+        boolean lIn = direction != TLGGraph.Direction.OUT;
+        int lRegisters = getRegisters();
+        int lResult = 0;
+        for (int v=pFrom; v<pTo; v++) {
+            int lCounter = v*lRegisters;
+            System.arraycopy(pCurrent, lCounter, pNext, lCounter, lRegisters);
+            boolean lModified = false;
+            if (lOut) {
+                for (int e=lOutOffsets[v]; e<lOutOffsets[v+1]; e++) {
+                    int lOther = lOutTargets[e];
+                    if (pChanged[lOther]) lModified |= union(pNext, lCounter, pCurrent, lOther*lRegisters, lRegisters);
+                }
+            }
+            if (lIn) {
+                for (int e=lInOffsets[v]; e<lInOffsets[v+1]; e++) {
+                    int lOther = lInSources[e];
+                    if (pChanged[lOther]) lModified |= union(pNext, lCounter, pCurrent, lOther*lRegisters, lRegisters);
+                }
+            }
+            pNextChanged[v] = lModified;
+            if (lModified) {
+                pEstimates[v] = estimate(pNext, lCounter, lRegisters);
+                lResult++;
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * Union the counter at pOtherStart of pOther into the counter at pStart of pCounters
+     * @return True if the counter changed
+     */
+    private static boolean union(byte[] pCounters, int pStart, byte[] pOther, int pOtherStart, int pRegisters) {
+        boolean lResult = false;
+        for (int i=0; i<pRegisters; i++) {
+            if (pOther[pOtherStart+i] > pCounters[pStart+i]) {
+                pCounters[pStart+i] = pOther[pOtherStart+i];
+                lResult = true;
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * HyperLogLog estimate with linear counting for small cardinalities
+     */
+    private static double estimate(byte[] pCounters, int pStart, int pRegisters) {
+        int m = pRegisters;
+        double lSum = 0;
+        int lZeros = 0;
+        for (int i=pStart; i<pStart+pRegisters; i++) {
+            byte lRegister = pCounters[i];
+            lSum += Double.longBitsToDouble((1023L-lRegister) << 52);
+            if (lRegister == 0) lZeros++;
+        }
+        double lAlpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213/(1+1.079/m);
+        double lResult = lAlpha*m*m/lSum;
+        if ((lResult <= 2.5*m) && (lZeros > 0)) lResult = m*Math.log(m/(double)lZeros);
+        return lResult;
+    }
+
+    private static double sum(double[] pValues) {
+        double lResult = 0;
+        for (double lValue:pValues) {
+            lResult += lValue;
+        }
+        return lResult;
+    }
+
+    /**
+     * Finalizer of MurmurHash3
+     */
+    private static long mix(long pValue) {
+        long h = pValue;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
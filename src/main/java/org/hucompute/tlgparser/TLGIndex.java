@@ -0,0 +1,458 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Secondary index over one property or a combination of properties of the nodes or of the edges of a TLGGraph, see
+ * TLGGraph.addIndex() and TLGLoadOptions.addIndex(). HASH indexes answer equality lookups, SORTED indexes also answer
+ * prefix and range lookups. Values compare as strings, composite keys property by property. Nodes and edges which
+ * lack one of the properties or do not match the conditions of where() are not indexed. The matches of a key are
+ * returned in the order in which they were indexed.
+ * An index is built on its first lookup and does not follow later modifications of the graph, see
+ * TLGGraph.invalidateIndexes().
+ */
+public class TLGIndex<T> {
+
+    public enum Kind {HASH, SORTED}
+
+    public enum Target {NODES, EDGES}
+
+    /**
+     * Separates the values of a composite key. It sorts before every other character, hence encoded keys sort
+     * property by property.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    private String name;
+    private Target target;
+    /**
+     * TLGNode or TLGEdge, items are cast with it
+     */
+    private Class<T> type;
+    private Kind kind;
+    private String[] keys;
+    private List<String> conditionKeys = new ArrayList<>();
+    private List<String> conditionValues = new ArrayList<>();
+
+    private TLGGraph graph;
+    private volatile boolean built;
+    private int size;
+    /**
+     * Encoded key -> item or Bucket of items, HASH only
+     */
+    private Map<String, Object> map;
+    /**
+     * Encoded keys and items in key order, SORTED only. Items added after the last sort are appended unsorted.
+     */
+    private List<String> sortedKeys;
+    private List<T> sortedItems;
+    private boolean sorted;
+
+    /**
+     * Items of a HASH key with more than one item, a single item is stored without a Bucket
+     */
+    private static final class Bucket {
+        final List<Object> items = new ArrayList<>(2);
+    }
+
+    private TLGIndex(String pName, Target pTarget, Class<T> pType, Kind pKind, String[] pKeys) {
+        if (pKeys.length == 0) throw new IllegalArgumentException("Index "+pName+" without keys");
+        name = pName;
+        target = pTarget;
+        type = pType;
+        kind = pKind;
+        keys = pKeys.clone();
+    }
+
+    /**
+     * @param pKeys Properties of the key, in order of significance
+     */
+    public static TLGIndex<TLGNode> forNodes(String pName, Kind pKind, String... pKeys) {
+        return new TLGIndex<>(pName, Target.NODES, TLGNode.class, pKind, pKeys);
+    }
+
+    public static TLGIndex<TLGEdge> forEdges(String pName, Kind pKind, String... pKeys) {
+        return new TLGIndex<>(pName, Target.EDGES, TLGEdge.class, pKind, pKeys);
+    }
+
+    /**
+     * Only index nodes or edges with property pKey set to pValue
+     */
+    public TLGIndex<T> where(String pKey, String pValue) {
+        conditionKeys.add(pKey);
+        conditionValues.add(pValue);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * @return Unbuilt index with the same definition, for TLGLoadOptions which may be used for several graphs
+     */
+    TLGIndex<T> copy() {
+        TLGIndex<T> lResult = new TLGIndex<>(name, target, type, kind, keys);
+        lResult.conditionKeys.addAll(conditionKeys);
+        lResult.conditionValues.addAll(conditionValues);
+        return lResult;
+    }
+
+    /**
+     * @return This index if it holds items of pType, else null
+     */
+    <S> TLGIndex<S> as(Class<S> pType) {
+        if (type != pType) return null;
+        // Checked above, T and S are the same class
+        @SuppressWarnings("unchecked")
+        TLGIndex<S> lResult = (TLGIndex<S>)this;
+        return lResult;
+    }
+
+    void setGraph(TLGGraph pGraph) {
+        if ((graph != null) && (graph != pGraph)) throw new IllegalStateException("Index "+name+" belongs to another graph");
+        graph = pGraph;
+    }
+
+    /**
+     * Empty the index and mark it as built, the graph then feeds it via add()
+     */
+    synchronized void clear() {
+        map = kind == Kind.HASH ? new HashMap<>() : null;
+        sortedKeys = kind == Kind.SORTED ? new ArrayList<>() : null;
+        sortedItems = kind == Kind.SORTED ? new ArrayList<>() : null;
+        sorted = true;
+        size = 0;
+        built = true;
+    }
+
+    /**
+     * Drop the content, the index is built again on the next lookup
+     */
+    synchronized void invalidate() {
+        built = false;
+        map = null;
+        sortedKeys = null;
+        sortedItems = null;
+        size = 0;
+    }
+
+    /**
+     * Index pItem if it matches the conditions and has all key properties
+     */
+    synchronized void add(T pItem) {
+        String lKey = getKey(pItem);
+        if (lKey != null) put(lKey, pItem);
+    }
+
+    /**
+     * Index pItem under an encoded key as returned by forEachEntry()
+     */
+    synchronized void put(String pKey, T pItem) {
+        size++;
+        if (kind == Kind.SORTED) {
+            if (sorted && !sortedKeys.isEmpty() && (sortedKeys.get(sortedKeys.size()-1).compareTo(pKey) > 0)) sorted = false;
+            sortedKeys.add(pKey);
+            sortedItems.add(pItem);
+            return;
+        }
+        Object lOld = map.put(pKey, pItem);
+        if (lOld != null) {
+            Bucket lBucket;
+            if (lOld instanceof Bucket) {
+                lBucket = (Bucket)lOld;
+            }
+            else {
+                lBucket = new Bucket();
+                lBucket.items.add(lOld);
+            }
+            lBucket.items.add(pItem);
+            map.put(pKey, lBucket);
+        }
+    }
+
+    /**
+     * @return Encoded key of pItem or null if it is not indexed
+     */
+    private String getKey(T pItem) {
+        Map<String, String> lProperties = target == Target.NODES ? ((TLGNode)pItem).properties : ((TLGEdge)pItem).properties;
+        for (int i=0; i<conditionKeys.size(); i++) {
+            if (!conditionValues.get(i).equals(getProperty(lProperties, conditionKeys.get(i)))) return null;
+        }
+        if (keys.length == 1) return getProperty(lProperties, keys[0]);
+        StringBuilder lBuilder = new StringBuilder();
+        for (int i=0; i<keys.length; i++) {
+            String lValue = getProperty(lProperties, keys[i]);
+            if (lValue == null) return null;
+            if (i > 0) lBuilder.append(SEPARATOR);
+            lBuilder.append(lValue);
+        }
+        return lBuilder.toString();
+    }
+
+    /**
+     * Lazily loaded properties are read from the raw line without decoding and caching the whole map
+     */
+    private static String getProperty(Map<String, String> pProperties, String pKey) {
+        if (pProperties instanceof TLGLazyPropertyMap) return ((TLGLazyPropertyMap)pProperties).find(pKey);
+        return pProperties.get(pKey);
+    }
+
+    private static String encode(String[] pValues) {
+        if (pValues.length == 1) return pValues[0];
+        StringBuilder lBuilder = new StringBuilder();
+        for (int i=0; i<pValues.length; i++) {
+            if (i > 0) lBuilder.append(SEPARATOR);
+            lBuilder.append(pValues[i]);
+        }
+        return lBuilder.toString();
+    }
+
+    /**
+     * Build the index from the nodes or edges of the graph. The keys are extracted by pThreads threads, each from a
+     * contiguous range of the items, and are added in item order.
+     */
+    void build(int pThreads) throws IOException {
+        List<T> lItems = new ArrayList<>();
+        for (TLGNode lNode:graph.getNodes()) {
+            if (target == Target.NODES) {
+                lItems.add(type.cast(lNode));
+                continue;
+            }
+            for (int e=0; e<lNode.getOutDegree(); e++) {
+                lItems.add(type.cast(lNode.getOutEdge(e)));
+            }
+        }
+        String[] lKeys = new String[lItems.size()];
+        int lThreads = Math.max(1, Math.min(pThreads, lItems.size()/1024));
+        if (lThreads == 1) {
+            for (int i=0; i<lKeys.length; i++) {
+                lKeys[i] = getKey(lItems.get(i));
+            }
+        }
+        else {
+            ExecutorService lExecutor = Executors.newFixedThreadPool(lThreads);
+            try {
+                List<Future<?>> lFutures = new ArrayList<>();
+                for (int t=0; t<lThreads; t++) {
+                    int lFrom = (int)((long)lKeys.length*t/lThreads);
+                    int lTo = (int)((long)lKeys.length*(t+1)/lThreads);
+                    lFutures.add(lExecutor.submit(() -> {
+                        for (int i=lFrom; i<lTo; i++) {
+                            lKeys[i] = getKey(lItems.get(i));
+                        }
+                    }));
+                }
+                for (Future<?> lFuture:lFutures) {
+                    lFuture.get();
+                }
+            }
+            catch (Exception e) {
+                throw new IOException("Building index "+name+" failed", e);
+            }
+            finally {
+                lExecutor.shutdownNow();
+            }
+        }
+        synchronized (this) {
+            clear();
+            if (kind == Kind.HASH) map = new HashMap<>(lKeys.length*4/3+16);
+            for (int i=0; i<lKeys.length; i++) {
+                if (lKeys[i] != null) put(lKeys[i], lItems.get(i));
+            }
+            sort();
+        }
+    }
+
+    /**
+     * Must not be called while holding the lock of the index, countLazyProperties() locks the graph and feeds the index
+     */
+    private void ensureBuilt() {
+        if (graph == null) throw new IllegalStateException("Index "+name+" has not been added to a graph");
+        graph.countLazyProperties();
+        if (built) return;
+        synchronized (this) {
+            if (built) return;
+            try {
+                build(TLGGraph.MAX_THREADS);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Stable sort of the entries by key, items with the same key keep their order
+     */
+    private void sort() {
+        if ((kind != Kind.SORTED) || sorted) return;
+        Integer[] lOrder = new Integer[sortedKeys.size()];
+        for (int i=0; i<lOrder.length; i++) {
+            lOrder[i] = i;
+        }
+        List<String> lKeys = sortedKeys;
+        Arrays.parallelSort(lOrder, (a, b) -> lKeys.get(a).compareTo(lKeys.get(b)));
+        List<String> lSortedKeys = new ArrayList<>(lOrder.length);
+        List<T> lSortedItems = new ArrayList<>(lOrder.length);
+        for (int lIndex:lOrder) {
+            lSortedKeys.add(sortedKeys.get(lIndex));
+            lSortedItems.add(sortedItems.get(lIndex));
+        }
+        sortedKeys = lSortedKeys;
+        sortedItems = lSortedItems;
+        sorted = true;
+    }
+
+    /**
+     * @return Number of indexed nodes or edges
+     */
+    public int size() {
+        ensureBuilt();
+        synchronized (this) {
+            return size;
+        }
+    }
+
+    /**
+     * @param pValues One value per key property
+     * @return Nodes or edges whose key properties equal pValues
+     */
+    public List<T> get(String... pValues) {
+        if (pValues.length != keys.length) throw new IllegalArgumentException("Index "+name+" expects "+keys.length+" values");
+        ensureBuilt();
+        String lKey = encode(pValues);
+        synchronized (this) {
+            if (kind == Kind.HASH) {
+                Object lValue = map.get(lKey);
+                if (lValue == null) return Collections.emptyList();
+                if (!(lValue instanceof Bucket)) return Collections.singletonList(type.cast(lValue));
+                List<T> lResult = new ArrayList<>();
+                for (Object lItem:((Bucket)lValue).items) {
+                    lResult.add(type.cast(lItem));
+                }
+                return Collections.unmodifiableList(lResult);
+            }
+            sort();
+            return new ArrayList<>(sortedItems.subList(lowerBound(lKey, false), lowerBound(lKey, true)));
+        }
+    }
+
+    /**
+     * @param pValues Values of the leading key properties, the last one is a prefix
+     * @return Nodes or edges in key order whose leading key properties equal pValues, except for the last one which
+     * only has to start with the last value
+     * @throws UnsupportedOperationException If the index is not SORTED
+     */
+    public List<T> getByPrefix(String... pValues) {
+        if (kind != Kind.SORTED) throw new UnsupportedOperationException("Index "+name+" is not sorted");
+        if ((pValues.length == 0) || (pValues.length > keys.length)) throw new IllegalArgumentException("Index "+name+" expects 1 to "+keys.length+" values");
+        ensureBuilt();
+        String lPrefix = encode(pValues);
+        synchronized (this) {
+            sort();
+            int lFrom = lowerBound(lPrefix, false);
+            int lTo = lFrom;
+            while ((lTo < sortedKeys.size()) && sortedKeys.get(lTo).startsWith(lPrefix)) lTo++;
+            return new ArrayList<>(sortedItems.subList(lFrom, lTo));
+        }
+    }
+
+    /**
+     * @param pFrom Values of the leading key properties of the inclusive lower bound, null for no lower bound
+     * @param pTo Values of the leading key properties of the exclusive upper bound, null for no upper bound
+     * @return Nodes or edges in key order whose keys lie in the range
+     * @throws UnsupportedOperationException If the index is not SORTED
+     */
+    public List<T> getRange(String[] pFrom, String[] pTo) {
+        if (kind != Kind.SORTED) throw new UnsupportedOperationException("Index "+name+" is not sorted");
+        ensureBuilt();
+        synchronized (this) {
+            sort();
+            int lFrom = pFrom == null ? 0 : lowerBound(encode(pFrom), false);
+            int lTo = pTo == null ? sortedKeys.size() : lowerBound(encode(pTo), false);
+            return lFrom < lTo ? new ArrayList<>(sortedItems.subList(lFrom, lTo)) : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Range of a single property index, see getRange(String[], String[])
+     */
+    public List<T> getRange(String pFrom, String pTo) {
+        return getRange(pFrom == null ? null : new String[]{pFrom}, pTo == null ? null : new String[]{pTo});
+    }
+
+    /**
+     * @param pAfter true for the first key greater than pKey, false for the first key not less than pKey
+     */
+    private int lowerBound(String pKey, boolean pAfter) {
+        int lLow = 0;
+        int lHigh = sortedKeys.size();
+        while (lLow < lHigh) {
+            int lMiddle = (lLow+lHigh) >>> 1;
+            int lCompare = sortedKeys.get(lMiddle).compareTo(pKey);
+            if ((lCompare < 0) || (pAfter && (lCompare == 0))) {
+                lLow = lMiddle+1;
+            }
+            else {
+                lHigh = lMiddle;
+            }
+        }
+        return lLow;
+    }
+
+    interface EntryConsumer<T> {
+        void accept(String pKey, T pItem) throws IOException;
+    }
+
+    /**
+     * Pass all entries with their encoded key, the entries of a key in the order in which they were indexed
+     */
+    void forEachEntry(EntryConsumer<T> pConsumer) throws IOException {
+        ensureBuilt();
+        synchronized (this) {
+            forEachBuiltEntry(pConsumer);
+        }
+    }
+
+    private void forEachBuiltEntry(EntryConsumer<T> pConsumer) throws IOException {
+        if (kind == Kind.SORTED) {
+            sort();
+            for (int i=0; i<sortedKeys.size(); i++) {
+                pConsumer.accept(sortedKeys.get(i), sortedItems.get(i));
+            }
+            return;
+        }
+        for (Map.Entry<String, Object> lEntry:map.entrySet()) {
+            if (lEntry.getValue() instanceof Bucket) {
+                for (Object lItem:((Bucket)lEntry.getValue()).items) {
+                    pConsumer.accept(lEntry.getKey(), type.cast(lItem));
+                }
+            }
+            else {
+                pConsumer.accept(lEntry.getKey(), type.cast(lEntry.getValue()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.hucompute.tlgparser;
+
+import java.util.*;
+
+/**
+ * Property map of a node or edge loaded with PropertyStorage.LAZY. Only the span of the raw BF line is kept, the
+ * properties are decoded into a HashMap on first access and all further operations work on that map. While the
+ * graph is loaded the span points into the reader's buffer, TLGGraph moves it into a TLGByteArena via store().
+ */
+class TLGLazyPropertyMap extends AbstractMap<String, String> {
+
+    private byte[] buffer;
+    private int start;
+    private int end;
+    private volatile Map<String, String> properties;
+
+    TLGLazyPropertyMap(byte[] pBuffer, int pStart, int pEnd) {
+        buffer = pBuffer;
+        start = pStart;
+        end = pEnd;
+    }
+
+    /**
+     * Copy the span into pArena
+     */
+    void store(TLGByteArena pArena) {
+        int lStart = pArena.append(buffer, start, end);
+        buffer = pArena.getPage();
+        end = lStart+(end-start);
+        start = lStart;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Value of pKey, read from the span without decoding the other properties unless they are decoded already
+     */
+    String find(String pKey) {
+        Map<String, String> lProperties = properties;
+        if (lProperties != null) return lProperties.get(pKey);
+        int[] lSpan = new int[4];
+        int lPosition = start;
+        while ((lPosition = TLGTokenizer.nextProperty(buffer, lPosition, end, lSpan)) >= 0) {
+            if (TLGTokenizer.decode(buffer, lSpan[TLGTokenizer.KEY_START], lSpan[TLGTokenizer.KEY_END]).equals(pKey)) {
+                return TLGTokenizer.decode(buffer, lSpan[TLGTokenizer.VALUE_START], lSpan[TLGTokenizer.VALUE_END]);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> decode() {
+        Map<String, String> lResult = properties;
+        if (lResult != null) return lResult;
+        synchronized (this) {
+            if (properties == null) {
+                lResult = new HashMap<>();
+                int[] lSpan = new int[4];
+                int lPosition = start;
+                while ((lPosition = TLGTokenizer.nextProperty(buffer, lPosition, end, lSpan)) >= 0) {
+                    lResult.put(TLGTokenizer.decode(buffer, lSpan[TLGTokenizer.KEY_START], lSpan[TLGTokenizer.KEY_END]),
+                            TLGTokenizer.decode(buffer, lSpan[TLGTokenizer.VALUE_START], lSpan[TLGTokenizer.VALUE_END]));
+                }
+                properties = lResult;
+            }
+            return properties;
+        }
+    }
+
+    @Override
+    public int size() {
+        return decode().size();
+    }
+
+    @Override
+    public boolean containsKey(Object pKey) {
+        return decode().containsKey(pKey);
+    }
+
+    @Override
+    public String get(Object pKey) {
+        return decode().get(pKey);
+    }
+
+    @Override
+    public String put(String pKey, String pValue) {
+        return decode().put(pKey, pValue);
+    }
+
+    @Override
+    public String remove(Object pKey) {
+        return decode().remove(pKey);
+    }
+
+    @Override
+    public void clear() {
+        decode().clear();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return decode().entrySet();
+    }
+
+}
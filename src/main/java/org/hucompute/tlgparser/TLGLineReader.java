@@ -0,0 +1,133 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits an InputStream into lines without decoding them. Line terminators are handled like
+ * BufferedReader.readLine(): "\n", "\r" and "\r\n". The current line is available as a byte range of
+ * getBuffer() until the next call of nextLine().
+ */
+public class TLGLineReader {
+
+    private InputStream input;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int lineStart;
+    private int lineEnd;
+    private long lineOffset;
+    private long bufferOffset;
+    private boolean skipLF;
+    private boolean eof;
+
+    public TLGLineReader(InputStream pInput) {
+        this(pInput, 1024*1024);
+    }
+
+    public TLGLineReader(InputStream pInput, int pBufferSize) {
+        input = pInput;
+        buffer = new byte[pBufferSize];
+    }
+
+    /**
+     * Advance to the next line
+     * @return false if the end of the stream has been reached
+     * @throws IOException
+     */
+    public boolean nextLine() throws IOException {
+        int lScan = position;
+        while (true) {
+            if (skipLF && (lScan < limit)) {
+                skipLF = false;
+                if (buffer[lScan] == '\n') {
+                    lScan++;
+                    position = lScan;
+                }
+            }
+            while (lScan < limit) {
+                byte b = buffer[lScan];
+                if ((b == '\n') || (b == '\r')) {
+                    lineStart = position;
+                    lineEnd = lScan;
+                    lineOffset = bufferOffset + position;
+                    position = lScan+1;
+                    skipLF = b == '\r';
+                    return true;
+                }
+                lScan++;
+            }
+            if (eof) {
+                if (position < limit) {
+                    lineStart = position;
+                    lineEnd = limit;
+                    lineOffset = bufferOffset + position;
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            int lPending = limit - position;
+            if (lPending == buffer.length) {
+                byte[] lBuffer = new byte[buffer.length*2];
+                System.arraycopy(buffer, position, lBuffer, 0, lPending);
+                buffer = lBuffer;
+            }
+            else if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, lPending);
+            }
+            bufferOffset += position;
+            lScan -= position;
+            position = 0;
+            limit = lPending;
+            int lRead = input.read(buffer, limit, buffer.length-limit);
+            if (lRead < 0) {
+                eof = true;
+            }
+            else {
+                limit += lRead;
+            }
+        }
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @return Byte offset of the current line within the stream
+     */
+    public long getLineOffset() {
+        return lineOffset;
+    }
+
+    public boolean isEmptyLine() {
+        return lineStart == lineEnd;
+    }
+
+    public boolean startsWith(byte[] pPrefix) {
+        if (lineEnd - lineStart < pPrefix.length) return false;
+        for (int i=0; i<pPrefix.length; i++) {
+            if (buffer[lineStart+i] != pPrefix[i]) return false;
+        }
+        return true;
+    }
+
+    public String getLine() {
+        return new String(buffer, lineStart, lineEnd-lineStart, StandardCharsets.UTF_8);
+    }
+
+    public void close() throws IOException {
+        input.close();
+    }
+
+}
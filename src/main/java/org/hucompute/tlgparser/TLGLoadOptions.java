@@ -0,0 +1,158 @@
+package org.hucompute.tlgparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Options for TLGGraph.fromBorlandFormatFile(File, Directedness, TLGLoadOptions). The defaults reproduce the
+ * behaviour of fromBorlandFormatFile(File, Directedness).
+ */
+public class TLGLoadOptions {
+
+    /**
+     * How node and edge properties are held in memory. HASH_MAP keeps one HashMap per node and edge, SYMBOLS stores
+     * keys and low cardinality values as codes of the graph wide TLGSymbolTable. COLUMNS keeps the properties of all
+     * nodes and of all edges in TLGPropertyColumns, see there. LAZY only keeps the raw lines and decodes the properties
+     * of a node or edge on first access, the attribute counts and types are computed when they are first requested.
+     */
+    public enum PropertyStorage {HASH_MAP, SYMBOLS, COLUMNS, LAZY}
+
+    /**
+     * Where the edges are held. HEAP keeps TLGEdge objects in arrays of their nodes. DIRECT and MAPPED keep targets,
+     * type codes, similarities and raw properties of all edges outside the heap, in direct buffers or in buffers mapped
+     * from temporary files of the mapped directory, which may exceed the physical memory. The traversal methods of
+     * TLGNode work as before but create edge objects on access. The first change of the edges moves all edges to the
+     * heap as with HEAP. TLGGraph.close() releases the buffers.
+     */
+    public enum Adjacency {HEAP, DIRECT, MAPPED}
+
+    protected int threads = 1;
+    protected int chunkSize = 16*1024*1024;
+    protected PropertyStorage propertyStorage = PropertyStorage.HASH_MAP;
+    protected Adjacency adjacency = Adjacency.HEAP;
+    protected File mappedDirectory;
+    protected Predicate<TLGVertexRecord> nodeFilter;
+    protected Predicate<TLGEdgeRecord> edgeFilter;
+    protected List<TLGIndex<?>> indexes = new ArrayList<>();
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of threads used to parse the Vertices: and Edges: sections. Values above 1 enable the chunked parallel
+     * reader, the resulting graph is the same as with a single thread.
+     */
+    public TLGLoadOptions setThreads(int pThreads) {
+        threads = Math.max(1, pThreads);
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Size in bytes of the line aligned chunks handed to the parser threads
+     */
+    public TLGLoadOptions setChunkSize(int pChunkSize) {
+        chunkSize = Math.max(1, pChunkSize);
+        return this;
+    }
+
+    public PropertyStorage getPropertyStorage() {
+        return propertyStorage;
+    }
+
+    public TLGLoadOptions setPropertyStorage(PropertyStorage pPropertyStorage) {
+        propertyStorage = pPropertyStorage;
+        return this;
+    }
+
+    public Adjacency getAdjacency() {
+        return adjacency;
+    }
+
+    public TLGLoadOptions setAdjacency(Adjacency pAdjacency) {
+        adjacency = pAdjacency;
+        return this;
+    }
+
+    public File getMappedDirectory() {
+        return mappedDirectory;
+    }
+
+    /**
+     * Directory of the temporary files of Adjacency.MAPPED, null for java.io.tmpdir
+     */
+    public TLGLoadOptions setMappedDirectory(File pMappedDirectory) {
+        mappedDirectory = pMappedDirectory;
+        return this;
+    }
+
+    public Predicate<TLGVertexRecord> getNodeFilter() {
+        return nodeFilter;
+    }
+
+    /**
+     * Only nodes accepted by pNodeFilter are loaded, rejected nodes are never allocated and do not show up in the
+     * attribute counts. Edges from or to rejected nodes are dropped before their properties are tokenized.
+     * The record passed to the filter is only valid during the call.
+     * @param pNodeFilter null to accept all nodes
+     */
+    public TLGLoadOptions setNodeFilter(Predicate<TLGVertexRecord> pNodeFilter) {
+        nodeFilter = pNodeFilter;
+        return this;
+    }
+
+    public Predicate<TLGEdgeRecord> getEdgeFilter() {
+        return edgeFilter;
+    }
+
+    /**
+     * Only edges accepted by pEdgeFilter are loaded. The filter only sees edges whose nodes have both been loaded.
+     * @param pEdgeFilter null to accept all edges
+     */
+    public TLGLoadOptions setEdgeFilter(Predicate<TLGEdgeRecord> pEdgeFilter) {
+        edgeFilter = pEdgeFilter;
+        return this;
+    }
+
+    public List<TLGIndex<?>> getIndexes() {
+        return Collections.unmodifiableList(indexes);
+    }
+
+    /**
+     * Build a copy of pIndex right after loading, with getThreads() threads. The copy is available via
+     * TLGGraph.getNodeIndex() or getEdgeIndex(), pIndex itself stays unbuilt.
+     */
+    public TLGLoadOptions addIndex(TLGIndex<?> pIndex) {
+        indexes.add(pIndex);
+        return this;
+    }
+
+    /**
+     * @return Filter accepting records with property pKey set to pValue, compared without decoding the record
+     */
+    public static <T extends TLGRecord> Predicate<T> hasProperty(String pKey, String pValue) {
+        return r -> {
+            int lIndex = r.indexOfProperty(pKey);
+            return (lIndex >= 0) && r.isPropertyValue(lIndex, pValue);
+        };
+    }
+
+    /**
+     * @return Filter accepting records with property pKey set to one of pValues
+     */
+    public static <T extends TLGRecord> Predicate<T> hasProperty(String pKey, Set<String> pValues) {
+        return r -> {
+            int lIndex = r.indexOfProperty(pKey);
+            return (lIndex >= 0) && pValues.contains(r.getPropertyValue(lIndex));
+        };
+    }
+
+}
@@ -0,0 +1,286 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Breadth first searches from many sources at once on a TLGFrozenGraph, after "The More the Merrier: Efficient
+ * Multi-Source Graph Traversal" (Then et al.). Every node holds one bit per source of the current batch for seen,
+ * the current frontier and the next frontier, hence the adjacency of a node is read once per level for all sources
+ * of a batch. Batches of getBatchSize() sources are spread over the threads. The distances are aggregated into a
+ * TLGDistanceDistribution without storing pairs, a PairConsumer receives every single pair if needed.
+ * Every thread holds three bit sets of getBatchSize() bits per node, 96 bytes per node at the default 256 sources,
+ * plus 16 bytes per node for the frontier lists. The number of threads is reduced so that these fit into half of the
+ * free heap.
+ */
+public class TLGMultiSourceBFS {
+
+    private static Logger logger = LogManager.getLogger(TLGMultiSourceBFS.class);
+
+    /**
+     * Receives every reachable (source, target) pair with its distance, called from the worker threads
+     */
+    public interface PairConsumer {
+        void accept(int pSource, int pTarget, int pDistance);
+    }
+
+    /**
+     * Receives the totals of every source once its search is complete, called from the worker threads
+     */
+    public interface SourceConsumer {
+        /**
+         * @param pIndex Position of the source in the array passed to run()
+         * @param pReached Number of reached nodes without the source itself
+         * @param pEccentricity Largest distance of a reached node
+         */
+        void accept(int pIndex, long pReached, long pDistanceSum, int pEccentricity);
+    }
+
+    protected TLGFrozenGraph graph;
+    protected TLGGraph.Direction direction;
+    protected int words = 4;
+    protected int threads = Runtime.getRuntime().availableProcessors();
+    protected PairConsumer pairConsumer;
+    protected SourceConsumer sourceConsumer;
+    protected Consumer<TLGDistanceDistribution> listener;
+
+    /**
+     * @param pDirection OUT measures d(source, target) along OUT edges, IN along IN edges, ANY ignores directions
+     */
+    public TLGMultiSourceBFS(TLGFrozenGraph pGraph, TLGGraph.Direction pDirection) {
+        graph = pGraph;
+        direction = pDirection;
+    }
+
+    public int getBatchSize() {
+        return words*64;
+    }
+
+    /**
+     * Number of sources per pass, rounded up to a multiple of 64. Every thread needs 3*pBatchSize/8+16 bytes per node.
+     */
+    public TLGMultiSourceBFS setBatchSize(int pBatchSize) {
+        words = Math.max(1, (pBatchSize+63)/64);
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public TLGMultiSourceBFS setThreads(int pThreads) {
+        threads = Math.max(1, pThreads);
+        return this;
+    }
+
+    /**
+     * Must be thread safe if more than one thread is used
+     */
+    public TLGMultiSourceBFS setPairConsumer(PairConsumer pPairConsumer) {
+        pairConsumer = pPairConsumer;
+        return this;
+    }
+
+    /**
+     * Must be thread safe if more than one thread is used
+     */
+    public TLGMultiSourceBFS setSourceConsumer(SourceConsumer pSourceConsumer) {
+        sourceConsumer = pSourceConsumer;
+        return this;
+    }
+
+    /**
+     * Receives a copy of the distribution of all batches completed so far after every batch, calls are serialized
+     */
+    public TLGMultiSourceBFS setListener(Consumer<TLGDistanceDistribution> pListener) {
+        listener = pListener;
+        return this;
+    }
+
+    /**
+     * Search from all nodes
+     */
+    public TLGDistanceDistribution run() {
+        int[] lSources = new int[graph.size()];
+        for (int i=0; i<lSources.length; i++) {
+            lSources[i] = i;
+        }
+        return run(lSources);
+    }
+
+    /**
+     * @param pSources Ordinals of the source nodes
+     */
+    public TLGDistanceDistribution run(int[] pSources) {
+        TLGDistanceDistribution lResult = new TLGDistanceDistribution(graph.size());
+        int lBatchSize = getBatchSize();
+        int lBatches = (pSources.length+lBatchSize-1)/lBatchSize;
+        AtomicInteger lNextBatch = new AtomicInteger();
+        int lThreads = Math.max(1, Math.min(threads, lBatches));
+        // seen, visit and visitNext plus the frontier lists of every thread
+        long lBytesPerThread = 3L*graph.size()*words*8+16L*graph.size();
+        Runtime lRuntime = Runtime.getRuntime();
+        long lFree = lRuntime.maxMemory()-(lRuntime.totalMemory()-lRuntime.freeMemory());
+        int lMemoryThreads = (int)Math.max(1, Math.min(Integer.MAX_VALUE, lFree/2/Math.max(1, lBytesPerThread)));
+        if (lMemoryThreads < lThreads) {
+            logger.info("Multi source search with "+lMemoryThreads+" instead of "+lThreads+" threads, "+lBytesPerThread+" bytes per thread");
+            lThreads = lMemoryThreads;
+        }
+        Runnable lTask = () -> {
+            Batch lBatch = new Batch();
+            int b;
+            while ((b = lNextBatch.getAndIncrement()) < lBatches) {
+                int lFrom = b*lBatchSize;
+                TLGDistanceDistribution lDistribution = lBatch.search(pSources, lFrom, Math.min(pSources.length, lFrom+lBatchSize));
+                synchronized (lResult) {
+                    lResult.add(lDistribution);
+                    if (listener != null) listener.accept(lResult.copy());
+                }
+            }
+        };
+        TLGTasks.runAll(Collections.nCopies(lThreads, lTask), lThreads, "Multi source search");
+        return lResult;
+    }
+
+    /**
+     * Bit sets of one thread, words per node are stored consecutively. Only the nodes of the current frontier and
+     * their neighbours are touched per level, hence a batch costs O(n+m) words per source word and not a pass over all
+     * nodes per level.
+     */
+    private class Batch {
+
+        long[] seen = new long[graph.size()*words];
+        long[] visit = new long[graph.size()*words];
+        long[] visitNext = new long[graph.size()*words];
+        /**
+         * Nodes with bits in visit
+         */
+        int[] frontier = new int[graph.size()];
+        int[] nextFrontier = new int[graph.size()];
+        /**
+         * Nodes with bits in visitNext, a node is listed once per round
+         */
+        int[] touched = new int[graph.size()];
+        int[] touchedRounds = new int[graph.size()];
+        int round;
+        long[] sourceReached = new long[words*64];
+        long[] sourceDistanceSums = new long[words*64];
+        int[] sourceEccentricities = new int[words*64];
+
+        TLGDistanceDistribution search(int[] pSources, int pFrom, int pTo) {
+            TLGDistanceDistribution lResult = new TLGDistanceDistribution(graph.size());
+            lResult.sources = pTo-pFrom;
+            int lWords = words;
+            int[] lOutOffsets = graph.getOutOffsets();
+            int[] lOutTargets = graph.getOutTargets();
+            int[] lInOffsets = graph.getInOffsets();
+            int[] lInSources = graph.getInSources();
+            boolean lOut = direction != TLGGraph.Direction.IN;
+            boolean lIn = direction != TLGGraph.Direction.OUT;
+            Arrays.fill(seen, 0);
+            boolean lPerSource = (pairConsumer != null) || (sourceConsumer != null);
+            if (lPerSource) {
+                Arrays.fill(sourceReached, 0);
+                Arrays.fill(sourceDistanceSums, 0);
+                Arrays.fill(sourceEccentricities, 0);
+            }
+            round++;
+            int lFrontier = 0;
+            for (int i=pFrom; i<pTo; i++) {
+                int lBit = i-pFrom;
+                int lIndex = pSources[i]*lWords+(lBit >>> 6);
+                seen[lIndex] |= 1L << lBit;
+                visit[lIndex] |= 1L << lBit;
+                if (touchedRounds[pSources[i]] != round) {
+                    touchedRounds[pSources[i]] = round;
+                    frontier[lFrontier++] = pSources[i];
+                }
+            }
+            for (int d=1; lFrontier > 0; d++) {
+                // Push the frontier of every active node to its neighbours
+                round++;
+                int lTouched = 0;
+                for (int f=0; f<lFrontier; f++) {
+                    int v = frontier[f];
+                    int lBase = v*lWords;
+                    if (lOut) {
+                        for (int e=lOutOffsets[v]; e<lOutOffsets[v+1]; e++) {
+                            lTouched = push(lBase, lOutTargets[e], lTouched);
+                        }
+                    }
+                    if (lIn) {
+                        for (int e=lInOffsets[v]; e<lInOffsets[v+1]; e++) {
+                            lTouched = push(lBase, lInSources[e], lTouched);
+                        }
+                    }
+                }
+                for (int f=0; f<lFrontier; f++) {
+                    Arrays.fill(visit, frontier[f]*lWords, (frontier[f]+1)*lWords, 0);
+                }
+                // Keep the bits of sources which reach a node for the first time
+                lFrontier = 0;
+                long lCount = 0;
+                for (int t=0; t<lTouched; t++) {
+                    int v = touched[t];
+                    int lBase = v*lWords;
+                    boolean lReached = false;
+                    for (int w=0; w<lWords; w++) {
+                        long lBits = visitNext[lBase+w] & ~seen[lBase+w];
+                        visitNext[lBase+w] = 0;
+                        visit[lBase+w] = lBits;
+                        if (lBits != 0) {
+                            seen[lBase+w] |= lBits;
+                            lCount += Long.bitCount(lBits);
+                            lReached = true;
+                            if (lPerSource) {
+                                while (lBits != 0) {
+                                    int lBit = (w << 6)+Long.numberOfTrailingZeros(lBits);
+                                    sourceReached[lBit]++;
+                                    sourceDistanceSums[lBit] += d;
+                                    sourceEccentricities[lBit] = d;
+                                    if (pairConsumer != null) pairConsumer.accept(pSources[pFrom+lBit], v, d);
+                                    lBits &= lBits-1;
+                                }
+                            }
+                        }
+                    }
+                    if (lReached) nextFrontier[lFrontier++] = v;
+                }
+                int[] lSwap = frontier;
+                frontier = nextFrontier;
+                nextFrontier = lSwap;
+                if (lCount > 0) lResult.add(d, lCount);
+            }
+            if (sourceConsumer != null) {
+                for (int i=pFrom; i<pTo; i++) {
+                    sourceConsumer.accept(i, sourceReached[i-pFrom], sourceDistanceSums[i-pFrom], sourceEccentricities[i-pFrom]);
+                }
+            }
+            return lResult;
+        }
+
+        /**
+         * Or the frontier bits at pBase into the next frontier of pOther
+         * @return The new number of touched nodes
+         */
+        private int push(int pBase, int pOther, int pTouched) {
+            if (touchedRounds[pOther] != round) {
+                touchedRounds[pOther] = round;
+                touched[pTouched++] = pOther;
+            }
+            int lOther = pOther*words;
+            for (int w=0; w<words; w++) {
+                long lBits = visit[pBase+w];
+                if (lBits != 0) visitNext[lOther+w] |= lBits;
+            }
+            return pTouched;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.hucompute.tlgparser;
+
+import java.util.Arrays;
+
+/**
+ * Approximate neighbourhood function of a graph, see TLGHyperANF. N(t) is the estimated number of ordered node
+ * pairs (u, v) with d(u, v) <= t including the pairs of a node with itself, hence N(0) is about the number of nodes.
+ */
+public class TLGNeighbourhoodFunction {
+
+    protected double[] values;
+    protected double[] reachable;
+    protected int registers;
+    protected long time;
+
+    TLGNeighbourhoodFunction(double[] pValues, double[] pReachable, int pRegisters, long pTime) {
+        values = pValues;
+        reachable = pReachable;
+        registers = pRegisters;
+        time = pTime;
+    }
+
+    /**
+     * @return N(t) for t from 0 to getIterations()
+     */
+    public double[] getValues() {
+        return Arrays.copyOf(values, values.length);
+    }
+
+    public double getValue(int t) {
+        return values[Math.min(t, values.length-1)];
+    }
+
+    /**
+     * @return Number of iterations after which no counter changed anymore, an estimate of the diameter from below
+     */
+    public int getIterations() {
+        return values.length-1;
+    }
+
+    /**
+     * @return Estimated number of nodes reachable from the node with ordinal pOrdinal, without the node itself
+     */
+    public double getReachable(int pOrdinal) {
+        return Math.max(0, reachable[pOrdinal]-1);
+    }
+
+    /**
+     * @return Estimated number of ordered pairs of distinct nodes which are connected
+     */
+    public double getReachablePairs() {
+        return values[values.length-1]-values[0];
+    }
+
+    /**
+     * @return Estimated average distance of the connected pairs of distinct nodes
+     */
+    public double getAverageDistance() {
+        double lPairs = getReachablePairs();
+        if (lPairs <= 0) return 0;
+        double lSum = 0;
+        for (int t=1; t<values.length; t++) {
+            lSum += t*(values[t]-values[t-1]);
+        }
+        return lSum/lPairs;
+    }
+
+    /**
+     * @param pQuantile Fraction of the connected pairs, 0.9 for the usual effective diameter
+     * @return Smallest distance within which pQuantile of the connected pairs lie, interpolated linearly
+     */
+    public double getEffectiveDiameter(double pQuantile) {
+        double lTarget = values[0]+pQuantile*getReachablePairs();
+        for (int t=1; t<values.length; t++) {
+            if (values[t] >= lTarget) {
+                return t-1+(lTarget-values[t-1])/(values[t]-values[t-1]);
+            }
+        }
+        return getIterations();
+    }
+
+    public double getEffectiveDiameter() {
+        return getEffectiveDiameter(0.9);
+    }
+
+    /**
+     * @return Relative standard error of a single counter
+     */
+    public double getRelativeStandardError() {
+        return 1.04/Math.sqrt(registers);
+    }
+
+    /**
+     * @return Milliseconds of the computation
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "average distance "+getAverageDistance()+", effective diameter "+getEffectiveDiameter()+" after "+getIterations()+" iterations with "+registers+" registers, "+time+"ms";
+    }
+
+}
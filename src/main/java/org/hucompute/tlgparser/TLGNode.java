@@ -1,8 +1,10 @@
 package org.hucompute.tlgparser;
 
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TObjectLongHashMap;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,11 +14,71 @@ public class TLGNode {
     protected String id;
     protected Map<String, String> properties = new HashMap<>();
     protected TLGGraph graph;
-    protected Set<TLGEdge> edges = new HashSet<>();
+    protected static final TLGEdge[] NO_EDGES = new TLGEdge[0];
+    /**
+     * Edges with this node as source in insertion order, the first outDegree entries are used
+     */
+    protected TLGEdge[] outEdges = NO_EDGES;
+    protected int outDegree;
+    /**
+     * Edges with this node as target in insertion order, the first inDegree entries are used
+     */
+    protected TLGEdge[] inEdges = NO_EDGES;
+    protected int inDegree;
+    /**
+     * OUT and IN edges grouped by type, built on the first typed access and dropped when an edge is added or removed
+     */
+    private TypeIndex outTypeIndex;
+    private TypeIndex inTypeIndex;
     private Map<Integer, Set<TLGNode>> cachedSphereMap = null;
     private int cachedSphereMaxDepth = 0;
     private TLGGraph.Directedness cachedSphereDirectedness = TLGGraph.Directedness.DIRECTED;
 
+    /**
+     * Positions of the OUT or IN edges of a node grouped by the code of their type, see TLGGraph.getEdgeTypeMask().
+     * Within a type the positions are in insertion order. Edges whose type has no code are left out.
+     */
+    private static class TypeIndex {
+        final int version;
+        /**
+         * Codes of the types present
+         */
+        final long mask;
+        /**
+         * The edges of the i-th present type are at positions[starts[i]] to positions[starts[i+1]-1]
+         */
+        final int[] starts;
+        final int[] positions;
+
+        TypeIndex(int pVersion, long pMask, int[] pStarts, int[] pPositions) {
+            version = pVersion;
+            mask = pMask;
+            starts = pStarts;
+            positions = pPositions;
+        }
+
+        /**
+         * @return Index of the present type pCode among the present types
+         */
+        int rank(int pCode) {
+            return Long.bitCount(mask & ((1L << pCode)-1));
+        }
+
+        /**
+         * @return Number of edges with a type in pTypeMask
+         */
+        int count(long pTypeMask) {
+            int lResult = 0;
+            long lTypes = mask & pTypeMask;
+            while (lTypes != 0) {
+                int lRank = rank(Long.numberOfTrailingZeros(lTypes));
+                lResult += starts[lRank+1]-starts[lRank];
+                lTypes &= lTypes-1;
+            }
+            return lResult;
+        }
+    }
+
     public TLGNode(TLGGraph pTLGGraph, String pID, Map<String, String> pProperties) {
         graph = pTLGGraph;
         id = pID;
@@ -41,62 +103,290 @@ public class TLGNode {
     }
 
     public void removeEdge(TLGEdge pEdge) {
-        pEdge.getSource().edges.remove(pEdge);
-        pEdge.getTarget().edges.remove(pEdge);
+        pEdge.getSource().removeOutEdge(pEdge);
+        pEdge.getTarget().removeInEdge(pEdge);
     }
 
-    public Set<TLGEdge> getEdges(TLGGraph.Direction pDirection) {
-        switch (pDirection) {
-            case IN: {
-                Set<TLGEdge> lResult = new HashSet<>();
-                for (TLGEdge lEdge:edges) {
-                    if (lEdge.target.equals(this)) {
-                        lResult.add(lEdge);
-                    }
-                }
-                return lResult;
+    void addOutEdge(TLGEdge pEdge) {
+        if (outDegree == outEdges.length) outEdges = Arrays.copyOf(outEdges, Math.max(4, outDegree*2));
+        outEdges[outDegree++] = pEdge;
+        outTypeIndex = null;
+    }
+
+    void addInEdge(TLGEdge pEdge) {
+        if (inDegree == inEdges.length) inEdges = Arrays.copyOf(inEdges, Math.max(4, inDegree*2));
+        inEdges[inDegree++] = pEdge;
+        inTypeIndex = null;
+    }
+
+    /**
+     * Reallocate the edge arrays at their used size
+     */
+    void trimEdges() {
+        outEdges = outDegree == 0 ? NO_EDGES : Arrays.copyOf(outEdges, outDegree);
+        inEdges = inDegree == 0 ? NO_EDGES : Arrays.copyOf(inEdges, inDegree);
+    }
+
+    void removeOutEdge(TLGEdge pEdge) {
+        outDegree = remove(outEdges, outDegree, pEdge);
+        outTypeIndex = null;
+    }
+
+    void removeInEdge(TLGEdge pEdge) {
+        inDegree = remove(inEdges, inDegree, pEdge);
+        inTypeIndex = null;
+    }
+
+    /**
+     * Remove pEdge from the first pCount entries of pEdges, keeping the order of the others
+     * @return The new count
+     */
+    private static int remove(TLGEdge[] pEdges, int pCount, TLGEdge pEdge) {
+        for (int i=0; i<pCount; i++) {
+            if (pEdges[i] == pEdge) {
+                System.arraycopy(pEdges, i+1, pEdges, i, pCount-i-1);
+                pEdges[pCount-1] = null;
+                return pCount-1;
             }
-            case OUT: {
-                Set<TLGEdge> lResult = new HashSet<>();
-                for (TLGEdge lEdge:edges) {
-                    if (lEdge.source.equals(this)) {
-                        lResult.add(lEdge);
-                    }
-                }
-                return lResult;
+        }
+        return pCount;
+    }
+
+    public int getOutDegree() {
+        return outDegree;
+    }
+
+    public int getInDegree() {
+        return inDegree;
+    }
+
+    /**
+     * @return Number of edges incident to this node, loops count twice
+     */
+    public int getDegree() {
+        return getOutDegree()+getInDegree();
+    }
+
+    /**
+     * Cursor access to the OUT edges without allocation
+     * @param pIndex 0 to getOutDegree()-1, in insertion order
+     */
+    public TLGEdge getOutEdge(int pIndex) {
+        return outEdges[pIndex];
+    }
+
+    /**
+     * @param pIndex 0 to getInDegree()-1, in insertion order
+     */
+    public TLGEdge getInEdge(int pIndex) {
+        return inEdges[pIndex];
+    }
+
+    /**
+     * Cursor access to the neighbours in both directions without allocation
+     * @param pIndex 0 to getDegree()-1, the targets of the OUT edges come before the sources of the IN edges
+     */
+    public TLGNode getNeighbour(int pIndex) {
+        return pIndex < outDegree ? outEdges[pIndex].target : inEdges[pIndex-outDegree].source;
+    }
+
+    public void forEachOutNeighbour(Consumer<TLGNode> pConsumer) {
+        int lOutDegree = getOutDegree();
+        for (int i=0; i<lOutDegree; i++) {
+            pConsumer.accept(getNeighbour(i));
+        }
+    }
+
+    public void forEachInNeighbour(Consumer<TLGNode> pConsumer) {
+        int lOutDegree = getOutDegree();
+        int lDegree = lOutDegree+getInDegree();
+        for (int i=lOutDegree; i<lDegree; i++) {
+            pConsumer.accept(getNeighbour(i));
+        }
+    }
+
+    /**
+     * Pass the node at the other end of every edge in pDirection. Unlike getLinkedNodes() a node is passed once per
+     * edge, for ANY the targets of the OUT edges come before the sources of the IN edges.
+     */
+    public void forEachNeighbour(TLGGraph.Direction pDirection, Consumer<TLGNode> pConsumer) {
+        if (pDirection != TLGGraph.Direction.IN) forEachOutNeighbour(pConsumer);
+        if (pDirection != TLGGraph.Direction.OUT) forEachInNeighbour(pConsumer);
+    }
+
+    /**
+     * Pass every edge in pDirection, for ANY the OUT edges come first and loops are passed twice
+     */
+    public void forEachEdge(TLGGraph.Direction pDirection, Consumer<TLGEdge> pConsumer) {
+        if (pDirection != TLGGraph.Direction.IN) {
+            int lOutDegree = getOutDegree();
+            for (int i=0; i<lOutDegree; i++) {
+                pConsumer.accept(getOutEdge(i));
+            }
+        }
+        if (pDirection != TLGGraph.Direction.OUT) {
+            int lInDegree = getInDegree();
+            for (int i=0; i<lInDegree; i++) {
+                pConsumer.accept(getInEdge(i));
             }
-            case ANY:
-            default: {
-                return edges;
+        }
+    }
+
+    /**
+     * Pass every edge in pDirection whose Type property is pType, see forEachEdge(Direction, Consumer)
+     */
+    public void forEachEdge(String pType, TLGGraph.Direction pDirection, Consumer<TLGEdge> pConsumer) {
+        int lCode = graph.getEdgeTypeCode(pType);
+        if (lCode >= 0) {
+            forEachEdge(1L << lCode, pDirection, pConsumer);
+        }
+        else {
+            forEachEdge(pDirection, e -> {
+                if (e.getProperty("Type", "").equals(pType)) pConsumer.accept(e);
+            });
+        }
+    }
+
+    /**
+     * Pass every edge in pDirection whose type is in pTypeMask, see TLGGraph.getEdgeTypeMask(). Only the matching
+     * edges are visited. They are grouped by type in the order of the type codes and in insertion order within a
+     * type, for ANY the OUT edges come first and loops are passed twice.
+     */
+    public void forEachEdge(long pTypeMask, TLGGraph.Direction pDirection, Consumer<TLGEdge> pConsumer) {
+        if (pTypeMask == TLGGraph.ALL_EDGE_TYPES) {
+            forEachEdge(pDirection, pConsumer);
+            return;
+        }
+        if (pDirection != TLGGraph.Direction.IN) forEachEdge(getTypeIndex(true), outEdges, pTypeMask, pConsumer);
+        if (pDirection != TLGGraph.Direction.OUT) forEachEdge(getTypeIndex(false), inEdges, pTypeMask, pConsumer);
+    }
+
+    private static void forEachEdge(TypeIndex pIndex, TLGEdge[] pEdges, long pTypeMask, Consumer<TLGEdge> pConsumer) {
+        long lTypes = pIndex.mask & pTypeMask;
+        while (lTypes != 0) {
+            int lRank = pIndex.rank(Long.numberOfTrailingZeros(lTypes));
+            for (int i=pIndex.starts[lRank]; i<pIndex.starts[lRank+1]; i++) {
+                pConsumer.accept(pEdges[pIndex.positions[i]]);
+            }
+            lTypes &= lTypes-1;
+        }
+    }
+
+    /**
+     * @return Number of OUT edges with a type in pTypeMask
+     */
+    public int getOutDegree(long pTypeMask) {
+        return pTypeMask == TLGGraph.ALL_EDGE_TYPES ? outDegree : getTypeIndex(true).count(pTypeMask);
+    }
+
+    /**
+     * @return Number of IN edges with a type in pTypeMask
+     */
+    public int getInDegree(long pTypeMask) {
+        return pTypeMask == TLGGraph.ALL_EDGE_TYPES ? inDegree : getTypeIndex(false).count(pTypeMask);
+    }
+
+    /**
+     * Collect the positions of the OUT or IN edges with a type in pTypeMask into pPositions, in insertion order.
+     * Only the matching edges are visited.
+     * @return Number of positions
+     */
+    int getEdgePositions(boolean pOut, long pTypeMask, TIntArrayList pPositions) {
+        pPositions.resetQuick();
+        if (pTypeMask == TLGGraph.ALL_EDGE_TYPES) {
+            int lDegree = pOut ? outDegree : inDegree;
+            for (int i=0; i<lDegree; i++) {
+                pPositions.add(i);
+            }
+            return lDegree;
+        }
+        TypeIndex lIndex = getTypeIndex(pOut);
+        long lTypes = lIndex.mask & pTypeMask;
+        boolean lSort = Long.bitCount(lTypes) > 1;
+        while (lTypes != 0) {
+            int lRank = lIndex.rank(Long.numberOfTrailingZeros(lTypes));
+            pPositions.add(lIndex.positions, lIndex.starts[lRank], lIndex.starts[lRank+1]-lIndex.starts[lRank]);
+            lTypes &= lTypes-1;
+        }
+        if (lSort) pPositions.sort();
+        return pPositions.size();
+    }
+
+    private TypeIndex getTypeIndex(boolean pOut) {
+        TypeIndex lResult = pOut ? outTypeIndex : inTypeIndex;
+        if ((lResult != null) && (lResult.version == graph.edgeTypeVersion)) return lResult;
+        lResult = buildTypeIndex(pOut ? outEdges : inEdges, pOut ? outDegree : inDegree);
+        if (pOut) {
+            outTypeIndex = lResult;
+        }
+        else {
+            inTypeIndex = lResult;
+        }
+        return lResult;
+    }
+
+    /**
+     * Group the first pCount entries of pEdges by type code with a stable counting sort
+     */
+    private TypeIndex buildTypeIndex(TLGEdge[] pEdges, int pCount) {
+        int lVersion = graph.edgeTypeVersion;
+        int[] lCodes = new int[pCount];
+        long lMask = 0;
+        for (int i=0; i<pCount; i++) {
+            lCodes[i] = graph.assignEdgeTypeCode(pEdges[i].getProperty("Type", ""));
+            if (lCodes[i] >= 0) lMask |= 1L << lCodes[i];
+        }
+        int[] lStarts = new int[Long.bitCount(lMask)+1];
+        for (int i=0; i<pCount; i++) {
+            if (lCodes[i] >= 0) {
+                // Rank among the present types
+                lCodes[i] = Long.bitCount(lMask & ((1L << lCodes[i])-1));
+                lStarts[lCodes[i]+1]++;
             }
         }
+        for (int t=1; t<lStarts.length; t++) {
+            lStarts[t] += lStarts[t-1];
+        }
+        int[] lNext = Arrays.copyOf(lStarts, lStarts.length-1);
+        int[] lPositions = new int[lStarts[lStarts.length-1]];
+        for (int i=0; i<pCount; i++) {
+            if (lCodes[i] >= 0) lPositions[lNext[lCodes[i]]++] = i;
+        }
+        return new TypeIndex(lVersion, lMask, lStarts, lPositions);
+    }
+
+    /**
+     * @return New set of the edges in pDirection. For ANY loops are contained once and the OUT edges come first.
+     */
+    public Set<TLGEdge> getEdges(TLGGraph.Direction pDirection) {
+        Set<TLGEdge> lResult = new LinkedHashSet<>();
+        forEachEdge(pDirection, lResult::add);
+        return lResult;
     }
 
     public Set<TLGNode> getNodes(TLGGraph.Direction pDirection, String pEdgeProperty, String pValue) {
         Set<TLGNode> lResult = new HashSet<>();
-        for (TLGEdge lEdge:edges) {
-            switch (pDirection) {
-                case IN: {
-                    if (lEdge.target.equals(this)) {
-                        if (lEdge.getProperty(pEdgeProperty, "").equals(pValue)) {
-                            lResult.add(lEdge.source);
-                        }
-                    }
-                    break;
-                }
-                case OUT: {
-                    if (lEdge.source.equals(this)) {
-                        if (lEdge.getProperty(pEdgeProperty, "").equals(pValue)) {
-                            lResult.add(lEdge.target);
-                        }
-                    }
-                    break;
+        int lCode = "Type".equals(pEdgeProperty) ? graph.getEdgeTypeCode(pValue) : -1;
+        if (lCode >= 0) {
+            if (pDirection != TLGGraph.Direction.IN) forEachEdge(1L << lCode, TLGGraph.Direction.OUT, e -> lResult.add(e.target));
+            if (pDirection != TLGGraph.Direction.OUT) forEachEdge(1L << lCode, TLGGraph.Direction.IN, e -> lResult.add(e.source));
+            return lResult;
+        }
+        if (pDirection != TLGGraph.Direction.IN) {
+            int lOutDegree = getOutDegree();
+            for (int i=0; i<lOutDegree; i++) {
+                TLGEdge lEdge = getOutEdge(i);
+                if (lEdge.getProperty(pEdgeProperty, "").equals(pValue)) {
+                    lResult.add(lEdge.target);
                 }
-                case ANY:
-                default: {
-                    if (lEdge.getProperty(pEdgeProperty, "").equals(pValue)) {
-                        lResult.add(lEdge.source.equals(this) ? lEdge.target : lEdge.source);
-                    }
+            }
+        }
+        if (pDirection != TLGGraph.Direction.OUT) {
+            int lInDegree = getInDegree();
+            for (int i=0; i<lInDegree; i++) {
+                TLGEdge lEdge = getInEdge(i);
+                if (lEdge.getProperty(pEdgeProperty, "").equals(pValue)) {
+                    lResult.add(lEdge.source);
                 }
             }
         }
@@ -105,26 +395,7 @@ public class TLGNode {
 
     public Set<TLGNode> getLinkedNodes(TLGGraph.Direction pDirection) {
         Set<TLGNode> lResult = new HashSet<>();
-        for (TLGEdge lEdge:edges) {
-            switch (pDirection) {
-                case IN: {
-                    if (lEdge.target.equals(this)) {
-                        lResult.add(lEdge.source);
-                    }
-                    break;
-                }
-                case OUT: {
-                    if (lEdge.source.equals(this)) {
-                        lResult.add(lEdge.target);
-                    }
-                    break;
-                }
-                case ANY:
-                default: {
-                    lResult.add(lEdge.source.equals(this) ? lEdge.target : lEdge.source);
-                }
-            }
-        }
+        forEachNeighbour(pDirection, lResult::add);
         return lResult;
     }
 
@@ -158,25 +429,28 @@ public class TLGNode {
         int lThisMaxDepth = 0;
         {
             List<TLGNode> lQueue = new ArrayList<>();
-            List<Integer> lDistanceQueue = new ArrayList<>();
+            TIntArrayList lDistanceQueue = new TIntArrayList();
             Set<TLGNode> lKnown = new HashSet<>();
             lQueue.add(this);
             lDistanceQueue.add(0);
             lKnown.add(this);
-            while (lQueue.size() > 0) {
-                TLGNode lNode = lQueue.remove(lQueue.size()-1);
-                int lDistance = lDistanceQueue.remove(lDistanceQueue.size()-1);
+            // First in first out without shifting, the nodes are taken in the order they were added
+            for (int q=0; q<lQueue.size(); q++) {
+                TLGNode lNode = lQueue.get(q);
+                int lDistance = lDistanceQueue.get(q);
                 lThisMaxDepth = Math.max(lThisMaxDepth, lDistance);
                 if (!lThisSphereMap.containsKey(lDistance)) {
                     lThisSphereMap.put(lDistance, new HashSet<>());
                 }
                 lThisSphereMap.get(lDistance).add(lNode);
-                for (TLGNode lOther:lNode.getLinkedNodes(pDirectedness.equals(TLGGraph.Directedness.UNDIRECTED) ? TLGGraph.Direction.ANY : TLGGraph.Direction.OUT)) {
+                int lDegree = pDirectedness.equals(TLGGraph.Directedness.UNDIRECTED) ? lNode.getDegree() : lNode.getOutDegree();
+                for (int e=0; e<lDegree; e++) {
+                    TLGNode lOther = lNode.getNeighbour(e);
                     if (!lKnown.contains(lOther)) {
                         if (lDistance < pMaxSpheres) {
                             lKnown.add(lOther);
-                            lQueue.add(0, lOther);
-                            lDistanceQueue.add(0, lDistance + 1);
+                            lQueue.add(lOther);
+                            lDistanceQueue.add(lDistance + 1);
                         }
                     }
                 }
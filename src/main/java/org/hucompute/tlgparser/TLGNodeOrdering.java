@@ -0,0 +1,118 @@
+package org.hucompute.tlgparser;
+
+import java.util.Arrays;
+
+/**
+ * Node orders for TLGGraph.reorder(), computed on a frozen view. Edges count in both directions.
+ */
+class TLGNodeOrdering {
+
+    /**
+     * @return The ordinals of pGraph in the new order
+     */
+    static int[] order(TLGFrozenGraph pGraph, TLGGraph.Ordering pOrdering) {
+        switch (pOrdering) {
+            case BFS: {
+                return bfs(pGraph, false);
+            }
+            case RCM: {
+                int[] lResult = bfs(pGraph, true);
+                for (int i=0, k=lResult.length-1; i<k; i++, k--) {
+                    int lTemp = lResult[i];
+                    lResult[i] = lResult[k];
+                    lResult[k] = lTemp;
+                }
+                return lResult;
+            }
+            case DEGREE: {
+                int[] lDegrees = getDegrees(pGraph);
+                int[] lResult = identity(pGraph.size());
+                // Descending degree, ties in ordinal order
+                sort(lResult, 0, lResult.length, lDegrees, true, new long[lResult.length]);
+                return lResult;
+            }
+            default: {
+                return identity(pGraph.size());
+            }
+        }
+    }
+
+    private static int[] identity(int pSize) {
+        int[] lResult = new int[pSize];
+        for (int i=0; i<pSize; i++) {
+            lResult[i] = i;
+        }
+        return lResult;
+    }
+
+    private static int[] getDegrees(TLGFrozenGraph pGraph) {
+        int[] lResult = new int[pGraph.size()];
+        for (int i=0; i<lResult.length; i++) {
+            lResult[i] = pGraph.getOutDegree(i)+pGraph.getInDegree(i);
+        }
+        return lResult;
+    }
+
+    /**
+     * Breadth first order of every component. For Cuthill-McKee the components start at a node of minimum degree and
+     * the new neighbours of a node are appended by ascending degree, otherwise components start at their first
+     * ordinal and neighbours keep the order of the frozen view.
+     */
+    private static int[] bfs(TLGFrozenGraph pGraph, boolean pCuthillMcKee) {
+        int lSize = pGraph.size();
+        int[] lOutOffsets = pGraph.getOutOffsets();
+        int[] lOutTargets = pGraph.getOutTargets();
+        int[] lInOffsets = pGraph.getInOffsets();
+        int[] lInSources = pGraph.getInSources();
+        int[] lDegrees = pCuthillMcKee ? getDegrees(pGraph) : null;
+        long[] lKeys = pCuthillMcKee ? new long[lSize] : null;
+        int[] lStarts = identity(lSize);
+        if (pCuthillMcKee) sort(lStarts, 0, lSize, lDegrees, false, lKeys);
+        boolean[] lVisited = new boolean[lSize];
+        int[] lResult = new int[lSize];
+        int lTail = 0;
+        for (int lStart:lStarts) {
+            if (lVisited[lStart]) continue;
+            lVisited[lStart] = true;
+            int lHead = lTail;
+            lResult[lTail++] = lStart;
+            while (lHead < lTail) {
+                int lNode = lResult[lHead++];
+                int lFirst = lTail;
+                for (int e=lOutOffsets[lNode]; e<lOutOffsets[lNode+1]; e++) {
+                    int lOther = lOutTargets[e];
+                    if (!lVisited[lOther]) {
+                        lVisited[lOther] = true;
+                        lResult[lTail++] = lOther;
+                    }
+                }
+                for (int e=lInOffsets[lNode]; e<lInOffsets[lNode+1]; e++) {
+                    int lOther = lInSources[e];
+                    if (!lVisited[lOther]) {
+                        lVisited[lOther] = true;
+                        lResult[lTail++] = lOther;
+                    }
+                }
+                if (pCuthillMcKee) sort(lResult, lFirst, lTail, lDegrees, false, lKeys);
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * Sort pOrdinals[pFrom, pTo) by pDegrees, ties in ordinal order
+     * @param pBuffer At least pTo-pFrom entries
+     */
+    private static void sort(int[] pOrdinals, int pFrom, int pTo, int[] pDegrees, boolean pDescending, long[] pBuffer) {
+        if (pTo-pFrom < 2) return;
+        for (int i=pFrom; i<pTo; i++) {
+            int lDegree = pDescending ? Integer.MAX_VALUE-pDegrees[pOrdinals[i]] : pDegrees[pOrdinals[i]];
+            pBuffer[i-pFrom] = ((long)lDegree << 32) | pOrdinals[i];
+        }
+        Arrays.sort(pBuffer, 0, pTo-pFrom);
+        for (int i=pFrom; i<pTo; i++) {
+            pOrdinals[i] = (int)pBuffer[i-pFrom];
+        }
+    }
+
+}
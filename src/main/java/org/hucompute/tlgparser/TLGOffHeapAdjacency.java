@@ -0,0 +1,299 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adjacency of a graph loaded with TLGLoadOptions.Adjacency.DIRECT or MAPPED. Targets, sources, type codes,
+ * similarities and the raw properties of all edges live in TLGOffHeapBuffers, the heap only holds the nodes and one
+ * count per node while loading. Edges are appended in file order and sorted into compressed sparse row form by
+ * build(), edge ordinals are positions in that form. TLGEdge objects are created on demand, see getEdge().
+ */
+class TLGOffHeapAdjacency {
+
+    private TLGGraph graph;
+    private File directory;
+    private List<TLGNode> nodes = new ArrayList<>();
+    private long edgeCount;
+
+    // Edges in file order while loading
+    private TLGOffHeapBuffer loadSources;
+    private TLGOffHeapBuffer loadTargets;
+    private TLGOffHeapBuffer loadTypeCodes;
+    private TLGOffHeapBuffer loadSimilarities;
+    private TLGOffHeapBuffer loadPropertyStarts;
+    private TIntArrayList outDegrees = new TIntArrayList();
+    private TIntArrayList inDegrees = new TIntArrayList();
+
+    // Compressed sparse row form after build()
+    private TLGOffHeapBuffer outOffsets;
+    private TLGOffHeapBuffer inOffsets;
+    /**
+     * Edge ordinals grouped by target, in file order per target
+     */
+    private TLGOffHeapBuffer inEdges;
+    private TLGOffHeapBuffer sources;
+    private TLGOffHeapBuffer targets;
+    private TLGOffHeapBuffer typeCodes;
+    private TLGOffHeapBuffer similarities;
+    private TLGOffHeapBuffer propertyStarts;
+    /**
+     * Raw properties of every edge preceded by their varint length, in file order
+     */
+    private TLGOffHeapBuffer properties;
+    /**
+     * Heap copies of the edges by ordinal after toHeap(), views created before find their copy here
+     */
+    private TLGEdge[] heapEdges;
+
+    /**
+     * @param pDirectory Directory of the mapped files or null for direct buffers
+     */
+    TLGOffHeapAdjacency(TLGGraph pGraph, File pDirectory) throws IOException {
+        graph = pGraph;
+        directory = pDirectory;
+        loadSources = new TLGOffHeapBuffer(directory);
+        loadTargets = new TLGOffHeapBuffer(directory);
+        loadTypeCodes = new TLGOffHeapBuffer(directory);
+        loadSimilarities = new TLGOffHeapBuffer(directory);
+        loadPropertyStarts = new TLGOffHeapBuffer(directory);
+        properties = new TLGOffHeapBuffer(directory);
+    }
+
+    /**
+     * @return Ordinal of the new node
+     */
+    int addNode(TLGNode pNode) {
+        nodes.add(pNode);
+        outDegrees.add(0);
+        inDegrees.add(0);
+        return nodes.size()-1;
+    }
+
+    /**
+     * Append an edge, pBuffer[pFrom, pTo) holds its raw properties
+     */
+    void addEdge(int pSource, int pTarget, int pTypeCode, double pSimilarity, byte[] pBuffer, int pFrom, int pTo) throws IOException {
+        loadSources.putInt(loadSources.append(4), pSource);
+        loadTargets.putInt(loadTargets.append(4), pTarget);
+        loadTypeCodes.putByte(loadTypeCodes.append(1), (byte)pTypeCode);
+        loadSimilarities.putDouble(loadSimilarities.append(8), pSimilarity);
+        int lLength = pTo-pFrom;
+        byte[] lPrefix = new byte[5];
+        int lPrefixLength = 0;
+        int lValue = lLength;
+        while (lValue >= 0x80) {
+            lPrefix[lPrefixLength++] = (byte)(lValue | 0x80);
+            lValue >>>= 7;
+        }
+        lPrefix[lPrefixLength++] = (byte)lValue;
+        long lStart = properties.append(lPrefixLength+lLength);
+        properties.put(lStart, lPrefix, 0, lPrefixLength);
+        properties.put(lStart+lPrefixLength, pBuffer, pFrom, lLength);
+        loadPropertyStarts.putLong(loadPropertyStarts.append(8), lStart);
+        outDegrees.setQuick(pSource, outDegrees.getQuick(pSource)+1);
+        inDegrees.setQuick(pTarget, inDegrees.getQuick(pTarget)+1);
+        edgeCount++;
+    }
+
+    /**
+     * Sort the appended edges by source into compressed sparse row form and release the load buffers
+     */
+    void build() throws IOException {
+        int lNodes = nodes.size();
+        outOffsets = new TLGOffHeapBuffer(directory);
+        inOffsets = new TLGOffHeapBuffer(directory);
+        outOffsets.append((lNodes+1)*8L);
+        inOffsets.append((lNodes+1)*8L);
+        long lOut = 0;
+        long lIn = 0;
+        for (int i=0; i<lNodes; i++) {
+            outOffsets.putLong(i*8L, lOut);
+            inOffsets.putLong(i*8L, lIn);
+            lOut += outDegrees.getQuick(i);
+            lIn += inDegrees.getQuick(i);
+        }
+        outOffsets.putLong(lNodes*8L, lOut);
+        inOffsets.putLong(lNodes*8L, lIn);
+        outDegrees = null;
+        inDegrees = null;
+        sources = new TLGOffHeapBuffer(directory);
+        targets = new TLGOffHeapBuffer(directory);
+        typeCodes = new TLGOffHeapBuffer(directory);
+        similarities = new TLGOffHeapBuffer(directory);
+        propertyStarts = new TLGOffHeapBuffer(directory);
+        inEdges = new TLGOffHeapBuffer(directory);
+        sources.append(edgeCount*4);
+        targets.append(edgeCount*4);
+        typeCodes.append(edgeCount);
+        similarities.append(edgeCount*8);
+        propertyStarts.append(edgeCount*8);
+        inEdges.append(edgeCount*8);
+        long[] lNextOut = new long[lNodes];
+        long[] lNextIn = new long[lNodes];
+        for (int i=0; i<lNodes; i++) {
+            lNextOut[i] = outOffsets.getLong(i*8L);
+            lNextIn[i] = inOffsets.getLong(i*8L);
+        }
+        // Stable counting sort, edges keep their file order per source and per target
+        for (long k=0; k<edgeCount; k++) {
+            int lSource = loadSources.getInt(k*4);
+            int lTarget = loadTargets.getInt(k*4);
+            long lEdge = lNextOut[lSource]++;
+            sources.putInt(lEdge*4, lSource);
+            targets.putInt(lEdge*4, lTarget);
+            typeCodes.putByte(lEdge, loadTypeCodes.getByte(k));
+            similarities.putDouble(lEdge*8, loadSimilarities.getDouble(k*8));
+            propertyStarts.putLong(lEdge*8, loadPropertyStarts.getLong(k*8));
+            inEdges.putLong((lNextIn[lTarget]++)*8, lEdge);
+        }
+        loadSources.release();
+        loadTargets.release();
+        loadTypeCodes.release();
+        loadSimilarities.release();
+        loadPropertyStarts.release();
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    long getEdgeCount() {
+        return edgeCount;
+    }
+
+    TLGNode getNode(int pOrdinal) {
+        return nodes.get(pOrdinal);
+    }
+
+    int getOutDegree(int pNode) {
+        return (int)(outOffsets.getLong((pNode+1)*8L)-outOffsets.getLong(pNode*8L));
+    }
+
+    int getInDegree(int pNode) {
+        return (int)(inOffsets.getLong((pNode+1)*8L)-inOffsets.getLong(pNode*8L));
+    }
+
+    /**
+     * @return Ordinal of the pIndex-th OUT edge of pNode
+     */
+    long getOutEdge(int pNode, int pIndex) {
+        return outOffsets.getLong(pNode*8L)+pIndex;
+    }
+
+    /**
+     * @return Ordinal of the pIndex-th IN edge of pNode
+     */
+    long getInEdge(int pNode, int pIndex) {
+        return inEdges.getLong((inOffsets.getLong(pNode*8L)+pIndex)*8);
+    }
+
+    int getSource(long pEdge) {
+        return sources.getInt(pEdge*4);
+    }
+
+    int getTarget(long pEdge) {
+        return targets.getInt(pEdge*4);
+    }
+
+    /**
+     * @return Code of the edge type, see TLGGraph.getEdgeTypeMask(), -1 if the type has no code
+     */
+    int getTypeCode(long pEdge) {
+        return typeCodes.getByte(pEdge);
+    }
+
+    double getSimilarity(long pEdge) {
+        return similarities.getDouble(pEdge*8);
+    }
+
+    /**
+     * @return Copy of the raw properties of an edge
+     */
+    byte[] getProperties(long pEdge) {
+        long lPosition = propertyStarts.getLong(pEdge*8);
+        int lLength = 0;
+        int lShift = 0;
+        byte b;
+        do {
+            b = properties.getByte(lPosition++);
+            lLength |= (b & 0x7F) << lShift;
+            lShift += 7;
+        } while (b < 0);
+        byte[] lResult = new byte[lLength];
+        properties.get(lPosition, lResult, 0, lLength);
+        return lResult;
+    }
+
+    /**
+     * @return New TLGEdge object for the edge, its properties are decoded on first access
+     */
+    TLGEdge getEdge(long pEdge) {
+        byte[] lProperties = getProperties(pEdge);
+        return new TLGOffHeapEdge(graph, this, pEdge, nodes.get(getSource(pEdge)), nodes.get(getTarget(pEdge)),
+                new TLGLazyPropertyMap(lProperties, 0, lProperties.length), getSimilarity(pEdge));
+    }
+
+    /**
+     * Copy every edge into a TLGEdge on the heap, hand them to the nodes in the same order and release the buffers
+     */
+    void toHeap() throws IOException {
+        if (edgeCount > Integer.MAX_VALUE-8) throw new UnsupportedOperationException("Too many edges for the heap: "+edgeCount);
+        heapEdges = new TLGEdge[(int)edgeCount];
+        for (int e=0; e<edgeCount; e++) {
+            byte[] lProperties = getProperties(e);
+            heapEdges[e] = new TLGEdge(graph, nodes.get(getSource(e)), nodes.get(getTarget(e)),
+                    new TLGLazyPropertyMap(lProperties, 0, lProperties.length), getSimilarity(e));
+        }
+        for (int i=0; i<nodes.size(); i++) {
+            TLGEdge[] lOut = new TLGEdge[getOutDegree(i)];
+            for (int e=0; e<lOut.length; e++) {
+                lOut[e] = heapEdges[(int)getOutEdge(i, e)];
+            }
+            TLGEdge[] lIn = new TLGEdge[getInDegree(i)];
+            for (int e=0; e<lIn.length; e++) {
+                lIn[e] = heapEdges[(int)getInEdge(i, e)];
+            }
+            ((TLGOffHeapNode)nodes.get(i)).toHeap(lOut, lIn);
+        }
+        release();
+    }
+
+    /**
+     * @return True once toHeap() has been called
+     */
+    boolean isOnHeap() {
+        return heapEdges != null;
+    }
+
+    TLGEdge getHeapEdge(long pEdge) {
+        if (heapEdges == null) throw new IllegalStateException("The edges are still off heap");
+        return heapEdges[(int)pEdge];
+    }
+
+    /**
+     * Release all buffers, the adjacency must not be read afterwards
+     */
+    void release() throws IOException {
+        for (TLGOffHeapBuffer lBuffer:new TLGOffHeapBuffer[]{loadSources, loadTargets, loadTypeCodes, loadSimilarities, loadPropertyStarts,
+                outOffsets, inOffsets, inEdges, sources, targets, typeCodes, similarities, propertyStarts, properties}) {
+            if (lBuffer != null) lBuffer.release();
+        }
+    }
+
+    /**
+     * @return Bytes held outside the heap
+     */
+    long getOffHeapBytes() {
+        long lResult = properties.capacity();
+        for (TLGOffHeapBuffer lBuffer:new TLGOffHeapBuffer[]{outOffsets, inOffsets, inEdges, sources, targets, typeCodes, similarities, propertyStarts}) {
+            if (lBuffer != null) lResult += lBuffer.capacity();
+        }
+        return lResult;
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.hucompute.tlgparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Growable byte space outside the Java heap, addressed by long positions. The bytes live in pages of direct buffers
+ * or, if a directory is given, of buffers mapped from a temporary file which is deleted right away, so the data may
+ * exceed the physical memory. Values of one width should be stored at multiples of that width, they then never
+ * cross a page. Not thread safe for writing, concurrent reads are fine.
+ */
+class TLGOffHeapBuffer {
+
+    private static final int PAGE_SHIFT = 27;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE-1;
+    private static final int MIN_PAGE_SIZE = 4096;
+
+    private FileChannel channel;
+    private ByteBuffer[] pages = new ByteBuffer[0];
+    /**
+     * Capacity of all pages together, only the last page may be smaller than PAGE_SIZE
+     */
+    private long capacity;
+    private long size;
+
+    /**
+     * @param pDirectory Directory of the mapped file or null for direct buffers
+     */
+    TLGOffHeapBuffer(File pDirectory) throws IOException {
+        if (pDirectory != null) {
+            File lFile = File.createTempFile("tlg", ".offheap", pDirectory);
+            RandomAccessFile lRandomAccessFile = new RandomAccessFile(lFile, "rw");
+            channel = lRandomAccessFile.getChannel();
+            // The mapping stays valid after the file is deleted
+            lFile.delete();
+        }
+    }
+
+    /**
+     * @return Number of appended bytes
+     */
+    long size() {
+        return size;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Make positions up to pCapacity-1 addressable
+     */
+    void ensureCapacity(long pCapacity) throws IOException {
+        if (pCapacity <= capacity) return;
+        int lLast = pages.length-1;
+        if ((lLast >= 0) && (pages[lLast].capacity() < PAGE_SIZE)) {
+            // Grow the last page by doubling
+            long lPageCapacity = Math.min(PAGE_SIZE, Math.max(pCapacity-((long)lLast << PAGE_SHIFT), pages[lLast].capacity()*2L));
+            pages[lLast] = newPage(lLast, (int)lPageCapacity, pages[lLast]);
+            capacity = ((long)lLast << PAGE_SHIFT)+lPageCapacity;
+        }
+        while (capacity < pCapacity) {
+            int lIndex = pages.length;
+            long lPageCapacity = pCapacity-((long)lIndex << PAGE_SHIFT);
+            lPageCapacity = lIndex == 0 ? Math.max(MIN_PAGE_SIZE, Long.highestOneBit(lPageCapacity-1) << 1) : PAGE_SIZE;
+            lPageCapacity = Math.min(PAGE_SIZE, lPageCapacity);
+            pages = Arrays.copyOf(pages, lIndex+1);
+            pages[lIndex] = newPage(lIndex, (int)lPageCapacity, null);
+            capacity = ((long)lIndex << PAGE_SHIFT)+lPageCapacity;
+        }
+    }
+
+    private ByteBuffer newPage(int pIndex, int pCapacity, ByteBuffer pOld) throws IOException {
+        if (channel != null) {
+            // Mapping a larger region of the same file keeps the content
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long)pIndex << PAGE_SHIFT, pCapacity).order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer lResult = ByteBuffer.allocateDirect(pCapacity).order(ByteOrder.nativeOrder());
+        if (pOld != null) {
+            ByteBuffer lOld = pOld.duplicate();
+            lOld.clear();
+            lResult.put(lOld);
+            lResult.clear();
+        }
+        return lResult;
+    }
+
+    /**
+     * Reserve pBytes at the end
+     * @return Position of the first reserved byte
+     */
+    long append(long pBytes) throws IOException {
+        long lResult = size;
+        ensureCapacity(size+pBytes);
+        size += pBytes;
+        return lResult;
+    }
+
+    byte getByte(long pPosition) {
+        return pages[(int)(pPosition >>> PAGE_SHIFT)].get((int)(pPosition & PAGE_MASK));
+    }
+
+    void putByte(long pPosition, byte pValue) {
+        pages[(int)(pPosition >>> PAGE_SHIFT)].put((int)(pPosition & PAGE_MASK), pValue);
+    }
+
+    int getInt(long pPosition) {
+        return pages[(int)(pPosition >>> PAGE_SHIFT)].getInt((int)(pPosition & PAGE_MASK));
+    }
+
+    void putInt(long pPosition, int pValue) {
+        pages[(int)(pPosition >>> PAGE_SHIFT)].putInt((int)(pPosition & PAGE_MASK), pValue);
+    }
+
+    long getLong(long pPosition) {
+        return pages[(int)(pPosition >>> PAGE_SHIFT)].getLong((int)(pPosition & PAGE_MASK));
+    }
+
+    void putLong(long pPosition, long pValue) {
+        pages[(int)(pPosition >>> PAGE_SHIFT)].putLong((int)(pPosition & PAGE_MASK), pValue);
+    }
+
+    double getDouble(long pPosition) {
+        return pages[(int)(pPosition >>> PAGE_SHIFT)].getDouble((int)(pPosition & PAGE_MASK));
+    }
+
+    void putDouble(long pPosition, double pValue) {
+        pages[(int)(pPosition >>> PAGE_SHIFT)].putDouble((int)(pPosition & PAGE_MASK), pValue);
+    }
+
+    /**
+     * Copy pLength bytes starting at pPosition into pBytes, may cross pages
+     */
+    void get(long pPosition, byte[] pBytes, int pOffset, int pLength) {
+        while (pLength > 0) {
+            ByteBuffer lPage = pages[(int)(pPosition >>> PAGE_SHIFT)].duplicate();
+            int lStart = (int)(pPosition & PAGE_MASK);
+            int lLength = Math.min(pLength, PAGE_SIZE-lStart);
+            lPage.position(lStart);
+            lPage.get(pBytes, pOffset, lLength);
+            pPosition += lLength;
+            pOffset += lLength;
+            pLength -= lLength;
+        }
+    }
+
+    void put(long pPosition, byte[] pBytes, int pOffset, int pLength) {
+        while (pLength > 0) {
+            ByteBuffer lPage = pages[(int)(pPosition >>> PAGE_SHIFT)].duplicate();
+            int lStart = (int)(pPosition & PAGE_MASK);
+            int lLength = Math.min(pLength, PAGE_SIZE-lStart);
+            lPage.position(lStart);
+            lPage.put(pBytes, pOffset, lLength);
+            pPosition += lLength;
+            pOffset += lLength;
+            pLength -= lLength;
+        }
+    }
+
+    /**
+     * Drop the pages, the memory is returned once they are garbage collected
+     */
+    void release() throws IOException {
+        pages = new ByteBuffer[0];
+        capacity = 0;
+        size = 0;
+        if (channel != null) channel.close();
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.hucompute.tlgparser;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * View of an edge of a TLGOffHeapAdjacency. A new view is created on every access and views of the same edge are
+ * equal. Changing the properties or removing the edge moves all edges of the graph to the heap and changes the heap
+ * copy, see TLGGraph.toHeapAdjacency(). Views created before read the heap copy from then on.
+ */
+class TLGOffHeapEdge extends TLGEdge {
+
+    private TLGOffHeapAdjacency adjacency;
+    private long ordinal;
+
+    TLGOffHeapEdge(TLGGraph pGraph, TLGOffHeapAdjacency pAdjacency, long pOrdinal, TLGNode pSource, TLGNode pTarget, Map<String, String> pProperties, double pSimilarity) {
+        super(pGraph, pSource, pTarget, pProperties, pSimilarity);
+        adjacency = pAdjacency;
+        ordinal = pOrdinal;
+    }
+
+    /**
+     * @return The heap copy of pEdge if it is a view, else pEdge
+     */
+    static TLGEdge toHeap(TLGEdge pEdge) {
+        if (!(pEdge instanceof TLGOffHeapEdge)) return pEdge;
+        TLGOffHeapEdge lView = (TLGOffHeapEdge)pEdge;
+        return lView.adjacency.getHeapEdge(lView.ordinal);
+    }
+
+    @Override
+    void attach() {
+        // Views are only created for edges which are attached already
+        throw new UnsupportedOperationException("An off heap edge view cannot be attached");
+    }
+
+    @Override
+    public void remove() {
+        graph.toHeapAdjacency();
+        toHeap(this).remove();
+    }
+
+    /**
+     * Reads come from the raw properties of the view until the edges are moved to the heap, changes move them and go
+     * to the heap copy. Changes through entrySet() are not supported before the move.
+     */
+    @Override
+    public Map<String, String> getProperties() {
+        if (adjacency.isOnHeap()) return toHeap(this).getProperties();
+        return new AbstractMap<String, String>() {
+            private Map<String, String> read() {
+                return adjacency.isOnHeap() ? toHeap(TLGOffHeapEdge.this).getProperties() : Collections.unmodifiableMap(properties);
+            }
+
+            private Map<String, String> write() {
+                graph.toHeapAdjacency();
+                return toHeap(TLGOffHeapEdge.this).getProperties();
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return read().entrySet();
+            }
+
+            @Override
+            public String get(Object pKey) {
+                return read().get(pKey);
+            }
+
+            @Override
+            public boolean containsKey(Object pKey) {
+                return read().containsKey(pKey);
+            }
+
+            @Override
+            public String put(String pKey, String pValue) {
+                return write().put(pKey, pValue);
+            }
+
+            @Override
+            public String remove(Object pKey) {
+                return write().remove(pKey);
+            }
+
+            @Override
+            public void clear() {
+                write().clear();
+            }
+        };
+    }
+
+    @Override
+    public String getProperty(String pKey, String pDefault) {
+        if (adjacency.isOnHeap()) return toHeap(this).getProperty(pKey, pDefault);
+        return super.getProperty(pKey, pDefault);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(ordinal);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TLGOffHeapEdge)) return false;
+        TLGOffHeapEdge lOther = (TLGOffHeapEdge)obj;
+        return (adjacency == lOther.adjacency) && (ordinal == lOther.ordinal);
+    }
+
+}
@@ -0,0 +1,168 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Node of a graph loaded with an off heap adjacency, see TLGLoadOptions.Adjacency. Degrees, neighbours and edge
+ * types are read from the TLGOffHeapAdjacency without creating edge objects, getOutEdge() and getInEdge() create
+ * views, see TLGOffHeapEdge. Adding or removing an edge first moves all edges of the graph to the heap, see
+ * TLGGraph.toHeapAdjacency(), the node then behaves like a TLGNode.
+ */
+class TLGOffHeapNode extends TLGNode {
+
+    private TLGOffHeapAdjacency adjacency;
+    private int ordinal;
+
+    TLGOffHeapNode(TLGGraph pGraph, String pID, Map<String, String> pProperties) {
+        super(pGraph, pID, pProperties);
+    }
+
+    void setOrdinal(TLGOffHeapAdjacency pAdjacency, int pOrdinal) {
+        adjacency = pAdjacency;
+        ordinal = pOrdinal;
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Take over the heap copies of the edges, see TLGOffHeapAdjacency.toHeap()
+     */
+    void toHeap(TLGEdge[] pOutEdges, TLGEdge[] pInEdges) {
+        outEdges = pOutEdges;
+        outDegree = pOutEdges.length;
+        inEdges = pInEdges;
+        inDegree = pInEdges.length;
+        adjacency = null;
+    }
+
+    @Override
+    void addOutEdge(TLGEdge pEdge) {
+        graph.toHeapAdjacency();
+        super.addOutEdge(pEdge);
+    }
+
+    @Override
+    void addInEdge(TLGEdge pEdge) {
+        graph.toHeapAdjacency();
+        super.addInEdge(pEdge);
+    }
+
+    @Override
+    void removeOutEdge(TLGEdge pEdge) {
+        graph.toHeapAdjacency();
+        super.removeOutEdge(TLGOffHeapEdge.toHeap(pEdge));
+    }
+
+    @Override
+    void removeInEdge(TLGEdge pEdge) {
+        graph.toHeapAdjacency();
+        super.removeInEdge(TLGOffHeapEdge.toHeap(pEdge));
+    }
+
+    @Override
+    void trimEdges() {
+        if (adjacency == null) super.trimEdges();
+    }
+
+    @Override
+    public int getOutDegree() {
+        if (adjacency == null) return super.getOutDegree();
+        return adjacency.getOutDegree(ordinal);
+    }
+
+    @Override
+    public int getInDegree() {
+        if (adjacency == null) return super.getInDegree();
+        return adjacency.getInDegree(ordinal);
+    }
+
+    @Override
+    public TLGEdge getOutEdge(int pIndex) {
+        if (adjacency == null) return super.getOutEdge(pIndex);
+        return adjacency.getEdge(adjacency.getOutEdge(ordinal, pIndex));
+    }
+
+    @Override
+    public TLGEdge getInEdge(int pIndex) {
+        if (adjacency == null) return super.getInEdge(pIndex);
+        return adjacency.getEdge(adjacency.getInEdge(ordinal, pIndex));
+    }
+
+    @Override
+    public TLGNode getNeighbour(int pIndex) {
+        if (adjacency == null) return super.getNeighbour(pIndex);
+        int lOutDegree = getOutDegree();
+        if (pIndex < lOutDegree) return adjacency.getNode(adjacency.getTarget(adjacency.getOutEdge(ordinal, pIndex)));
+        return adjacency.getNode(adjacency.getSource(adjacency.getInEdge(ordinal, pIndex-lOutDegree)));
+    }
+
+    /**
+     * Only edges with a matching type code are turned into views, in insertion order
+     */
+    @Override
+    public void forEachEdge(long pTypeMask, TLGGraph.Direction pDirection, Consumer<TLGEdge> pConsumer) {
+        if (adjacency == null) {
+            super.forEachEdge(pTypeMask, pDirection, pConsumer);
+            return;
+        }
+        if (pDirection != TLGGraph.Direction.IN) {
+            int lDegree = getOutDegree();
+            for (int i=0; i<lDegree; i++) {
+                long lEdge = adjacency.getOutEdge(ordinal, i);
+                if (matches(lEdge, pTypeMask)) pConsumer.accept(adjacency.getEdge(lEdge));
+            }
+        }
+        if (pDirection != TLGGraph.Direction.OUT) {
+            int lDegree = getInDegree();
+            for (int i=0; i<lDegree; i++) {
+                long lEdge = adjacency.getInEdge(ordinal, i);
+                if (matches(lEdge, pTypeMask)) pConsumer.accept(adjacency.getEdge(lEdge));
+            }
+        }
+    }
+
+    private boolean matches(long pEdge, long pTypeMask) {
+        if (pTypeMask == TLGGraph.ALL_EDGE_TYPES) return true;
+        int lCode = adjacency.getTypeCode(pEdge);
+        return (lCode >= 0) && ((pTypeMask & (1L << lCode)) != 0);
+    }
+
+    @Override
+    public int getOutDegree(long pTypeMask) {
+        if (adjacency == null) return super.getOutDegree(pTypeMask);
+        int lResult = 0;
+        int lDegree = getOutDegree();
+        for (int i=0; i<lDegree; i++) {
+            if (matches(adjacency.getOutEdge(ordinal, i), pTypeMask)) lResult++;
+        }
+        return lResult;
+    }
+
+    @Override
+    public int getInDegree(long pTypeMask) {
+        if (adjacency == null) return super.getInDegree(pTypeMask);
+        int lResult = 0;
+        int lDegree = getInDegree();
+        for (int i=0; i<lDegree; i++) {
+            if (matches(adjacency.getInEdge(ordinal, i), pTypeMask)) lResult++;
+        }
+        return lResult;
+    }
+
+    @Override
+    int getEdgePositions(boolean pOut, long pTypeMask, TIntArrayList pPositions) {
+        if (adjacency == null) return super.getEdgePositions(pOut, pTypeMask, pPositions);
+        pPositions.resetQuick();
+        int lDegree = pOut ? getOutDegree() : getInDegree();
+        for (int i=0; i<lDegree; i++) {
+            if (matches(pOut ? adjacency.getOutEdge(ordinal, i) : adjacency.getInEdge(ordinal, i), pTypeMask)) pPositions.add(i);
+        }
+        return pPositions.size();
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Similarity matrix of many graphs in two phases. Phase one computes a signature per graph once, phase two merges
+ * the signatures of all n(n-1)/2 pairs, hence the work per graph is not repeated n-1 times. Both phases are spread
+ * over the threads. The diagonal of the result stays 0.
+ */
+class TLGPairwiseSimilarity {
+
+    private static Logger logger = LogManager.getLogger(TLGPairwiseSimilarity.class);
+
+    interface Method<S> {
+        S getSignature(TLGGraph pGraph);
+        double getSimilarity(S pSignature1, S pSignature2);
+    }
+
+    /**
+     * Dense int ids for the String ids of the nodes of all graphs, safe for concurrent use
+     */
+    static class IdSpace {
+
+        private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+        private AtomicInteger next = new AtomicInteger();
+
+        int get(String pID) {
+            return ids.computeIfAbsent(pID, k -> next.getAndIncrement());
+        }
+
+    }
+
+    /**
+     * Sorted distinct node ids and edges, an edge is source id << 32 | target id
+     */
+    static class VEOSignature {
+
+        int[] nodes;
+        long[] edges;
+
+    }
+
+    /**
+     * Verted/Edge Overlap as VEOSimilarityTask, 2*(|E1 & E2|+|V1 & V2|)/(|E1|+|E2|+|V1|+|V2|)
+     * @param pDirectedness UNDIRECTED adds every edge in both directions
+     */
+    static Method<VEOSignature> veo(TLGGraph.Directedness pDirectedness) {
+        IdSpace lIdSpace = new IdSpace();
+        return new Method<VEOSignature>() {
+            @Override
+            public VEOSignature getSignature(TLGGraph pGraph) {
+                VEOSignature lResult = new VEOSignature();
+                lResult.nodes = new int[pGraph.getNodes().size()];
+                int lNodeCount = 0;
+                long[] lEdges = new long[16];
+                int lEdgeCount = 0;
+                for (TLGNode lNode:pGraph.getNodes()) {
+                    int lSource = lIdSpace.get(lNode.getId());
+                    lResult.nodes[lNodeCount++] = lSource;
+                    for (int e=0; e<lNode.getOutDegree(); e++) {
+                        int lTarget = lIdSpace.get(lNode.getOutEdge(e).getTarget().getId());
+                        if (lEdgeCount+2 > lEdges.length) lEdges = Arrays.copyOf(lEdges, lEdges.length*2);
+                        lEdges[lEdgeCount++] = ((long)lSource << 32) | lTarget;
+                        if (pDirectedness == TLGGraph.Directedness.UNDIRECTED) {
+                            lEdges[lEdgeCount++] = ((long)lTarget << 32) | lSource;
+                        }
+                    }
+                }
+                Arrays.sort(lResult.nodes);
+                Arrays.sort(lEdges, 0, lEdgeCount);
+                // Multiple edges between the same nodes count once
+                int lDistinct = 0;
+                for (int i=0; i<lEdgeCount; i++) {
+                    if ((lDistinct == 0) || (lEdges[i] != lEdges[lDistinct-1])) lEdges[lDistinct++] = lEdges[i];
+                }
+                lResult.edges = Arrays.copyOf(lEdges, lDistinct);
+                return lResult;
+            }
+
+            @Override
+            public double getSimilarity(VEOSignature pSignature1, VEOSignature pSignature2) {
+                long lTotal = pSignature1.nodes.length+pSignature2.nodes.length+pSignature1.edges.length+pSignature2.edges.length;
+                if (lTotal == 0) return 1;
+                long lCommon = 0;
+                for (int i=0, k=0; (i<pSignature1.nodes.length) && (k<pSignature2.nodes.length);) {
+                    if (pSignature1.nodes[i] < pSignature2.nodes[k]) {
+                        i++;
+                    }
+                    else if (pSignature1.nodes[i] > pSignature2.nodes[k]) {
+                        k++;
+                    }
+                    else {
+                        lCommon++;
+                        i++;
+                        k++;
+                    }
+                }
+                for (int i=0, k=0; (i<pSignature1.edges.length) && (k<pSignature2.edges.length);) {
+                    if (pSignature1.edges[i] < pSignature2.edges[k]) {
+                        i++;
+                    }
+                    else if (pSignature1.edges[i] > pSignature2.edges[k]) {
+                        k++;
+                    }
+                    else {
+                        lCommon++;
+                        i++;
+                        k++;
+                    }
+                }
+                return 2d*lCommon/(double)lTotal;
+            }
+        };
+    }
+
+    /**
+     * Fuzzy Jaccard similarity on distance tables, see TLGFuzzyJaccard.Signature
+     * @param pMaxTableNodes Largest graph which gets a distance table, pairs with larger graphs are searched
+     */
+    static Method<TLGFuzzyJaccard.Signature> fuzzyJaccard(int pMaxTableNodes) {
+        IdSpace lIdSpace = new IdSpace();
+        return new Method<TLGFuzzyJaccard.Signature>() {
+            @Override
+            public TLGFuzzyJaccard.Signature getSignature(TLGGraph pGraph) {
+                return new TLGFuzzyJaccard.Signature(pGraph, lIdSpace, pMaxTableNodes);
+            }
+
+            @Override
+            public double getSimilarity(TLGFuzzyJaccard.Signature pSignature1, TLGFuzzyJaccard.Signature pSignature2) {
+                return TLGFuzzyJaccard.similarity(pSignature1, pSignature2);
+            }
+        };
+    }
+
+    static <S> double[][] run(List<TLGGraph> pGraphs, Method<S> pMethod, int pThreads) {
+        int n = pGraphs.size();
+        double[][] lResult = new double[n][n];
+        List<S> lSignatures = new ArrayList<>(n);
+        for (int i=0; i<n; i++) {
+            lSignatures.add(null);
+        }
+        int lThreads = Math.max(1, Math.min(pThreads, n));
+        long lStart = System.currentTimeMillis();
+        AtomicInteger lNextGraph = new AtomicInteger();
+        Runnable lSignatureTask = () -> {
+            int i;
+            while ((i = lNextGraph.getAndIncrement()) < n) {
+                S lSignature = pMethod.getSignature(pGraphs.get(i));
+                synchronized (lSignatures) {
+                    lSignatures.set(i, lSignature);
+                }
+            }
+        };
+        TLGTasks.runAll(Collections.nCopies(lThreads, lSignatureTask), lThreads, "Pairwise similarity");
+        logger.info("Signatures of "+n+" graphs: "+(System.currentTimeMillis()-lStart)+"ms");
+        lStart = System.currentTimeMillis();
+        // Rows get shorter with i, hence they are handed out one by one
+        AtomicInteger lNextRow = new AtomicInteger();
+        Runnable lRowTask = () -> {
+            int i;
+            while ((i = lNextRow.getAndIncrement()) < n-1) {
+                for (int k=i+1; k<n; k++) {
+                    lResult[i][k] = pMethod.getSimilarity(lSignatures.get(i), lSignatures.get(k));
+                    lResult[k][i] = lResult[i][k];
+                }
+            }
+        };
+        TLGTasks.runAll(Collections.nCopies(lThreads, lRowTask), lThreads, "Pairwise similarity");
+        logger.info(((long)n*(n-1))/2+" pairs: "+(System.currentTimeMillis()-lStart)+"ms");
+        return lResult;
+    }
+
+}
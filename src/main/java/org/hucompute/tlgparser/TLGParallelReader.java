@@ -0,0 +1,273 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TObjectLongHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads the Vertices: and Edges: sections of a BF file in line aligned chunks which are parsed concurrently. Chunks
+ * are merged into the graph strictly in file order by the calling thread, so nodeMap, nodeTypes,
+ * languageTypeNameIndex, the attribute counts and the edge sets of the nodes end up exactly as with the sequential
+ * reader. Edges are parsed only after all vertex chunks have been merged.
+ */
+class TLGParallelReader {
+
+    private static Logger logger = LogManager.getLogger(TLGParallelReader.class);
+
+    private TLGGraph graph;
+    private TLGLoadOptions options;
+    private int threads;
+    private int chunkSize;
+
+    /**
+     * Result of one parsed chunk
+     */
+    private static class Chunk {
+        List<TLGNode> nodes;
+        List<TLGEdge> edges;
+        Map<String, TObjectLongHashMap<String>> attributeCountMap = new HashMap<>();
+        TObjectLongHashMap<String> edgeTypes = new TObjectLongHashMap<>();
+    }
+
+    TLGParallelReader(TLGGraph pGraph, TLGLoadOptions pOptions) {
+        graph = pGraph;
+        options = pOptions;
+        threads = pOptions.getThreads();
+        chunkSize = pOptions.getChunkSize();
+    }
+
+    void read(File pFile) throws IOException {
+        long lBodyOffset;
+        TLGLineReader lHeadReader = new TLGLineReader(new FileInputStream(pFile), 64*1024);
+        try {
+            graph.head = TLGGraph.readHead(lHeadReader, pFile);
+            lBodyOffset = lHeadReader.nextLine() ? lHeadReader.getLineOffset() : pFile.length();
+        }
+        finally {
+            lHeadReader.close();
+        }
+        ExecutorService lExecutor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Chunk>> lPending = new ArrayDeque<>();
+        long lNodesRead = 0;
+        long lEdgesRead = 0;
+        try (FileChannel lChannel = new RandomAccessFile(pFile, "r").getChannel()) {
+            lChannel.position(lBodyOffset);
+            boolean lVertices = true;
+            byte[] lCarry = new byte[0];
+            int lCarryLength = 0;
+            boolean lEOF = false;
+            while (!lEOF || (lCarryLength > 0)) {
+                // Fill a block and cut it behind its last line terminator
+                byte[] lBlock = new byte[Math.max(chunkSize, lCarryLength*2)];
+                System.arraycopy(lCarry, 0, lBlock, 0, lCarryLength);
+                int lLength = lCarryLength;
+                ByteBuffer lByteBuffer = ByteBuffer.wrap(lBlock);
+                lByteBuffer.position(lLength);
+                while (!lEOF && lByteBuffer.hasRemaining()) {
+                    if (lChannel.read(lByteBuffer) < 0) lEOF = true;
+                }
+                lLength = lByteBuffer.position();
+                int lCut = lEOF ? lLength : getCut(lBlock, lLength);
+                if (lCut < 0) {
+                    // A single line longer than the block, read on with a larger block
+                    lCarry = lBlock;
+                    lCarryLength = lLength;
+                    continue;
+                }
+                lCarryLength = lLength - lCut;
+                lCarry = Arrays.copyOfRange(lBlock, lCut, lLength);
+                int lStart = 0;
+                if (lVertices) {
+                    int lEdgesLine = indexOfLine(lBlock, 0, lCut, TLGGraph.EDGES);
+                    if (lEdgesLine < 0) {
+                        lPending.add(lExecutor.submit(newVertexTask(lBlock, 0, lCut)));
+                    }
+                    else {
+                        lPending.add(lExecutor.submit(newVertexTask(lBlock, 0, lEdgesLine)));
+                        // All nodes must be known before the first edge is resolved
+                        while (lPending.size() > 0) {
+                            lNodesRead += merge(lPending.removeFirst());
+                        }
+                        logger.info(lNodesRead+" nodes read");
+                        lVertices = false;
+                        lStart = getNextLineStart(lBlock, lEdgesLine, lCut);
+                    }
+                }
+                if (!lVertices) {
+                    lPending.add(lExecutor.submit(newEdgeTask(lBlock, lStart, lCut)));
+                }
+                while (lPending.size() >= threads*2) {
+                    long lMerged = merge(lPending.removeFirst());
+                    if (lVertices) {
+                        lNodesRead += lMerged;
+                        logger.info(lNodesRead+" nodes read");
+                    }
+                    else {
+                        lEdgesRead += lMerged;
+                        logger.info(lEdgesRead+" edges read");
+                    }
+                }
+            }
+            while (lPending.size() > 0) {
+                if (lVertices) {
+                    lNodesRead += merge(lPending.removeFirst());
+                }
+                else {
+                    lEdgesRead += merge(lPending.removeFirst());
+                }
+            }
+            if (lVertices) {
+                throw new EOFException("Missing Edges: section in "+pFile.getName());
+            }
+            logger.info(lEdgesRead+" edges read");
+        }
+        finally {
+            lExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Position behind the last '\n' (or a '\r' which is not the last byte) or -1
+     */
+    private static int getCut(byte[] pBlock, int pLength) {
+        for (int i=pLength-1; i>=0; i--) {
+            if (pBlock[i] == '\n') return i+1;
+        }
+        for (int i=pLength-2; i>=0; i--) {
+            if (pBlock[i] == '\r') return i+1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Start of the first line in [pFrom, pTo) which starts with pPrefix or -1
+     */
+    private static int indexOfLine(byte[] pBlock, int pFrom, int pTo, byte[] pPrefix) {
+        int lLineStart = pFrom;
+        while (lLineStart < pTo) {
+            if (startsWith(pBlock, lLineStart, pTo, pPrefix)) return lLineStart;
+            lLineStart = getNextLineStart(pBlock, lLineStart, pTo);
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] pBlock, int pFrom, int pTo, byte[] pPrefix) {
+        if (pTo - pFrom < pPrefix.length) return false;
+        for (int i=0; i<pPrefix.length; i++) {
+            if (pBlock[pFrom+i] != pPrefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Start of the line following the line at pLineStart
+     */
+    private static int getNextLineStart(byte[] pBlock, int pLineStart, int pTo) {
+        for (int i=pLineStart; i<pTo; i++) {
+            if (pBlock[i] == '\n') return i+1;
+            if (pBlock[i] == '\r') return ((i+1 < pTo) && (pBlock[i+1] == '\n')) ? i+2 : i+1;
+        }
+        return pTo;
+    }
+
+    private static int getTerminator(byte[] pBlock, int pLineStart, int pTo) {
+        for (int i=pLineStart; i<pTo; i++) {
+            if ((pBlock[i] == '\n') || (pBlock[i] == '\r')) return i;
+        }
+        return pTo;
+    }
+
+    private Callable<Chunk> newVertexTask(byte[] pBlock, int pFrom, int pTo) {
+        return () -> {
+            Chunk lChunk = new Chunk();
+            lChunk.nodes = new ArrayList<>();
+            TLGVertexRecord lRecord = new TLGVertexRecord();
+            int lLineStart = pFrom;
+            while (lLineStart < pTo) {
+                lRecord.setLine(pBlock, lLineStart, getTerminator(pBlock, lLineStart, pTo));
+                TLGNode lNode = graph.newNode(lRecord, options, lChunk.attributeCountMap);
+                if (lNode != null) lChunk.nodes.add(lNode);
+                lLineStart = getNextLineStart(pBlock, lLineStart, pTo);
+            }
+            return lChunk;
+        };
+    }
+
+    private Callable<Chunk> newEdgeTask(byte[] pBlock, int pFrom, int pTo) {
+        return () -> {
+            Chunk lChunk = new Chunk();
+            lChunk.edges = new ArrayList<>();
+            TLGEdgeRecord lRecord = new TLGEdgeRecord();
+            int lLineStart = pFrom;
+            while (lLineStart < pTo) {
+                int lLineEnd = getTerminator(pBlock, lLineStart, pTo);
+                if (lLineEnd > lLineStart) {
+                    lRecord.setLine(pBlock, lLineStart, lLineEnd);
+                    TLGEdge lEdge = graph.newEdge(lRecord, options, lChunk.attributeCountMap, lChunk.edgeTypes);
+                    if (lEdge != null) lChunk.edges.add(lEdge);
+                }
+                lLineStart = getNextLineStart(pBlock, lLineStart, pTo);
+            }
+            return lChunk;
+        };
+    }
+
+    /**
+     * Merge a chunk into the graph
+     * @return Number of merged nodes or edges
+     */
+    private long merge(Future<Chunk> pFuture) throws IOException {
+        Chunk lChunk;
+        try {
+            lChunk = pFuture.get();
+        }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+        if (lChunk.nodes != null) {
+            for (TLGNode lNode:lChunk.nodes) {
+                graph.addNode(lNode);
+            }
+            mergeCounts(graph.nodeAttributeCountMap, lChunk.attributeCountMap);
+            return lChunk.nodes.size();
+        }
+        else {
+            for (TLGEdge lEdge:lChunk.edges) {
+                graph.addEdge(lEdge);
+            }
+            mergeCounts(graph.edgeAttributeCountMap, lChunk.attributeCountMap);
+            mergeCounts(graph.edgeTypes, lChunk.edgeTypes);
+            return lChunk.edges.size();
+        }
+    }
+
+    private static void mergeCounts(Map<String, TObjectLongHashMap<String>> pTarget, Map<String, TObjectLongHashMap<String>> pSource) {
+        for (Map.Entry<String, TObjectLongHashMap<String>> lEntry:pSource.entrySet()) {
+            TObjectLongHashMap<String> lMap = pTarget.get(lEntry.getKey());
+            if (lMap == null) {
+                pTarget.put(lEntry.getKey(), lEntry.getValue());
+            }
+            else {
+                mergeCounts(lMap, lEntry.getValue());
+            }
+        }
+    }
+
+    private static void mergeCounts(TObjectLongHashMap<String> pTarget, TObjectLongHashMap<String> pSource) {
+        pSource.forEachEntry((k, v) -> {
+            pTarget.adjustOrPutValue(k, v, v);
+            return true;
+        });
+    }
+
+}
@@ -0,0 +1,344 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.*;
+
+/**
+ * Column store for the properties of all nodes or all edges of a graph, indexed by entity ordinal. Every key starts
+ * as a sparse column. Once a key is set for a noticeable share of the entities it is turned into a dense column,
+ * a primitive double column if all its values are doubles which print back to the same String, otherwise a column
+ * of TLGSymbolTable codes. Rare keys stay sparse. Every entity keeps the number of its keys and a bitmap of its
+ * keys among the first 64 columns, hence size() and iteration do not scan all columns.
+ * <p>
+ * Writes are synchronized, so different entities may be written concurrently as with the HashMaps this replaces.
+ * Reads are not synchronized, a read concurrent with a write to the same store needs external synchronization.
+ */
+public class TLGPropertyColumns {
+
+    private static final int NO_VALUE = -2;
+    private static final int MIN_DENSE_ENTRIES = 64;
+
+    private TLGSymbolTable symbols;
+    private List<Column> columns = new ArrayList<>();
+    private TObjectIntHashMap<String> columnIndex = new TObjectIntHashMap<>(16, 0.5f, -1);
+    private int size = 0;
+    private int[] keyCounts = new int[16];
+    /**
+     * Bit c is set if column c has a value for the entity, for the first 64 columns
+     */
+    private long[] keyMasks = new long[16];
+
+    private static abstract class Column {
+        String key;
+        int entries;
+
+        abstract String get(int pOrdinal);
+
+        /**
+         * @return False if the value cannot be stored in this column
+         */
+        abstract boolean set(int pOrdinal, String pValue);
+
+        abstract void remove(int pOrdinal);
+
+        boolean isDense() {
+            return true;
+        }
+    }
+
+    private static class SparseColumn extends Column {
+        TIntObjectHashMap<String> values = new TIntObjectHashMap<>();
+
+        String get(int pOrdinal) {
+            return values.get(pOrdinal);
+        }
+
+        boolean set(int pOrdinal, String pValue) {
+            if (values.put(pOrdinal, pValue) == null) entries++;
+            return true;
+        }
+
+        void remove(int pOrdinal) {
+            if (values.remove(pOrdinal) != null) entries--;
+        }
+
+        boolean isDense() {
+            return false;
+        }
+    }
+
+    private class CodeColumn extends Column {
+        int keyCode = TLGSymbolTable.NO_CODE;
+        int[] codes = new int[0];
+        /**
+         * Values without symbol code
+         */
+        TIntObjectHashMap<String> literals = new TIntObjectHashMap<>();
+
+        String get(int pOrdinal) {
+            if (pOrdinal >= codes.length) return null;
+            int lCode = codes[pOrdinal];
+            if (lCode == NO_VALUE) return null;
+            return lCode == TLGSymbolTable.NO_CODE ? literals.get(pOrdinal) : symbols.getSymbol(lCode);
+        }
+
+        boolean set(int pOrdinal, String pValue) {
+            if (pOrdinal >= codes.length) {
+                int lLength = codes.length;
+                codes = Arrays.copyOf(codes, Math.max(pOrdinal+1, Math.max(size, lLength*3/2)));
+                Arrays.fill(codes, lLength, codes.length, NO_VALUE);
+            }
+            if (codes[pOrdinal] == NO_VALUE) entries++;
+            else if (codes[pOrdinal] == TLGSymbolTable.NO_CODE) literals.remove(pOrdinal);
+            if (keyCode == TLGSymbolTable.NO_CODE) keyCode = symbols.intern(key);
+            int lCode = symbols.internValue(keyCode, pValue);
+            codes[pOrdinal] = lCode;
+            if (lCode == TLGSymbolTable.NO_CODE) literals.put(pOrdinal, pValue);
+            return true;
+        }
+
+        void remove(int pOrdinal) {
+            if ((pOrdinal >= codes.length) || (codes[pOrdinal] == NO_VALUE)) return;
+            if (codes[pOrdinal] == TLGSymbolTable.NO_CODE) literals.remove(pOrdinal);
+            codes[pOrdinal] = NO_VALUE;
+            entries--;
+        }
+    }
+
+    private class DoubleColumn extends Column {
+        double[] values = new double[0];
+        BitSet present = new BitSet();
+
+        String get(int pOrdinal) {
+            return present.get(pOrdinal) ? Double.toString(values[pOrdinal]) : null;
+        }
+
+        boolean set(int pOrdinal, String pValue) {
+            double lValue = parseDouble(pValue);
+            if (Double.isNaN(lValue)) return false;
+            if (pOrdinal >= values.length) {
+                values = Arrays.copyOf(values, Math.max(pOrdinal+1, Math.max(size, values.length*3/2)));
+            }
+            if (!present.get(pOrdinal)) {
+                present.set(pOrdinal);
+                entries++;
+            }
+            values[pOrdinal] = lValue;
+            return true;
+        }
+
+        void remove(int pOrdinal) {
+            if (present.get(pOrdinal)) {
+                present.clear(pOrdinal);
+                entries--;
+            }
+        }
+    }
+
+    /**
+     * @return The value of pValue if Double.toString() restores it exactly, NaN otherwise
+     */
+    private static double parseDouble(String pValue) {
+        if ((pValue.length() == 0) || (pValue.length() > 24)) return Double.NaN;
+        char c = pValue.charAt(0);
+        if (((c < '0') || (c > '9')) && (c != '-')) return Double.NaN;
+        try {
+            double lResult = Double.parseDouble(pValue);
+            return Double.toString(lResult).equals(pValue) ? lResult : Double.NaN;
+        }
+        catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    public TLGPropertyColumns(TLGSymbolTable pSymbols) {
+        symbols = pSymbols;
+    }
+
+    /**
+     * @return Ordinal of a new entity without properties
+     */
+    public synchronized int newOrdinal() {
+        if (size == keyCounts.length) {
+            keyCounts = Arrays.copyOf(keyCounts, size*2);
+            keyMasks = Arrays.copyOf(keyMasks, size*2);
+        }
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int pOrdinal, Object pKey) {
+        int lIndex = columnIndex.get(pKey);
+        return lIndex >= 0 ? columns.get(lIndex).get(pOrdinal) : null;
+    }
+
+    public synchronized String put(int pOrdinal, String pKey, String pValue) {
+        if ((pKey == null) || (pValue == null)) throw new NullPointerException();
+        int lIndex = columnIndex.get(pKey);
+        if (lIndex < 0) {
+            lIndex = columns.size();
+            SparseColumn lColumn = new SparseColumn();
+            lColumn.key = pKey;
+            columns.add(lColumn);
+            columnIndex.put(pKey, lIndex);
+        }
+        Column lColumn = columns.get(lIndex);
+        String lResult = lColumn.get(pOrdinal);
+        if (!lColumn.set(pOrdinal, pValue)) {
+            lColumn = convert(lColumn, new CodeColumn());
+            columns.set(lIndex, lColumn);
+            lColumn.set(pOrdinal, pValue);
+        }
+        if (!lColumn.isDense() && (lColumn.entries >= MIN_DENSE_ENTRIES) && (lColumn.entries*8 >= size)) {
+            columns.set(lIndex, densify((SparseColumn)lColumn));
+        }
+        if (lResult == null) {
+            keyCounts[pOrdinal]++;
+            if (lIndex < 64) keyMasks[pOrdinal] |= 1L << lIndex;
+        }
+        return lResult;
+    }
+
+    public synchronized String remove(int pOrdinal, Object pKey) {
+        int lIndex = columnIndex.get(pKey);
+        if (lIndex < 0) return null;
+        Column lColumn = columns.get(lIndex);
+        String lResult = lColumn.get(pOrdinal);
+        if (lResult != null) {
+            lColumn.remove(pOrdinal);
+            keyCounts[pOrdinal]--;
+            if (lIndex < 64) keyMasks[pOrdinal] &= ~(1L << lIndex);
+        }
+        return lResult;
+    }
+
+    /**
+     * @return Keys of the entity in column order
+     */
+    List<String> getKeys(int pOrdinal) {
+        List<String> lResult = new ArrayList<>(keyCounts[pOrdinal]);
+        for (long lMask=keyMasks[pOrdinal]; lMask != 0; lMask &= lMask-1) {
+            lResult.add(columns.get(Long.numberOfTrailingZeros(lMask)).key);
+        }
+        // Only keys beyond the first 64 columns need a lookup per column
+        for (int c=64; (c<columns.size()) && (lResult.size() < keyCounts[pOrdinal]); c++) {
+            if (columns.get(c).get(pOrdinal) != null) lResult.add(columns.get(c).key);
+        }
+        return lResult;
+    }
+
+    int count(int pOrdinal) {
+        return keyCounts[pOrdinal];
+    }
+
+    private Column densify(SparseColumn pColumn) {
+        boolean lDoubles = true;
+        for (String lValue:pColumn.values.valueCollection()) {
+            if (Double.isNaN(parseDouble(lValue))) {
+                lDoubles = false;
+                break;
+            }
+        }
+        return convert(pColumn, lDoubles ? new DoubleColumn() : new CodeColumn());
+    }
+
+    private Column convert(Column pFrom, Column pTo) {
+        pTo.key = pFrom.key;
+        for (int i=0; i<size; i++) {
+            String lValue = pFrom.get(i);
+            if (lValue != null) pTo.set(i, lValue);
+        }
+        return pTo;
+    }
+
+    /**
+     * @return Map view of the properties of one entity
+     */
+    public Map<String, String> getProperties(int pOrdinal) {
+        return new PropertyMap(pOrdinal);
+    }
+
+    private class PropertyMap extends AbstractMap<String, String> {
+
+        private int ordinal;
+
+        PropertyMap(int pOrdinal) {
+            ordinal = pOrdinal;
+        }
+
+        @Override
+        public String get(Object pKey) {
+            return TLGPropertyColumns.this.get(ordinal, pKey);
+        }
+
+        @Override
+        public boolean containsKey(Object pKey) {
+            return get(pKey) != null;
+        }
+
+        @Override
+        public String put(String pKey, String pValue) {
+            return TLGPropertyColumns.this.put(ordinal, pKey, pValue);
+        }
+
+        @Override
+        public String remove(Object pKey) {
+            return TLGPropertyColumns.this.remove(ordinal, pKey);
+        }
+
+        @Override
+        public int size() {
+            return count(ordinal);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<String> lKeys = getKeys(ordinal).iterator();
+                    return new Iterator<Entry<String, String>>() {
+                        String last = null;
+
+                        @Override
+                        public boolean hasNext() {
+                            return lKeys.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            last = lKeys.next();
+                            final String lKey = last;
+                            return new SimpleEntry<String, String>(lKey, get(lKey)) {
+                                @Override
+                                public String setValue(String pValue) {
+                                    put(lKey, pValue);
+                                    return super.setValue(pValue);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) throw new IllegalStateException();
+                            PropertyMap.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return count(ordinal);
+                }
+            };
+        }
+
+    }
+
+}
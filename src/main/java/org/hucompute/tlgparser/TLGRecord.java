@@ -0,0 +1,163 @@
+package org.hucompute.tlgparser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Reusable view of one vertex or edge while a file is streamed, see TLGGraphVisitor. A record is only valid
+ * during the callback it is passed to and is overwritten by the next line. Properties of BF lines are tokenized on
+ * first access and only decoded on request, GML records carry their attributes as strings.
+ */
+public abstract class TLGRecord {
+
+    protected byte[] buffer;
+    protected int start;
+    protected int end;
+    protected int[] spans = new int[64];
+    private int[] span = new int[4];
+    protected int propertyCount;
+    protected boolean tokenized;
+    protected String[] keys = new String[16];
+    protected String[] values = new String[16];
+
+    /**
+     * Point the record to a BF line
+     */
+    protected void setBuffer(byte[] pBuffer, int pStart, int pEnd) {
+        buffer = pBuffer;
+        start = pStart;
+        end = pEnd;
+        propertyCount = 0;
+        tokenized = false;
+    }
+
+    /**
+     * Reset the record to hold string attributes, see addProperty()
+     */
+    protected void clearStrings() {
+        buffer = null;
+        propertyCount = 0;
+        tokenized = true;
+    }
+
+    protected void addProperty(String pKey, String pValue) {
+        if (propertyCount == keys.length) {
+            String[] lKeys = new String[keys.length*2];
+            String[] lValues = new String[keys.length*2];
+            System.arraycopy(keys, 0, lKeys, 0, keys.length);
+            System.arraycopy(values, 0, lValues, 0, values.length);
+            keys = lKeys;
+            values = lValues;
+        }
+        keys[propertyCount] = pKey;
+        values[propertyCount] = pValue;
+        propertyCount++;
+    }
+
+    private void tokenize() {
+        if (tokenized) return;
+        tokenized = true;
+        int lPosition = start;
+        while ((lPosition = TLGTokenizer.nextProperty(buffer, lPosition, end, span)) >= 0) {
+            if ((propertyCount+1)*4 > spans.length) {
+                int[] lSpans = new int[spans.length*2];
+                System.arraycopy(spans, 0, lSpans, 0, spans.length);
+                spans = lSpans;
+            }
+            System.arraycopy(span, 0, spans, propertyCount*4, 4);
+            propertyCount++;
+        }
+    }
+
+    /**
+     * @return Position of the first '[' of a BF line, tokenizing from there finds the same properties as from the
+     * start of the line
+     */
+    protected int getPropertyStart() {
+        for (int i=start; i<end; i++) {
+            if (buffer[i] == '[') return i;
+        }
+        return end;
+    }
+
+    /**
+     * @return Number of properties including repeated keys
+     */
+    public int getPropertyCount() {
+        tokenize();
+        return propertyCount;
+    }
+
+    public String getPropertyKey(int pIndex) {
+        tokenize();
+        if (buffer == null) return keys[pIndex];
+        return TLGTokenizer.decode(buffer, spans[pIndex*4+TLGTokenizer.KEY_START], spans[pIndex*4+TLGTokenizer.KEY_END]);
+    }
+
+    public String getPropertyValue(int pIndex) {
+        tokenize();
+        if (buffer == null) return values[pIndex];
+        return TLGTokenizer.decode(buffer, spans[pIndex*4+TLGTokenizer.VALUE_START], spans[pIndex*4+TLGTokenizer.VALUE_END]);
+    }
+
+    /**
+     * Compare the key of a property without decoding it
+     */
+    public boolean isPropertyKey(int pIndex, String pKey) {
+        tokenize();
+        if (buffer == null) return keys[pIndex].equals(pKey);
+        return equals(pKey, buffer, spans[pIndex*4+TLGTokenizer.KEY_START], spans[pIndex*4+TLGTokenizer.KEY_END]);
+    }
+
+    /**
+     * Compare the value of a property without decoding it
+     */
+    public boolean isPropertyValue(int pIndex, String pValue) {
+        tokenize();
+        if (buffer == null) return values[pIndex].equals(pValue);
+        return equals(pValue, buffer, spans[pIndex*4+TLGTokenizer.VALUE_START], spans[pIndex*4+TLGTokenizer.VALUE_END]);
+    }
+
+    /**
+     * @return Index of the property with key pKey or -1. If the key is repeated the last one wins, as in a Map.
+     */
+    public int indexOfProperty(String pKey) {
+        tokenize();
+        for (int i=propertyCount-1; i>=0; i--) {
+            if (isPropertyKey(i, pKey)) return i;
+        }
+        return -1;
+    }
+
+    public String getProperty(String pKey, String pDefault) {
+        int lIndex = indexOfProperty(pKey);
+        return lIndex >= 0 ? getPropertyValue(lIndex) : pDefault;
+    }
+
+    /**
+     * Put all properties into pTarget
+     */
+    public void getProperties(Map<String, String> pTarget) {
+        tokenize();
+        for (int i=0; i<propertyCount; i++) {
+            pTarget.put(getPropertyKey(i), getPropertyValue(i));
+        }
+    }
+
+    /**
+     * Compare a string with UTF-8 bytes, ASCII is compared in place
+     */
+    protected static boolean equals(String pString, byte[] pBuffer, int pFrom, int pTo) {
+        int lLength = pString.length();
+        if (lLength > pTo-pFrom) return false;
+        for (int i=0; i<lLength; i++) {
+            char c = pString.charAt(i);
+            if (c >= 0x80) {
+                return pString.equals(new String(pBuffer, pFrom, pTo-pFrom, StandardCharsets.UTF_8));
+            }
+            if (pBuffer[pFrom+i] != c) return false;
+        }
+        return lLength == pTo-pFrom;
+    }
+
+}
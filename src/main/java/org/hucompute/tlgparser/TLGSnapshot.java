@@ -0,0 +1,490 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary snapshot of a TLGGraph. The file consists of a section table followed by 8 byte aligned sections:
+ * a string table holding all ids, keys and values, the node ids and properties, the OUT adjacency in CSR form
+ * with one similarity and one property list per edge, and the head, directedness, type and attribute counts.
+ * Opening maps every section with FileChannel.map, nodes and edges are created directly from the int arrays and
+ * their properties are only decoded from the mapped string table when they are accessed.
+ * <p>
+ * Opening is not free of cost: one TLGNode per node and one TLGEdge per edge are still allocated, hence it takes
+ * O(V+E) time and heap. What it saves against loading the BF file is the tokenizing, the property maps and the
+ * decoding of strings which are never read.
+ */
+public class TLGSnapshot {
+
+    private static Logger logger = LogManager.getLogger(TLGSnapshot.class);
+
+    private static final int MAGIC = 0x544C4753;
+    private static final int VERSION = 2;
+
+    private enum Section {STRING_OFFSETS, STRING_BYTES, META, NODE_IDS, NODE_PROPERTY_OFFSETS, NODE_PROPERTIES,
+        OUT_OFFSETS, OUT_TARGETS, EDGE_SIMILARITIES, EDGE_PROPERTY_OFFSETS, EDGE_PROPERTIES};
+
+    private static final int HEADER_SIZE = 16 + Section.values().length*16;
+
+    private IntBuffer stringOffsets;
+    private ByteBuffer stringBytes;
+    private String[] strings;
+    private IntBuffer nodeProperties;
+    private IntBuffer edgeProperties;
+
+    private TLGSnapshot() {
+    }
+
+    /**
+     * Save pGraph as snapshot. Nodes are stored in the iteration order of getNodes(), edges in the order of
+     * getEdges(Direction.OUT) of their source.
+     */
+    public static void save(TLGGraph pGraph, File pFile) throws IOException {
+        List<TLGNode> lNodes = new ArrayList<>(pGraph.getNodes());
+        TObjectIntHashMap<TLGNode> lOrdinals = new TObjectIntHashMap<>(lNodes.size(), 0.5f, -1);
+        for (int i=0; i<lNodes.size(); i++) {
+            lOrdinals.put(lNodes.get(i), i);
+        }
+        StringTable lStrings = new StringTable();
+        try (SectionWriter lWriter = new SectionWriter(pFile)) {
+            // Nodes
+            lWriter.begin(Section.NODE_IDS);
+            for (TLGNode lNode:lNodes) {
+                lWriter.putInt(lStrings.get(lNode.getId()));
+            }
+            lWriter.begin(Section.NODE_PROPERTY_OFFSETS);
+            int lOffset = 0;
+            lWriter.putInt(lOffset);
+            for (TLGNode lNode:lNodes) {
+                lOffset += lNode.getProperties().size()*2;
+                lWriter.putInt(lOffset);
+            }
+            lWriter.begin(Section.NODE_PROPERTIES);
+            for (TLGNode lNode:lNodes) {
+                putProperties(lWriter, lStrings, lNode.getProperties());
+            }
+            // Adjacency
+            lWriter.begin(Section.OUT_OFFSETS);
+            List<TLGEdge> lEdges = new ArrayList<>();
+            lWriter.putInt(0);
+            for (TLGNode lNode:lNodes) {
+                for (int e=0; e<lNode.getOutDegree(); e++) {
+                    lEdges.add(lNode.getOutEdge(e));
+                }
+                lWriter.putInt(lEdges.size());
+            }
+            lWriter.begin(Section.OUT_TARGETS);
+            for (TLGEdge lEdge:lEdges) {
+                int lTarget = lOrdinals.get(lEdge.getTarget());
+                if (lTarget < 0) throw new IOException("Edge target is not part of the graph: "+lEdge.getTarget().getId());
+                lWriter.putInt(lTarget);
+            }
+            lWriter.begin(Section.EDGE_SIMILARITIES);
+            for (TLGEdge lEdge:lEdges) {
+                lWriter.putDouble(lEdge.getSimilarity());
+            }
+            lWriter.begin(Section.EDGE_PROPERTY_OFFSETS);
+            lOffset = 0;
+            lWriter.putInt(lOffset);
+            for (TLGEdge lEdge:lEdges) {
+                lOffset += lEdge.getProperties().size()*2;
+                lWriter.putInt(lOffset);
+            }
+            lWriter.begin(Section.EDGE_PROPERTIES);
+            for (TLGEdge lEdge:lEdges) {
+                putProperties(lWriter, lStrings, lEdge.getProperties());
+            }
+            // Meta data
+            lWriter.begin(Section.META);
+            pGraph.countLazyProperties();
+            lWriter.putInt(pGraph.head == null ? -1 : lStrings.get(pGraph.head));
+            lWriter.putInt(pGraph.directedness == null ? -1 : pGraph.directedness.ordinal());
+            putCounts(lWriter, lStrings, pGraph.nodeTypes);
+            putCounts(lWriter, lStrings, pGraph.edgeTypes);
+            putCounts(lWriter, lStrings, pGraph.nodeAttributeCountMap);
+            putCounts(lWriter, lStrings, pGraph.edgeAttributeCountMap);
+            // Index entries of nodes which are not part of nodeMap any more cannot be restored
+            TIntArrayList lIndexEntries = new TIntArrayList();
+            pGraph.languageTypeNameIndex.forEachEntry((pKey, pNode) -> {
+                int lOrdinal = lOrdinals.get(pNode);
+                if (lOrdinal >= 0) {
+                    lIndexEntries.add(lStrings.get(pKey));
+                    lIndexEntries.add(lOrdinal);
+                }
+            });
+            if (lIndexEntries.size()/2 < pGraph.languageTypeNameIndex.size()) {
+                logger.warn((pGraph.languageTypeNameIndex.size()-lIndexEntries.size()/2)+" index entries without node skipped");
+            }
+            lWriter.putInt(lIndexEntries.size()/2);
+            for (int i=0; i<lIndexEntries.size(); i++) {
+                lWriter.putInt(lIndexEntries.get(i));
+            }
+            // Strings
+            lWriter.begin(Section.STRING_OFFSETS);
+            long lStringOffset = 0;
+            lWriter.putInt(0);
+            for (byte[] lBytes:lStrings.list) {
+                lStringOffset += lBytes.length;
+                if (lStringOffset > Integer.MAX_VALUE) throw new IOException("String table exceeds 2GB");
+                lWriter.putInt((int)lStringOffset);
+            }
+            lWriter.begin(Section.STRING_BYTES);
+            for (byte[] lBytes:lStrings.list) {
+                lWriter.putBytes(lBytes);
+            }
+            lWriter.end();
+        }
+        logger.info("Snapshot saved: "+lNodes.size()+" nodes, "+lStrings.list.size()+" strings");
+    }
+
+    private static void putProperties(SectionWriter pWriter, StringTable pStrings, Map<String, String> pProperties) throws IOException {
+        for (Map.Entry<String, String> lEntry:pProperties.entrySet()) {
+            pWriter.putInt(pStrings.get(lEntry.getKey()));
+            pWriter.putInt(pStrings.get(lEntry.getValue()));
+        }
+    }
+
+    private static void putCounts(SectionWriter pWriter, StringTable pStrings, TObjectLongHashMap<String> pCounts) throws IOException {
+        pWriter.putInt(pCounts.size());
+        for (String lKey:pCounts.keySet()) {
+            pWriter.putInt(pStrings.get(lKey));
+            pWriter.putLong(pCounts.get(lKey));
+        }
+    }
+
+    private static void putCounts(SectionWriter pWriter, StringTable pStrings, Map<String, TObjectLongHashMap<String>> pCounts) throws IOException {
+        pWriter.putInt(pCounts.size());
+        for (Map.Entry<String, TObjectLongHashMap<String>> lEntry:pCounts.entrySet()) {
+            pWriter.putInt(pStrings.get(lEntry.getKey()));
+            putCounts(pWriter, pStrings, lEntry.getValue());
+        }
+    }
+
+    /**
+     * Open a snapshot written by save(). Allocates all nodes and edges, see the class comment.
+     */
+    public static TLGGraph open(File pFile) throws IOException {
+        TLGSnapshot lSnapshot = new TLGSnapshot();
+        Map<Section, ByteBuffer> lSections = new EnumMap<>(Section.class);
+        try (FileChannel lChannel = new RandomAccessFile(pFile, "r").getChannel()) {
+            MappedByteBuffer lHeader = lChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (lHeader.getInt() != MAGIC) throw new IOException("Not a TLG snapshot: "+pFile.getName());
+            if (lHeader.getInt() != VERSION) throw new IOException("Unsupported snapshot version in "+pFile.getName());
+            if (lHeader.getInt() != Section.values().length) throw new IOException("Corrupt section table in "+pFile.getName());
+            lHeader.getInt();
+            for (Section lSection:Section.values()) {
+                long lOffset = lHeader.getLong();
+                long lLength = lHeader.getLong();
+                if (lLength > Integer.MAX_VALUE) throw new IOException("Section "+lSection+" exceeds 2GB");
+                lSections.put(lSection, lChannel.map(FileChannel.MapMode.READ_ONLY, lOffset, lLength));
+            }
+        }
+        lSnapshot.stringOffsets = lSections.get(Section.STRING_OFFSETS).asIntBuffer();
+        lSnapshot.stringBytes = lSections.get(Section.STRING_BYTES);
+        lSnapshot.strings = new String[lSnapshot.stringOffsets.limit()-1];
+        lSnapshot.nodeProperties = lSections.get(Section.NODE_PROPERTIES).asIntBuffer();
+        lSnapshot.edgeProperties = lSections.get(Section.EDGE_PROPERTIES).asIntBuffer();
+        IntBuffer lNodeIDs = lSections.get(Section.NODE_IDS).asIntBuffer();
+        IntBuffer lNodePropertyOffsets = lSections.get(Section.NODE_PROPERTY_OFFSETS).asIntBuffer();
+        IntBuffer lOutOffsets = lSections.get(Section.OUT_OFFSETS).asIntBuffer();
+        IntBuffer lOutTargets = lSections.get(Section.OUT_TARGETS).asIntBuffer();
+        DoubleBuffer lSimilarities = lSections.get(Section.EDGE_SIMILARITIES).asDoubleBuffer();
+        IntBuffer lEdgePropertyOffsets = lSections.get(Section.EDGE_PROPERTY_OFFSETS).asIntBuffer();
+        ByteBuffer lMeta = lSections.get(Section.META);
+
+        TLGGraph lGraph = new TLGGraph();
+        int lHead = lMeta.getInt();
+        lGraph.head = lHead < 0 ? null : lSnapshot.getString(lHead);
+        int lDirectedness = lMeta.getInt();
+        lGraph.directedness = lDirectedness < 0 ? null : TLGGraph.Directedness.values()[lDirectedness];
+        lSnapshot.getCounts(lMeta, lGraph.nodeTypes);
+        lSnapshot.getCounts(lMeta, lGraph.edgeTypes);
+        lSnapshot.getCounts(lMeta, lGraph.nodeAttributeCountMap);
+        lSnapshot.getCounts(lMeta, lGraph.edgeAttributeCountMap);
+
+        int lNodeCount = lNodeIDs.limit();
+        TLGNode[] lNodes = new TLGNode[lNodeCount];
+        lGraph.nodeMap = new HashMap<>();
+        for (int i=0; i<lNodeCount; i++) {
+            lNodes[i] = new TLGNode(lGraph, lSnapshot.getString(lNodeIDs.get(i)),
+                    new SnapshotPropertyMap(lSnapshot, lSnapshot.nodeProperties, lNodePropertyOffsets.get(i), lNodePropertyOffsets.get(i+1)));
+            lGraph.nodeMap.put(lNodes[i].getId(), lNodes[i]);
+        }
+        for (int i=0; i<lNodeCount; i++) {
+            for (int e=lOutOffsets.get(i); e<lOutOffsets.get(i+1); e++) {
+                new TLGEdge(lGraph, lNodes[i], lNodes[lOutTargets.get(e)],
+                        new SnapshotPropertyMap(lSnapshot, lSnapshot.edgeProperties, lEdgePropertyOffsets.get(e), lEdgePropertyOffsets.get(e+1)),
+                        lSimilarities.get(e)).attach();
+            }
+        }
+        lGraph.languageTypeNameIndex.clear();
+        int lIndexSize = lMeta.getInt();
+        for (int i=0; i<lIndexSize; i++) {
+            String lKey = lSnapshot.getString(lMeta.getInt());
+            int lOrdinal = lMeta.getInt();
+            if ((lOrdinal < 0) || (lOrdinal >= lNodeCount)) throw new IOException("Corrupt index entry in "+pFile.getName());
+            lGraph.languageTypeNameIndex.put(lKey, lNodes[lOrdinal]);
+        }
+        return lGraph;
+    }
+
+    private void getCounts(ByteBuffer pMeta, TObjectLongHashMap<String> pCounts) {
+        int lSize = pMeta.getInt();
+        for (int i=0; i<lSize; i++) {
+            String lKey = getString(pMeta.getInt());
+            pCounts.put(lKey, pMeta.getLong());
+        }
+    }
+
+    private void getCounts(ByteBuffer pMeta, Map<String, TObjectLongHashMap<String>> pCounts) {
+        int lSize = pMeta.getInt();
+        for (int i=0; i<lSize; i++) {
+            TObjectLongHashMap<String> lCounts = new TObjectLongHashMap<>();
+            pCounts.put(getString(pMeta.getInt()), lCounts);
+            getCounts(pMeta, lCounts);
+        }
+    }
+
+    /**
+     * Decode a string of the string table on first use. Concurrent decoding of the same string is harmless.
+     */
+    String getString(int pIndex) {
+        String lResult = strings[pIndex];
+        if (lResult == null) {
+            int lStart = stringOffsets.get(pIndex);
+            int lEnd = stringOffsets.get(pIndex+1);
+            byte[] lBytes = new byte[lEnd-lStart];
+            ByteBuffer lBuffer = stringBytes.duplicate();
+            lBuffer.position(lStart);
+            lBuffer.get(lBytes);
+            lResult = new String(lBytes, StandardCharsets.UTF_8);
+            strings[pIndex] = lResult;
+        }
+        return lResult;
+    }
+
+    /**
+     * Read only view of the properties of one node or edge which decodes keys and values from the snapshot. The
+     * first modification copies the properties into a HashMap.
+     */
+    static class SnapshotPropertyMap extends AbstractMap<String, String> {
+
+        private TLGSnapshot snapshot;
+        private IntBuffer pairs;
+        private int start;
+        private int end;
+        private Map<String, String> copy;
+
+        SnapshotPropertyMap(TLGSnapshot pSnapshot, IntBuffer pPairs, int pStart, int pEnd) {
+            snapshot = pSnapshot;
+            pairs = pPairs;
+            start = pStart;
+            end = pEnd;
+        }
+
+        @Override
+        public int size() {
+            return copy != null ? copy.size() : (end-start)/2;
+        }
+
+        @Override
+        public String get(Object pKey) {
+            if (copy != null) return copy.get(pKey);
+            for (int i=start; i<end; i+=2) {
+                if (snapshot.getString(pairs.get(i)).equals(pKey)) {
+                    return snapshot.getString(pairs.get(i+1));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object pKey) {
+            if (copy != null) return copy.containsKey(pKey);
+            for (int i=start; i<end; i+=2) {
+                if (snapshot.getString(pairs.get(i)).equals(pKey)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String put(String pKey, String pValue) {
+            return getCopy().put(pKey, pValue);
+        }
+
+        @Override
+        public String remove(Object pKey) {
+            return getCopy().remove(pKey);
+        }
+
+        private Map<String, String> getCopy() {
+            if (copy == null) {
+                Map<String, String> lCopy = new HashMap<>();
+                for (int i=start; i<end; i+=2) {
+                    lCopy.put(snapshot.getString(pairs.get(i)), snapshot.getString(pairs.get(i+1)));
+                }
+                copy = lCopy;
+            }
+            return copy;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            if (copy != null) return copy.entrySet();
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        int position = start;
+                        @Override
+                        public boolean hasNext() {
+                            return position < end;
+                        }
+                        @Override
+                        public Entry<String, String> next() {
+                            if (position >= end) throw new NoSuchElementException();
+                            Entry<String, String> lResult = new SimpleImmutableEntry<>(snapshot.getString(pairs.get(position)), snapshot.getString(pairs.get(position+1)));
+                            position += 2;
+                            return lResult;
+                        }
+                    };
+                }
+                @Override
+                public int size() {
+                    return (end-start)/2;
+                }
+            };
+        }
+    }
+
+    /**
+     * Deduplicating string table, strings are numbered in order of first use
+     */
+    private static class StringTable {
+        TObjectIntHashMap<String> map = new TObjectIntHashMap<>(1024, 0.5f, -1);
+        List<byte[]> list = new ArrayList<>();
+
+        int get(String pString) {
+            int lResult = map.get(pString);
+            if (lResult < 0) {
+                lResult = list.size();
+                map.put(pString, lResult);
+                list.add(pString.getBytes(StandardCharsets.UTF_8));
+            }
+            return lResult;
+        }
+    }
+
+    /**
+     * Writes the sections through a heap buffer and fills in the section table on end()
+     */
+    private static class SectionWriter implements Closeable {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(1024*1024);
+        private long position;
+        private long[] offsets = new long[Section.values().length];
+        private long[] lengths = new long[Section.values().length];
+        private Section current;
+
+        SectionWriter(File pFile) throws IOException {
+            channel = new RandomAccessFile(pFile, "rw").getChannel();
+            channel.truncate(0);
+            ByteBuffer lEmptyHeader = ByteBuffer.allocate(HEADER_SIZE);
+            while (lEmptyHeader.hasRemaining()) channel.write(lEmptyHeader);
+            position = HEADER_SIZE;
+        }
+
+        void begin(Section pSection) throws IOException {
+            finishSection();
+            while (position % 8 != 0) {
+                ensure(1);
+                buffer.put((byte)0);
+                position++;
+            }
+            current = pSection;
+            offsets[pSection.ordinal()] = position;
+        }
+
+        private void finishSection() {
+            if (current != null) {
+                lengths[current.ordinal()] = position - offsets[current.ordinal()];
+            }
+        }
+
+        private void ensure(int pBytes) throws IOException {
+            if (buffer.remaining() < pBytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        void putInt(int pValue) throws IOException {
+            ensure(4);
+            buffer.putInt(pValue);
+            position += 4;
+        }
+
+        void putLong(long pValue) throws IOException {
+            ensure(8);
+            buffer.putLong(pValue);
+            position += 8;
+        }
+
+        void putDouble(double pValue) throws IOException {
+            ensure(8);
+            buffer.putDouble(pValue);
+            position += 8;
+        }
+
+        void putBytes(byte[] pBytes) throws IOException {
+            int lOffset = 0;
+            while (lOffset < pBytes.length) {
+                ensure(1);
+                int lLength = Math.min(buffer.remaining(), pBytes.length-lOffset);
+                buffer.put(pBytes, lOffset, lLength);
+                lOffset += lLength;
+            }
+            position += pBytes.length;
+        }
+
+        void end() throws IOException {
+            finishSection();
+            flush();
+            ByteBuffer lHeader = ByteBuffer.allocate(HEADER_SIZE);
+            lHeader.putInt(MAGIC);
+            lHeader.putInt(VERSION);
+            lHeader.putInt(Section.values().length);
+            lHeader.putInt(0);
+            for (Section lSection:Section.values()) {
+                lHeader.putLong(offsets[lSection.ordinal()]);
+                lHeader.putLong(lengths[lSection.ordinal()]);
+            }
+            lHeader.flip();
+            channel.position(0);
+            while (lHeader.hasRemaining()) channel.write(lHeader);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.hucompute.tlgparser;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams BF and GML files into a TLGGraphVisitor without building a TLGGraph. The loaders of TLGGraph are
+ * visitors on top of this reader, so both share the same tokenizing. Records are reused for every line.
+ */
+public class TLGStreamReader {
+
+    /**
+     * Stream a BF file. Empty edge lines are skipped.
+     */
+    public static void readBorlandFormat(File pFile, TLGGraphVisitor pVisitor) throws IOException {
+        TLGLineReader lReader = new TLGLineReader(new FileInputStream(pFile));
+        try {
+            pVisitor.head(TLGGraph.readHead(lReader, pFile));
+            TLGVertexRecord lVertex = new TLGVertexRecord();
+            while (true) {
+                if (!lReader.nextLine()) throw new EOFException("Missing Edges: section in "+pFile.getName());
+                if (lReader.startsWith(TLGGraph.EDGES)) break;
+                lVertex.setLine(lReader.getBuffer(), lReader.getLineStart(), lReader.getLineEnd());
+                pVisitor.vertex(lVertex);
+            }
+            TLGEdgeRecord lEdge = new TLGEdgeRecord();
+            while (lReader.nextLine()) {
+                if (!lReader.isEmptyLine()) {
+                    lEdge.setLine(lReader.getBuffer(), lReader.getLineStart(), lReader.getLineEnd());
+                    pVisitor.edge(lEdge);
+                }
+            }
+            pVisitor.end();
+        }
+        finally {
+            lReader.close();
+        }
+    }
+
+    /**
+     * Stream a GML file. Vertices carry their id as record id, edges their source and target, all other attributes
+     * are reported as properties in file order. Attributes of nested lists are flattened to keys joined by '.', for
+     * example graphics [ x 1.0 ] becomes graphics.x. Top level keys other than graph are skipped.
+     */
+    public static void readGML(File pFile, TLGGraphVisitor pVisitor) throws IOException {
+        try (FileChannel lChannel = new RandomAccessFile(pFile, "r").getChannel()) {
+            TLGGMLLexer lLexer = new TLGGMLLexer(lChannel, 64*1024);
+            int lToken;
+            while ((lToken = lLexer.next()) != TLGGMLLexer.END) {
+                expect(lLexer, lToken, TLGGMLLexer.WORD);
+                boolean lGraph = lLexer.isText("graph");
+                lToken = lLexer.next();
+                if (lGraph && (lToken == TLGGMLLexer.LIST_START)) {
+                    readGMLGraph(lLexer, pVisitor);
+                }
+                else {
+                    skipGMLValue(lLexer, lToken);
+                }
+            }
+            pVisitor.end();
+        }
+    }
+
+    private static void readGMLGraph(TLGGMLLexer pLexer, TLGGraphVisitor pVisitor) throws IOException {
+        TLGVertexRecord lVertex = new TLGVertexRecord();
+        TLGEdgeRecord lEdge = new TLGEdgeRecord();
+        int lToken;
+        while ((lToken = pLexer.next()) != TLGGMLLexer.LIST_END) {
+            expect(pLexer, lToken, TLGGMLLexer.WORD);
+            int lType = pLexer.isText("node") ? 1 : pLexer.isText("edge") ? 2 : 0;
+            lToken = pLexer.next();
+            if ((lType == 1) && (lToken == TLGGMLLexer.LIST_START)) {
+                lVertex.setStrings(null);
+                readGMLList(pLexer, lVertex, "");
+                if (lVertex.id == null) throw new IOException("Node without id before byte "+pLexer.getOffset());
+                pVisitor.vertex(lVertex);
+            }
+            else if ((lType == 2) && (lToken == TLGGMLLexer.LIST_START)) {
+                lEdge.setStrings(null, null);
+                readGMLList(pLexer, lEdge, "");
+                if ((lEdge.sourceID == null) || (lEdge.targetID == null)) {
+                    throw new IOException("Edge without source or target before byte "+pLexer.getOffset());
+                }
+                pVisitor.edge(lEdge);
+            }
+            else {
+                skipGMLValue(pLexer, lToken);
+            }
+        }
+    }
+
+    /**
+     * Read the attributes of a node or edge up to the closing bracket
+     */
+    private static void readGMLList(TLGGMLLexer pLexer, TLGRecord pRecord, String pPrefix) throws IOException {
+        int lToken;
+        while ((lToken = pLexer.next()) != TLGGMLLexer.LIST_END) {
+            expect(pLexer, lToken, TLGGMLLexer.WORD);
+            String lKey = pPrefix.isEmpty() ? pLexer.getText() : pPrefix+pLexer.getText();
+            lToken = pLexer.next();
+            if (lToken == TLGGMLLexer.LIST_START) {
+                readGMLList(pLexer, pRecord, lKey+".");
+                continue;
+            }
+            if (lToken != TLGGMLLexer.STRING) expect(pLexer, lToken, TLGGMLLexer.WORD);
+            String lValue = pLexer.getText();
+            if (pPrefix.isEmpty() && (pRecord instanceof TLGVertexRecord) && lKey.equals("id")) {
+                ((TLGVertexRecord)pRecord).id = lValue;
+            }
+            else if (pPrefix.isEmpty() && (pRecord instanceof TLGEdgeRecord) && lKey.equals("source")) {
+                ((TLGEdgeRecord)pRecord).sourceID = lValue;
+            }
+            else if (pPrefix.isEmpty() && (pRecord instanceof TLGEdgeRecord) && lKey.equals("target")) {
+                ((TLGEdgeRecord)pRecord).targetID = lValue;
+            }
+            else {
+                pRecord.addProperty(lKey, lValue);
+            }
+        }
+    }
+
+    /**
+     * Skip a value starting with pToken, lists are skipped including all nested lists
+     */
+    private static void skipGMLValue(TLGGMLLexer pLexer, int pToken) throws IOException {
+        if (pToken != TLGGMLLexer.LIST_START) {
+            if (pToken != TLGGMLLexer.STRING) expect(pLexer, pToken, TLGGMLLexer.WORD);
+            return;
+        }
+        int lDepth = 1;
+        while (lDepth > 0) {
+            switch (pLexer.next()) {
+                case TLGGMLLexer.LIST_START: lDepth++; break;
+                case TLGGMLLexer.LIST_END: lDepth--; break;
+                case TLGGMLLexer.END: throw new EOFException("Unterminated list at byte "+pLexer.getOffset());
+            }
+        }
+    }
+
+    private static void expect(TLGGMLLexer pLexer, int pToken, int pExpected) throws IOException {
+        if (pToken == TLGGMLLexer.END) {
+            throw new EOFException("Unexpected end of GML at byte "+pLexer.getOffset());
+        }
+        if (pToken != pExpected) {
+            throw new IOException("Malformed GML at byte "+pLexer.getOffset());
+        }
+    }
+
+}
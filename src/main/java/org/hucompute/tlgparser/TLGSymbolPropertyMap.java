@@ -0,0 +1,158 @@
+package org.hucompute.tlgparser;
+
+import java.util.*;
+
+/**
+ * Property map of a node or edge which stores keys and values as codes of a TLGSymbolTable. Values without a code
+ * are kept as Strings. Entries are kept in insertion order in a single int array, which costs a few bytes per
+ * property instead of a HashMap entry.
+ */
+class TLGSymbolPropertyMap extends AbstractMap<String, String> {
+
+    private TLGSymbolTable symbols;
+    /**
+     * Pairs of key code and value code
+     */
+    private int[] codes;
+    /**
+     * Values without code, null as long as there are none
+     */
+    private String[] literals;
+    private int size;
+
+    TLGSymbolPropertyMap(TLGSymbolTable pSymbols, int pCapacity) {
+        symbols = pSymbols;
+        codes = new int[pCapacity*2];
+    }
+
+    private int indexOf(Object pKey) {
+        int lCode = symbols.getCode(pKey);
+        if (lCode == TLGSymbolTable.NO_CODE) return -1;
+        for (int i=0; i<size; i++) {
+            if (codes[i*2] == lCode) return i;
+        }
+        return -1;
+    }
+
+    private String getValue(int pIndex) {
+        int lCode = codes[pIndex*2+1];
+        return lCode != TLGSymbolTable.NO_CODE ? symbols.getSymbol(lCode) : literals[pIndex];
+    }
+
+    private void setValue(int pIndex, String pValue) {
+        int lCode = symbols.internValue(codes[pIndex*2], pValue);
+        codes[pIndex*2+1] = lCode;
+        if (lCode == TLGSymbolTable.NO_CODE) {
+            if (literals == null) literals = new String[codes.length/2];
+            literals[pIndex] = pValue;
+        }
+        else if (literals != null) {
+            literals[pIndex] = null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object pKey) {
+        return indexOf(pKey) >= 0;
+    }
+
+    @Override
+    public String get(Object pKey) {
+        int lIndex = indexOf(pKey);
+        return lIndex >= 0 ? getValue(lIndex) : null;
+    }
+
+    @Override
+    public String put(String pKey, String pValue) {
+        if ((pKey == null) || (pValue == null)) throw new NullPointerException();
+        int lIndex = indexOf(pKey);
+        if (lIndex >= 0) {
+            String lResult = getValue(lIndex);
+            setValue(lIndex, pValue);
+            return lResult;
+        }
+        if (size*2 == codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(2, codes.length*2));
+            if (literals != null) literals = Arrays.copyOf(literals, codes.length/2);
+        }
+        codes[size*2] = symbols.intern(pKey);
+        size++;
+        setValue(size-1, pValue);
+        return null;
+    }
+
+    @Override
+    public String remove(Object pKey) {
+        int lIndex = indexOf(pKey);
+        if (lIndex < 0) return null;
+        String lResult = getValue(lIndex);
+        removeAt(lIndex);
+        return lResult;
+    }
+
+    private void removeAt(int pIndex) {
+        System.arraycopy(codes, (pIndex+1)*2, codes, pIndex*2, (size-pIndex-1)*2);
+        if (literals != null) {
+            System.arraycopy(literals, pIndex+1, literals, pIndex, size-pIndex-1);
+            literals[size-1] = null;
+        }
+        size--;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        literals = null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    int next = 0;
+                    int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= size) throw new NoSuchElementException();
+                        last = next++;
+                        final int lIndex = last;
+                        return new SimpleEntry<String, String>(symbols.getSymbol(codes[lIndex*2]), getValue(lIndex)) {
+                            @Override
+                            public String setValue(String pValue) {
+                                TLGSymbolPropertyMap.this.setValue(lIndex, pValue);
+                                return super.setValue(pValue);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) throw new IllegalStateException();
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.hucompute.tlgparser;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Graph wide dictionary which maps property keys and low cardinality property values to int codes. Keys are always
+ * interned, values only as long as their key has less than maxValuesPerKey distinct values, so names and glosses do
+ * not fill the table. Lookups are lock free, new symbols are added under a lock, hence the table may be shared by
+ * the threads of the parallel reader.
+ */
+public class TLGSymbolTable {
+
+    public static final int NO_CODE = -1;
+
+    private ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[256];
+    private int size = 0;
+    private int maxValuesPerKey;
+    /**
+     * Number of distinct values per key code
+     */
+    private TIntIntHashMap valueCounts = new TIntIntHashMap();
+
+    public TLGSymbolTable() {
+        this(1024);
+    }
+
+    public TLGSymbolTable(int pMaxValuesPerKey) {
+        maxValuesPerKey = pMaxValuesPerKey;
+    }
+
+    /**
+     * @return Code of pSymbol or NO_CODE if it has not been interned
+     */
+    public int getCode(Object pSymbol) {
+        Integer lCode = codes.get(pSymbol);
+        return lCode != null ? lCode : NO_CODE;
+    }
+
+    public String getSymbol(int pCode) {
+        return symbols[pCode];
+    }
+
+    /**
+     * @return Number of interned symbols
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Intern a property key
+     */
+    public int intern(String pSymbol) {
+        Integer lCode = codes.get(pSymbol);
+        if (lCode != null) return lCode;
+        synchronized (this) {
+            return add(pSymbol);
+        }
+    }
+
+    /**
+     * Intern a property value of the key with code pKeyCode
+     * @return Code of the value or NO_CODE if the key has too many distinct values and pValue is new
+     */
+    public int internValue(int pKeyCode, String pValue) {
+        Integer lCode = codes.get(pValue);
+        if (lCode != null) return lCode;
+        synchronized (this) {
+            if (valueCounts.get(pKeyCode) >= maxValuesPerKey) {
+                return getCode(pValue);
+            }
+            int lSize = size;
+            int lResult = add(pValue);
+            if (size > lSize) valueCounts.adjustOrPutValue(pKeyCode, 1, 1);
+            return lResult;
+        }
+    }
+
+    /**
+     * The symbol is stored before its code is published, so a reader which got the code also sees the symbol
+     */
+    private int add(String pSymbol) {
+        Integer lCode = codes.get(pSymbol);
+        if (lCode != null) return lCode;
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size*2);
+        }
+        symbols[size] = pSymbol;
+        codes.put(pSymbol, size);
+        return size++;
+    }
+
+}
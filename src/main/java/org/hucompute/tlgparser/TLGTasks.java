@@ -0,0 +1,53 @@
+package org.hucompute.tlgparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Thread pool shared by the parallel analytics on TLGFrozenGraph
+ */
+class TLGTasks {
+
+    /**
+     * Run pTasks on up to pThreads threads and wait for all of them, in the calling thread if one thread suffices.
+     * A RuntimeException or Error of a task is thrown as is, an interrupt of the calling thread becomes an
+     * IllegalStateException. The pool is shut down in any case.
+     * @param pName Name of the computation for the interrupt message
+     */
+    static void runAll(List<Runnable> pTasks, int pThreads, String pName) {
+        int lThreads = Math.min(pThreads, pTasks.size());
+        if (lThreads <= 1) {
+            for (Runnable lTask:pTasks) {
+                lTask.run();
+            }
+            return;
+        }
+        ExecutorService lExecutor = Executors.newFixedThreadPool(lThreads);
+        try {
+            List<Future<?>> lFutures = new ArrayList<>();
+            for (Runnable lTask:pTasks) {
+                lFutures.add(lExecutor.submit(lTask));
+            }
+            for (Future<?> lFuture:lFutures) {
+                lFuture.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(pName+" interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error) throw (Error)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            lExecutor.shutdownNow();
+        }
+    }
+
+}
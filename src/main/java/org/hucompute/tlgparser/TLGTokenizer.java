@@ -0,0 +1,144 @@
+package org.hucompute.tlgparser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Regex free tokenizer for vertex and edge lines of the Borland format. Works on the UTF-8 bytes of a line, the
+ * separator '¤' (U+00A4) is the byte sequence 0xC2 0xA4 which cannot occur inside any other UTF-8 sequence.
+ * Properties are found with the same semantics as the former pattern \[(.*?)¤(.*?)¤\]¤ applied with Matcher.find().
+ */
+public class TLGTokenizer {
+
+    public static final byte SEPARATOR_LEAD = (byte)0xC2;
+    public static final byte SEPARATOR_TRAIL = (byte)0xA4;
+    public static final int SEPARATOR_LENGTH = 2;
+
+    /**
+     * Length of the sequence ¤]¤ which terminates a property
+     */
+    private static final int PROPERTY_END_LENGTH = 5;
+
+    public static final int KEY_START = 0;
+    public static final int KEY_END = 1;
+    public static final int VALUE_START = 2;
+    public static final int VALUE_END = 3;
+
+    /**
+     * @return Position of the next separator in [pFrom, pTo) or -1
+     */
+    public static int indexOfSeparator(byte[] pBuffer, int pFrom, int pTo) {
+        for (int i=pFrom; i<pTo-1; i++) {
+            if ((pBuffer[i] == SEPARATOR_LEAD) && (pBuffer[i+1] == SEPARATOR_TRAIL)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Position of the next sequence ¤]¤ in [pFrom, pTo) or -1
+     */
+    private static int indexOfPropertyEnd(byte[] pBuffer, int pFrom, int pTo) {
+        for (int i=pFrom; i<pTo-4; i++) {
+            if ((pBuffer[i] == SEPARATOR_LEAD) && (pBuffer[i+1] == SEPARATOR_TRAIL) && (pBuffer[i+2] == ']')
+                    && (pBuffer[i+3] == SEPARATOR_LEAD) && (pBuffer[i+4] == SEPARATOR_TRAIL)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The regex '.' does not match the terminators U+0085, U+2028 and U+2029 which may survive readLine()
+     */
+    private static boolean containsLineTerminator(byte[] pBuffer, int pFrom, int pTo) {
+        for (int i=pFrom; i<pTo-1; i++) {
+            if (pBuffer[i] == SEPARATOR_LEAD) {
+                if (pBuffer[i+1] == (byte)0x85) return true;
+            }
+            else if ((pBuffer[i] == (byte)0xE2) && (i < pTo-2) && (pBuffer[i+1] == (byte)0x80)
+                    && ((pBuffer[i+2] == (byte)0xA8) || (pBuffer[i+2] == (byte)0xA9))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the next property [Key¤Value¤]¤ in [pFrom, pTo)
+     * @param pSpan Receives the key and value ranges at KEY_START, KEY_END, VALUE_START and VALUE_END
+     * @return Position directly behind the property or -1 if there is none
+     */
+    public static int nextProperty(byte[] pBuffer, int pFrom, int pTo, int[] pSpan) {
+        int lStart = pFrom;
+        while (true) {
+            int lOpen = -1;
+            for (int i=lStart; i<pTo; i++) {
+                if (pBuffer[i] == '[') {
+                    lOpen = i;
+                    break;
+                }
+            }
+            if (lOpen < 0) return -1;
+            int lKeyEnd = indexOfSeparator(pBuffer, lOpen+1, pTo);
+            if (lKeyEnd < 0) return -1;
+            int lValueEnd = indexOfPropertyEnd(pBuffer, lKeyEnd+SEPARATOR_LENGTH, pTo);
+            if (lValueEnd < 0) return -1;
+            if (containsLineTerminator(pBuffer, lOpen+1, lValueEnd)) {
+                lStart = lOpen+1;
+                continue;
+            }
+            pSpan[KEY_START] = lOpen+1;
+            pSpan[KEY_END] = lKeyEnd;
+            pSpan[VALUE_START] = lKeyEnd+SEPARATOR_LENGTH;
+            pSpan[VALUE_END] = lValueEnd;
+            return lValueEnd+PROPERTY_END_LENGTH;
+        }
+    }
+
+    public static boolean isDigit(byte pByte) {
+        return (pByte >= '0') && (pByte <= '9');
+    }
+
+    public static String decode(byte[] pBuffer, int pFrom, int pTo) {
+        return new String(pBuffer, pFrom, pTo-pFrom, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse the similarity field of an edge line. Plain decimals are parsed in place, anything else (exponents,
+     * very long mantissas) is handed to Double.parseDouble to keep the results bit identical.
+     */
+    public static double parseDouble(byte[] pBuffer, int pFrom, int pTo) {
+        long lMantissa = 0;
+        int lDigits = 0;
+        int lFractionDigits = -1;
+        for (int i=pFrom; i<pTo; i++) {
+            byte b = pBuffer[i];
+            if (isDigit(b)) {
+                lMantissa = lMantissa*10 + (b-'0');
+                lDigits++;
+                if (lFractionDigits >= 0) lFractionDigits++;
+            }
+            else if ((b == '.') && (lFractionDigits < 0)) {
+                lFractionDigits = 0;
+            }
+            else {
+                return Double.parseDouble(decode(pBuffer, pFrom, pTo));
+            }
+        }
+        // Exact if both the mantissa and the power of ten are exactly representable as double
+        if ((lDigits == 0) || (lDigits > 15) || (lFractionDigits > 22)) {
+            return Double.parseDouble(decode(pBuffer, pFrom, pTo));
+        }
+        return lFractionDigits <= 0 ? lMantissa : lMantissa / POWERS_OF_TEN[lFractionDigits];
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i=1; i<POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1]*10;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.hucompute.tlgparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the triangles of the simple undirected graph behind a TLGFrozenGraph. Nodes are ranked by degree and
+ * every edge is kept only at its endpoint of lower rank, so the forward lists stay short even for hubs. A triangle
+ * a < b < c is found once at a by merging the sorted forward lists of a and b. Chunks of ranks are taken by the
+ * threads as they become free, every thread counts into its own array.
+ */
+public class TLGTriangleCounter {
+
+    static final int CHUNK = 256;
+
+    protected TLGFrozenGraph graph;
+    protected int threads = Runtime.getRuntime().availableProcessors();
+
+    public TLGTriangleCounter(TLGFrozenGraph pGraph) {
+        graph = pGraph;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public TLGTriangleCounter setThreads(int pThreads) {
+        threads = Math.max(1, pThreads);
+        return this;
+    }
+
+    public TLGTriangleCounts run() {
+        long lStart = System.currentTimeMillis();
+        int lSize = graph.size();
+        int[] lOutOffsets = graph.getOutOffsets();
+        int[] lOutTargets = graph.getOutTargets();
+        int[] lInOffsets = graph.getInOffsets();
+        int[] lInSources = graph.getInSources();
+        // Distinct neighbours in both directions without the node itself
+        int[] lDegrees = new int[lSize];
+        int[] lOffsets = new int[lSize+1];
+        int[] lNeighbours = new int[lOutTargets.length*2];
+        int[] lBuffer = new int[16];
+        for (int v=0; v<lSize; v++) {
+            int lCount = (lOutOffsets[v+1]-lOutOffsets[v])+(lInOffsets[v+1]-lInOffsets[v]);
+            if (lCount > lBuffer.length) lBuffer = new int[Math.max(lCount, lBuffer.length*2)];
+            System.arraycopy(lOutTargets, lOutOffsets[v], lBuffer, 0, lOutOffsets[v+1]-lOutOffsets[v]);
+            System.arraycopy(lInSources, lInOffsets[v], lBuffer, lOutOffsets[v+1]-lOutOffsets[v], lInOffsets[v+1]-lInOffsets[v]);
+            Arrays.sort(lBuffer, 0, lCount);
+            int lPosition = lOffsets[v];
+            for (int i=0; i<lCount; i++) {
+                if ((lBuffer[i] != v) && ((i == 0) || (lBuffer[i] != lBuffer[i-1]))) lNeighbours[lPosition++] = lBuffer[i];
+            }
+            lDegrees[v] = lPosition-lOffsets[v];
+            lOffsets[v+1] = lPosition;
+        }
+        // Rank by degree, ties by ordinal
+        long[] lKeys = new long[lSize];
+        for (int v=0; v<lSize; v++) {
+            lKeys[v] = ((long)lDegrees[v] << 32) | v;
+        }
+        Arrays.sort(lKeys);
+        int[] lNodes = new int[lSize];
+        int[] lRanks = new int[lSize];
+        for (int r=0; r<lSize; r++) {
+            lNodes[r] = (int)lKeys[r];
+            lRanks[lNodes[r]] = r;
+        }
+        // Neighbours of higher rank per rank, sorted
+        int[] lForwardOffsets = new int[lSize+1];
+        int[] lForward = new int[lOffsets[lSize]/2];
+        for (int r=0; r<lSize; r++) {
+            int v = lNodes[r];
+            int lPosition = lForwardOffsets[r];
+            for (int i=lOffsets[v]; i<lOffsets[v+1]; i++) {
+                int lRank = lRanks[lNeighbours[i]];
+                if (lRank > r) lForward[lPosition++] = lRank;
+            }
+            Arrays.sort(lForward, lForwardOffsets[r], lPosition);
+            lForwardOffsets[r+1] = lPosition;
+        }
+        int lThreads = Math.max(1, Math.min(threads, (lSize+CHUNK-1)/CHUNK));
+        long[][] lCounts = new long[lThreads][];
+        AtomicInteger lNextChunk = new AtomicInteger();
+        List<Runnable> lTasks = new ArrayList<>();
+        for (int t=0; t<lThreads; t++) {
+            long[] lThreadCounts = lCounts[t] = new long[lSize];
+            lTasks.add(() -> {
+                int lFrom;
+                while ((lFrom = lNextChunk.getAndAdd(CHUNK)) < lSize) {
+                    count(lForwardOffsets, lForward, lFrom, Math.min(lSize, lFrom+CHUNK), lThreadCounts);
+                }
+            });
+        }
+        TLGTasks.runAll(lTasks, lThreads, "Triangle counting");
+        long[] lTriangles = new long[lSize];
+        for (int r=0; r<lSize; r++) {
+            for (long[] lThreadCounts:lCounts) {
+                lTriangles[lNodes[r]] += lThreadCounts[r];
+            }
+        }
+        return new TLGTriangleCounts(lDegrees, lTriangles, System.currentTimeMillis()-lStart);
+    }
+
+    /**
+     * Triangles found at the ranks pFrom to pTo-1, counted for all three corners by rank
+     */
+    private static void count(int[] pOffsets, int[] pForward, int pFrom, int pTo, long[] pCounts) {
+        for (int a=pFrom; a<pTo; a++) {
+            int lEnd = pOffsets[a+1];
+            for (int i=pOffsets[a]; i<lEnd; i++) {
+                int b = pForward[i];
+                // Common neighbours of a and b above b
+                int j = i+1;
+                int k = pOffsets[b];
+                int lEndB = pOffsets[b+1];
+                while ((j < lEnd) && (k < lEndB)) {
+                    int lA = pForward[j];
+                    int lB = pForward[k];
+                    if (lA < lB) {
+                        j++;
+                    }
+                    else if (lA > lB) {
+                        k++;
+                    }
+                    else {
+                        pCounts[a]++;
+                        pCounts[b]++;
+                        pCounts[lA]++;
+                        j++;
+                        k++;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.hucompute.tlgparser;
+
+/**
+ * Triangles per node of the simple undirected graph behind a TLGFrozenGraph, see TLGTriangleCounter. Loops,
+ * parallel edges and directions are ignored, as in TLGNode.getLinkedNodes(Direction.ANY).
+ */
+public class TLGTriangleCounts {
+
+    protected int[] degrees;
+    protected long[] triangles;
+    protected long time;
+
+    TLGTriangleCounts(int[] pDegrees, long[] pTriangles, long pTime) {
+        degrees = pDegrees;
+        triangles = pTriangles;
+        time = pTime;
+    }
+
+    /**
+     * @return Number of distinct neighbours of the node with ordinal pOrdinal
+     */
+    public int getDegree(int pOrdinal) {
+        return degrees[pOrdinal];
+    }
+
+    /**
+     * @return Number of triangles through the node with ordinal pOrdinal, which is the number of edges between its
+     * neighbours
+     */
+    public long getTriangles(int pOrdinal) {
+        return triangles[pOrdinal];
+    }
+
+    public long getTriangleCount() {
+        long lResult = 0;
+        for (long lTriangles:triangles) {
+            lResult += lTriangles;
+        }
+        return lResult/3;
+    }
+
+    /**
+     * @return Local clustering coefficient per node ordinal, 0 for nodes with less than two neighbours
+     */
+    public double[] getLocalClusteringCoefficients() {
+        double[] lResult = new double[degrees.length];
+        for (int v=0; v<degrees.length; v++) {
+            long lNeighbourCount = degrees[v];
+            if (lNeighbourCount >= 2) {
+                lResult[v] = triangles[v] / (double) ((lNeighbourCount * (lNeighbourCount - 1)) / 2);
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * @return Average local clustering coefficient of the nodes with at least two neighbours, summed in ordinal
+     * order like TLGGraph.getClusteringCoefficientWattsStrogatz() always did
+     */
+    public double getClusteringCoefficientWattsStrogatz() {
+        double lResult = 0;
+        long lNodeCount = 0;
+        for (int v=0; v<degrees.length; v++) {
+            long lNeighbourCount = degrees[v];
+            if (lNeighbourCount >= 2) {
+                long lMaxEdges = (lNeighbourCount * (lNeighbourCount - 1)) / 2;
+                lResult += triangles[v] / (double) lMaxEdges;
+                lNodeCount++;
+            }
+        }
+        return lResult/lNodeCount;
+    }
+
+    /**
+     * @return Three times the number of triangles divided by the number of connected triples
+     */
+    public double getTransitivity() {
+        long lClosed = 0;
+        long lTriples = 0;
+        for (int v=0; v<degrees.length; v++) {
+            lClosed += triangles[v];
+            lTriples += (degrees[v] * (long)(degrees[v] - 1)) / 2;
+        }
+        return lTriples == 0 ? 0 : lClosed / (double) lTriples;
+    }
+
+    /**
+     * @return Milliseconds of the computation
+     */
+    public long getTime() {
+        return time;
+    }
+
+}
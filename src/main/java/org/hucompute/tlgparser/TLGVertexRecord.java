@@ -0,0 +1,48 @@
+package org.hucompute.tlgparser;
+
+import java.io.IOException;
+
+/**
+ * Reusable view of one vertex, see TLGRecord
+ */
+public class TLGVertexRecord extends TLGRecord {
+
+    protected int idEnd;
+    protected String id;
+
+    /**
+     * Point the record to a BF vertex line id¤[Key¤Value¤]¤...
+     */
+    public void setLine(byte[] pBuffer, int pStart, int pEnd) throws IOException {
+        setBuffer(pBuffer, pStart, pEnd);
+        idEnd = TLGTokenizer.indexOfSeparator(pBuffer, pStart, pEnd);
+        if (idEnd < 0) {
+            throw new IOException("Malformed vertex line: "+TLGTokenizer.decode(pBuffer, pStart, pEnd));
+        }
+        id = null;
+    }
+
+    /**
+     * Reset the record to a vertex with string attributes, used by the GML reader
+     */
+    protected void setStrings(String pID) {
+        clearStrings();
+        id = pID;
+    }
+
+    public String getId() {
+        if (id == null) {
+            id = TLGTokenizer.decode(buffer, start, idEnd);
+        }
+        return id;
+    }
+
+    /**
+     * Compare the id without decoding it
+     */
+    public boolean isId(String pID) {
+        if (id != null) return id.equals(pID);
+        return equals(pID, buffer, start, idEnd);
+    }
+
+}
@@ -25,7 +25,8 @@ public class VEOSimilarityTask extends GraphSimilarityThread {
             Set<String> lG2Nodes = new HashSet<>(graph2.nodeMap.keySet());
             Set<String> lG1Edges = new HashSet<>();
             for (TLGNode lNode:graph1.getNodes()) {
-                for (TLGNode lTarget : lNode.getLinkedNodes(TLGGraph.Direction.OUT)) {
+                for (int e=0; e<lNode.getOutDegree(); e++) {
+                    TLGNode lTarget = lNode.getOutEdge(e).getTarget();
                     lG1Edges.add(lNode.getId() + "\t" + lTarget.getId());
                     if (directedness.equals(TLGGraph.Directedness.UNDIRECTED)) {
                         lG1Edges.add(lTarget.getId() + "\t" + lNode.getId());
@@ -34,7 +35,8 @@ public class VEOSimilarityTask extends GraphSimilarityThread {
             }
             Set<String> lG2Edges = new HashSet<>();
             for (TLGNode lNode:graph2.getNodes()) {
-                for (TLGNode lTarget:lNode.getLinkedNodes(TLGGraph.Direction.OUT)) {
+                for (int e=0; e<lNode.getOutDegree(); e++) {
+                    TLGNode lTarget = lNode.getOutEdge(e).getTarget();
                     lG2Edges.add(lNode.getId()+"\t"+lTarget.getId());
                     if (directedness.equals(TLGGraph.Directedness.UNDIRECTED)) {
                         lG2Edges.add(lTarget.getId()+"\t"+lNode.getId());
@@ -0,0 +1,667 @@
+package org.hucompute.tlgparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Micro benchmarks for the readers, writers and analytics of TLGGraph.
+ * Usage: TLGBenchmark [BF file] - if no file is given a synthetic lexicon graph is generated.
+ */
+public class TLGBenchmark {
+
+    private static Logger logger = LogManager.getLogger(TLGBenchmark.class);
+
+    private static final String[] LANGUAGES = new String[]{"de", "en", "fr", "la", "it"};
+    private static final String[] POS = new String[]{"NN", "VV", "ADJ", "ADV", "NE"};
+    private static final String[] NODE_TYPES = new String[]{"SuperLemma", "Lemma", "Sense", "Wordform"};
+    private static final String[] EDGE_TYPES = new String[]{"derivation", "translation", "synonym", "hypernym", "sense", "inflection", "cooccurrence"};
+
+    /**
+     * Write a random graph which resembles our lexicon graphs: typed nodes with Language, POS and Name and typed edges
+     */
+    public static void generateLexiconGraph(File pFile, int pNodes, int pEdges, long pSeed) throws IOException {
+        Random lRandom = new Random(pSeed);
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.print("directed\nSimilarityGraph\nVertex Attributes:[Type¤String];[Language¤String];[POS¤String];[Name¤String];\nEdge Attributes:[Type¤String];\nProbabilityMassOfGraph: 0\n");
+        lWriter.print("Vertices:\n");
+        for (int i=0; i<pNodes; i++) {
+            lWriter.print(i+"¤[Type¤"+NODE_TYPES[lRandom.nextInt(NODE_TYPES.length)]+"¤]¤[Language¤"+LANGUAGES[lRandom.nextInt(LANGUAGES.length)]
+                    +"¤]¤[POS¤"+POS[lRandom.nextInt(POS.length)]+"¤]¤[Name¤w"+Integer.toString(lRandom.nextInt(pNodes), 36)+"ä¤]¤\n");
+        }
+        lWriter.print("Edges:\n");
+        for (int i=0; i<pEdges; i++) {
+            // Preferential targets give a skewed degree distribution with a few hubs
+            int lSource = lRandom.nextInt(pNodes);
+            int lTarget = (int)(Math.pow(lRandom.nextDouble(), 3) * pNodes);
+            lWriter.print(lSource+"¤"+lTarget+"¤"+(lRandom.nextInt(1000)/1000d)+"¤[Type¤"+EDGE_TYPES[lRandom.nextInt(EDGE_TYPES.length)]+"¤]¤\n");
+        }
+        lWriter.close();
+    }
+
+    /**
+     * Chain 0->1->...->pNodes-1, the worst case for level synchronous searches
+     */
+    public static void generatePathGraph(File pFile, int pNodes) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.print("directed\nSimilarityGraph\nVertex Attributes:[Type¤String];\nEdge Attributes:[Type¤String];\nProbabilityMassOfGraph: 0\n");
+        lWriter.print("Vertices:\n");
+        for (int i=0; i<pNodes; i++) {
+            lWriter.print(i+"¤[Type¤"+NODE_TYPES[0]+"¤]¤\n");
+        }
+        lWriter.print("Edges:\n");
+        for (int i=1; i<pNodes; i++) {
+            lWriter.print((i-1)+"¤"+i+"¤1¤[Type¤"+EDGE_TYPES[0]+"¤]¤\n");
+        }
+        lWriter.close();
+    }
+
+    public static File getBenchmarkFile(String[] args) throws IOException {
+        if (args.length > 0) return new File(args[0]);
+        File lFile = File.createTempFile("tlgbenchmark", ".tlg");
+        lFile.deleteOnExit();
+        generateLexiconGraph(lFile, 200000, 1000000, 42);
+        return lFile;
+    }
+
+    /**
+     * Regex based line reader versus byte level tokenizer
+     */
+    public static void benchmarkTokenizer(File pFile, int pRuns) throws IOException {
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            TLGReferenceReader.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            long lRegex = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            long lTokenizer = System.currentTimeMillis()-lStart;
+            logger.info("Run "+i+": regex "+lRegex+"ms, tokenizer "+lTokenizer+"ms");
+        }
+    }
+
+    /**
+     * Load time of the chunked parallel reader for 1, 2, 4, ... threads up to the number of cores
+     */
+    public static void benchmarkParallelReader(File pFile, int pRuns) throws IOException {
+        for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+            TLGLoadOptions lOptions = new TLGLoadOptions().setThreads(lThreads);
+            long lBest = Long.MAX_VALUE;
+            for (int i=0; i<pRuns; i++) {
+                long lStart = System.currentTimeMillis();
+                TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, lOptions);
+                lBest = Math.min(lBest, System.currentTimeMillis()-lStart);
+            }
+            logger.info(lThreads+" threads: "+lBest+"ms");
+        }
+    }
+
+    /**
+     * BF file versus binary snapshot
+     */
+    public static void benchmarkSnapshot(File pFile, int pRuns) throws IOException {
+        File lSnapshot = File.createTempFile("tlgbenchmark", ".tlgs");
+        lSnapshot.deleteOnExit();
+        TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED).saveSnapshot(lSnapshot);
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            long lBF = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromSnapshotFile(lSnapshot);
+            long lOpen = System.currentTimeMillis()-lStart;
+            logger.info("Run "+i+": BF "+lBF+"ms, snapshot "+lOpen+"ms");
+        }
+    }
+
+    /**
+     * Full load followed by saveSubGraph versus loading with pushed down filters for German SuperLemmas and
+     * derivation edges
+     */
+    public static void benchmarkFilteredLoad(File pFile, int pRuns) throws IOException {
+        File lSubGraph = File.createTempFile("tlgbenchmark", ".tlg");
+        lSubGraph.deleteOnExit();
+        TLGLoadOptions lOptions = new TLGLoadOptions()
+                .setNodeFilter(TLGLoadOptions.<TLGVertexRecord>hasProperty("Type", "SuperLemma").and(TLGLoadOptions.hasProperty("Language", "de")))
+                .setEdgeFilter(TLGLoadOptions.hasProperty("Type", "derivation"));
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            Set<TLGNode> lNodes = new HashSet<>();
+            for (TLGNode lNode:lGraph.getNodes()) {
+                if (lNode.getProperty("Type", "").equals("SuperLemma") && lNode.getProperty("Language", "").equals("de")) {
+                    lNodes.add(lNode);
+                }
+            }
+            lGraph.saveSubGraph(lSubGraph, lNodes, Collections.singleton("derivation"), false);
+            TLGGraph.fromBorlandFormatFile(lSubGraph, TLGGraph.Directedness.DIRECTED);
+            long lFull = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, lOptions);
+            long lFiltered = System.currentTimeMillis()-lStart;
+            logger.info("Run "+i+": load and saveSubGraph "+lFull+"ms, filtered load "+lFiltered+"ms");
+        }
+    }
+
+    /**
+     * Line based GML reader versus the streaming GML lexer, on a GML export of the BF file
+     */
+    public static void benchmarkGMLReader(File pFile, int pRuns) throws IOException {
+        File lGML = File.createTempFile("tlgbenchmark", ".gml");
+        lGML.deleteOnExit();
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        lGraph.saveSubGraphGML(lGML, new HashSet<>(lGraph.getNodes()), new HashSet<>(lGraph.getEdgeTypes().keySet()), false);
+        lGraph = null;
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            TLGReferenceReader.fromGMLFile(lGML, TLGGraph.Directedness.DIRECTED, false);
+            long lLines = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromGMLFile(lGML, TLGGraph.Directedness.DIRECTED);
+            long lLexer = System.currentTimeMillis()-lStart;
+            logger.info("Run "+i+": line reader "+lLines+"ms, lexer "+lLexer+"ms ("+(lGML.length()/1024/1024)+"MB)");
+        }
+    }
+
+    /**
+     * String based writer versus TLGGraphWriter with 1, 2, 4, ... threads up to the number of cores
+     */
+    public static void benchmarkWriter(File pFile, int pRuns) throws IOException {
+        File lOutput = File.createTempFile("tlgbenchmark", ".tlg");
+        lOutput.deleteOnExit();
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        int lMaxThreads = TLGGraph.MAX_THREADS;
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            TLGReferenceWriter.saveGraph(lGraph, lOutput);
+            StringBuilder lResult = new StringBuilder("Run "+i+": String writer "+(System.currentTimeMillis()-lStart)+"ms");
+            for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+                TLGGraph.MAX_THREADS = lThreads;
+                lStart = System.currentTimeMillis();
+                lGraph.saveGraph(lOutput);
+                lResult.append(", "+lThreads+" threads "+(System.currentTimeMillis()-lStart)+"ms");
+            }
+            logger.info(lResult.toString());
+        }
+        TLGGraph.MAX_THREADS = lMaxThreads;
+    }
+
+    /**
+     * Retained heap and load time of a graph for every PropertyStorage
+     */
+    public static void benchmarkPropertyStorage(File pFile) throws IOException {
+        for (TLGLoadOptions.PropertyStorage lStorage:TLGLoadOptions.PropertyStorage.values()) {
+            long lBefore = getUsedHeap();
+            long lStart = System.currentTimeMillis();
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setPropertyStorage(lStorage));
+            long lTime = System.currentTimeMillis()-lStart;
+            long lUsed = getUsedHeap()-lBefore;
+            logger.info(lStorage+": "+(lUsed/1024/1024)+"MB retained, "+lTime+"ms, "+lGraph.getNodes().size()+" nodes");
+            lGraph = null;
+        }
+    }
+
+    /**
+     * Breadth first searches over getLinkedNodes() versus TLGFrozenGraph.bfs() from the same pSources nodes
+     */
+    public static void benchmarkFrozenGraph(File pFile, int pSources) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        long lBefore = getUsedHeap();
+        long lStart = System.currentTimeMillis();
+        TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+        long lFreezeTime = System.currentTimeMillis()-lStart;
+        logger.info("Freeze: "+lFreezeTime+"ms, "+((getUsedHeap()-lBefore)/1024/1024)+"MB retained");
+        List<TLGNode> lSources = new ArrayList<>(lGraph.getNodes()).subList(0, Math.min(pSources, lGraph.getNodes().size()));
+        lStart = System.currentTimeMillis();
+        long lReached = 0;
+        for (TLGNode lSource:lSources) {
+            Set<TLGNode> lKnown = new HashSet<>();
+            List<TLGNode> lQueue = new ArrayList<>();
+            lKnown.add(lSource);
+            lQueue.add(lSource);
+            for (int i=0; i<lQueue.size(); i++) {
+                for (TLGNode lOther:lQueue.get(i).getLinkedNodes(TLGGraph.Direction.ANY)) {
+                    if (lKnown.add(lOther)) lQueue.add(lOther);
+                }
+            }
+            lReached += lQueue.size();
+        }
+        long lHashTime = System.currentTimeMillis()-lStart;
+        lStart = System.currentTimeMillis();
+        long lFrozenReached = 0;
+        int[] lDistances = lFrozenGraph.newDistances();
+        int[] lQueue = new int[lFrozenGraph.size()];
+        for (TLGNode lSource:lSources) {
+            int lCount = lFrozenGraph.bfs(lFrozenGraph.getOrdinal(lSource), TLGGraph.Directedness.UNDIRECTED, lDistances, lQueue);
+            TLGFrozenGraph.reset(lDistances, lQueue, lCount);
+            lFrozenReached += lCount;
+        }
+        long lFrozenTime = System.currentTimeMillis()-lStart;
+        logger.info(lSources.size()+" undirected searches: getLinkedNodes "+lHashTime+"ms ("+lReached+" reached), frozen "+lFrozenTime+"ms ("+lFrozenReached+" reached)");
+    }
+
+    /**
+     * Visit the neighbours of all nodes with getLinkedNodes() versus the cursor API of TLGNode
+     */
+    public static void benchmarkNeighbourIteration(File pFile, int pRuns) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        for (int r=0; r<pRuns; r++) {
+            long lStart = System.currentTimeMillis();
+            long lSum = 0;
+            for (TLGNode lNode:lGraph.getNodes()) {
+                for (TLGNode lOther:lNode.getLinkedNodes(TLGGraph.Direction.ANY)) {
+                    lSum += lOther.getId().length();
+                }
+            }
+            long lSetTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            long lCursorSum = 0;
+            for (TLGNode lNode:lGraph.getNodes()) {
+                for (int i=0; i<lNode.getDegree(); i++) {
+                    lCursorSum += lNode.getNeighbour(i).getId().length();
+                }
+            }
+            logger.info("Run "+r+": getLinkedNodes "+lSetTime+"ms ("+lSum+"), cursor "+(System.currentTimeMillis()-lStart)+"ms ("+lCursorSum+")");
+        }
+    }
+
+    /**
+     * Neighbours over one edge type with getNodes(Direction, "Type", value), which uses the edge type index, versus
+     * comparing the Type property of every edge, and the saveSubGraph variant with an edge type mask
+     */
+    public static void benchmarkEdgeTypeIndex(File pFile, int pRuns) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        File lSubGraph = File.createTempFile("benchmark", ".tlg");
+        lSubGraph.deleteOnExit();
+        for (int r=0; r<pRuns; r++) {
+            long lStart = System.currentTimeMillis();
+            long lSum = 0;
+            for (TLGNode lNode:lGraph.getNodes()) {
+                for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.ANY)) {
+                    if (lEdge.getProperty("Type", "").equals("derivation")) lSum++;
+                }
+            }
+            long lScanTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            long lIndexSum = 0;
+            for (TLGNode lNode:lGraph.getNodes()) {
+                lIndexSum += lNode.getNodes(TLGGraph.Direction.ANY, "Type", "derivation").size();
+            }
+            long lIndexTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            lGraph.saveSubGraph(lSubGraph, new HashSet<>(lGraph.getNodes()), lGraph.getEdgeTypeMask("derivation"), false);
+            logger.info("Run "+r+": scan "+lScanTime+"ms ("+lSum+"), typed getNodes "+lIndexTime+"ms ("+lIndexSum+"), typed saveSubGraph "+(System.currentTimeMillis()-lStart)+"ms");
+        }
+    }
+
+    /**
+     * Per ordering: the breadth first searches of getDiameterMT from pSources nodes on the frozen view and the sphere
+     * based similarity of pPairs node pairs. The same nodes, picked by sorted id, are used for every ordering.
+     */
+    public static void benchmarkNodeOrdering(File pFile, int pSources, int pPairs) throws IOException {
+        for (TLGGraph.Ordering lOrdering:TLGGraph.Ordering.values()) {
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            List<String> lIDs = new ArrayList<>(lGraph.nodeMap.keySet());
+            Collections.sort(lIDs);
+            long lStart = System.currentTimeMillis();
+            lGraph.reorder(lOrdering);
+            long lReorderTime = System.currentTimeMillis()-lStart;
+            TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+            int[] lSources = new int[pSources];
+            for (int i=0; i<pSources; i++) {
+                lSources[i] = lFrozenGraph.getOrdinal(lGraph.getNodeByID(lIDs.get(i*lIDs.size()/pSources)));
+            }
+            lStart = System.currentTimeMillis();
+            DiameterThread lThread = new DiameterThread(lGraph, lFrozenGraph, lSources, TLGGraph.Directedness.UNDIRECTED);
+            lThread.run();
+            long lDiameterTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            double lSimilarity = 0;
+            for (int i=0; i<pPairs; i++) {
+                TLGNode lNode = lGraph.getNodeByID(lIDs.get((2*i)*lIDs.size()/(2*pPairs)));
+                TLGNode lOther = lGraph.getNodeByID(lIDs.get((2*i+1)*lIDs.size()/(2*pPairs)));
+                lSimilarity += lNode.getSphereBasedNeighbourhoodSimilarity(lOther, TLGGraph.Directedness.UNDIRECTED);
+            }
+            logger.info(lOrdering+": reorder "+lReorderTime+"ms, diameter searches "+lDiameterTime+"ms ("+lThread.diameter+"), sphere similarity "
+                    +(System.currentTimeMillis()-lStart)+"ms ("+lSimilarity+")");
+        }
+    }
+
+    /**
+     * Retained heap, off heap bytes, load time and a visit of all neighbours per adjacency
+     */
+    public static void benchmarkOffHeapAdjacency(File pFile) throws IOException {
+        for (TLGLoadOptions.Adjacency lAdjacency:TLGLoadOptions.Adjacency.values()) {
+            long lBefore = getUsedHeap();
+            long lStart = System.currentTimeMillis();
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setAdjacency(lAdjacency));
+            long lLoadTime = System.currentTimeMillis()-lStart;
+            long lRetained = getUsedHeap()-lBefore;
+            lStart = System.currentTimeMillis();
+            long lSum = 0;
+            for (TLGNode lNode:lGraph.getNodes()) {
+                for (int i=0; i<lNode.getDegree(); i++) {
+                    lSum += lNode.getNeighbour(i).getId().length();
+                }
+            }
+            logger.info(lAdjacency+": "+(lRetained/(1024*1024))+"MB retained heap, "+(lGraph.getOffHeapBytes()/(1024*1024))+"MB off heap, load "
+                    +lLoadTime+"ms, neighbours "+(System.currentTimeMillis()-lStart)+"ms ("+lSum+")");
+        }
+    }
+
+    /**
+     * pLookups lookups of Type and Name by scanning all nodes versus a hash and a sorted index, and the build time of
+     * the indexes at load time with 1, 2, 4, ... threads up to the number of cores
+     */
+    public static void benchmarkSecondaryIndexes(File pFile, int pLookups) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        List<String> lIDs = new ArrayList<>(lGraph.nodeMap.keySet());
+        Collections.sort(lIDs);
+        String[][] lKeys = new String[pLookups][];
+        for (int i=0; i<pLookups; i++) {
+            TLGNode lNode = lGraph.getNodeByID(lIDs.get(i*lIDs.size()/pLookups));
+            lKeys[i] = new String[]{lNode.getProperty("Type", null), lNode.getProperty("Name", null)};
+        }
+        long lStart = System.currentTimeMillis();
+        long lScanMatches = 0;
+        for (String[] lKey:lKeys) {
+            for (TLGNode lNode:lGraph.getNodes()) {
+                if (lKey[0].equals(lNode.getProperty("Type", null)) && lKey[1].equals(lNode.getProperty("Name", null))) lScanMatches++;
+            }
+        }
+        long lScanTime = System.currentTimeMillis()-lStart;
+        logger.info("Scan: "+lScanTime+"ms ("+lScanMatches+")");
+        for (TLGIndex.Kind lKind:TLGIndex.Kind.values()) {
+            TLGIndex<TLGNode> lIndex = lGraph.addIndex(TLGIndex.forNodes(lKind.name(), lKind, "Type", "Name"));
+            lStart = System.currentTimeMillis();
+            lIndex.size();
+            long lBuildTime = System.currentTimeMillis()-lStart;
+            lStart = System.nanoTime();
+            long lMatches = 0;
+            for (String[] lKey:lKeys) {
+                lMatches += lIndex.get(lKey).size();
+            }
+            logger.info(lKind+": build "+lBuildTime+"ms, lookups "+((System.nanoTime()-lStart)/1000)+"us ("+lMatches+")");
+        }
+        for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+            TLGLoadOptions lOptions = new TLGLoadOptions().setThreads(lThreads).addIndex(TLGIndex.forNodes("TypeName", TLGIndex.Kind.SORTED, "Type", "Name"));
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setThreads(lThreads));
+            long lPlainTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED, lOptions);
+            logger.info(lThreads+" threads: load "+lPlainTime+"ms, with sorted index "+(System.currentTimeMillis()-lStart)+"ms");
+        }
+    }
+
+    /**
+     * Exact diameter by eccentricity bounds versus the time of a search from every node, extrapolated from the
+     * searches from pSamples nodes
+     */
+    public static void benchmarkDiameter(File pFile, int pSamples) throws IOException {
+        for (TLGGraph.Directedness lDirectedness:TLGGraph.Directedness.values()) {
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+            TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+            int[] lSources = new int[pSamples];
+            for (int i=0; i<pSamples; i++) {
+                lSources[i] = (int)((long)i*lFrozenGraph.size()/pSamples);
+            }
+            long lStart = System.currentTimeMillis();
+            DiameterThread lThread = new DiameterThread(lGraph, lFrozenGraph, lSources, lDirectedness);
+            lThread.run();
+            long lAllSources = (System.currentTimeMillis()-lStart)*lFrozenGraph.size()/pSamples;
+            lStart = System.currentTimeMillis();
+            TLGDiameterBounds lBounds = lGraph.getDiameterBounds(lDirectedness, 0, null);
+            logger.info(lDirectedness+": all sources ~"+lAllSources+"ms, bounds "+(System.currentTimeMillis()-lStart)+"ms ("+lBounds+")");
+        }
+    }
+
+    /**
+     * Undirected searches from pSources nodes, one at a time against bit-parallel batches of several sizes
+     */
+    public static void benchmarkMultiSourceBFS(File pFile, int pSources) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+        int[] lSources = new int[pSources];
+        for (int i=0; i<pSources; i++) {
+            lSources[i] = (int)((long)i*lFrozenGraph.size()/pSources);
+        }
+        int[] lDistances = lFrozenGraph.newDistances();
+        int[] lQueue = new int[lFrozenGraph.size()];
+        long lStart = System.currentTimeMillis();
+        long lDistanceSum = 0;
+        for (int lSource:lSources) {
+            int lCount = lFrozenGraph.bfs(lSource, TLGGraph.Direction.ANY, lDistances, lQueue);
+            for (int k=0; k<lCount; k++) {
+                lDistanceSum += lDistances[lQueue[k]];
+            }
+            TLGFrozenGraph.reset(lDistances, lQueue, lCount);
+        }
+        logger.info("Single source: "+(System.currentTimeMillis()-lStart)+"ms, distance sum "+lDistanceSum);
+        for (int lBatchSize:new int[]{64, 256, 512}) {
+            for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+                lStart = System.currentTimeMillis();
+                TLGDistanceDistribution lDistribution = new TLGMultiSourceBFS(lFrozenGraph, TLGGraph.Direction.ANY).setBatchSize(lBatchSize).setThreads(lThreads).run(lSources);
+                logger.info("Batches of "+lBatchSize+", "+lThreads+" threads: "+(System.currentTimeMillis()-lStart)+"ms, distance sum "+lDistribution.getDistanceSum());
+            }
+        }
+    }
+
+    /**
+     * Sampled undirected geodesic distance for decreasing target precisions
+     */
+    public static void benchmarkGeodesicEstimate(File pFile, long pSeed) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        for (double lPrecision:new double[]{0.05, 0.01, 0.001}) {
+            TLGGeodesicEstimate lEstimate = lGraph.estimateGeodesicDistance(TLGGraph.Directedness.UNDIRECTED, pSeed, lGraph.getNodes().size(), lPrecision);
+            logger.info("Precision "+lPrecision+": "+lEstimate);
+        }
+    }
+
+    /**
+     * HyperANF for several register counts against the sampled estimate
+     */
+    public static void benchmarkHyperANF(File pFile) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        logger.info("Sampled: "+lGraph.estimateGeodesicDistance(TLGGraph.Directedness.UNDIRECTED, 1, lGraph.getNodes().size(), 0.01));
+        for (int lRegisters:new int[]{16, 64, 256}) {
+            logger.info("HyperANF: "+lGraph.getNeighbourhoodFunction(TLGGraph.Directedness.UNDIRECTED, lRegisters));
+        }
+    }
+
+    /**
+     * Component labels by undirected searches against union-find, on pFile and on a sparse graph with mostly tiny
+     * components
+     */
+    public static void benchmarkWeaklyConnectedComponents(File pFile, int pRuns) throws IOException {
+        File lSparse = File.createTempFile("tlgbenchmark", ".tlg");
+        lSparse.deleteOnExit();
+        generateLexiconGraph(lSparse, 1000000, 300000, 42);
+        for (File lFile:new File[]{pFile, lSparse}) {
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+            TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+            for (int i=0; i<pRuns; i++) {
+                long lStart = System.currentTimeMillis();
+                int[] lDistances = lFrozenGraph.newDistances();
+                int[] lQueue = new int[lFrozenGraph.size()];
+                int lComponents = 0;
+                for (int v=0; v<lFrozenGraph.size(); v++) {
+                    if (lDistances[v] < 0) {
+                        lFrozenGraph.bfs(v, TLGGraph.Directedness.UNDIRECTED, lDistances, lQueue);
+                        lComponents++;
+                    }
+                }
+                long lSearch = System.currentTimeMillis()-lStart;
+                lStart = System.currentTimeMillis();
+                lFrozenGraph.getWeaklyConnectedComponents(Runtime.getRuntime().availableProcessors());
+                long lUnionFind = System.currentTimeMillis()-lStart;
+                lStart = System.currentTimeMillis();
+                int lSets = lGraph.getWeaklyConnectedComponents().size();
+                logger.info(lFrozenGraph.size()+" nodes, "+lComponents+" components: searches "+lSearch+"ms, union-find "+lUnionFind+"ms, "+lSets+" sets in "+(System.currentTimeMillis()-lStart)+"ms");
+            }
+        }
+    }
+
+    /**
+     * Strongly connected component labels and condensation
+     */
+    public static void benchmarkStronglyConnectedComponents(File pFile, int pRuns) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        for (int i=0; i<pRuns; i++) {
+            long lStart = System.currentTimeMillis();
+            int[] lLabels = lGraph.getStronglyConnectedComponentLabels();
+            long lLabelTime = System.currentTimeMillis()-lStart;
+            lStart = System.currentTimeMillis();
+            TLGGraph lCondensation = lGraph.getCondensation();
+            long lEdges = 0;
+            for (TLGNode lNode:lCondensation.getNodes()) {
+                lEdges += lNode.getOutDegree();
+            }
+            logger.info(lLabels.length+" nodes: labels "+lLabelTime+"ms, condensation with "+lCondensation.getNodes().size()+" nodes and "+lEdges+" edges "+(System.currentTimeMillis()-lStart)+"ms");
+        }
+    }
+
+    /**
+     * Neighbourhood edges as sets of id pairs for pSamples nodes, extrapolated, against triangle counting
+     */
+    public static void benchmarkTriangleCounting(File pFile, int pSamples) throws IOException {
+        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(pFile, TLGGraph.Directedness.DIRECTED);
+        List<TLGNode> lNodes = new ArrayList<>(lGraph.getNodes());
+        long lStart = System.currentTimeMillis();
+        long lEdgeCount = 0;
+        for (int i=0; i<pSamples; i++) {
+            TLGNode lNode = lNodes.get((int)((long)i*lNodes.size()/pSamples));
+            Set<TLGNode> lNeighbours = lNode.getLinkedNodes(TLGGraph.Direction.ANY);
+            lNeighbours.remove(lNode);
+            Set<String> lEdges = new HashSet<>();
+            for (TLGNode lNeighbour:lNeighbours) {
+                for (int e=0; e<lNeighbour.getOutDegree(); e++) {
+                    TLGNode lTarget = lNeighbour.getNeighbour(e);
+                    if (lNeighbours.contains(lTarget) && !lNeighbour.equals(lTarget)) lEdges.add(TLGGraph.getSortedIdPair(lNeighbour, lTarget));
+                }
+            }
+            lEdgeCount += lEdges.size();
+        }
+        logger.info("Id pair sets: ~"+(System.currentTimeMillis()-lStart)*lNodes.size()/pSamples+"ms for all nodes");
+        for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+            TLGTriangleCounts lCounts = new TLGTriangleCounter(lGraph.freeze()).setThreads(lThreads).run();
+            logger.info("Triangle counting, "+lThreads+" threads: "+lCounts.getTime()+"ms, "+lCounts.getTriangleCount()+" triangles, coefficient "+lCounts.getClusteringCoefficientWattsStrogatz()+", transitivity "+lCounts.getTransitivity());
+        }
+    }
+
+    /**
+     * Shortest path lengths as id pair maps per component, as the former fuzzy Jaccard similarity stored them on
+     * copies of both graphs, versus searches streamed into distance counts
+     */
+    public static void benchmarkFuzzyJaccard(int pNodes, int pEdges) throws IOException {
+        TLGGraph[] lGraphs = new TLGGraph[2];
+        for (int i=0; i<2; i++) {
+            File lFile = File.createTempFile("tlgbenchmark", ".tlg");
+            lFile.deleteOnExit();
+            // The second graph has fewer nodes, hence both share most ids
+            generateLexiconGraph(lFile, pNodes-i*pNodes/10, pEdges, i);
+            lGraphs[i] = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+        }
+        long lStart = System.currentTimeMillis();
+        long lPairs = 0;
+        for (TLGGraph lGraph:lGraphs) {
+            for (Set<TLGNode> lSet:new TLGGraph(lGraph).getWeaklyConnectedComponents()) {
+                lPairs += TLGGraph.getUndirectedShortestPathsLengths(lSet).size();
+            }
+        }
+        logger.info("Id pair maps: "+(System.currentTimeMillis()-lStart)+"ms, "+lPairs+" connected pairs");
+        for (int lThreads=1; lThreads<=Runtime.getRuntime().availableProcessors(); lThreads*=2) {
+            lStart = System.currentTimeMillis();
+            double lSimilarity = TLGGraph.getFuzzyJaccardSimilarity(lGraphs[0], lGraphs[1], lThreads);
+            logger.info("Fuzzy Jaccard, "+lThreads+" threads: "+(System.currentTimeMillis()-lStart)+"ms, similarity "+lSimilarity);
+        }
+    }
+
+    /**
+     * Pairwise VEO and fuzzy Jaccard similarities computed pair by pair versus per-graph signatures
+     */
+    public static void benchmarkPairwiseSimilarity(int pGraphs, int pNodes, int pEdges) throws IOException {
+        List<TLGGraph> lGraphs = new ArrayList<>();
+        for (int i=0; i<pGraphs; i++) {
+            File lFile = File.createTempFile("tlgbenchmark", ".tlg");
+            lFile.deleteOnExit();
+            generateLexiconGraph(lFile, pNodes, pEdges, i);
+            lGraphs.add(TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED));
+        }
+        long lStart = System.currentTimeMillis();
+        double lSum = 0;
+        for (int i=0; i<pGraphs-1; i++) {
+            for (int k=i+1; k<pGraphs; k++) {
+                VEOSimilarityTask lTask = new VEOSimilarityTask(new Object(), lGraphs.get(i), lGraphs.get(k), TLGGraph.Directedness.UNDIRECTED);
+                lTask.run();
+                lSum += lTask.getSimilarity();
+            }
+        }
+        logger.info("VEO per pair: "+(System.currentTimeMillis()-lStart)+"ms, sum "+lSum);
+        lStart = System.currentTimeMillis();
+        lSum = 0;
+        for (double[] lRow:TLGPairwiseSimilarity.run(lGraphs, TLGPairwiseSimilarity.veo(TLGGraph.Directedness.UNDIRECTED), 1)) {
+            for (double lValue:lRow) {
+                lSum += lValue/2;
+            }
+        }
+        logger.info("VEO signatures: "+(System.currentTimeMillis()-lStart)+"ms, sum "+lSum);
+        lStart = System.currentTimeMillis();
+        lSum = 0;
+        for (int i=0; i<pGraphs-1; i++) {
+            for (int k=i+1; k<pGraphs; k++) {
+                lSum += TLGGraph.getFuzzyJaccardSimilarity(lGraphs.get(i), lGraphs.get(k), 1);
+            }
+        }
+        logger.info("Fuzzy Jaccard per pair: "+(System.currentTimeMillis()-lStart)+"ms, sum "+lSum);
+        lStart = System.currentTimeMillis();
+        lSum = 0;
+        for (double[] lRow:TLGPairwiseSimilarity.run(lGraphs, TLGPairwiseSimilarity.fuzzyJaccard(TLGFuzzyJaccard.MAX_TABLE_NODES), 1)) {
+            for (double lValue:lRow) {
+                lSum += lValue/2;
+            }
+        }
+        logger.info("Fuzzy Jaccard signatures: "+(System.currentTimeMillis()-lStart)+"ms, sum "+lSum);
+    }
+
+    private static long getUsedHeap() {
+        Runtime lRuntime = Runtime.getRuntime();
+        for (int i=0; i<3; i++) {
+            System.gc();
+        }
+        return lRuntime.totalMemory()-lRuntime.freeMemory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        File lFile = getBenchmarkFile(args);
+        benchmarkTokenizer(lFile, 5);
+        benchmarkParallelReader(lFile, 3);
+        benchmarkSnapshot(lFile, 3);
+        benchmarkFilteredLoad(lFile, 3);
+        benchmarkGMLReader(lFile, 3);
+        benchmarkWriter(lFile, 3);
+        benchmarkPropertyStorage(lFile);
+        benchmarkFrozenGraph(lFile, 20);
+        benchmarkNeighbourIteration(lFile, 3);
+        benchmarkEdgeTypeIndex(lFile, 3);
+        benchmarkNodeOrdering(lFile, 50, 5);
+        benchmarkOffHeapAdjacency(lFile);
+        benchmarkSecondaryIndexes(lFile, 200);
+        benchmarkDiameter(lFile, 100);
+        benchmarkMultiSourceBFS(lFile, 2048);
+        File lPath = File.createTempFile("tlgbenchmark", ".tlg");
+        lPath.deleteOnExit();
+        generatePathGraph(lPath, 20000);
+        benchmarkMultiSourceBFS(lPath, 2048);
+        benchmarkGeodesicEstimate(lFile, 1);
+        benchmarkHyperANF(lFile);
+        benchmarkWeaklyConnectedComponents(lFile, 3);
+        benchmarkStronglyConnectedComponents(lFile, 3);
+        benchmarkTriangleCounting(lFile, 5000);
+        benchmarkFuzzyJaccard(5000, 20000);
+        benchmarkPairwiseSimilarity(100, 500, 1000);
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.hucompute.tlgparser;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The original line and regex based readers. They are kept as reference for equivalence tests and benchmarks
+ * against the byte level readers in TLGGraph and should not be used otherwise.
+ */
+public class TLGReferenceReader {
+
+    public static TLGGraph fromBorlandFormatFile(File pFile, TLGGraph.Directedness pDirectedness) throws IOException {
+        TLGGraph lTLGGraph = new TLGGraph();
+        lTLGGraph.directedness = pDirectedness;
+        lTLGGraph.nodeMap = new HashMap<>();
+        lTLGGraph.languageTypeNameIndex.clear();
+        BufferedReader lReader = new BufferedReader(new InputStreamReader(new BufferedInputStream(new FileInputStream(pFile)), Charset.forName("UTF-8")));
+        StringBuilder lHeadBuilder = new StringBuilder();
+        String lLine = null;
+        while (!(lLine = lReader.readLine()).startsWith("Vertices:")) {
+            lHeadBuilder.append(lLine+"\n");
+        }
+        lTLGGraph.head = lHeadBuilder.toString();
+        while (!(lLine = lReader.readLine()).startsWith("Edges:")) {
+            TLGNode lTLGNode = new TLGNode(lTLGGraph, lLine);
+            String lType = lTLGNode.getProperty("Type", null);
+            if ((lType != null) && (lType.length() > 0)) {
+                lTLGGraph.nodeTypes.adjustOrPutValue(lType, 1, 1);
+            }
+            lTLGGraph.languageTypeNameIndex.add(lTLGNode);
+            lTLGGraph.nodeMap.put(lTLGNode.getId(), lTLGNode);
+        }
+        while ((lLine = lReader.readLine()) != null) {
+            if (lLine.length() > 0) {
+                new TLGEdge(lTLGGraph, lLine);
+            }
+        }
+        lReader.close();
+        return lTLGGraph;
+    }
+
+    /**
+     * Line based GML reader, expects one attribute per line and only reads id, label, source, target and type
+     */
+    public static TLGGraph fromGMLFile(File pFile, TLGGraph.Directedness pDirectedness, boolean pLabelAsID) throws IOException {
+        TLGGraph lTLGGraph = new TLGGraph();
+        lTLGGraph.directedness = pDirectedness;
+        lTLGGraph.head = (pDirectedness.equals(TLGGraph.Directedness.DIRECTED) ? "directed\n" : "undirected\n")+ "SimilarityGraph\n" +
+                "Vertex Attributes:"+(pLabelAsID?"":"[Label¤String];")+"\n" +
+                "Edge Attributes:\n" +
+                "ProbabilityMassOfGraph: 0\n";
+        lTLGGraph.nodeMap = new HashMap<>();
+        BufferedReader lReader = new BufferedReader(new InputStreamReader(new BufferedInputStream(new FileInputStream(pFile)), Charset.forName("UTF-8")));
+        String lLine = null;
+        Map<String, String> lIDLabelMap = new HashMap<>();
+        Map<String, String> lLabelIDMap = new HashMap<>();
+        while ((lLine = lReader.readLine()) != null) {
+            lLine = lLine.trim();
+            if (lLine.startsWith("node")) {
+                String lID = null;
+                String lLabel = null;
+                while (!(lLine = lReader.readLine()).trim().startsWith("]")) {
+                    lLine = lLine.trim();
+                    if (lLine.startsWith("id")) {
+                        lID = lLine.substring(lLine.lastIndexOf(" ")+1);
+                    }
+                    else if (lLine.startsWith("label")) {
+                        lLabel = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
+                    }
+                }
+                if (lLabel != null) {
+                    lIDLabelMap.put(lID, lLabel);
+                    if (pLabelAsID) {
+                        if (lLabelIDMap.containsKey(lLabel)) {
+                            throw new IOException("Duplicate Label: "+lLabel);
+                        }
+                    }
+                    lLabelIDMap.put(lLabel, lID);
+                }
+                else {
+                    if (pLabelAsID) throw new IOException("Label is null for ID: "+lID);
+                }
+                Map<String, String> lParameters = new HashMap<>();
+                if (!pLabelAsID && (lLabel != null)) {
+                    lParameters.put("Label", lLabel);
+                }
+                TLGNode lNode = pLabelAsID ? new TLGNode(lTLGGraph, lLabel, lParameters) : new TLGNode(lTLGGraph, lID, lParameters);
+                lTLGGraph.nodeMap.put(lNode.getId(), lNode);
+            }
+            else if (lLine.startsWith("edge")) {
+                String lSource = null;
+                String lTarget = null;
+                String lType = null;
+                while (!(lLine = lReader.readLine()).trim().startsWith("]")) {
+                    lLine = lLine.trim();
+                    if (lLine.startsWith("source")) {
+                        lSource = lLine.substring(lLine.lastIndexOf(" ")+1);
+                    }
+                    else if (lLine.startsWith("target")) {
+                        lTarget = lLine.substring(lLine.lastIndexOf(" ")+1);
+                    }
+                    else if (lLine.startsWith("type")) {
+                        lType = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
+                    }
+                    else if (lLine.startsWith("Type")) {
+                        lType = lLine.substring(lLine.indexOf("\"")+1, lLine.lastIndexOf("\""));
+                    }
+                }
+                TLGEdge lEdge = pLabelAsID ? new TLGEdge(lTLGGraph, lTLGGraph.nodeMap.get(lIDLabelMap.get(lSource)), lTLGGraph.nodeMap.get(lIDLabelMap.get(lTarget))) : new TLGEdge(lTLGGraph, lTLGGraph.nodeMap.get(lSource), lTLGGraph.nodeMap.get(lTarget));
+                if (lType != null) lEdge.properties.put("Type", lType);
+            }
+        }
+        lReader.close();
+        return lTLGGraph;
+    }
+
+}
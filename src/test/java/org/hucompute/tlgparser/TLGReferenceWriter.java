@@ -0,0 +1,188 @@
+package org.hucompute.tlgparser;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The original String based writers of TLGGraph. They are kept as reference for equivalence tests and benchmarks
+ * against TLGGraphWriter and should not be used otherwise.
+ */
+public class TLGReferenceWriter {
+
+    public static void saveSubGraph(TLGGraph pGraph, File pFile, Set<TLGNode> pIncludedNodes, boolean pUndirectedEdges) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.print(pGraph.head);
+        lWriter.println("Vertices:");
+        for (TLGNode lNode:pIncludedNodes) {
+            StringBuilder lLine = new StringBuilder();
+            lLine.append(lNode.id+"¤");
+            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
+                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
+            }
+            lWriter.println(lLine.toString());
+        }
+        lWriter.println("Edges:");
+        Set<String> lSkipSet = new HashSet<>();
+        for (TLGNode lNode:pIncludedNodes) {
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                if (pIncludedNodes.contains(lEdge.target)) {
+                    String lKey = null;
+                    if (lEdge.source.id.compareTo(lEdge.target.id) < 0) {
+                        lKey = lEdge.source.id+"\t"+lEdge.target.id;
+                    }
+                    else {
+                        lKey = lEdge.target.id+"\t"+lEdge.source.id;
+                    }
+                    if (!pUndirectedEdges || (!lSkipSet.contains(lKey))) {
+                        lSkipSet.add(lKey);
+                        StringBuilder lLine = new StringBuilder();
+                        lLine.append(lEdge.source.id + "¤");
+                        lLine.append(lEdge.target.id + "¤");
+                        lLine.append("1.0¤");
+                        for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
+                            lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
+                        }
+                        lWriter.println(lLine.toString());
+                    }
+                }
+            }
+        }
+        lWriter.close();
+    }
+
+    public static void saveGraph(TLGGraph pGraph, File pFile) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.print(pGraph.head);
+        lWriter.println("Vertices:");
+        Set<TLGNode> lNodes = new HashSet<>(pGraph.nodeMap.values());
+        for (TLGNode lNode:lNodes) {
+            StringBuilder lLine = new StringBuilder();
+            lLine.append(lNode.id+"¤");
+            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
+                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
+            }
+            lWriter.println(lLine.toString());
+        }
+        lWriter.println("Edges:");
+        for (TLGNode lNode:lNodes) {
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                StringBuilder lLine = new StringBuilder();
+                lLine.append(lEdge.source.id + "¤");
+                lLine.append(lEdge.target.id + "¤");
+                lLine.append(lEdge.similarity+"¤");
+                for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
+                    lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
+                }
+                lWriter.println(lLine.toString());
+            }
+        }
+        lWriter.close();
+    }
+
+    public static void saveSubGraph(TLGGraph pGraph, File pFile, Set<TLGNode> pIncludedNodes, Set<String> pEdgeTypes, boolean pNormalizeParallelEdges) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.print(pGraph.head);
+        lWriter.println("Vertices:");
+        for (TLGNode lNode:pIncludedNodes) {
+            StringBuilder lLine = new StringBuilder();
+            lLine.append(lNode.id+"¤");
+            for (Map.Entry<String, String> lEntry:lNode.getProperties().entrySet()) {
+                lLine.append("["+lEntry.getKey()+"¤"+lEntry.getValue()+"¤]¤");
+            }
+            lWriter.println(lLine.toString());
+        }
+        lWriter.println("Edges:");
+        Set<String> lEdgeKeeper = new HashSet<>();
+        for (TLGNode lNode:pIncludedNodes) {
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                if (pEdgeTypes.contains(lEdge.getProperty("Type", ""))) {
+                    if (pIncludedNodes.contains(lEdge.target)) {
+                        String lKey = lEdge.source.id+"\t"+lEdge.target.id;
+                        if (!lEdgeKeeper.contains(lKey) || !pNormalizeParallelEdges) {
+                            lEdgeKeeper.add(lKey);
+                            StringBuilder lLine = new StringBuilder();
+                            lLine.append(lEdge.source.id + "¤");
+                            lLine.append(lEdge.target.id + "¤");
+                            lLine.append("1.0¤");
+                            for (Map.Entry<String, String> lEntry : lEdge.getProperties().entrySet()) {
+                                lLine.append("[" + lEntry.getKey() + "¤" + lEntry.getValue() + "¤]¤");
+                            }
+                            lWriter.println(lLine.toString());
+                        }
+                    }
+                }
+            }
+        }
+        lWriter.close();
+    }
+
+    public static void saveSubGraphGML(TLGGraph pGraph, File pFile, Set<TLGNode> pIncludedNodes, Set<String> pEdgeTypes, boolean pNormalizeParallelEdges) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("UTF-8")));
+        lWriter.println("graph [");
+        for (TLGNode lNode:pIncludedNodes) {
+            String lName = lNode.getProperty("Name", "");
+            lWriter.println("node [");
+            lWriter.println("id "+lNode.id);
+            lWriter.println("label \""+lName.replace("\"", "'")+"\"");
+            lWriter.println("]");
+        }
+        Set<String> lEdgeKeeper = new HashSet<>();
+        for (TLGNode lNode:pIncludedNodes) {
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                if (pEdgeTypes.contains(lEdge.getProperty("Type", ""))) {
+                    if (pIncludedNodes.contains(lEdge.target)) {
+                        String lKey = lEdge.source.id+"\t"+lEdge.target.id;
+                        if (!lEdgeKeeper.contains(lKey) || !pNormalizeParallelEdges) {
+                            lEdgeKeeper.add(lKey);
+                            lWriter.println("edge [");
+                            lWriter.println("source "+lEdge.source.id);
+                            lWriter.println("target "+lEdge.target.id);
+                            lWriter.println("]");
+                        }
+                    }
+                }
+            }
+        }
+        lWriter.println("]");
+        lWriter.close();
+    }
+
+    public static void saveSubGraphGML(TLGGraph pGraph, File pFile, Set<TLGNode> pIncludedNodes, boolean pUndirectedEdges) throws IOException {
+        PrintWriter lWriter = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(pFile)), Charset.forName("ISO-8859-1")));
+        lWriter.println("graph [");
+        for (TLGNode lNode:pIncludedNodes) {
+            String lName = lNode.getProperty("Label", "");
+            lWriter.println("node [");
+            lWriter.println("id "+lNode.id);
+            lWriter.println("label \""+lName.replace("\"", "'").replace("&", "&amp;")+"\"");
+            lWriter.println("]");
+        }
+        Set<String> lSkipSet = new HashSet<>();
+        for (TLGNode lNode:pIncludedNodes) {
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                if (pIncludedNodes.contains(lEdge.target)) {
+                    String lKey = null;
+                    if (lEdge.source.id.compareTo(lEdge.target.id) < 0) {
+                        lKey = lEdge.source.id+"\t"+lEdge.target.id;
+                    }
+                    else {
+                        lKey = lEdge.target.id+"\t"+lEdge.source.id;
+                    }
+                    if (!pUndirectedEdges || (!lSkipSet.contains(lKey))) {
+                        lSkipSet.add(lKey);
+                        lWriter.println("edge [");
+                        lWriter.println("source " + lEdge.source.id);
+                        lWriter.println("target " + lEdge.target.id);
+                        lWriter.println("]");
+                    }
+                }
+            }
+        }
+        lWriter.println("]");
+        lWriter.close();
+    }
+
+}
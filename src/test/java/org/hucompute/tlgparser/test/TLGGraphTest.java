@@ -1,17 +1,39 @@
 package org.hucompute.tlgparser.test;
 
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.hucompute.tlgparser.DiameterThread;
 import org.hucompute.tlgparser.GraphSimilarityThread;
+import org.hucompute.tlgparser.TLGBenchmark;
+import org.hucompute.tlgparser.TLGDiameterBounds;
+import org.hucompute.tlgparser.TLGDistanceDistribution;
 import org.hucompute.tlgparser.TLGEdge;
+import org.hucompute.tlgparser.TLGEdgeRecord;
+import org.hucompute.tlgparser.TLGFrozenGraph;
+import org.hucompute.tlgparser.TLGGeodesicEstimate;
 import org.hucompute.tlgparser.TLGGraph;
+import org.hucompute.tlgparser.TLGGraphVisitor;
+import org.hucompute.tlgparser.TLGHyperANF;
+import org.hucompute.tlgparser.TLGIndex;
+import org.hucompute.tlgparser.TLGLoadOptions;
+import org.hucompute.tlgparser.TLGMultiSourceBFS;
+import org.hucompute.tlgparser.TLGNeighbourhoodFunction;
 import org.hucompute.tlgparser.TLGNode;
+import org.hucompute.tlgparser.TLGPropertyColumns;
+import org.hucompute.tlgparser.TLGReferenceReader;
+import org.hucompute.tlgparser.TLGReferenceWriter;
+import org.hucompute.tlgparser.TLGStreamReader;
+import org.hucompute.tlgparser.TLGSymbolTable;
+import org.hucompute.tlgparser.TLGTriangleCounter;
+import org.hucompute.tlgparser.TLGTriangleCounts;
+import org.hucompute.tlgparser.TLGVertexRecord;
+import org.hucompute.tlgparser.VEOSimilarityTask;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
 
 public class TLGGraphTest {
 
@@ -39,6 +61,551 @@ public class TLGGraphTest {
         }
     }
 
+    @Test
+    public void checkDiameterBounds() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            int[][] lSizes = new int[][]{{300, 150}, {300, 400}, {1000, 3000}, {2000, 2500}, {500, 5000}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkDiameterBounds", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lFiles.add(lGenerated);
+            }
+            for (File lFile:lFiles) {
+                for (TLGGraph.Directedness lDirectedness:TLGGraph.Directedness.values()) {
+                    TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                    // Search from every node as reference
+                    DiameterThread lThread = new DiameterThread(lGraph, lDirectedness);
+                    lThread.run();
+                    int lExpected = lThread.getDiameter();
+                    List<TLGDiameterBounds> lReports = new ArrayList<>();
+                    TLGDiameterBounds lBounds = lGraph.getDiameterBounds(lDirectedness, 0, lReports::add);
+                    Assert.assertTrue(lBounds.isExact());
+                    Assert.assertEquals(lFile.getName()+" "+lDirectedness, lExpected, lBounds.getLower());
+                    for (TLGDiameterBounds lReport:lReports) {
+                        Assert.assertTrue(lReport.getLower() <= lExpected);
+                        Assert.assertTrue(lReport.getUpper() >= lExpected);
+                    }
+                    Assert.assertEquals(lExpected, lGraph.getDiameter(lDirectedness));
+                    Assert.assertTrue(lBounds.getSearches() <= 3*lGraph.getNodes().size()+1);
+                    // A run which stops right away still returns valid bounds
+                    TLGGraph lOther = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                    lBounds = lOther.getDiameterBounds(lDirectedness, 1, null);
+                    Assert.assertTrue((lBounds.getLower() <= lExpected) && (lBounds.getUpper() >= lExpected));
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkMultiSourceBFS() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            File lGenerated = File.createTempFile("checkMultiSourceBFS", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 400, 600, 7);
+            lFiles.add(lGenerated);
+            for (File lFile:lFiles) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+                int lSize = lFrozenGraph.size();
+                for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                    // Single source searches as reference
+                    long[] lExpected = new long[lSize+1];
+                    Set<String> lExpectedPairs = new HashSet<>();
+                    int[] lDistances = lFrozenGraph.newDistances();
+                    int[] lQueue = new int[lSize];
+                    for (int s=0; s<lSize; s++) {
+                        int lCount = lFrozenGraph.bfs(s, lDirection, lDistances, lQueue);
+                        for (int k=1; k<lCount; k++) {
+                            lExpected[lDistances[lQueue[k]]]++;
+                            lExpectedPairs.add(s+"\t"+lQueue[k]+"\t"+lDistances[lQueue[k]]);
+                        }
+                        TLGFrozenGraph.reset(lDistances, lQueue, lCount);
+                    }
+                    for (int lThreads:new int[]{1, 3}) {
+                        Set<String> lActualPairs = Collections.synchronizedSet(new HashSet<>());
+                        List<TLGDistanceDistribution> lReports = Collections.synchronizedList(new ArrayList<>());
+                        TLGDistanceDistribution lDistribution = new TLGMultiSourceBFS(lFrozenGraph, lDirection).setBatchSize(64).setThreads(lThreads)
+                                .setPairConsumer((pSource, pTarget, pDistance) -> lActualPairs.add(pSource+"\t"+pTarget+"\t"+pDistance))
+                                .setListener(lReports::add).run();
+                        Assert.assertEquals(lExpectedPairs, lActualPairs);
+                        Assert.assertEquals(lSize, lDistribution.getSources());
+                        for (int d=1; d<=lSize; d++) {
+                            Assert.assertEquals(lExpected[d], lDistribution.getCount(d));
+                        }
+                        Assert.assertEquals(lExpectedPairs.size(), lDistribution.getReachablePairs());
+                        Assert.assertEquals((lSize+63)/64, lReports.size());
+                        Assert.assertEquals(lDistribution.toString(), lReports.get(lReports.size()-1).toString());
+                    }
+                }
+                // Shortest path lengths within every other node
+                Set<TLGNode> lSubSet = new HashSet<>();
+                int i = 0;
+                for (TLGNode lNode:lGraph.getNodes()) {
+                    if (i++ % 2 == 0) lSubSet.add(lNode);
+                }
+                Map<String, Integer> lExpectedLengths = new HashMap<>();
+                for (TLGNode lNode:lSubSet) {
+                    Map<TLGNode, Integer> lKnown = new HashMap<>();
+                    List<TLGNode> lQueue = new ArrayList<>();
+                    lKnown.put(lNode, 0);
+                    lQueue.add(lNode);
+                    for (int q=0; q<lQueue.size(); q++) {
+                        for (TLGNode lOther:lQueue.get(q).getLinkedNodes(TLGGraph.Direction.ANY)) {
+                            if (lSubSet.contains(lOther) && !lKnown.containsKey(lOther)) {
+                                lKnown.put(lOther, lKnown.get(lQueue.get(q))+1);
+                                lQueue.add(lOther);
+                                lExpectedLengths.put(TLGGraph.getSortedIdPair(lNode, lOther), lKnown.get(lOther));
+                            }
+                        }
+                    }
+                }
+                Map<String, Integer> lActualLengths = new HashMap<>();
+                TLGGraph.getUndirectedShortestPathsLengths(lSubSet).forEachEntry((k, v) -> {
+                    lActualLengths.put(k, v);
+                    return true;
+                });
+                Assert.assertEquals(lExpectedLengths, lActualLengths);
+            }
+            // Long path, one level per node
+            File lPath = File.createTempFile("checkMultiSourceBFS", ".tlg");
+            lPath.deleteOnExit();
+            int lLength = 4000;
+            TLGBenchmark.generatePathGraph(lPath, lLength);
+            TLGFrozenGraph lFrozenPath = TLGGraph.fromBorlandFormatFile(lPath, TLGGraph.Directedness.DIRECTED).freeze();
+            for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                int[] lEccentricities = new int[lLength];
+                TLGDistanceDistribution lDistribution = new TLGMultiSourceBFS(lFrozenPath, lDirection).setThreads(2)
+                        .setSourceConsumer((pSource, pReached, pDistanceSum, pEccentricity) -> lEccentricities[pSource] = pEccentricity).run();
+                for (int d=1; d<lLength; d++) {
+                    Assert.assertEquals((lDirection == TLGGraph.Direction.ANY ? 2 : 1)*(lLength-d), lDistribution.getCount(d));
+                }
+                Assert.assertEquals(lLength-1, lDistribution.getMaxDistance());
+                for (int s=0; s<lLength; s++) {
+                    int lPosition = Integer.parseInt(lFrozenPath.getNode(s).getId());
+                    int lExpected = lDirection == TLGGraph.Direction.OUT ? lLength-1-lPosition : lDirection == TLGGraph.Direction.IN ? lPosition : Math.max(lPosition, lLength-1-lPosition);
+                    Assert.assertEquals(lExpected, lEccentricities[s]);
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkGeodesicEstimate() {
+        try {
+            File lFile = File.createTempFile("checkGeodesicEstimate", ".tlg");
+            lFile.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lFile, 3000, 4000, 3);
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+            int lSize = lGraph.getNodes().size();
+            for (TLGGraph.Directedness lDirectedness:TLGGraph.Directedness.values()) {
+                TLGGraph.Direction lDirection = lDirectedness == TLGGraph.Directedness.UNDIRECTED ? TLGGraph.Direction.ANY : TLGGraph.Direction.OUT;
+                TLGDistanceDistribution lExact = new TLGMultiSourceBFS(lGraph.freeze(), lDirection).run();
+                // All sources give the exact values
+                TLGGeodesicEstimate lEstimate = lGraph.estimateGeodesicDistance(lDirectedness, 1, lSize, 0);
+                Assert.assertEquals(lExact.getAverageDistance(), lEstimate.getMean(), 1e-9);
+                Assert.assertEquals(0, lEstimate.getStandardError(), 1e-9);
+                Assert.assertArrayEquals(lExact.getHistogram(), lEstimate.getDistribution().getHistogram());
+                Assert.assertEquals(lExact.getEffectiveDiameter(0.9), lEstimate.getEffectiveDiameter(), 1e-9);
+                Assert.assertFalse(lEstimate.isPrecisionReached());
+                // Sampled estimates are reproducible and cover the exact mean
+                lEstimate = lGraph.estimateGeodesicDistance(lDirectedness, 5, 300, 0);
+                TLGGeodesicEstimate lOther = lGraph.estimateGeodesicDistance(lDirectedness, 5, 300, 0);
+                Assert.assertEquals(300, lEstimate.getSources());
+                Assert.assertEquals(lEstimate.getMean(), lOther.getMean(), 0);
+                Assert.assertArrayEquals(lEstimate.getDistribution().getHistogram(), lOther.getDistribution().getHistogram());
+                Assert.assertTrue(lEstimate.getStandardError() > 0);
+                Assert.assertTrue(Math.abs(lEstimate.getMean()-lExact.getAverageDistance()) <= 3*lEstimate.getStandardError());
+                Assert.assertTrue(lEstimate.getMaxDistance() <= lExact.getMaxDistance());
+                Assert.assertTrue((lEstimate.getEffectiveDiameter() > 0) && (lEstimate.getEffectiveDiameter() <= lEstimate.getMaxDistance()));
+                // Early stop
+                lEstimate = lGraph.estimateGeodesicDistance(lDirectedness, 5, lSize, 0.05);
+                Assert.assertTrue(lEstimate.isPrecisionReached());
+                Assert.assertTrue(lEstimate.getSources() < lSize);
+                Assert.assertTrue(lEstimate.getRelativeError() <= 0.05);
+            }
+            double[] lExpected = lGraph.getDiameterAndGeodesicDistanceUnDirected();
+            double[] lActual = lGraph.getDiameterAndGeodesicDistanceUnDirectedSampled(lSize*(long)lSize);
+            Assert.assertEquals(lExpected[0], lActual[0], 0);
+            Assert.assertEquals(lExpected[1], lActual[1], 1e-9);
+            // Too few pairs still search from MIN_SOURCES sources, reproducible per seed
+            lActual = lGraph.getDiameterAndGeodesicDistanceUnDirectedSampled(1, 9);
+            Assert.assertArrayEquals(lActual, lGraph.getDiameterAndGeodesicDistanceUnDirectedSampled(1, 9), 0);
+            Assert.assertTrue((lActual[0] > 0) && (lActual[0] <= lExpected[0]));
+            Assert.assertEquals(lExpected[1], lActual[1], lExpected[1]/2);
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkHyperANF() {
+        try {
+            File lFile = File.createTempFile("checkHyperANF", ".tlg");
+            lFile.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lFile, 2000, 3000, 5);
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+            TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+            int lSize = lFrozenGraph.size();
+            for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                long[] lReached = new long[lSize];
+                TLGDistanceDistribution lExact = new TLGMultiSourceBFS(lFrozenGraph, lDirection).setSourceConsumer((pIndex, pReached, pDistanceSum, pEccentricity) -> lReached[pIndex] = pReached).run();
+                TLGNeighbourhoodFunction lFunction = new TLGHyperANF(lFrozenGraph, lDirection).setRegisters(1024).setThreads(1).run();
+                Assert.assertEquals(lExact.getAverageDistance(), lFunction.getAverageDistance(), 0.1*lExact.getAverageDistance());
+                Assert.assertEquals(lExact.getEffectiveDiameter(0.9), lFunction.getEffectiveDiameter(), 0.1*lExact.getEffectiveDiameter(0.9));
+                Assert.assertEquals(lExact.getReachablePairs(), lFunction.getReachablePairs(), 0.1*lExact.getReachablePairs());
+                Assert.assertTrue(lFunction.getIterations() <= lExact.getMaxDistance());
+                Assert.assertEquals(lSize, lFunction.getValue(0), 0.1*lSize);
+                for (int v=0; v<lSize; v++) {
+                    Assert.assertEquals(lReached[v], lFunction.getReachable(v), 2+0.15*lReached[v]);
+                }
+                // Same counters with several threads
+                TLGNeighbourhoodFunction lOther = new TLGHyperANF(lFrozenGraph, lDirection).setRegisters(1024).setThreads(3).run();
+                Assert.assertArrayEquals(lFunction.getValues(), lOther.getValues(), 0);
+            }
+            TLGNeighbourhoodFunction lFunction = lGraph.getNeighbourhoodFunction(TLGGraph.Directedness.UNDIRECTED, 100);
+            Assert.assertEquals(1.04/Math.sqrt(128), lFunction.getRelativeStandardError(), 1e-12);
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkWeaklyConnectedComponents() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            int[][] lSizes = new int[][]{{5000, 1500}, {5000, 4000}, {3000, 9000}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkWeaklyConnectedComponents", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lFiles.add(lGenerated);
+            }
+            for (File lFile:lFiles) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+                int lSize = lFrozenGraph.size();
+                // Undirected searches as reference
+                Set<Set<Integer>> lExpected = new HashSet<>();
+                int[] lDistances = lFrozenGraph.newDistances();
+                int[] lQueue = new int[lSize];
+                for (int v=0; v<lSize; v++) {
+                    if (lDistances[v] < 0) {
+                        int lCount = lFrozenGraph.bfs(v, TLGGraph.Directedness.UNDIRECTED, lDistances, lQueue);
+                        Set<Integer> lComponent = new HashSet<>();
+                        for (int k=0; k<lCount; k++) {
+                            lComponent.add(lQueue[k]);
+                        }
+                        lExpected.add(lComponent);
+                    }
+                }
+                int[] lLabels = lFrozenGraph.getWeaklyConnectedComponents(1);
+                Assert.assertArrayEquals(lLabels, lFrozenGraph.getWeaklyConnectedComponents(3));
+                Assert.assertArrayEquals(lLabels, lGraph.getWeaklyConnectedComponentLabels());
+                List<Set<Integer>> lActual = new ArrayList<>();
+                for (int v=0; v<lSize; v++) {
+                    while (lActual.size() <= lLabels[v]) lActual.add(new HashSet<>());
+                    lActual.get(lLabels[v]).add(v);
+                }
+                Assert.assertEquals(lExpected, new HashSet<>(lActual));
+                List<Set<TLGNode>> lComponents = lGraph.getWeaklyConnectedComponents();
+                Assert.assertEquals(lActual.size(), lComponents.size());
+                for (int c=0; c<lActual.size(); c++) {
+                    if (c > 0) Assert.assertTrue(lActual.get(c-1).size() >= lActual.get(c).size());
+                    Set<TLGNode> lNodes = new HashSet<>();
+                    for (int v:lActual.get(c)) {
+                        lNodes.add(lFrozenGraph.getNode(v));
+                    }
+                    Assert.assertEquals(lNodes, lComponents.get(c));
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkStronglyConnectedComponents() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            int[][] lSizes = new int[][]{{1000, 1500}, {2000, 5000}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkStronglyConnectedComponents", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lFiles.add(lGenerated);
+            }
+            for (File lFile:lFiles) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+                int lSize = lFrozenGraph.size();
+                int[] lLabels = lGraph.getStronglyConnectedComponentLabels();
+                // Nodes which reach each other as reference
+                int[] lForward = lFrozenGraph.newDistances();
+                int[] lBackward = lFrozenGraph.newDistances();
+                int[] lForwardQueue = new int[lSize];
+                int[] lBackwardQueue = new int[lSize];
+                for (int v=0; v<lSize; v++) {
+                    int lForwardCount = lFrozenGraph.bfs(v, TLGGraph.Direction.OUT, lForward, lForwardQueue);
+                    int lBackwardCount = lFrozenGraph.bfs(v, TLGGraph.Direction.IN, lBackward, lBackwardQueue);
+                    for (int w=0; w<lSize; w++) {
+                        Assert.assertEquals((lForward[w] >= 0) && (lBackward[w] >= 0), lLabels[v] == lLabels[w]);
+                    }
+                    TLGFrozenGraph.reset(lForward, lForwardQueue, lForwardCount);
+                    TLGFrozenGraph.reset(lBackward, lBackwardQueue, lBackwardCount);
+                }
+                // Condensation
+                Map<String, Integer> lExpectedEdges = new HashMap<>();
+                int lComponents = 0;
+                for (int v=0; v<lSize; v++) {
+                    lComponents = Math.max(lComponents, lLabels[v]+1);
+                    for (int e=lFrozenGraph.getOutOffsets()[v]; e<lFrozenGraph.getOutOffsets()[v+1]; e++) {
+                        int lTarget = lLabels[lFrozenGraph.getOutTargets()[e]];
+                        Assert.assertTrue(lLabels[v] >= lTarget);
+                        if (lLabels[v] != lTarget) lExpectedEdges.merge(lLabels[v]+"\t"+lTarget, 1, Integer::sum);
+                    }
+                }
+                TLGGraph lCondensation = lGraph.getCondensation();
+                Assert.assertEquals(TLGGraph.Directedness.DIRECTED, lCondensation.getDirectedness());
+                Assert.assertEquals(lComponents, lCondensation.getNodes().size());
+                Map<String, Integer> lActualEdges = new HashMap<>();
+                long lMembers = 0;
+                int c = 0;
+                for (TLGNode lNode:lCondensation.getNodes()) {
+                    Assert.assertEquals(Integer.toString(c), lNode.getId());
+                    int lRepresentative = lFrozenGraph.getOrdinal(lGraph.getNodeByID(lNode.getProperty("Representative", null)));
+                    Assert.assertEquals(c, lLabels[lRepresentative]);
+                    lMembers += Integer.parseInt(lNode.getProperty("Size", null));
+                    for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                        Assert.assertNull(lActualEdges.put(lNode.getId()+"\t"+lEdge.getTarget().getId(), Integer.parseInt(lEdge.getProperty("Count", null))));
+                    }
+                    c++;
+                }
+                Assert.assertEquals(lSize, lMembers);
+                Assert.assertEquals(lExpectedEdges, lActualEdges);
+            }
+            // Deep graphs do not overflow the stack
+            File lChain = File.createTempFile("checkStronglyConnectedComponents", ".tlg");
+            lChain.deleteOnExit();
+            int lLength = 200000;
+            for (boolean lCycle:new boolean[]{false, true}) {
+                try (java.io.PrintWriter lWriter = new java.io.PrintWriter(lChain, "UTF-8")) {
+                    lWriter.print("directed\nSimilarityGraph\nVertex Attributes:\nEdge Attributes:\nProbabilityMassOfGraph: 0\nVertices:\n");
+                    for (int i=0; i<lLength; i++) {
+                        lWriter.print(i+"¤\n");
+                    }
+                    lWriter.print("Edges:\n");
+                    for (int i=0; i<lLength-1; i++) {
+                        lWriter.print(i+"¤"+(i+1)+"¤1.0¤\n");
+                    }
+                    if (lCycle) lWriter.print((lLength-1)+"¤0¤1.0¤\n");
+                }
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lChain, TLGGraph.Directedness.DIRECTED);
+                Assert.assertEquals(lCycle ? 1 : lLength, lGraph.getCondensation().getNodes().size());
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkTriangleCounts() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            int[][] lSizes = new int[][]{{500, 3000}, {2000, 8000}, {3000, 1000}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkTriangleCounts", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lFiles.add(lGenerated);
+            }
+            for (File lFile:lFiles) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+                // Neighbourhood edges as with the former string sets
+                double lExpected = 0;
+                long lNodeCount = 0;
+                long lClosed = 0;
+                long lTriples = 0;
+                TLGTriangleCounts lCounts = new TLGTriangleCounter(lFrozenGraph).setThreads(1).run();
+                TLGTriangleCounts lParallelCounts = new TLGTriangleCounter(lFrozenGraph).setThreads(3).run();
+                double[] lLocal = lCounts.getLocalClusteringCoefficients();
+                for (TLGNode lNode:lGraph.getNodes()) {
+                    int lOrdinal = lFrozenGraph.getOrdinal(lNode);
+                    Set<TLGNode> lNeighbours = lNode.getLinkedNodes(TLGGraph.Direction.ANY);
+                    lNeighbours.remove(lNode);
+                    long lNeighbourCount = lNeighbours.size();
+                    Set<String> lEdges = new HashSet<>();
+                    for (TLGNode lNeighbour:lNeighbours) {
+                        for (TLGEdge lEdge:lNeighbour.getEdges(TLGGraph.Direction.OUT)) {
+                            if (lNeighbours.contains(lEdge.getTarget()) && !lNeighbour.equals(lEdge.getTarget())) {
+                                lEdges.add(TLGGraph.getSortedIdPair(lNeighbour, lEdge.getTarget()));
+                            }
+                        }
+                    }
+                    Assert.assertEquals(lNeighbourCount, lCounts.getDegree(lOrdinal));
+                    Assert.assertEquals(lEdges.size(), lCounts.getTriangles(lOrdinal));
+                    Assert.assertEquals(lEdges.size(), lParallelCounts.getTriangles(lOrdinal));
+                    lClosed += lEdges.size();
+                    lTriples += (lNeighbourCount * (lNeighbourCount - 1)) / 2;
+                    if (lNeighbourCount >= 2) {
+                        long lMaxEdges = (lNeighbourCount * (lNeighbourCount - 1)) / 2;
+                        Assert.assertEquals(lEdges.size() / (double) lMaxEdges, lLocal[lOrdinal], 0);
+                        lExpected += lEdges.size() / (double) lMaxEdges;
+                        lNodeCount++;
+                    }
+                    else {
+                        Assert.assertEquals(0, lLocal[lOrdinal], 0);
+                    }
+                }
+                Assert.assertEquals(lExpected/lNodeCount, lGraph.getClusteringCoefficientWattsStrogatz(), 0);
+                Assert.assertEquals(lClosed/3, lCounts.getTriangleCount());
+                Assert.assertEquals(lTriples == 0 ? 0 : lClosed/(double)lTriples, lCounts.getTransitivity(), 0);
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkFuzzyJaccardSimilarity() {
+        try {
+            List<TLGGraph> lGraphs = new ArrayList<>();
+            for (String lName:new String[]{"1.tlg", "2.tlg", "3.tlg", "6NodeDirected.tlg", "6NodeDirectedVariant.tlg", "UnionGraphTest1.tlg", "UnionGraphTest2.tlg"}) {
+                lGraphs.add(TLGGraph.fromBorlandFormatFile(new File("src/test/resources/"+lName), TLGGraph.Directedness.DIRECTED));
+            }
+            // Overlapping ids, the sparse graphs have many components
+            int[][] lSizes = new int[][]{{300, 600}, {400, 250}, {200, 150}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkFuzzyJaccardSimilarity", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lGraphs.add(TLGGraph.fromBorlandFormatFile(lGenerated, TLGGraph.Directedness.DIRECTED));
+            }
+            // Overlapping paths, distances beyond the dense part of the counts
+            for (int[] lPath:new int[][]{{0, 150}, {50, 250}}) {
+                File lGenerated = File.createTempFile("checkFuzzyJaccardSimilarity", ".tlg");
+                lGenerated.deleteOnExit();
+                StringBuilder lBuilder = new StringBuilder("directed\nSimilarityGraph\nVertices:\n");
+                for (int v=lPath[0]; v<lPath[1]; v++) {
+                    lBuilder.append(v).append("¤\n");
+                }
+                lBuilder.append("Edges:\n");
+                for (int v=lPath[0]; v<lPath[1]-1; v++) {
+                    lBuilder.append(v).append("¤").append(v+1).append("¤1.0¤\n");
+                }
+                Files.write(lGenerated.toPath(), lBuilder.toString().getBytes("UTF-8"));
+                lGraphs.add(TLGGraph.fromBorlandFormatFile(lGenerated, TLGGraph.Directedness.DIRECTED));
+            }
+            for (int i=0; i<lGraphs.size(); i++) {
+                for (int k=i; k<lGraphs.size(); k++) {
+                    TLGGraph lGraph1 = lGraphs.get(i);
+                    TLGGraph lGraph2 = lGraphs.get(k);
+                    int lNodes1 = lGraph1.getNodes().size();
+                    int lNodes2 = lGraph2.getNodes().size();
+                    double lExpected = getFuzzyJaccardSimilarityByCopies(lGraph1, lGraph2);
+                    Assert.assertEquals(lExpected, TLGGraph.getFuzzyJaccardSimilarity(lGraph1, lGraph2, 1), 1e-12);
+                    Assert.assertEquals(lExpected, TLGGraph.getFuzzyJaccardSimilarity(lGraph1, lGraph2, 3), 1e-12);
+                    Assert.assertEquals(lExpected, TLGGraph.getFuzzyJaccardSimilarity(lGraph2, lGraph1, 1), 1e-12);
+                    // Neither graph is changed
+                    Assert.assertEquals(lNodes1, lGraph1.getNodes().size());
+                    Assert.assertEquals(lNodes2, lGraph2.getNodes().size());
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkPairwiseSimilarities() {
+        try {
+            List<TLGGraph> lGraphs = new ArrayList<>();
+            for (String lName:new String[]{"1.tlg", "2.tlg", "6NodeDirected.tlg", "6NodeDirectedVariant.tlg", "UnionGraphTest1.tlg"}) {
+                lGraphs.add(TLGGraph.fromBorlandFormatFile(new File("src/test/resources/"+lName), TLGGraph.Directedness.DIRECTED));
+            }
+            // The last graph is too large for a distance table
+            int[][] lSizes = new int[][]{{300, 600}, {400, 250}, {200, 900}, {4200, 3000}};
+            for (int i=0; i<lSizes.length; i++) {
+                File lGenerated = File.createTempFile("checkPairwiseSimilarities", ".tlg");
+                lGenerated.deleteOnExit();
+                TLGBenchmark.generateLexiconGraph(lGenerated, lSizes[i][0], lSizes[i][1], i);
+                lGraphs.add(TLGGraph.fromBorlandFormatFile(lGenerated, TLGGraph.Directedness.DIRECTED));
+            }
+            // A path with distances beyond 255 widens its table to chars
+            File lPath = File.createTempFile("checkPairwiseSimilarities", ".tlg");
+            lPath.deleteOnExit();
+            StringBuilder lBuilder = new StringBuilder("directed\nSimilarityGraph\nVertices:\n");
+            for (int v=0; v<400; v++) {
+                lBuilder.append(v).append("¤\n");
+            }
+            lBuilder.append("Edges:\n");
+            for (int v=0; v<399; v++) {
+                lBuilder.append(v).append("¤").append(v+1).append("¤1.0¤\n");
+            }
+            Files.write(lPath.toPath(), lBuilder.toString().getBytes("UTF-8"));
+            lGraphs.add(TLGGraph.fromBorlandFormatFile(lPath, TLGGraph.Directedness.DIRECTED));
+            double[][] lFuzzyJaccard = TLGGraph.getFuzzyJaccardSimilarities(lGraphs, 3);
+            // Only the small graphs get a table, the other pairs are searched
+            double[][] lSearched = TLGGraph.getFuzzyJaccardSimilarities(lGraphs, 3, 50);
+            for (TLGGraph.Directedness lDirectedness:TLGGraph.Directedness.values()) {
+                double[][] lVEO = TLGGraph.getGraphSimilarities(GraphSimilarityThread.GraphSimMethod.veo, lGraphs, lDirectedness, 1);
+                double[][] lParallelVEO = TLGGraph.getGraphSimilarities(GraphSimilarityThread.GraphSimMethod.veo, lGraphs, lDirectedness, 3);
+                for (int i=0; i<lGraphs.size(); i++) {
+                    Assert.assertEquals(0, lVEO[i][i], 0);
+                    for (int k=i+1; k<lGraphs.size(); k++) {
+                        VEOSimilarityTask lTask = new VEOSimilarityTask(new Object(), lGraphs.get(i), lGraphs.get(k), lDirectedness);
+                        lTask.run();
+                        Assert.assertEquals(lTask.getSimilarity(), lVEO[i][k], 0);
+                        Assert.assertEquals(lTask.getSimilarity(), lVEO[k][i], 0);
+                        Assert.assertEquals(lTask.getSimilarity(), lParallelVEO[i][k], 0);
+                    }
+                }
+            }
+            for (int i=0; i<lGraphs.size(); i++) {
+                Assert.assertEquals(0, lFuzzyJaccard[i][i], 0);
+                for (int k=i+1; k<lGraphs.size(); k++) {
+                    double lExpected = TLGGraph.getFuzzyJaccardSimilarity(lGraphs.get(i), lGraphs.get(k), 1);
+                    Assert.assertEquals(lExpected, lFuzzyJaccard[i][k], 0);
+                    Assert.assertEquals(lExpected, lFuzzyJaccard[k][i], 0);
+                    Assert.assertEquals(lExpected, lSearched[i][k], 0);
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
     @Test
     public void checkSphericSimilarityIDBased() {
         try {
@@ -166,6 +733,1034 @@ public class TLGGraphTest {
         }
     }
 
+    @Test
+    public void checkTokenizerEquivalence() {
+        try {
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (!lFile.getName().endsWith(".tlg")) continue;
+                TLGGraph lGraph1 = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGGraph lGraph2 = TLGReferenceReader.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                assertSameGraph(lGraph2, lGraph1);
+            }
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"));
+            Assert.assertEquals("a¤]b", lGraph.getNodeByID("4").getProperty("Name", null));
+            Assert.assertEquals("", lGraph.getNodeByID("4").getProperty("POS", null));
+            Assert.assertNull(lGraph.getNodeByID("7").getProperty("Name", null));
+            Assert.assertEquals("2", lGraph.getBFNodeByTypeAndName("de", "VV", "häuseln").getId());
+            Assert.assertEquals(2, lGraph.getEdgeTypes().get("translation"));
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkParallelReader() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            File lGenerated = File.createTempFile("checkParallelReader", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 5000, 20000, 1);
+            lFiles.add(lGenerated);
+            for (File lFile:lFiles) {
+                TLGGraph lGraph1 = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                for (int lChunkSize:new int[]{16, 4096}) {
+                    TLGGraph lGraph2 = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setThreads(3).setChunkSize(lChunkSize));
+                    assertSameGraph(lGraph1, lGraph2);
+                    Assert.assertEquals(new ArrayList<>(lGraph1.getNodes()), new ArrayList<>(lGraph2.getNodes()));
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkSnapshotRoundTrip() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            File lGenerated = File.createTempFile("checkSnapshotRoundTrip", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 2000, 8000, 2);
+            lFiles.add(lGenerated);
+            File lSnapshot = File.createTempFile("checkSnapshotRoundTrip", ".tlgs");
+            lSnapshot.deleteOnExit();
+            for (File lFile:lFiles) {
+                TLGGraph lGraph1 = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.UNDIRECTED);
+                lGraph1.saveSnapshot(lSnapshot);
+                TLGGraph lGraph2 = TLGGraph.fromSnapshotFile(lSnapshot);
+                assertSameGraph(lGraph1, lGraph2);
+                Assert.assertEquals(TLGGraph.Directedness.UNDIRECTED, lGraph2.getDirectedness());
+            }
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"));
+            lGraph.saveSnapshot(lSnapshot);
+            lGraph = TLGGraph.fromSnapshotFile(lSnapshot);
+            Assert.assertEquals("2", lGraph.getBFNodeByTypeAndName("de", "VV", "häuseln").getId());
+            lGraph.getNodeByID("1").getProperties().put("Name", "Hütte");
+            Assert.assertEquals("Hütte", lGraph.getNodeByID("1").getProperty("Name", null));
+            // A duplicated id leaves two index entries for one node in nodeMap
+            File lDuplicates = File.createTempFile("checkSnapshotRoundTrip", ".tlg");
+            lDuplicates.deleteOnExit();
+            Files.write(lDuplicates.toPath(), ("directed\nSimilarityGraph\nVertices:\n"
+                    +"1¤[Type¤SuperLemma¤]¤[Language¤de¤]¤[POS¤NN¤]¤[Name¤Haus¤]¤\n"
+                    +"1¤[Type¤SuperLemma¤]¤[Language¤de¤]¤[POS¤NN¤]¤[Name¤Hof¤]¤\n"
+                    +"2¤[Type¤SuperLemma¤]¤[Language¤de¤]¤[POS¤NN¤]¤[Name¤Hütte¤]¤\n"
+                    +"Edges:\n1¤2¤1.0¤\n").getBytes("UTF-8"));
+            lGraph = TLGGraph.fromBorlandFormatFile(lDuplicates);
+            lGraph.saveSnapshot(lSnapshot);
+            TLGGraph lOpened = TLGGraph.fromSnapshotFile(lSnapshot);
+            assertSameGraph(lGraph, lOpened);
+            Assert.assertEquals("2", lOpened.getBFNodeByTypeAndName("de", "NN", "Hütte").getId());
+            Assert.assertSame(lOpened.getNodeByID("1"), lOpened.getBFNodeByTypeAndName("de", "NN", "Hof"));
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkStreamReader() {
+        try {
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"));
+            final long[] lCounts = new long[2];
+            final Map<String, Long> lTypes = new HashMap<>();
+            TLGStreamReader.readBorlandFormat(new File("src/test/resources/Lexicon.tlg"), new TLGGraphVisitor() {
+                @Override
+                public void vertex(TLGVertexRecord pVertex) {
+                    lCounts[0]++;
+                    Map<String, String> lProperties = new HashMap<>();
+                    pVertex.getProperties(lProperties);
+                    Assert.assertEquals(lGraph.getNodeByID(pVertex.getId()).getProperties(), lProperties);
+                }
+
+                @Override
+                public void edge(TLGEdgeRecord pEdge) {
+                    lCounts[1]++;
+                    String lType = pEdge.getProperty("Type", "");
+                    if (lType.length() > 0) lTypes.merge(lType, 1L, Long::sum);
+                }
+            });
+            Assert.assertEquals(lGraph.getNodes().size(), lCounts[0]);
+            Assert.assertEquals(lGraph.getEdgeTypes().size(), lTypes.size());
+            for (Map.Entry<String, Long> lEntry:lTypes.entrySet()) {
+                Assert.assertEquals(lGraph.getEdgeTypes().get(lEntry.getKey()), lEntry.getValue().longValue());
+            }
+            lCounts[0] = 0;
+            lCounts[1] = 0;
+            TLGStreamReader.readGML(new File("src/test/resources/6NodeDirected.gml"), new TLGGraphVisitor() {
+                @Override
+                public void vertex(TLGVertexRecord pVertex) {
+                    lCounts[0]++;
+                    Assert.assertNotNull(pVertex.getProperty("label", null));
+                }
+
+                @Override
+                public void edge(TLGEdgeRecord pEdge) {
+                    lCounts[1]++;
+                }
+            });
+            Assert.assertEquals(6, lCounts[0]);
+            Assert.assertEquals(6, lCounts[1]);
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkLoadFilters() {
+        try {
+            File lGenerated = File.createTempFile("checkLoadFilters", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 2000, 8000, 3);
+            for (File lFile:new File[]{new File("src/test/resources/Lexicon.tlg"), lGenerated}) {
+                TLGGraph lFull = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                Set<String> lNodeIDs = new HashSet<>();
+                for (TLGNode lNode:lFull.getNodes()) {
+                    if ("SuperLemma".equals(lNode.getProperty("Type", null)) && "de".equals(lNode.getProperty("Language", null))) {
+                        lNodeIDs.add(lNode.getId());
+                    }
+                }
+                Set<String> lEdgeTypes = new HashSet<>(Arrays.asList("derivation", "translation"));
+                List<String> lExpectedEdges = new ArrayList<>();
+                long lDropped = 0;
+                for (TLGNode lNode:lFull.getNodes()) {
+                    for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                        if (!lNodeIDs.contains(lEdge.getSource().getId()) || !lNodeIDs.contains(lEdge.getTarget().getId())) lDropped++;
+                        if (lNodeIDs.contains(lEdge.getSource().getId()) && lNodeIDs.contains(lEdge.getTarget().getId()) && lEdgeTypes.contains(lEdge.getProperty("Type", null))) {
+                            lExpectedEdges.add(lEdge.getSource().getId()+"\t"+lEdge.getTarget().getId());
+                        }
+                    }
+                }
+                Collections.sort(lExpectedEdges);
+                for (int lThreads:new int[]{1, 3}) {
+                    TLGLoadOptions lOptions = new TLGLoadOptions().setThreads(lThreads).setChunkSize(4096)
+                            .setNodeFilter(TLGLoadOptions.<TLGVertexRecord>hasProperty("Type", "SuperLemma").and(TLGLoadOptions.hasProperty("Language", "de")))
+                            .setEdgeFilter(TLGLoadOptions.hasProperty("Type", lEdgeTypes));
+                    TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, lOptions);
+                    Set<String> lLoadedIDs = new HashSet<>();
+                    List<String> lLoadedEdges = new ArrayList<>();
+                    for (TLGNode lNode:lGraph.getNodes()) {
+                        lLoadedIDs.add(lNode.getId());
+                        Assert.assertEquals(lFull.getNodeByID(lNode.getId()).getProperties(), lNode.getProperties());
+                        for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                            lLoadedEdges.add(lEdge.getSource().getId()+"\t"+lEdge.getTarget().getId());
+                        }
+                    }
+                    Collections.sort(lLoadedEdges);
+                    Assert.assertEquals(lNodeIDs, lLoadedIDs);
+                    Assert.assertEquals(lExpectedEdges, lLoadedEdges);
+                    Assert.assertEquals(lNodeIDs.size(), lGraph.getNodeAttributeCountMap().get("Type").get("SuperLemma"));
+                    Assert.assertEquals(lDropped, lGraph.getDroppedEdges());
+                }
+            }
+            // Edges to filtered nodes and to vertices which do not exist are counted alike
+            File lDangling = File.createTempFile("checkLoadFilters", ".tlg");
+            lDangling.deleteOnExit();
+            Files.write(lDangling.toPath(), ("directed\nSimilarityGraph\nVertices:\n1¤[Type¤SuperLemma¤]¤\n2¤[Type¤Lemma¤]¤\n3¤[Type¤SuperLemma¤]¤\n"
+                    +"Edges:\n1¤2¤1.0¤\n1¤3¤1.0¤\n1¤4¤1.0¤\n5¤3¤1.0¤\n2¤5¤1.0¤\n").getBytes("UTF-8"));
+            for (int lThreads:new int[]{1, 3}) {
+                TLGLoadOptions lOptions = new TLGLoadOptions().setThreads(lThreads).setNodeFilter(TLGLoadOptions.hasProperty("Type", "SuperLemma"));
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lDangling, TLGGraph.Directedness.DIRECTED, lOptions);
+                Assert.assertEquals(2, lGraph.getNodes().size());
+                Assert.assertEquals(1, lGraph.getNodeByID("1").getOutDegree());
+                Assert.assertEquals(4, lGraph.getDroppedEdges());
+            }
+            try {
+                TLGGraph.fromBorlandFormatFile(lDangling, TLGGraph.Directedness.DIRECTED);
+                Assert.fail("Edge to unknown vertex accepted");
+            }
+            catch (IOException e) {
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkGMLReader() {
+        try {
+            for (String lName:new String[]{"6NodeDirected.gml", "6NodeDirected_AlternativeIDsSameLabels.gml"}) {
+                File lFile = new File("src/test/resources/"+lName);
+                for (boolean lLabelAsID:new boolean[]{false, true}) {
+                    assertSameGraph(TLGReferenceReader.fromGMLFile(lFile, TLGGraph.Directedness.DIRECTED, lLabelAsID), TLGGraph.fromGMLFile(lFile, TLGGraph.Directedness.DIRECTED, lLabelAsID));
+                }
+            }
+            TLGGraph lExpected = TLGGraph.fromGMLFile(new File("src/test/resources/6NodeDirected.gml"), TLGGraph.Directedness.DIRECTED, true);
+            TLGGraph lGraph = TLGGraph.fromGMLFile(new File("src/test/resources/6NodeDirectedCompact.gml"), TLGGraph.Directedness.DIRECTED, true);
+            Assert.assertEquals(6, lGraph.getNodes().size());
+            Assert.assertEquals("1.5", lGraph.getNodeByID("A").getProperty("graphics.x", null));
+            Assert.assertEquals("-2", lGraph.getNodeByID("A").getProperty("graphics.y", null));
+            Assert.assertEquals("#FF0000", lGraph.getNodeByID("A").getProperty("graphics.fill", null));
+            for (TLGEdge lEdge:lGraph.getNodeByID("A").getEdges(TLGGraph.Direction.OUT)) {
+                Assert.assertEquals(lEdge.getTarget().getId().equals("B") ? "derivation" : null, lEdge.getProperty("Type", null));
+            }
+            Assert.assertEquals("0.5", lGraph.getNodeByID("B").getEdges(TLGGraph.Direction.OUT).iterator().next().getProperty("weight", null));
+            for (TLGNode lNode:lExpected.getNodes()) {
+                Assert.assertEquals(lNode.getLinkedNodes(TLGGraph.Direction.OUT), lGraph.getNodeByID(lNode.getId()).getLinkedNodes(TLGGraph.Direction.OUT));
+            }
+            Assert.assertEquals("A", TLGGraph.fromGMLFile(new File("src/test/resources/6NodeDirectedCompact.gml"), TLGGraph.Directedness.DIRECTED).getNodeByID("1").getProperty("Label", null));
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkWriter() {
+        int lMaxThreads = TLGGraph.MAX_THREADS;
+        try {
+            File lGenerated = File.createTempFile("checkWriter", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 10000, 40000, 4);
+            File lExpected = File.createTempFile("checkWriter", ".out");
+            lExpected.deleteOnExit();
+            File lActual = File.createTempFile("checkWriter", ".out");
+            lActual.deleteOnExit();
+            for (File lFile:new File[]{new File("src/test/resources/Lexicon.tlg"), lGenerated}) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGNode lFirst = lGraph.getNodes().iterator().next();
+                lFirst.getProperties().put("Name", "a&b \"q\" \u00fc \u20ac \uD83D\uDE00 \uD800");
+                lFirst.getProperties().put("Label", lFirst.getProperty("Name", null));
+                Set<TLGNode> lNodes = new LinkedHashSet<>();
+                for (TLGNode lNode:lGraph.getNodes()) {
+                    if (!lNode.getProperty("Type", "").equals("Wordform")) lNodes.add(lNode);
+                }
+                Set<String> lEdgeTypes = new HashSet<>(Arrays.asList("derivation", "translation", "synonym", "sense"));
+                for (int lThreads:new int[]{1, 3}) {
+                    TLGGraph.MAX_THREADS = lThreads;
+                    for (boolean lFlag:new boolean[]{false, true}) {
+                        TLGReferenceWriter.saveSubGraph(lGraph, lExpected, lNodes, lFlag);
+                        lGraph.saveSubGraph(lActual, lNodes, lFlag);
+                        Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                        TLGReferenceWriter.saveSubGraph(lGraph, lExpected, lNodes, lEdgeTypes, lFlag);
+                        lGraph.saveSubGraph(lActual, lNodes, lEdgeTypes, lFlag);
+                        Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                        TLGReferenceWriter.saveSubGraphGML(lGraph, lExpected, lNodes, lFlag);
+                        lGraph.saveSubGraphGML(lActual, lNodes, lFlag);
+                        Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                        TLGReferenceWriter.saveSubGraphGML(lGraph, lExpected, lNodes, lEdgeTypes, lFlag);
+                        lGraph.saveSubGraphGML(lActual, lNodes, lEdgeTypes, lFlag);
+                        Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                    }
+                    // saveGraph no longer copies the nodes into a HashSet, so only the set of lines is the same
+                    TLGReferenceWriter.saveGraph(lGraph, lExpected);
+                    lGraph.saveGraph(lActual);
+                    List<String> lExpectedLines = Files.readAllLines(lExpected.toPath());
+                    List<String> lActualLines = Files.readAllLines(lActual.toPath());
+                    Assert.assertEquals(lExpectedLines.indexOf("Edges:"), lActualLines.indexOf("Edges:"));
+                    Collections.sort(lExpectedLines);
+                    Collections.sort(lActualLines);
+                    Assert.assertEquals(lExpectedLines, lActualLines);
+                    assertSameGraph(TLGGraph.fromBorlandFormatFile(lExpected, TLGGraph.Directedness.DIRECTED), TLGGraph.fromBorlandFormatFile(lActual, TLGGraph.Directedness.DIRECTED));
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+        finally {
+            TLGGraph.MAX_THREADS = lMaxThreads;
+        }
+    }
+
+    @Test
+    public void checkPropertyStorage() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            File lGenerated = File.createTempFile("checkPropertyStorage", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 3000, 12000, 5);
+            lFiles.add(lGenerated);
+            for (TLGLoadOptions.PropertyStorage lStorage:TLGLoadOptions.PropertyStorage.values()) {
+                for (File lFile:lFiles) {
+                    TLGGraph lExpected = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                    for (int lThreads:new int[]{1, 3}) {
+                        TLGLoadOptions lOptions = new TLGLoadOptions().setPropertyStorage(lStorage).setThreads(lThreads).setChunkSize(4096);
+                        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, lOptions);
+                        assertSameGraph(lExpected, lGraph);
+                    }
+                }
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"), TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setPropertyStorage(lStorage));
+                Assert.assertEquals("2", lGraph.getBFNodeByTypeAndName("de", "VV", "häuseln").getId());
+                Map<String, String> lProperties = lGraph.getNodeByID("1").getProperties();
+                Map<String, String> lExpected = new HashMap<>(lProperties);
+                Assert.assertEquals("Haus", lProperties.put("Name", "Hütte"));
+                lExpected.put("Name", "Hütte");
+                Assert.assertNull(lProperties.put("Gloss", "a building"));
+                lExpected.put("Gloss", "a building");
+                Assert.assertEquals("de", lProperties.remove("Language"));
+                lExpected.remove("Language");
+                Assert.assertNull(lProperties.remove("Unknown"));
+                Assert.assertEquals(lExpected, lProperties);
+                for (Iterator<Map.Entry<String, String>> lIterator = lProperties.entrySet().iterator(); lIterator.hasNext();) {
+                    Map.Entry<String, String> lEntry = lIterator.next();
+                    if (lEntry.getKey().equals("POS")) lIterator.remove();
+                    else if (lEntry.getKey().equals("Type")) lEntry.setValue("Lemma");
+                }
+                lExpected.remove("POS");
+                lExpected.put("Type", "Lemma");
+                Assert.assertEquals(lExpected, lProperties);
+                Assert.assertEquals("Lemma", lGraph.getNodeByID("1").getProperty("Type", null));
+                Assert.assertEquals("x", lGraph.getNodeByID("1").getProperty("Unknown", "x"));
+            }
+            // Lazily computed counts reflect the file, not later modifications
+            File lLexicon = new File("src/test/resources/Lexicon.tlg");
+            TLGGraph lLazy = TLGGraph.fromBorlandFormatFile(lLexicon, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setPropertyStorage(TLGLoadOptions.PropertyStorage.LAZY));
+            lLazy.getNodeByID("1").getProperties().put("Type", "Lemma");
+            TLGGraph lEager = TLGGraph.fromBorlandFormatFile(lLexicon, TLGGraph.Directedness.DIRECTED);
+            Assert.assertEquals(lEager.getNodeTypes(), lLazy.getNodeTypes());
+            Assert.assertEquals(lEager.getNodeAttributeCountMap(), lLazy.getNodeAttributeCountMap());
+            TLGPropertyColumns lColumns = new TLGPropertyColumns(new TLGSymbolTable(4));
+            for (int i=0; i<1000; i++) {
+                Assert.assertEquals(i, lColumns.newOrdinal());
+                lColumns.put(i, "Type", i % 3 == 0 ? "synonym" : "translation");
+                lColumns.put(i, "Weight", Double.toString(i/4.0));
+                lColumns.put(i, "Name", "n"+i);
+                if (i % 100 == 0) lColumns.put(i, "Gloss", "g"+i);
+            }
+            Assert.assertEquals("20.25", lColumns.get(81, "Weight"));
+            lColumns.put(999, "Weight", "3");
+            for (int i=0; i<1000; i++) {
+                Map<String, String> lExpected = new LinkedHashMap<>();
+                lExpected.put("Type", i % 3 == 0 ? "synonym" : "translation");
+                lExpected.put("Weight", i == 999 ? "3" : Double.toString(i/4.0));
+                lExpected.put("Name", "n"+i);
+                if (i % 100 == 0) lExpected.put("Gloss", "g"+i);
+                Assert.assertEquals(lExpected, lColumns.getProperties(i));
+            }
+            Assert.assertEquals("n5", lColumns.remove(5, "Name"));
+            Assert.assertNull(lColumns.getProperties(5).get("Name"));
+            Assert.assertEquals(2, lColumns.getProperties(5).size());
+            // Keys beyond the first 64 columns
+            for (int k=0; k<80; k++) {
+                lColumns.put(7, "k"+k, "v"+k);
+            }
+            lColumns.remove(7, "k70");
+            Assert.assertEquals(82, lColumns.getProperties(7).size());
+            Assert.assertEquals(82, lColumns.getProperties(7).entrySet().size());
+            Assert.assertEquals("v79", lColumns.getProperties(7).get("k79"));
+            Assert.assertFalse(lColumns.getProperties(7).containsKey("k70"));
+            Assert.assertEquals(3, lColumns.getProperties(8).size());
+            // Concurrent writes to different entities
+            TLGPropertyColumns lConcurrent = new TLGPropertyColumns(new TLGSymbolTable(4));
+            for (int i=0; i<4000; i++) {
+                lConcurrent.newOrdinal();
+            }
+            Thread[] lWriters = new Thread[4];
+            for (int t=0; t<lWriters.length; t++) {
+                int lThread = t;
+                lWriters[t] = new Thread(() -> {
+                    for (int i=lThread; i<4000; i+=lWriters.length) {
+                        lConcurrent.put(i, "Type", i % 3 == 0 ? "synonym" : "translation");
+                        lConcurrent.put(i, "Name", "n"+i);
+                        if (i % 10 == 0) lConcurrent.put(i, "Weight", Double.toString(i/4.0));
+                    }
+                });
+                lWriters[t].start();
+            }
+            for (Thread lWriter:lWriters) {
+                lWriter.join();
+            }
+            for (int i=0; i<4000; i++) {
+                Assert.assertEquals("n"+i, lConcurrent.get(i, "Name"));
+                Assert.assertEquals(i % 10 == 0 ? 3 : 2, lConcurrent.getProperties(i).size());
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Asserts that both graphs have the same head, nodes, edges, properties, similarities and statistics
+     */
+    @Test
+    public void checkFrozenGraph() {
+        try {
+            List<File> lFiles = new ArrayList<>();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (lFile.getName().endsWith(".tlg")) lFiles.add(lFile);
+            }
+            File lGenerated = File.createTempFile("checkFrozenGraph", ".tlg");
+            lGenerated.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lGenerated, 300, 450, 7);
+            lFiles.add(lGenerated);
+            for (File lFile:lFiles) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze(true);
+                Assert.assertEquals(lGraph.getNodes().size(), lFrozenGraph.size());
+                for (int i=0; i<lFrozenGraph.size(); i++) {
+                    TLGNode lNode = lFrozenGraph.getNode(i);
+                    Assert.assertEquals(i, lFrozenGraph.getOrdinal(lNode));
+                    List<String> lExpected = new ArrayList<>();
+                    for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                        lExpected.add(lEdge.getTarget().getId()+"\t"+lEdge.getProperty("Type", ""));
+                    }
+                    List<String> lActual = new ArrayList<>();
+                    for (int e=lFrozenGraph.getOutOffsets()[i]; e<lFrozenGraph.getOutOffsets()[i+1]; e++) {
+                        lActual.add(lFrozenGraph.getNode(lFrozenGraph.getOutTargets()[e]).getId()+"\t"+lFrozenGraph.getEdgeType(e));
+                    }
+                    Assert.assertEquals(lExpected, lActual);
+                    lExpected.clear();
+                    for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.IN)) {
+                        lExpected.add(lEdge.getSource().getId()+"\t"+lEdge.getProperty("Type", ""));
+                    }
+                    lActual.clear();
+                    for (int k=lFrozenGraph.getInOffsets()[i]; k<lFrozenGraph.getInOffsets()[i+1]; k++) {
+                        Assert.assertEquals(i, lFrozenGraph.getOutTargets()[lFrozenGraph.getInEdges()[k]]);
+                        lActual.add(lFrozenGraph.getNode(lFrozenGraph.getInSources()[k]).getId()+"\t"+lFrozenGraph.getEdgeType(lFrozenGraph.getInEdges()[k]));
+                    }
+                    Collections.sort(lExpected);
+                    Collections.sort(lActual);
+                    Assert.assertEquals(lExpected, lActual);
+                }
+                // Analytics on the frozen view against searches over getLinkedNodes()
+                int lDirected = 0;
+                int lUndirected = 0;
+                long lDistanceSum = 0;
+                List<TLGNode> lNodes = new ArrayList<>(lGraph.getNodes());
+                for (int i=0; i<lNodes.size(); i++) {
+                    lDirected = Math.max(lDirected, Collections.max(getDistances(lNodes.get(i), TLGGraph.Direction.OUT).values()));
+                    Map<TLGNode, Integer> lDistances = getDistances(lNodes.get(i), TLGGraph.Direction.ANY);
+                    lUndirected = Math.max(lUndirected, Collections.max(lDistances.values()));
+                    for (int k=i+1; k<lNodes.size(); k++) {
+                        lDistanceSum += lDistances.getOrDefault(lNodes.get(k), 0);
+                    }
+                }
+                Assert.assertEquals(lDirected, lGraph.getDiameter(TLGGraph.Directedness.DIRECTED));
+                Assert.assertEquals(lUndirected, lGraph.getDiameter(TLGGraph.Directedness.UNDIRECTED));
+                TLGGraph lOther = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                Assert.assertEquals(lDirected, lOther.getDiameterMT(TLGGraph.Directedness.DIRECTED));
+                Assert.assertEquals(lUndirected, lOther.getDiameterMT(TLGGraph.Directedness.UNDIRECTED));
+                double[] lGeodesic = lGraph.getDiameterAndGeodesicDistanceUnDirected();
+                Assert.assertEquals(lUndirected, (int)lGeodesic[0]);
+                Assert.assertEquals(lDistanceSum/(double)(lNodes.size()*(lNodes.size()-1L)/2), lGeodesic[1], 1e-12);
+                Set<Set<TLGNode>> lComponents = new HashSet<>();
+                for (TLGNode lNode:lNodes) {
+                    lComponents.add(getDistances(lNode, TLGGraph.Direction.ANY).keySet());
+                }
+                List<Set<TLGNode>> lActual = lGraph.getWeaklyConnectedComponents();
+                Assert.assertEquals(lComponents, new HashSet<>(lActual));
+                for (int i=1; i<lActual.size(); i++) {
+                    Assert.assertTrue(lActual.get(i-1).size() >= lActual.get(i).size());
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkNeighbourIteration() {
+        try {
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"), TLGGraph.Directedness.DIRECTED);
+            TLGNode lLoopNode = lGraph.getNodes().iterator().next();
+            TLGEdge lLoop = new TLGEdge(lGraph, lLoopNode, lLoopNode);
+            for (TLGNode lNode:lGraph.getNodes()) {
+                List<TLGEdge> lOut = new ArrayList<>();
+                lNode.forEachEdge(TLGGraph.Direction.OUT, lOut::add);
+                Assert.assertEquals(new ArrayList<>(lNode.getEdges(TLGGraph.Direction.OUT)), lOut);
+                Assert.assertEquals(lOut.size(), lNode.getOutDegree());
+                List<TLGEdge> lIn = new ArrayList<>();
+                for (int i=0; i<lNode.getInDegree(); i++) {
+                    lIn.add(lNode.getInEdge(i));
+                }
+                Assert.assertEquals(new ArrayList<>(lNode.getEdges(TLGGraph.Direction.IN)), lIn);
+                Set<TLGEdge> lAny = new HashSet<>(lOut);
+                lAny.addAll(lIn);
+                Assert.assertEquals(lAny, lNode.getEdges(TLGGraph.Direction.ANY));
+                for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                    Set<TLGNode> lNeighbours = new HashSet<>();
+                    lNode.forEachNeighbour(lDirection, lNeighbours::add);
+                    Assert.assertEquals(lNode.getLinkedNodes(lDirection), lNeighbours);
+                    Set<TLGNode> lTyped = new HashSet<>();
+                    lNode.forEachEdge("translation", lDirection, e -> lTyped.add(e.getOther(lNode)));
+                    Assert.assertEquals(lNode.getNodes(lDirection, "Type", "translation"), lTyped);
+                }
+                Set<TLGNode> lNeighbours = new HashSet<>();
+                for (int i=0; i<lNode.getDegree(); i++) {
+                    lNeighbours.add(lNode.getNeighbour(i));
+                }
+                Assert.assertEquals(lNode.getLinkedNodes(TLGGraph.Direction.ANY), lNeighbours);
+            }
+            Assert.assertTrue(lLoopNode.getEdges(TLGGraph.Direction.OUT).contains(lLoop));
+            Assert.assertTrue(lLoopNode.getEdges(TLGGraph.Direction.IN).contains(lLoop));
+            int lDegree = lLoopNode.getDegree();
+            lLoop.remove();
+            Assert.assertEquals(lDegree-2, lLoopNode.getDegree());
+            Assert.assertFalse(lLoopNode.getEdges(TLGGraph.Direction.ANY).contains(lLoop));
+            TLGEdge lEdge = lLoopNode.getOutDegree() > 0 ? lLoopNode.getOutEdge(0) : lLoopNode.getInEdge(0);
+            TLGNode lOther = lEdge.getOther(lLoopNode);
+            lLoopNode.removeEdge(lEdge);
+            Assert.assertFalse(lLoopNode.getEdges(TLGGraph.Direction.ANY).contains(lEdge));
+            Assert.assertFalse(lOther.getEdges(TLGGraph.Direction.ANY).contains(lEdge));
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkEdgeTypeIndex() {
+        try {
+            for (TLGLoadOptions.PropertyStorage lStorage:TLGLoadOptions.PropertyStorage.values()) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"), TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setPropertyStorage(lStorage));
+                List<Set<String>> lTypeSets = new ArrayList<>();
+                for (String lType:lGraph.getEdgeTypes().keySet()) {
+                    lTypeSets.add(Collections.singleton(lType));
+                }
+                lTypeSets.add(new HashSet<>(Arrays.asList("translation", "derivation", "")));
+                lTypeSets.add(Collections.singleton("unknown"));
+                for (Set<String> lTypes:lTypeSets) {
+                    long lMask = lGraph.getEdgeTypeMask(lTypes);
+                    // Types which no edge has match nothing
+                    Assert.assertEquals(lTypes.contains("unknown") ? Collections.emptySet() : lTypes, lGraph.getEdgeTypes(lMask));
+                    for (TLGNode lNode:lGraph.getNodes()) {
+                        for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                            Set<TLGEdge> lExpected = new HashSet<>();
+                            lNode.forEachEdge(lDirection, e -> {
+                                if (lTypes.contains(e.getProperty("Type", ""))) lExpected.add(e);
+                            });
+                            Set<TLGEdge> lActual = new HashSet<>();
+                            lNode.forEachEdge(lMask, lDirection, lActual::add);
+                            Assert.assertEquals(lExpected, lActual);
+                        }
+                        int lOut = 0;
+                        for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                            if (lTypes.contains(lEdge.getProperty("Type", ""))) lOut++;
+                        }
+                        Assert.assertEquals(lOut, lNode.getOutDegree(lMask));
+                    }
+                }
+                for (TLGNode lNode:lGraph.getNodes()) {
+                    Set<String> lTypes = new HashSet<>(Arrays.asList("translation", "derivation", "sense"));
+                    List<List<TLGNode>> lPaths = lGraph.computeEccentricity(lNode, lTypes);
+                    Map<TLGNode, Integer> lDistances = getDistances(lNode, lTypes);
+                    int lMax = Collections.max(lDistances.values());
+                    Set<TLGNode> lEnds = new HashSet<>();
+                    for (List<TLGNode> lPath:lPaths) {
+                        Assert.assertEquals(lMax, lPath.size()-1);
+                        Assert.assertEquals(lNode, lPath.get(0));
+                        lEnds.add(lPath.get(lPath.size()-1));
+                    }
+                    for (Map.Entry<TLGNode, Integer> lEntry:lDistances.entrySet()) {
+                        Assert.assertEquals(lEntry.getValue() == lMax, lEnds.contains(lEntry.getKey()));
+                    }
+                }
+                // Type changes of attached edges are picked up after invalidateEdgeTypeIndex()
+                TLGNode lNode = lGraph.getNodes().iterator().next();
+                TLGEdge lEdge = new TLGEdge(lGraph, lNode, lNode);
+                lEdge.getProperties().put("Type", "translation");
+                Assert.assertTrue(lNode.getNodes(TLGGraph.Direction.OUT, "Type", "translation").contains(lNode));
+                lEdge.getProperties().put("Type", "derivation");
+                lGraph.invalidateEdgeTypeIndex();
+                Assert.assertFalse(lNode.getNodes(TLGGraph.Direction.OUT, "Type", "translation").contains(lNode));
+                Assert.assertTrue(lNode.getNodes(TLGGraph.Direction.IN, "Type", "derivation").contains(lNode));
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkManyEdgeTypes() {
+        try {
+            File lFile = File.createTempFile("checkManyEdgeTypes", ".tlg");
+            lFile.deleteOnExit();
+            File lExpected = File.createTempFile("checkManyEdgeTypes", ".out");
+            lExpected.deleteOnExit();
+            File lActual = File.createTempFile("checkManyEdgeTypes", ".out");
+            lActual.deleteOnExit();
+            StringBuilder lBuilder = new StringBuilder("directed\nSimilarityGraph\nVertices:\n");
+            for (int i=0; i<300; i++) {
+                lBuilder.append(i).append("¤[Type¤Lemma¤]¤\n");
+            }
+            lBuilder.append("Edges:\n");
+            Random lRandom = new Random(13);
+            for (int i=0; i<1200; i++) {
+                int lSource = i < 300 ? i : lRandom.nextInt(300);
+                int lTarget = i < 300 ? (i+1)%300 : lRandom.nextInt(300);
+                lBuilder.append(lSource).append("¤").append(lTarget).append("¤1.0¤");
+                if (i%101 != 0) lBuilder.append("[Type¤t").append(i%100).append("¤]¤");
+                lBuilder.append("\n");
+            }
+            Files.write(lFile.toPath(), lBuilder.toString().getBytes("UTF-8"));
+            for (TLGLoadOptions.Adjacency lAdjacency:TLGLoadOptions.Adjacency.values()) {
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, new TLGLoadOptions().setAdjacency(lAdjacency));
+                Assert.assertEquals(100, lGraph.getEdgeTypes().size());
+                // Lookups of types which no edge has do not use up codes
+                TLGNode lFirst = lGraph.getNodeByID("0");
+                for (int i=0; i<200; i++) {
+                    Assert.assertTrue(lFirst.getNodes(TLGGraph.Direction.ANY, "Type", "unknown"+i).isEmpty());
+                    Assert.assertEquals(0, lGraph.getEdgeTypeMask("unknown"+i));
+                }
+                List<String> lAllTypes = new ArrayList<>(lGraph.getEdgeTypes().keySet());
+                lAllTypes.add("");
+                Collections.sort(lAllTypes);
+                List<Set<String>> lTypeSets = new ArrayList<>();
+                lTypeSets.add(new HashSet<>(lAllTypes));
+                lTypeSets.add(new HashSet<>(lAllTypes.subList(0, 40)));
+                lTypeSets.add(new HashSet<>(lAllTypes.subList(30, 101)));
+                for (Set<String> lTypes:lTypeSets) {
+                    Set<TLGNode> lNodes = new HashSet<>(lGraph.getNodes());
+                    TLGReferenceWriter.saveSubGraph(lGraph, lExpected, lNodes, lTypes, false);
+                    lGraph.saveSubGraph(lActual, lNodes, lTypes, false);
+                    Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                    TLGReferenceWriter.saveSubGraphGML(lGraph, lExpected, lNodes, lTypes, false);
+                    lGraph.saveSubGraphGML(lActual, lNodes, lTypes, false);
+                    Assert.assertArrayEquals(Files.readAllBytes(lExpected.toPath()), Files.readAllBytes(lActual.toPath()));
+                    for (TLGNode lNode:Arrays.asList(lFirst, lGraph.getNodeByID("150"))) {
+                        List<List<TLGNode>> lPaths = lGraph.computeEccentricity(lNode, lTypes);
+                        Map<TLGNode, Integer> lDistances = getDistances(lNode, lTypes);
+                        int lMax = Collections.max(lDistances.values());
+                        Set<TLGNode> lEnds = new HashSet<>();
+                        for (List<TLGNode> lPath:lPaths) {
+                            Assert.assertEquals(lMax, lPath.size()-1);
+                            lEnds.add(lPath.get(lPath.size()-1));
+                        }
+                        for (Map.Entry<TLGNode, Integer> lEntry:lDistances.entrySet()) {
+                            Assert.assertEquals(lEntry.getValue() == lMax, lEnds.contains(lEntry.getKey()));
+                        }
+                    }
+                }
+                for (TLGNode lNode:lGraph.getNodes()) {
+                    for (String lType:lAllTypes) {
+                        Set<TLGNode> lExpectedNodes = new HashSet<>();
+                        Set<TLGEdge> lExpectedEdges = new HashSet<>();
+                        for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                            if (lEdge.getProperty("Type", "").equals(lType)) {
+                                lExpectedNodes.add(lEdge.getTarget());
+                                lExpectedEdges.add(lEdge);
+                            }
+                        }
+                        Assert.assertEquals(lExpectedNodes, lNode.getNodes(TLGGraph.Direction.OUT, "Type", lType));
+                        Set<TLGEdge> lActualEdges = new HashSet<>();
+                        lNode.forEachEdge(lType, TLGGraph.Direction.OUT, lActualEdges::add);
+                        Assert.assertEquals(lExpectedEdges, lActualEdges);
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkNodeOrdering() {
+        try {
+            File lOrderFile = File.createTempFile("TLGGraphTest", ".order");
+            lOrderFile.deleteOnExit();
+            for (TLGGraph.Ordering lOrdering:TLGGraph.Ordering.values()) {
+                TLGGraph lExpected = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"), TLGGraph.Directedness.DIRECTED);
+                TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"), TLGGraph.Directedness.DIRECTED);
+                lGraph.reorder(lOrdering);
+                assertSameGraph(lExpected, lGraph);
+                Assert.assertEquals(lExpected.getDiameter(TLGGraph.Directedness.UNDIRECTED), lGraph.getDiameter(TLGGraph.Directedness.UNDIRECTED));
+                List<TLGNode> lOrder = new ArrayList<>(lGraph.getNodes());
+                TLGFrozenGraph lFrozenGraph = lGraph.freeze();
+                for (int i=0; i<lOrder.size(); i++) {
+                    Assert.assertSame(lOrder.get(i), lFrozenGraph.getNode(i));
+                    if ((lOrdering == TLGGraph.Ordering.DEGREE) && (i > 0)) {
+                        Assert.assertTrue(lOrder.get(i-1).getDegree() >= lOrder.get(i).getDegree());
+                    }
+                }
+                if (lOrdering == TLGGraph.Ordering.BFS) {
+                    // Every node but the first of a component has a neighbour before it
+                    Set<TLGNode> lSeen = new HashSet<>();
+                    int lStarts = 0;
+                    for (TLGNode lNode:lOrder) {
+                        Set<TLGNode> lNeighbours = lNode.getLinkedNodes(TLGGraph.Direction.ANY);
+                        lNeighbours.retainAll(lSeen);
+                        if (lNeighbours.isEmpty()) lStarts++;
+                        lSeen.add(lNode);
+                    }
+                    Assert.assertEquals(lGraph.getWeaklyConnectedComponents().size(), lStarts);
+                }
+                // The saved order restores the same ordinals
+                lGraph.saveNodeOrder(lOrderFile);
+                lExpected.reorder(lOrderFile);
+                Assert.assertEquals(lOrder, new ArrayList<>(lExpected.getNodes()));
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkOffHeapAdjacency() {
+        try {
+            File lExpectedFile = File.createTempFile("TLGGraphTest", ".tlg");
+            File lActualFile = File.createTempFile("TLGGraphTest", ".tlg");
+            lExpectedFile.deleteOnExit();
+            lActualFile.deleteOnExit();
+            for (File lFile:new File("src/test/resources").listFiles()) {
+                if (!lFile.getName().endsWith(".tlg")) continue;
+                TLGGraph lExpected = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                for (TLGLoadOptions.Adjacency lAdjacency:new TLGLoadOptions.Adjacency[]{TLGLoadOptions.Adjacency.DIRECT, TLGLoadOptions.Adjacency.MAPPED}) {
+                    for (int lThreads:new int[]{1, 3}) {
+                        TLGLoadOptions lOptions = new TLGLoadOptions().setAdjacency(lAdjacency).setThreads(lThreads).setChunkSize(64);
+                        if (lThreads > 1) lOptions.setPropertyStorage(TLGLoadOptions.PropertyStorage.LAZY);
+                        TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, lOptions);
+                        assertSameGraph(lExpected, lGraph);
+                        Assert.assertTrue((lGraph.getNodes().size() == 0) || (lGraph.getOffHeapBytes() > 0));
+                        for (TLGNode lNode:lExpected.getNodes()) {
+                            TLGNode lOffHeapNode = lGraph.getNodeByID(lNode.getId());
+                            Assert.assertEquals(getEdgeOrder(lNode, TLGGraph.Direction.OUT), getEdgeOrder(lOffHeapNode, TLGGraph.Direction.OUT));
+                            Assert.assertEquals(getEdgeOrder(lNode, TLGGraph.Direction.IN), getEdgeOrder(lOffHeapNode, TLGGraph.Direction.IN));
+                            Assert.assertEquals(lNode.getEdges(TLGGraph.Direction.ANY).size(), lOffHeapNode.getEdges(TLGGraph.Direction.ANY).size());
+                            for (TLGGraph.Direction lDirection:TLGGraph.Direction.values()) {
+                                Assert.assertEquals(getIDs(lNode.getLinkedNodes(lDirection)), getIDs(lOffHeapNode.getLinkedNodes(lDirection)));
+                                Assert.assertEquals(getIDs(lNode.getNodes(lDirection, "Type", "translation")), getIDs(lOffHeapNode.getNodes(lDirection, "Type", "translation")));
+                            }
+                        }
+                        Assert.assertEquals(lExpected.getDiameter(TLGGraph.Directedness.UNDIRECTED), lGraph.getDiameter(TLGGraph.Directedness.UNDIRECTED));
+                        Set<TLGNode> lExpectedNodes = new LinkedHashSet<>(lExpected.getNodes());
+                        Set<TLGNode> lNodes = new LinkedHashSet<>();
+                        for (TLGNode lNode:lExpectedNodes) {
+                            lNodes.add(lGraph.getNodeByID(lNode.getId()));
+                        }
+                        lExpected.saveSubGraph(lExpectedFile, lExpectedNodes, false);
+                        lGraph.saveSubGraph(lActualFile, lNodes, false);
+                        Assert.assertArrayEquals(Files.readAllBytes(lExpectedFile.toPath()), Files.readAllBytes(lActualFile.toPath()));
+                        // The first change moves the edges to the heap, views created before can still be removed
+                        TLGNode lNode = null;
+                        for (TLGNode lCandidate:lGraph.getNodes()) {
+                            if (lCandidate.getOutDegree() >= 2) {
+                                lNode = lCandidate;
+                                break;
+                            }
+                        }
+                        if (lNode != null) {
+                            TLGGraph lHeap = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+                            TLGNode lHeapNode = lHeap.getNodeByID(lNode.getId());
+                            TLGEdge lFirst = lNode.getOutEdge(0);
+                            TLGEdge lSecond = lNode.getOutEdge(1);
+                            TLGEdge lHeapSecond = lHeapNode.getOutEdge(1);
+                            lNode.removeEdge(lFirst);
+                            lHeapNode.removeEdge(lHeapNode.getOutEdge(0));
+                            Assert.assertEquals(0, lGraph.getOffHeapBytes());
+                            lSecond.remove();
+                            lHeapSecond.remove();
+                            new TLGEdge(lGraph, lNode, lNode).getProperties().put("Type", "translation");
+                            new TLGEdge(lHeap, lHeapNode, lHeapNode).getProperties().put("Type", "translation");
+                            assertSameGraph(lHeap, lGraph);
+                            Assert.assertEquals(getIDs(lHeapNode.getNodes(TLGGraph.Direction.OUT, "Type", "translation")), getIDs(lNode.getNodes(TLGGraph.Direction.OUT, "Type", "translation")));
+                            // Property changes of a view are kept
+                            try (TLGGraph lOther = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, lOptions)) {
+                                TLGNode lOtherNode = lOther.getNodeByID(lNode.getId());
+                                TLGEdge lView = lOtherNode.getOutEdge(0);
+                                Map<String, String> lProperties = lView.getProperties();
+                                String lType = lProperties.get("Type");
+                                Assert.assertNull(lProperties.put("Mark", "x"));
+                                Assert.assertEquals(0, lOther.getOffHeapBytes());
+                                Assert.assertEquals("x", lView.getProperty("Mark", null));
+                                Assert.assertEquals("x", lProperties.get("Mark"));
+                                Assert.assertEquals(lType, lProperties.get("Type"));
+                                Assert.assertEquals("x", lOtherNode.getOutEdge(0).getProperty("Mark", null));
+                            }
+                        }
+                        lGraph.close();
+                        Assert.assertEquals(0, lGraph.getOffHeapBytes());
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkSecondaryIndexes() {
+        try {
+            File lFile = File.createTempFile("checkSecondaryIndexes", ".tlg");
+            lFile.deleteOnExit();
+            TLGBenchmark.generateLexiconGraph(lFile, 2000, 8000, 3);
+            TLGGraph lReference = TLGReferenceReader.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED);
+            for (TLGLoadOptions.PropertyStorage lStorage:TLGLoadOptions.PropertyStorage.values()) {
+                for (int lThreads:new int[]{1, 3}) {
+                    TLGLoadOptions lOptions = new TLGLoadOptions().setPropertyStorage(lStorage).setThreads(lThreads).setChunkSize(4096)
+                            .addIndex(TLGIndex.forNodes("TypeName", TLGIndex.Kind.SORTED, "Type", "Name"))
+                            .addIndex(TLGIndex.forEdges("EdgeType", TLGIndex.Kind.HASH, "Type"));
+                    TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(lFile, TLGGraph.Directedness.DIRECTED, lOptions);
+                    TLGIndex<TLGNode> lTypeName = lGraph.getNodeIndex("TypeName");
+                    Assert.assertTrue(lTypeName.isBuilt());
+                    Assert.assertNull(lGraph.getEdgeIndex("TypeName"));
+                    Assert.assertEquals(lGraph.getNodes().size(), lTypeName.size());
+                    for (TLGNode lNode:lGraph.getNodes()) {
+                        String lType = lNode.getProperty("Type", null);
+                        String lName = lNode.getProperty("Name", null);
+                        Assert.assertEquals(getIDs(lGraph, n -> lType.equals(n.getProperty("Type", null)) && lName.equals(n.getProperty("Name", null))),
+                                getIDs(lTypeName.get(lType, lName)));
+                        if (lType.equals("SuperLemma")) {
+                            TLGNode lExpected = lReference.getBFNodeByTypeAndName(lNode.getProperty("Language", null), lNode.getProperty("POS", null), lName);
+                            Assert.assertEquals(lExpected.getId(), lGraph.getBFNodeByTypeAndName(lNode.getProperty("Language", null), lNode.getProperty("POS", null), lName).getId());
+                        }
+                    }
+                    Assert.assertEquals(getIDs(lGraph, n -> n.getProperty("Type", null).equals("Lemma") && n.getProperty("Name", null).startsWith("w1")),
+                            getIDs(lTypeName.getByPrefix("Lemma", "w1")));
+                    Assert.assertEquals(getIDs(lGraph, n -> n.getProperty("Type", null).equals("Sense")), getIDs(lTypeName.getByPrefix("Sense", "")));
+                    Assert.assertEquals(getIDs(lGraph, n -> n.getProperty("Type", null).equals("Lemma") && (n.getProperty("Name", null).compareTo("w1") >= 0) && (n.getProperty("Name", null).compareTo("w3") < 0)),
+                            getIDs(lTypeName.getRange(new String[]{"Lemma", "w1"}, new String[]{"Lemma", "w3"})));
+                    Assert.assertEquals(getIDs(lGraph, n -> n.getProperty("Type", null).compareTo("Sense") < 0), getIDs(lTypeName.getRange(null, "Sense")));
+                    List<TLGNode> lSorted = lTypeName.getRange((String)null, null);
+                    for (int i=1; i<lSorted.size(); i++) {
+                        Assert.assertTrue(lSorted.get(i-1).getProperty("Type", null).compareTo(lSorted.get(i).getProperty("Type", null)) <= 0);
+                    }
+                    TLGIndex<TLGEdge> lEdgeType = lGraph.getEdgeIndex("EdgeType");
+                    for (String lType:lGraph.getEdgeTypes().keySet()) {
+                        Assert.assertEquals(lGraph.getEdgeTypes().get(lType), lEdgeType.get(lType).size());
+                        for (TLGEdge lEdge:lEdgeType.get(lType)) {
+                            Assert.assertEquals(lType, lEdge.getProperty("Type", null));
+                        }
+                    }
+                    try {
+                        lEdgeType.getByPrefix("t");
+                        Assert.fail("Prefix lookup on a hash index");
+                    }
+                    catch (UnsupportedOperationException e) {
+                        // Expected
+                    }
+                }
+            }
+            // Indexes added later are built on demand, created nodes are indexed and modified properties after invalidateIndexes()
+            TLGGraph lGraph = TLGGraph.fromBorlandFormatFile(new File("src/test/resources/Lexicon.tlg"));
+            TLGIndex<TLGNode> lLanguage = lGraph.addIndex(TLGIndex.forNodes("Language", TLGIndex.Kind.HASH, "Language").where("Type", "Lemma"));
+            Assert.assertFalse(lLanguage.isBuilt());
+            Assert.assertEquals(Collections.singletonList("7"), getIDs(lLanguage.get("de")));
+            Map<String, String> lProperties = new HashMap<>(lGraph.getNodeByID("7").getProperties());
+            TLGNode lCreated = lGraph.createNode(new TLGNode(new TLGGraph(lGraph), "8", lProperties));
+            Assert.assertEquals(Arrays.asList("7", "8"), getIDs(lLanguage.get("de")));
+            lGraph.getNodeByID("4").getProperties().put("Language", "de");
+            Assert.assertEquals(Collections.singletonList("4"), getIDs(lLanguage.get("en")));
+            lGraph.invalidateIndexes();
+            Assert.assertEquals(0, lLanguage.get("en").size());
+            Assert.assertEquals(Arrays.asList("4", "7", "8"), getIDs(lLanguage.get("de")));
+            Assert.assertTrue(lLanguage.get("de").contains(lCreated));
+            Assert.assertEquals("2", lGraph.getBFNodeByTypeAndName("de", "VV", "häuseln").getId());
+            // The built-in index is built on demand for graphs read from other formats
+            lGraph = TLGGraph.fromGMLFile(new File("src/test/resources/6NodeDirected.gml"), TLGGraph.Directedness.DIRECTED, false);
+            Assert.assertNull(lGraph.getBFNodeByTypeAndName("de", "VV", "häuseln"));
+        }
+        catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * The former fuzzy Jaccard similarity on copies of both graphs extended by the nodes of the other one
+     */
+    private static double getFuzzyJaccardSimilarityByCopies(TLGGraph pGraph1, TLGGraph pGraph2) {
+        TLGGraph lGraph1 = new TLGGraph(pGraph1);
+        TLGGraph lGraph2 = new TLGGraph(pGraph2);
+        for (TLGNode lNode2:pGraph2.getNodes()) {
+            if (pGraph1.getNodeByID(lNode2.getId()) == null) lGraph1.createNode(lNode2);
+        }
+        for (TLGNode lNode1:pGraph1.getNodes()) {
+            if (pGraph2.getNodeByID(lNode1.getId()) == null) lGraph2.createNode(lNode1);
+        }
+        long[] lDeltas = new long[2];
+        List<Map<String, Integer>> lLengths = new ArrayList<>();
+        TLGGraph[] lCopies = new TLGGraph[]{lGraph1, lGraph2};
+        for (int g=0; g<2; g++) {
+            Map<String, Integer> lGraphLengths = new HashMap<>();
+            for (Set<TLGNode> lSet:lCopies[g].getWeaklyConnectedComponents()) {
+                int lDiameter = 0;
+                TObjectIntHashMap<String> lMap = TLGGraph.getUndirectedShortestPathsLengths(lSet);
+                for (String lKey:lMap.keySet()) {
+                    lGraphLengths.put(lKey, lMap.get(lKey));
+                    lDiameter = Math.max(lDiameter, lMap.get(lKey));
+                }
+                lDeltas[g] += lDiameter+1;
+            }
+            lLengths.add(lGraphLengths);
+        }
+        List<TLGNode> lNodeList = new ArrayList<>(lGraph1.getNodes());
+        double lZaehler = 0;
+        double lNenner = 0;
+        for (int i=0; i<lNodeList.size()-1; i++) {
+            for (int k=i+1; k<lNodeList.size(); k++) {
+                String lKey = TLGGraph.getSortedIdPair(lNodeList.get(i), lNodeList.get(k));
+                double lDistance1 = lLengths.get(0).containsKey(lKey) ? 1d/lLengths.get(0).get(lKey) : 1d/lDeltas[0];
+                double lDistance2 = lLengths.get(1).containsKey(lKey) ? 1d/lLengths.get(1).get(lKey) : 1d/lDeltas[1];
+                lZaehler += Math.min(lDistance1, lDistance2);
+                lNenner += Math.max(lDistance1, lDistance2);
+            }
+        }
+        return lZaehler/lNenner;
+    }
+
+    private static List<String> getIDs(TLGGraph pGraph, java.util.function.Predicate<TLGNode> pPredicate) {
+        List<String> lResult = new ArrayList<>();
+        for (TLGNode lNode:pGraph.getNodes()) {
+            if (pPredicate.test(lNode)) lResult.add(lNode.getId());
+        }
+        Collections.sort(lResult);
+        return lResult;
+    }
+
+    private static List<String> getIDs(List<TLGNode> pNodes) {
+        List<String> lResult = new ArrayList<>();
+        for (TLGNode lNode:pNodes) {
+            lResult.add(lNode.getId());
+        }
+        Collections.sort(lResult);
+        return lResult;
+    }
+
+    private static List<String> getEdgeOrder(TLGNode pNode, TLGGraph.Direction pDirection) {
+        List<String> lResult = new ArrayList<>();
+        pNode.forEachEdge(pDirection, e -> lResult.add(e.getSource().getId()+"\t"+e.getTarget().getId()+"\t"+e.getSimilarity()+"\t"+new TreeMap<>(e.getProperties())));
+        return lResult;
+    }
+
+    private static Set<String> getIDs(Set<TLGNode> pNodes) {
+        Set<String> lResult = new HashSet<>();
+        for (TLGNode lNode:pNodes) {
+            lResult.add(lNode.getId());
+        }
+        return lResult;
+    }
+
+    /**
+     * Breadth first search along OUT edges with one of pEdgeTypes as reference for computeEccentricity()
+     */
+    private static Map<TLGNode, Integer> getDistances(TLGNode pStart, Set<String> pEdgeTypes) {
+        Map<TLGNode, Integer> lResult = new HashMap<>();
+        List<TLGNode> lQueue = new ArrayList<>();
+        lResult.put(pStart, 0);
+        lQueue.add(pStart);
+        for (int i=0; i<lQueue.size(); i++) {
+            TLGNode lNode = lQueue.get(i);
+            for (TLGEdge lEdge:lNode.getEdges(TLGGraph.Direction.OUT)) {
+                if (pEdgeTypes.contains(lEdge.getProperty("Type", "")) && !lResult.containsKey(lEdge.getTarget())) {
+                    lResult.put(lEdge.getTarget(), lResult.get(lNode)+1);
+                    lQueue.add(lEdge.getTarget());
+                }
+            }
+        }
+        return lResult;
+    }
+
+    /**
+     * Breadth first search over getLinkedNodes() as reference for the analytics
+     */
+    private static Map<TLGNode, Integer> getDistances(TLGNode pStart, TLGGraph.Direction pDirection) {
+        Map<TLGNode, Integer> lResult = new HashMap<>();
+        List<TLGNode> lQueue = new ArrayList<>();
+        lResult.put(pStart, 0);
+        lQueue.add(pStart);
+        for (int i=0; i<lQueue.size(); i++) {
+            TLGNode lNode = lQueue.get(i);
+            for (TLGNode lOther:lNode.getLinkedNodes(pDirection)) {
+                if (!lResult.containsKey(lOther)) {
+                    lResult.put(lOther, lResult.get(lNode)+1);
+                    lQueue.add(lOther);
+                }
+            }
+        }
+        return lResult;
+    }
+
+    public static void assertSameGraph(TLGGraph pExpected, TLGGraph pActual) {
+        Assert.assertEquals(pExpected.getHead(), pActual.getHead());
+        Assert.assertEquals(pExpected.getNodes().size(), pActual.getNodes().size());
+        Assert.assertTrue(pExpected.isEqualDirected(pActual));
+        Assert.assertTrue(pActual.isEqualDirected(pExpected));
+        Assert.assertEquals(pExpected.getNodeTypes(), pActual.getNodeTypes());
+        Assert.assertEquals(pExpected.getEdgeTypes(), pActual.getEdgeTypes());
+        Assert.assertEquals(pExpected.getNodeAttributeCountMap(), pActual.getNodeAttributeCountMap());
+        Assert.assertEquals(pExpected.getEdgeAttributeCountMap(), pActual.getEdgeAttributeCountMap());
+        for (TLGNode lNode:pExpected.getNodes()) {
+            Assert.assertEquals(getEdgeSignatures(lNode), getEdgeSignatures(pActual.getNodeByID(lNode.getId())));
+        }
+    }
+
+    private static List<String> getEdgeSignatures(TLGNode pNode) {
+        List<String> lResult = new ArrayList<>();
+        for (TLGEdge lEdge:pNode.getEdges(TLGGraph.Direction.OUT)) {
+            lResult.add(lEdge.getTarget().getId()+"\t"+lEdge.getSimilarity()+"\t"+new TreeMap<>(lEdge.getProperties()));
+        }
+        Collections.sort(lResult);
+        return lResult;
+    }
+
     public static void main(String[] args) throws Exception {
 
     }
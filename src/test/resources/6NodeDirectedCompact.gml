@@ -0,0 +1,10 @@
+# Written by another tool
+Creator "compact writer [1.0]"
+graph [ directed 1 comment "a [bracket] in a string"
+  node [ id 1 label "A" graphics [ x 1.5 y -2 fill "#FF0000" ] ] node [ id 2 label "B" ]
+  node [id 3 label "C"] node [ id 4
+    label "D" ] node [ id 5 label "E" ]
+  node [ id 6 label "F" ]
+  edge [ source 1 target 2 type "derivation" ] edge [ source 1 target 3 ]
+  edge [ source 2 target 4 weight 0.5 ] edge [ source 3 target 4 ] edge [source 4 target 5] edge [ source 6 target 5 graphics [ width 2 ] ]
+]